@@ -0,0 +1,108 @@
+package geomerative;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import processing.data.XML;
+
+/**
+ *
+ * Benchmarks of the boolean operations and of the meshing of the three
+ * clipping engines, RClip, FastRClip and IntRClip, chosen through
+ * RG.useFastClip and RG.useIntClip.  The inputs are synthetic polygons and
+ * the outlines of the files in data, each one clipped against a shifted
+ * copy of itself.  The files are parsed straight into an XML, without a
+ * PApplet, so the benchmarks also run on a machine without a display.
+ *
+ * Run with: gradle jmh, or gradle jmh -Pjmh='ClipBenchmark.union'
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+// RClip builds its triangle strips recursively, large outlines need a deep stack
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+public class ClipBenchmark {
+
+  @Param({"RClip", "FastRClip", "IntRClip"})
+  public String engine;
+
+  @Param({"star", "ring", "random", "data/bot1.svg", "data/Toucan.svg", "data/mapa.svg", "data/world-map.svg"})
+  public String input;
+
+  RPolygon a;
+  RPolygon b;
+  RPreparedPolygon preparedA;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    RG.useFastClip = !engine.equals("RClip");
+    RG.useIntClip = engine.equals("IntRClip");
+
+    if(input.equals("star")) {
+      a = RPolygon.createStar(100, 40, 50);
+    } else if(input.equals("ring")) {
+      a = RPolygon.createRing(100, 60, 200);
+    } else if(input.equals("random")) {
+      a = makeRandom(100, 100);
+    } else {
+      a = new RSVG().toShape(new XML(new File(input))).toPolygon();
+    }
+
+    // The second operand is a shifted copy, so that the edges cross everywhere
+    if(input.equals("random")) {
+      b = makeRandom(100, 101);
+    } else {
+      b = new RPolygon(a);
+      b.translate(a.getWidth() / 7, a.getHeight() / 5);
+    }
+
+    preparedA = new RPreparedPolygon(a);
+  }
+
+  // Random points joined in order, the contour intersects itself many times
+  static RPolygon makeRandom(int numPoints, long seed) {
+    Random r = new Random(seed);
+    RPoint[] points = new RPoint[numPoints];
+    for(int i = 0; i < numPoints; i++) {
+      points[i] = new RPoint(r.nextFloat()*100, r.nextFloat()*100);
+    }
+    return new RPolygon(points);
+  }
+
+  @Benchmark
+  public RPolygon intersection() {
+    return RClip.intersection(a, b);
+  }
+
+  // Same as intersection with the first operand prepared beforehand
+  @Benchmark
+  public RPolygon preparedIntersection() {
+    return preparedA.intersection(b);
+  }
+
+  @Benchmark
+  public RPolygon union() {
+    return RClip.union(a, b);
+  }
+
+  @Benchmark
+  public RPolygon xor() {
+    return RClip.xor(a, b);
+  }
+
+  @Benchmark
+  public RPolygon diff() {
+    return RClip.diff(a, b);
+  }
+
+  @Benchmark
+  public RMesh polygonToMesh() {
+    return RClip.polygonToMesh(a);
+  }
+}
@@ -41,8 +41,7 @@
 
 package geomerative;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import geomerative.RClip.OperationType;
 
 /**
@@ -126,36 +125,39 @@ class FastRClip
    * This is where the conversion from really begins.
    */
   static RPolygon clip( OperationType op, RPolygon subj, RPolygon clip, Class polyClass )
+  {
+    return clip( op, subj, null, clip, null, polyClass );
+  }
+  
+  /**
+   * Clips two operands, each given either as a polygon or as a prepared
+   * polygon.  For each operand exactly one of the two arguments is null.
+   */
+  static RPolygon clip( OperationType op,
+                        RPolygon subj, RPreparedPolygon psubj,
+                        RPolygon clip, RPreparedPolygon pclip,
+                        Class polyClass )
   {
     RPolygon result = createNewPoly( polyClass );
-    TopPolygonNode out_poly = new TopPolygonNode(); // used to create resulting RPolygon
+    boolean subj_empty = (psubj != null) ? psubj.empty : subj.isEmpty();
+    boolean clip_empty = (pclip != null) ? pclip.empty : clip.isEmpty();
     
     /* Test for trivial NULL result cases */
-    if( (subj.isEmpty() && clip.isEmpty()) ||
-        (subj.isEmpty() && ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF))) ||
-        (clip.isEmpty() &&  (op == OperationType.GPC_INT)) )
+    if( (subj_empty && clip_empty) ||
+        (subj_empty && ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF))) ||
+        (clip_empty &&  (op == OperationType.GPC_INT)) )
       {
         return null;
       }
     
-    /* Identify potentialy contributing contours */
-    if( ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF)) && 
-        !subj.isEmpty() && !clip.isEmpty() )
-      {
-        minimax_test(subj, clip, op);
-      }
+    /* Take the scratch structures of this thread */
+    ClipContext ctx = ClipContext.get();
+    TopPolygonNode out_poly = ctx.out_poly; // used to create resulting RPolygon
     
     /* Build LMT */
-    LmtTable lmt_table = new LmtTable();
-    ScanBeamTreeEntries sbte = new ScanBeamTreeEntries();
-    if (!subj.isEmpty())
-      {
-        build_lmt(lmt_table, sbte, subj, SUBJ, op);
-      }
-    if (!clip.isEmpty())
-      {
-        build_lmt(lmt_table, sbte, clip, CLIP, op);
-      }
+    LmtTable lmt_table = ctx.lmt_table;
+    ScanBeamTreeEntries sbte = ctx.sbte;
+    build_tables(ctx, op, subj, psubj, clip, pclip);
     
     /* Return a NULL result if no contours contribute */
     if (lmt_table.top_node == null)
@@ -177,17 +179,17 @@ class FastRClip
     
     LmtNode local_min = lmt_table.top_node;
     
-    AetTree aet = new AetTree();
+    AetTree aet = ctx.aet;
     int scanbeam = 0;
     
     /* Process each scanbeam */
-    while( scanbeam < sbt.length )
+    while( scanbeam < sbte.sbt_entries )
       {
         /* Set yb and yt to the bottom and top of the scanbeam */
         float yb = sbt[scanbeam++];
         float yt = 0.0F;
         float dy = 0.0F;
-        if( scanbeam < sbt.length )
+        if( scanbeam < sbte.sbt_entries )
           {
             yt = sbt[scanbeam];
             dy = yt - yb;
@@ -473,8 +475,8 @@ class FastRClip
             /* === SCANBEAM INTERIOR PROCESSING ============================== */
             
             /* Build intersection table for the current scanbeam */
-            ItNodeTable it_table = new ItNodeTable();
-            it_table.build_intersection_table(aet, dy);
+            ItNodeTable it_table = ctx.it_table;
+            it_table.build_intersection_table(ctx, aet, dy);
             
             /* Process each node in the intersection table */
             for (ItNode intersect = it_table.top_node; (intersect != null); intersect = intersect.next)
@@ -728,24 +730,13 @@ class FastRClip
         return null;
       }
     
-    /* Identify potentialy contributing contours */
-    if( ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF)) && 
-        !subj.isEmpty() && !clip.isEmpty() )
-      {
-        minimax_test(subj, clip, op);
-      }
+    /* Take the scratch structures of this thread */
+    ClipContext ctx = ClipContext.get();
     
     /* Build LMT */
-    LmtTable lmt_table = new LmtTable();
-    ScanBeamTreeEntries sbte = new ScanBeamTreeEntries();
-    if (!subj.isEmpty())
-      {
-        build_lmt(lmt_table, sbte, subj, SUBJ, op);
-      }
-    if (!clip.isEmpty())
-      {
-        build_lmt(lmt_table, sbte, clip, CLIP, op);
-      }
+    LmtTable lmt_table = ctx.lmt_table;
+    ScanBeamTreeEntries sbte = ctx.sbte;
+    build_tables(ctx, op, subj, null, clip, null);
     
     /* Return a NULL result if no contours contribute */
     if (lmt_table.top_node == null)
@@ -767,17 +758,17 @@ class FastRClip
     
     LmtNode local_min = lmt_table.top_node;
     
-    AetTree aet = new AetTree();
+    AetTree aet = ctx.aet;
     int scanbeam = 0;
     
     /* Process each scanbeam */
-    while( scanbeam < sbt.length )
+    while( scanbeam < sbte.sbt_entries )
       {
         /* Set yb and yt to the bottom and top of the scanbeam */
         float yb = sbt[scanbeam++];
         float yt = 0.0F;
         float dy = 0.0F;
-        if( scanbeam < sbt.length )
+        if( scanbeam < sbte.sbt_entries )
           {
             yt = sbt[scanbeam];
             dy = yt - yb;
@@ -924,26 +915,26 @@ class FastRClip
                     switch (vclass)
                       {
                       case VertexType.EMN:
-                     	tlist=new_tristrip(tlist, edge, xb, yb);
+                     	tlist=new_tristrip(ctx, tlist, edge, xb, yb);
                      	cf= edge;
                      	break;
                       case VertexType.ERI:
                         edge.outp_above= cf.outp_above;
                         if (xb != cf.xb)
                           {
-                            VERTEX(edge, ABOVE, RIGHT, xb, yb);
+                            VERTEX(ctx, edge, ABOVE, RIGHT, xb, yb);
                           }
                         cf= null;
                         break;
                       case VertexType.ELI:
-                        VERTEX(edge, BELOW, LEFT, xb, yb);
+                        VERTEX(ctx, edge, BELOW, LEFT, xb, yb);
                         edge.outp_above= null;
                         cf= edge;
                         break;
                       case VertexType.EMX:
                         if (xb != cf.xb)
                           {
-                            VERTEX(edge, BELOW, RIGHT, xb, yb);
+                            VERTEX(ctx, edge, BELOW, RIGHT, xb, yb);
                           }
                         edge.outp_above = null;
                         cf= null;
@@ -953,15 +944,15 @@ class FastRClip
                           {
                             if (cf.bot_y != yb)
                               {
-                                VERTEX(cf, BELOW, LEFT, cf.xb, yb);
+                                VERTEX(ctx, cf, BELOW, LEFT, cf.xb, yb);
                               }
-                            tlist=new_tristrip(tlist, cf, cf.xb, yb);
+                            tlist=new_tristrip(ctx, tlist, cf, cf.xb, yb);
                           }
             		edge.outp_above= cf.outp_above;
-            		VERTEX(edge, ABOVE, RIGHT, xb, yb);
+            		VERTEX(ctx, edge, ABOVE, RIGHT, xb, yb);
             		break;
                       case VertexType.ILI:
-                        tlist=new_tristrip(tlist, edge, xb, yb);
+                        tlist=new_tristrip(ctx, tlist, edge, xb, yb);
             		cf= edge;
             		cft= VertexType.ILI;
             		break;
@@ -970,36 +961,36 @@ class FastRClip
                           {
                             if (cf.bot_y != yb)
                               {
-                                VERTEX(cf, BELOW, LEFT, cf.xb, yb);
+                                VERTEX(ctx, cf, BELOW, LEFT, cf.xb, yb);
                               }
-                            tlist=new_tristrip(tlist, cf, cf.xb, yb);
+                            tlist=new_tristrip(ctx, tlist, cf, cf.xb, yb);
                           }
-            		VERTEX(edge, BELOW, RIGHT, xb, yb);
+            		VERTEX(ctx, edge, BELOW, RIGHT, xb, yb);
             		edge.outp_above= null;
             		break;
                       case VertexType.IMX:
-                        VERTEX(edge, BELOW, LEFT, xb, yb);
+                        VERTEX(ctx, edge, BELOW, LEFT, xb, yb);
             		edge.outp_above= null;
             		cft= VertexType.IMX;
             		break;
                       case VertexType.IMM:
-                        VERTEX(edge, BELOW, LEFT, xb, yb);
+                        VERTEX(ctx, edge, BELOW, LEFT, xb, yb);
             		edge.outp_above= cf.outp_above;
             		if (xb != cf.xb)
                           {
-                            VERTEX(cf, ABOVE, RIGHT, xb, yb);
+                            VERTEX(ctx, cf, ABOVE, RIGHT, xb, yb);
                           }
             		cf= edge;
             		break;
                       case VertexType.EMM:
-                        VERTEX(edge, BELOW, RIGHT, xb, yb);
+                        VERTEX(ctx, edge, BELOW, RIGHT, xb, yb);
             		edge.outp_above= null;
-            		tlist=new_tristrip(tlist, edge, xb, yb);
+            		tlist=new_tristrip(ctx, tlist, edge, xb, yb);
             		cf= edge;
             		break;
                       case VertexType.LED:
                         if (edge.bot_y == yb)
-                          VERTEX(edge, BELOW, LEFT, xb, yb);
+                          VERTEX(ctx, edge, BELOW, LEFT, xb, yb);
                         edge.outp_above= edge.outp_below;
                         cf= edge;
             		cft= VertexType.LED;
@@ -1010,21 +1001,21 @@ class FastRClip
                           {
                             if (cf.bot_y == yb)
                               {
-                                VERTEX(edge, BELOW, RIGHT, xb, yb);
+                                VERTEX(ctx, edge, BELOW, RIGHT, xb, yb);
                               }
                             else
                               {
                                 if (edge.bot_y == yb)
                                   {
-                                    VERTEX(cf, BELOW, LEFT, cf.xb, yb);
-                                    VERTEX(edge, BELOW, RIGHT, xb, yb);
+                                    VERTEX(ctx, cf, BELOW, LEFT, cf.xb, yb);
+                                    VERTEX(ctx, edge, BELOW, RIGHT, xb, yb);
                                   }
                               }
                           }
             		else
                           {
-                            VERTEX(edge, BELOW, RIGHT, xb, yb);
-                            VERTEX(edge, ABOVE, RIGHT, xb, yb);
+                            VERTEX(ctx, edge, BELOW, RIGHT, xb, yb);
+                            VERTEX(ctx, edge, ABOVE, RIGHT, xb, yb);
                           }
             		cf= null;
             		break;
@@ -1082,8 +1073,8 @@ class FastRClip
             /* === SCANBEAM INTERIOR PROCESSING ============================== */
             
             /* Build intersection table for the current scanbeam */
-            ItNodeTable it_table = new ItNodeTable();
-            it_table.build_intersection_table(aet, dy);
+            ItNodeTable it_table = ctx.it_table;
+            it_table.build_intersection_table(ctx, aet, dy);
             
             /* Process each node in the intersection table */
             for (ItNode intersect = it_table.top_node; (intersect != null); intersect = intersect.next)
@@ -1148,15 +1139,15 @@ class FastRClip
                     switch (vclass)
                       {
                       case VertexType.EMN:
-                        tlist=new_tristrip(tlist, e1, ix, iy);
+                        tlist=new_tristrip(ctx, tlist, e1, ix, iy);
                         e1.outp_above = e0.outp_above;
                         break;
                       case VertexType.ERI:
                         if (p != null)
                           {
                             px = P_EDGE(prev_edge, e0, ABOVE, px, iy);
-                            VERTEX(prev_edge, ABOVE, LEFT, px, iy);
-                            VERTEX(e0, ABOVE, RIGHT, ix, iy);
+                            VERTEX(ctx, prev_edge, ABOVE, LEFT, px, iy);
+                            VERTEX(ctx, e0, ABOVE, RIGHT, ix, iy);
                             e1.outp_above= e0.outp_above;
                             e0.outp_above= null;
                           }
@@ -1165,8 +1156,8 @@ class FastRClip
                         if (q != null)
                           {
                             nx = N_EDGE(next_edge, e1, ABOVE, nx, iy);
-                            VERTEX(e1, ABOVE, LEFT, ix, iy);
-                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                            VERTEX(ctx, e1, ABOVE, LEFT, ix, iy);
+                            VERTEX(ctx, next_edge, ABOVE, RIGHT, nx, iy);
                             e0.outp_above= e1.outp_above;
                             e1.outp_above= null;
                           }
@@ -1174,29 +1165,29 @@ class FastRClip
                       case VertexType.EMX:
                         if ((p!=null) && (q!=null))
                           {
-                            VERTEX(e0, ABOVE, LEFT, ix, iy);
+                            VERTEX(ctx, e0, ABOVE, LEFT, ix, iy);
                             e0.outp_above= null;
                             e1.outp_above= null;
                           }
                         break;
                       case VertexType.IMN:
                         px = P_EDGE(prev_edge, e0, ABOVE, px, iy);
-            		VERTEX(prev_edge, ABOVE, LEFT, px, iy);
+            		VERTEX(ctx, prev_edge, ABOVE, LEFT, px, iy);
             		nx = N_EDGE(next_edge, e1, ABOVE, nx, iy);
-            		VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
-            		tlist=new_tristrip(tlist, prev_edge, px, iy); 
+            		VERTEX(ctx, next_edge, ABOVE, RIGHT, nx, iy);
+            		tlist=new_tristrip(ctx, tlist, prev_edge, px, iy); 
             		e1.outp_above= prev_edge.outp_above;
-            		VERTEX(e1, ABOVE, RIGHT, ix, iy);
-            		tlist=new_tristrip(tlist, e0, ix, iy);
+            		VERTEX(ctx, e1, ABOVE, RIGHT, ix, iy);
+            		tlist=new_tristrip(ctx, tlist, e0, ix, iy);
             		next_edge.outp_above= e0.outp_above;
-            		VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+            		VERTEX(ctx, next_edge, ABOVE, RIGHT, nx, iy);
             		break;
                       case VertexType.ILI:
                         if (p != null)
                           {
-                            VERTEX(e0, ABOVE, LEFT, ix, iy);
+                            VERTEX(ctx, e0, ABOVE, LEFT, ix, iy);
                             nx = N_EDGE(next_edge, e1, ABOVE, nx, iy);
-                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                            VERTEX(ctx, next_edge, ABOVE, RIGHT, nx, iy);
                             e1.outp_above= e0.outp_above;
                             e0.outp_above= null;
                           }
@@ -1204,9 +1195,9 @@ class FastRClip
                       case VertexType.IRI:
                         if (q!=null)
                           {
-                            VERTEX(e1, ABOVE, RIGHT, ix, iy);
+                            VERTEX(ctx, e1, ABOVE, RIGHT, ix, iy);
                             px = P_EDGE(prev_edge, e0, ABOVE, px, iy);
-                            VERTEX(prev_edge, ABOVE, LEFT, px, iy);
+                            VERTEX(ctx, prev_edge, ABOVE, LEFT, px, iy);
                             e0.outp_above= e1.outp_above;
                             e1.outp_above= null;
                           }
@@ -1214,41 +1205,41 @@ class FastRClip
                       case VertexType.IMX:
                         if ((p!=null) && (q!=null))
                           {
-                            VERTEX(e0, ABOVE, RIGHT, ix, iy);
-                            VERTEX(e1, ABOVE, LEFT, ix, iy);
+                            VERTEX(ctx, e0, ABOVE, RIGHT, ix, iy);
+                            VERTEX(ctx, e1, ABOVE, LEFT, ix, iy);
                             e0.outp_above= null;
                             e1.outp_above= null;
                             px = P_EDGE(prev_edge, e0, ABOVE, px, iy);
-                            VERTEX(prev_edge, ABOVE, LEFT, px, iy);
-                            tlist=new_tristrip(tlist, prev_edge, px, iy);
+                            VERTEX(ctx, prev_edge, ABOVE, LEFT, px, iy);
+                            tlist=new_tristrip(ctx, tlist, prev_edge, px, iy);
                             nx = N_EDGE(next_edge, e1, ABOVE, nx, iy);
-                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                            VERTEX(ctx, next_edge, ABOVE, RIGHT, nx, iy);
                             next_edge.outp_above= prev_edge.outp_above;
-                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                            VERTEX(ctx, next_edge, ABOVE, RIGHT, nx, iy);
                           }
                         break;
                       case VertexType.IMM:
                         if ((p!=null) && (q!=null))
                           {
-                            VERTEX(e0, ABOVE, RIGHT, ix, iy);
-                            VERTEX(e1, ABOVE, LEFT, ix, iy);
+                            VERTEX(ctx, e0, ABOVE, RIGHT, ix, iy);
+                            VERTEX(ctx, e1, ABOVE, LEFT, ix, iy);
                             px = P_EDGE(prev_edge, e0, ABOVE, px, iy);
-                            VERTEX(prev_edge, ABOVE, LEFT, px, iy);
-                            tlist=new_tristrip(tlist, prev_edge, px, iy);
+                            VERTEX(ctx, prev_edge, ABOVE, LEFT, px, iy);
+                            tlist=new_tristrip(ctx, tlist, prev_edge, px, iy);
                             nx = N_EDGE(next_edge, e1, ABOVE, nx, iy);
-                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                            VERTEX(ctx, next_edge, ABOVE, RIGHT, nx, iy);
                             e1.outp_above= prev_edge.outp_above;
-                            VERTEX(e1, ABOVE, RIGHT, ix, iy);
-                            tlist=new_tristrip(tlist, e0, ix, iy);
+                            VERTEX(ctx, e1, ABOVE, RIGHT, ix, iy);
+                            tlist=new_tristrip(ctx, tlist, e0, ix, iy);
                             next_edge.outp_above= e0.outp_above;
-                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                            VERTEX(ctx, next_edge, ABOVE, RIGHT, nx, iy);
                           }
                         break;
                       case VertexType.EMM:
                         if ((p!=null) && (q!=null))
                           {
-                            VERTEX(e0, ABOVE, LEFT, ix, iy);
-                            tlist=new_tristrip(tlist, e1, ix, iy);
+                            VERTEX(ctx, e0, ABOVE, LEFT, ix, iy);
+                            tlist=new_tristrip(ctx, tlist, e1, ix, iy);
                             e1.outp_above = e0.outp_above;
                           }
                         break;
@@ -1392,6 +1383,7 @@ class FastRClip
                         rt= rtn;
                       }
                   }
+                strip.trimToSize();
                 result.addStrip(strip);
                 s++;
               }
@@ -1445,20 +1437,21 @@ class FastRClip
     return ((i + 1    ) % n);
   }
   
-  private static boolean OPTIMAL( RPolygon p, int i )
+  private static boolean OPTIMAL( RContour c, int i )
   {
-    return (p.getY(PREV_INDEX(i, p.getNumPoints())) != p.getY(i)) || 
-      (p.getY(NEXT_INDEX(i, p.getNumPoints())) != p.getY(i));
+    int n = c.countPoints();
+    return (c.points[PREV_INDEX(i, n)].y != c.points[i].y) || 
+      (c.points[NEXT_INDEX(i, n)].y != c.points[i].y);
   }
   
   // TODO: demacro-ize this
-  private static void VERTEX( EdgeNode e, int p, int s, float x, float y )
+  private static void VERTEX( ClipContext ctx, EdgeNode e, int p, int s, float x, float y )
   {
     if(p == ABOVE) {
       if(s == RIGHT) {
-        e.outp_above.v_right = add_vertex(e.outp_above.v_right, x, y);
+        e.outp_above.v_right = add_vertex(ctx, e.outp_above.v_right, x, y);
       } else if(s == LEFT) {
-        e.outp_above.v_left = add_vertex(e.outp_above.v_left, x, y);
+        e.outp_above.v_left = add_vertex(ctx, e.outp_above.v_left, x, y);
       } else {
         throw new IllegalStateException("bogus s value");
       }
@@ -1467,9 +1460,9 @@ class FastRClip
       
     } else if (p == BELOW) {
       if(s == RIGHT) {
-        e.outp_below.v_right = add_vertex(e.outp_below.v_right, x, y);
+        e.outp_below.v_right = add_vertex(ctx, e.outp_below.v_right, x, y);
       } else if(s == LEFT) {
-        e.outp_below.v_left = add_vertex(e.outp_below.v_left, x, y);
+        e.outp_below.v_left = add_vertex(ctx, e.outp_below.v_left, x, y);
       } else {
         throw new IllegalStateException("bogus s value");
       }
@@ -1527,52 +1520,64 @@ class FastRClip
     }
   }
   
-  private static RRectangle[] create_contour_bboxes( RPolygon p )
+  /**
+   * Stores the bounding box of each contour of p in box, as xmin, ymin,
+   * xmax, ymax, and returns box, grown if it was too short.
+   */
+  private static float[] create_contour_bboxes( RPolygon p, float[] box )
   {
-    RRectangle[] box = new RRectangle[p.getNumInnerPoly()];
+    int num_poly = p.getNumInnerPoly();
+    if( box.length < 4*num_poly )
+      {
+        box = new float[4*num_poly];
+      }
     
     /* Construct contour bounding boxes */
-    for ( int c= 0; c < p.getNumInnerPoly(); c++)
+    for ( int c= 0; c < num_poly; c++)
       {
-        RPolygon inner_poly = p.getInnerPoly(c);
-        box[c] = inner_poly.getBBox();
+        RContour contour = p.contours[c];
+        float xmin =  Float.MAX_VALUE;
+        float ymin =  Float.MAX_VALUE;
+        float xmax = -Float.MAX_VALUE;
+        float ymax = -Float.MAX_VALUE;
+        for( int i = 0; i < contour.countPoints(); i++ )
+          {
+            float x = contour.points[i].x;
+            float y = contour.points[i].y;
+            if( x < xmin ) xmin = x;
+            if( x > xmax ) xmax = x;
+            if( y < ymin ) ymin = y;
+            if( y > ymax ) ymax = y;
+          }
+        if( contour.countPoints() == 0 )
+          {
+            xmin = ymin = xmax = ymax = 0;
+          }
+        
+        /* Same rounding as the corners of an RRectangle */
+        box[4*c]   = xmin;
+        box[4*c+1] = ymin;
+        box[4*c+2] = xmin + (xmax - xmin);
+        box[4*c+3] = ymin + (ymax - ymin);
       }
     return box;  
   }
   
-  private static void minimax_test( RPolygon subj, RPolygon clip, OperationType op )
+  private static void minimax_test( float[] s_bbox, int subj_num_poly, boolean[] subj_skip,
+                                    float[] c_bbox, int clip_num_poly, boolean[] clip_skip,
+                                    OperationType op )
   {
-    RRectangle[] s_bbox = create_contour_bboxes(subj);
-    RRectangle[] c_bbox = create_contour_bboxes(clip);
-    
-    int subj_num_poly = subj.getNumInnerPoly();
-    int clip_num_poly = clip.getNumInnerPoly();
-    boolean[][] o_table = new boolean[subj_num_poly][clip_num_poly];
-    
-    /* Check all subject contour bounding boxes against clip boxes */
-    for( int s = 0; s < subj_num_poly; s++ )
-      {
-        for( int c= 0; c < clip_num_poly; c++ )
-          {
-            o_table[s][c] =
-              (!((s_bbox[s].getMaxX() < c_bbox[c].getMinX()) ||
-                 (s_bbox[s].getMinX() > c_bbox[c].getMaxX()))) &&
-              (!((s_bbox[s].getMaxY() < c_bbox[c].getMinY()) ||
-                 (s_bbox[s].getMinY() > c_bbox[c].getMaxY())));
-          }
-      }
-    
     /* For each clip contour, search for any subject contour overlaps */
     for( int c = 0; c < clip_num_poly; c++ )
       {
         boolean overlap = false;
         for( int s = 0; !overlap && (s < subj_num_poly); s++)
           {
-            overlap = o_table[s][c];
+            overlap = bboxes_overlap(s_bbox, s, c_bbox, c);
           }
         if (!overlap)
           {
-            clip.setContributing( c, false ); // Flag non contributing status
+            clip_skip[c] = true; // Flag non contributing status
           }
       }  
     
@@ -1584,21 +1589,108 @@ class FastRClip
             boolean overlap = false;
             for ( int c= 0; !overlap && (c < clip_num_poly); c++)
               {
-                overlap = o_table[s][c];
+                overlap = bboxes_overlap(s_bbox, s, c_bbox, c);
               }
             if (!overlap)
               {
-                subj.setContributing( s, false ); // Flag non contributing status
+                subj_skip[s] = true; // Flag non contributing status
               }
           }  
       }
   }
   
-  private static LmtNode bound_list( LmtTable lmt_table, float y )
+  private static boolean bboxes_overlap( float[] s_bbox, int s, float[] c_bbox, int c )
+  {
+    return (!((s_bbox[4*s+2] < c_bbox[4*c]) ||
+              (s_bbox[4*s] > c_bbox[4*c+2]))) &&
+      (!((s_bbox[4*s+3] < c_bbox[4*c+1]) ||
+         (s_bbox[4*s+1] > c_bbox[4*c+3])));
+  }
+  
+  /**
+   * Identifies the potentially contributing contours and builds the LMT and
+   * the scanbeam table of both operands.  A prepared operand leaves out the
+   * bounds starting above the contributing contours of the other operand
+   * when nothing can be output there.  Those below must be kept, the parities
+   * carried by the sweep from one scanbeam to the next depend on them.
+   */
+  private static void build_tables( ClipContext ctx, OperationType op,
+                                    RPolygon subj, RPreparedPolygon psubj,
+                                    RPolygon clip, RPreparedPolygon pclip )
+  {
+    boolean subj_empty = (psubj != null) ? psubj.empty : subj.isEmpty();
+    boolean clip_empty = (pclip != null) ? pclip.empty : clip.isEmpty();
+    int subj_num_poly = (psubj != null) ? psubj.numContours : subj.getNumInnerPoly();
+    int clip_num_poly = (pclip != null) ? pclip.numContours : clip.getNumInnerPoly();
+    ctx.clear_skip( subj_num_poly, clip_num_poly );
+    
+    float subj_ymax = Float.MAX_VALUE;
+    float clip_ymax = Float.MAX_VALUE;
+    
+    /* Identify potentialy contributing contours */
+    if( ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF)) && 
+        !subj_empty && !clip_empty )
+      {
+        float[] s_bbox = (psubj != null) ? psubj.contourBoxes :
+          (ctx.subj_boxes = create_contour_bboxes(subj, ctx.subj_boxes));
+        float[] c_bbox = (pclip != null) ? pclip.contourBoxes :
+          (ctx.clip_boxes = create_contour_bboxes(clip, ctx.clip_boxes));
+        minimax_test(s_bbox, subj_num_poly, ctx.subj_skip, c_bbox, clip_num_poly, ctx.clip_skip, op);
+        
+        /* An intersection is empty above the clip, an intersection or a
+           difference is empty above the subject */
+        if( (psubj != null) && (op == OperationType.GPC_INT) )
+          {
+            subj_ymax = bboxes_ymax(c_bbox, clip_num_poly, ctx.clip_skip);
+          }
+        if( pclip != null )
+          {
+            clip_ymax = bboxes_ymax(s_bbox, subj_num_poly, ctx.subj_skip);
+          }
+      }
+    
+    if (!subj_empty)
+      {
+        if( psubj != null )
+          {
+            build_lmt(ctx, psubj, ctx.subj_skip, SUBJ, op, subj_ymax);
+          }
+        else
+          {
+            build_lmt(ctx, subj, ctx.subj_skip, SUBJ, op);
+          }
+      }
+    if (!clip_empty)
+      {
+        if( pclip != null )
+          {
+            build_lmt(ctx, pclip, ctx.clip_skip, CLIP, op, clip_ymax);
+          }
+        else
+          {
+            build_lmt(ctx, clip, ctx.clip_skip, CLIP, op);
+          }
+      }
+  }
+  
+  private static float bboxes_ymax( float[] bbox, int num_poly, boolean[] skip )
+  {
+    float ymax = -Float.MAX_VALUE;
+    for( int c = 0; c < num_poly; c++ )
+      {
+        if( !skip[c] && (bbox[4*c+3] > ymax) )
+          {
+            ymax = bbox[4*c+3];
+          }
+      }
+    return ymax;
+  }
+  
+  private static LmtNode bound_list( ClipContext ctx, LmtTable lmt_table, float y )
   {
     if( lmt_table.top_node == null )
       {
-        lmt_table.top_node = new LmtNode(y);
+        lmt_table.top_node = ctx.newLmtNode(y);
         return lmt_table.top_node;
       }
     else
@@ -1612,7 +1704,7 @@ class FastRClip
               {
                 /* Insert a new LMT node before the current node */
                 LmtNode existing_node = node;
-                node = new LmtNode(y);
+                node = ctx.newLmtNode(y);
                 node.next = existing_node;
                 if( prev == null )
                   {
@@ -1629,7 +1721,7 @@ class FastRClip
                 /* Head further up the LMT */
                 if( node.next == null )
                   {
-                    node.next = new LmtNode(y);
+                    node.next = ctx.newLmtNode(y);
                     node = node.next;
                     done = true;
                   }
@@ -1818,85 +1910,39 @@ class FastRClip
       }
   }
   
-  private static void add_to_sbtree( ScanBeamTreeEntries sbte, float y )
-  {
-    if( sbte.sb_tree == null )
-      {
-        /* Add a new tree node here */
-        sbte.sb_tree = new ScanBeamTree( y );
-        sbte.sbt_entries++;
-        return;
-      }
-    ScanBeamTree tree_node = sbte.sb_tree;
-    boolean done = false;
-    while( !done )
-      {
-        if ( tree_node.y > y)
-          {
-            if( tree_node.less == null )
-              {
-                tree_node.less = new ScanBeamTree(y);
-                sbte.sbt_entries++;
-                done = true;
-              }
-            else
-              {
-                tree_node = tree_node.less;
-              }
-          }
-        else if ( tree_node.y < y)
-          {
-            if( tree_node.more == null )
-              {
-                tree_node.more = new ScanBeamTree(y);
-                sbte.sbt_entries++;
-                done = true;
-              }
-            else
-              {
-                tree_node = tree_node.more;
-              }
-          }
-        else
-          {
-            done = true;
-          }
-      }
-  }
-  
-  private static EdgeTable build_lmt( LmtTable lmt_table, 
-                                      ScanBeamTreeEntries sbte,
-                                      RPolygon p, 
-                                      int type, //poly type SUBJ/CLIP
-                                      OperationType op)
+  private static void build_lmt( ClipContext ctx,
+                                 RPolygon p, 
+                                 boolean[] skip, //non-contributing contours
+                                 int type, //poly type SUBJ/CLIP
+                                 OperationType op)
   {
-    /* Create the entire input polygon edge table in one go */
-    EdgeTable edge_table = new EdgeTable();
+    LmtTable lmt_table = ctx.lmt_table;
+    ScanBeamTreeEntries sbte = ctx.sbte;
+    EdgeTable edge_table = ctx.edge_table;
     
     for ( int c= 0; c < p.getNumInnerPoly(); c++)
       {
-        RPolygon ip = p.getInnerPoly(c);
-        if( !ip.isContributing(0) )
+        RContour ip = p.contours[c];
+        if( skip[c] )
           {
             /* Ignore the non-contributing contour */
-            ip.setContributing(0, true);
           }
         else
           {
             /* Perform contour optimisation */
             int num_vertices= 0;
             int e_index = 0;
-            edge_table = new EdgeTable();
-            for ( int i= 0; i < ip.getNumPoints(); i++)
+            edge_table.clear();
+            for ( int i= 0; i < ip.countPoints(); i++)
               {
                 if( OPTIMAL(ip, i) )
                   {
-                    float x = ip.getX(i);
-                    float y = ip.getY(i);
-                    edge_table.addNode( x, y );
+                    float x = ip.points[i].x;
+                    float y = ip.points[i].y;
+                    edge_table.addNode( ctx.newEdgeNode(), x, y );
                     
                     /* Record vertex in the scanbeam table */
-                    add_to_sbtree( sbte, ip.getY(i) );
+                    sbte.add( y );
                     
                     num_vertices++;
                   }
@@ -1950,7 +1996,7 @@ class FastRClip
                         ei.bside_clip = (op == OperationType.GPC_DIFF) ? RIGHT : LEFT;
                         ei.bside_subj = LEFT;
                       }
-                    insert_bound( bound_list(lmt_table, edge_table.getNode(min).vertex_y), e);
+                    insert_bound( bound_list(ctx, lmt_table, edge_table.getNode(min).vertex_y), e);
                     e_index += num_edges;
                   }
               }
@@ -2003,21 +2049,292 @@ class FastRClip
                         ei.bside_clip = (op == OperationType.GPC_DIFF) ? RIGHT : LEFT;
                         ei.bside_subj = LEFT;
                       }
-                    insert_bound( bound_list(lmt_table, edge_table.getNode(min).vertex_y), e);
+                    insert_bound( bound_list(ctx, lmt_table, edge_table.getNode(min).vertex_y), e);
                     e_index+= num_edges;
                   }
               }
           }
       }
-    return edge_table;
   }
   
-  private static StNode add_st_edge( StNode st, ItNodeTable it, EdgeNode edge, float dy)
+  /**
+   * Builds the LMT entries of a prepared polygon from its bounds, leaving out
+   * the bounds of non-contributing contours and those starting above ymax.
+   * The bounds are sorted in LMT order, so each one is inserted after the
+   * previous one instead of searching the LMT from its start.
+   */
+  private static void build_lmt( ClipContext ctx,
+                                 RPreparedPolygon p,
+                                 boolean[] skip, //non-contributing contours
+                                 int type, //poly type SUBJ/CLIP
+                                 OperationType op,
+                                 float ymax )
+  {
+    LmtTable lmt_table = ctx.lmt_table;
+    ScanBeamTreeEntries sbte = ctx.sbte;
+    float[] edges = p.boundEdges;
+    
+    LmtNode lmt_node = null;
+    EdgeNode last_bound = null;
+    for( int b = 0; b < p.numBounds; b++ )
+      {
+        int first = p.boundStart[b];
+        int last = p.boundStart[b+1] - 1;
+        if( edges[5*first+1] > ymax )
+          {
+            /* The following bounds start even higher */
+            break;
+          }
+        if( skip[p.boundContour[b]] )
+          {
+            continue;
+          }
+        
+        /* Build the edge list of the bound */
+        EdgeNode e = null;
+        EdgeNode prev = null;
+        for( int i = first; i <= last; i++ )
+          {
+            EdgeNode ei = ctx.newEdgeNode();
+            ei.xb    = edges[5*i];
+            ei.bot_x = edges[5*i];
+            ei.bot_y = edges[5*i+1];
+            ei.top_x = edges[5*i+2];
+            ei.top_y = edges[5*i+3];
+            ei.dx    = edges[5*i+4];
+            ei.type = type;
+            ei.pred = prev;
+            ei.bside_clip = (op == OperationType.GPC_DIFF) ? RIGHT : LEFT;
+            ei.bside_subj = LEFT;
+            if( prev == null )
+              {
+                e = ei;
+              }
+            else
+              {
+                prev.succ = ei;
+              }
+            prev = ei;
+            
+            /* Record vertex in the scanbeam table */
+            sbte.add( ei.bot_y );
+          }
+        sbte.add( prev.top_y );
+        e.bstate_below = BundleState.UNBUNDLED;
+        
+        LmtNode node = bound_list_after( ctx, lmt_table, lmt_node, e.bot_y );
+        if( (node == lmt_node) && (last_bound != null) )
+          {
+            insert_bound_after( last_bound, e );
+          }
+        else
+          {
+            insert_bound( node, e );
+          }
+        lmt_node = node;
+        last_bound = e;
+      }
+  }
+  
+  /**
+   * Same as bound_list, starting the search at node, which is null or at or
+   * below y.
+   */
+  private static LmtNode bound_list_after( ClipContext ctx, LmtTable lmt_table, LmtNode node, float y )
+  {
+    if( node == null )
+      {
+        return bound_list( ctx, lmt_table, y );
+      }
+    while( (node.next != null) && (node.next.y <= y) )
+      {
+        node = node.next;
+      }
+    if( node.y != y )
+      {
+        /* Insert a new LMT node after the current node */
+        LmtNode existing_node = node.next;
+        node.next = ctx.newLmtNode(y);
+        node = node.next;
+        node.next = existing_node;
+      }
+    return node;
+  }
+  
+  /**
+   * Same as insert_bound, for a bound e that does not sort before bound,
+   * already in the list.
+   */
+  private static void insert_bound_after( EdgeNode bound, EdgeNode e )
+  {
+    EdgeNode prev_bound = bound;
+    EdgeNode current_bound = bound.next_bound;
+    while( (current_bound != null) &&
+           !((e.bot_x < current_bound.bot_x) ||
+             ((e.bot_x == current_bound.bot_x) && (e.dx < current_bound.dx))) )
+      {
+        prev_bound = current_bound;
+        current_bound = current_bound.next_bound;
+      }
+    prev_bound.next_bound = e;
+    e.next_bound = current_bound;
+  }
+  
+  /**
+   * Fills the tables of a prepared polygon: the bounding box of each contour
+   * and the bounds of the contours, the chains of edges rising from their
+   * local minima, with the edges build_lmt would make.  The bounds are
+   * sorted in the order in which build_lmt would insert them in the LMT.
+   */
+  static void prepare( RPreparedPolygon pp, RPolygon p )
+  {
+    int num_poly = p.getNumInnerPoly();
+    pp.numContours = num_poly;
+    pp.contourBoxes = create_contour_bboxes( p, new float[4*num_poly] );
+    
+    int num_bounds = 0;
+    int num_edges = 0;
+    int[] bound_contour = new int[16];
+    int[] bound_start = new int[17];
+    float[] edges = new float[5*64];
+    float[] vx = new float[64];
+    float[] vy = new float[64];
+    
+    for ( int c= 0; c < num_poly; c++)
+      {
+        /* Perform contour optimisation */
+        RContour ip = p.contours[c];
+        int num_vertices= 0;
+        for ( int i= 0; i < ip.countPoints(); i++)
+          {
+            if( OPTIMAL(ip, i) )
+              {
+                if( num_vertices == vx.length )
+                  {
+                    vx = Arrays.copyOf( vx, 2*num_vertices );
+                    vy = Arrays.copyOf( vy, 2*num_vertices );
+                  }
+                vx[num_vertices] = ip.points[i].x;
+                vy[num_vertices] = ip.points[i].y;
+                num_vertices++;
+              }
+          }
+        
+        /* Do the contour forward pass, then the reverse pass */
+        for ( int pass = 0; pass < 2; pass++ )
+          {
+            for ( int min= 0; min < num_vertices; min++)
+              {
+                int prev = PREV_INDEX(min, num_vertices);
+                int next = NEXT_INDEX(min, num_vertices);
+                boolean local_min = (pass == 0) ?
+                  ((vy[prev] >= vy[min]) && (vy[next] >  vy[min])) :
+                  ((vy[prev] >  vy[min]) && (vy[next] >= vy[min]));
+                if( !local_min )
+                  {
+                    continue;
+                  }
+                
+                /* Record the edges up to the next local maximum */
+                if( num_bounds + 1 == bound_contour.length )
+                  {
+                    bound_contour = Arrays.copyOf( bound_contour, 2*bound_contour.length );
+                    bound_start = Arrays.copyOf( bound_start, 2*bound_start.length );
+                  }
+                bound_contour[num_bounds] = c;
+                bound_start[num_bounds] = num_edges;
+                int v = min;
+                do
+                  {
+                    int w = (pass == 0) ? NEXT_INDEX(v, num_vertices) : PREV_INDEX(v, num_vertices);
+                    if( 5*(num_edges + 1) > edges.length )
+                      {
+                        edges = Arrays.copyOf( edges, 2*edges.length );
+                      }
+                    edges[5*num_edges]   = vx[v];
+                    edges[5*num_edges+1] = vy[v];
+                    edges[5*num_edges+2] = vx[w];
+                    edges[5*num_edges+3] = vy[w];
+                    edges[5*num_edges+4] = (vx[w] - vx[v]) / (vy[w] - vy[v]);
+                    num_edges++;
+                    v = w;
+                  }
+                while( vy[(pass == 0) ? NEXT_INDEX(v, num_vertices) : PREV_INDEX(v, num_vertices)] > vy[v] );
+                num_bounds++;
+              }
+          }
+      }
+    bound_start[num_bounds] = num_edges;
+    
+    /* Sort the bounds, stably, as insert_bound chains them */
+    int[] order = new int[num_bounds];
+    for( int b = 0; b < num_bounds; b++ )
+      {
+        order[b] = b;
+      }
+    sort_bounds( order, new int[num_bounds], 0, num_bounds, bound_start, edges );
+    
+    pp.numBounds = num_bounds;
+    pp.boundContour = new int[num_bounds];
+    pp.boundStart = new int[num_bounds + 1];
+    pp.boundEdges = new float[5*num_edges];
+    int e = 0;
+    for( int k = 0; k < num_bounds; k++ )
+      {
+        int b = order[k];
+        int n = bound_start[b+1] - bound_start[b];
+        pp.boundContour[k] = bound_contour[b];
+        pp.boundStart[k] = e;
+        System.arraycopy( edges, 5*bound_start[b], pp.boundEdges, 5*e, 5*n );
+        e += n;
+      }
+    pp.boundStart[num_bounds] = e;
+  }
+  
+  /* Merge sort of order[lo, hi) by the bottom y, x and dx of the bounds */
+  private static void sort_bounds( int[] order, int[] tmp, int lo, int hi, int[] bound_start, float[] edges )
+  {
+    if( hi - lo < 2 )
+      {
+        return;
+      }
+    int mid = (lo + hi) >>> 1;
+    sort_bounds( order, tmp, lo, mid, bound_start, edges );
+    sort_bounds( order, tmp, mid, hi, bound_start, edges );
+    System.arraycopy( order, lo, tmp, lo, hi - lo );
+    int i = lo;
+    int j = mid;
+    for( int k = lo; k < hi; k++ )
+      {
+        if( (j < hi) && ((i >= mid) || bound_before( tmp[j], tmp[i], bound_start, edges )) )
+          {
+            order[k] = tmp[j++];
+          }
+        else
+          {
+            order[k] = tmp[i++];
+          }
+      }
+  }
+  
+  private static boolean bound_before( int a, int b, int[] bound_start, float[] edges )
+  {
+    int ea = 5*bound_start[a];
+    int eb = 5*bound_start[b];
+    if( edges[ea+1] != edges[eb+1] )
+      {
+        return edges[ea+1] < edges[eb+1];
+      }
+    return (edges[ea] < edges[eb]) ||
+      ((edges[ea] == edges[eb]) && (edges[ea+4] < edges[eb+4]));
+  }
+  
+  private static StNode add_st_edge( ClipContext ctx, StNode st, ItNodeTable it, EdgeNode edge, float dy)
   {
     if (st == null)
       {
         /* Append edge onto the tail end of the ST */
-        st = new StNode( edge, null );
+        st = ctx.newStNode( edge, null );
       }
     else
       {
@@ -2028,7 +2345,7 @@ class FastRClip
           {
             /* No intersection - insert edge here (before the ST edge) */
             StNode existing_node = st;
-            st = new StNode( edge, existing_node );
+            st = ctx.newStNode( edge, existing_node );
           }
         else
           {
@@ -2038,16 +2355,17 @@ class FastRClip
             float y= r * dy;
             
             /* Insert the edge pointers and the intersection point in the IT */
-            it.top_node = add_intersection(it.top_node, st.edge, edge, x, y);
+            it.top_node = add_intersection(ctx, it.top_node, st.edge, edge, x, y);
             
             /* Head further into the ST */
-            st.prev = add_st_edge(st.prev, it, edge, dy);
+            st.prev = add_st_edge(ctx, st.prev, it, edge, dy);
           }
       }
     return st;
   }
   
-  private static ItNode add_intersection( ItNode it_node, 
+  private static ItNode add_intersection( ClipContext ctx,
+                                          ItNode it_node, 
                                           EdgeNode edge0, 
                                           EdgeNode  edge1,
                                           float x, 
@@ -2056,7 +2374,7 @@ class FastRClip
     if (it_node == null)
       {
         /* Append a new node to the tail of the list */
-        it_node = new ItNode( edge0, edge1, x, y, null );
+        it_node = ctx.newItNode( edge0, edge1, x, y, null );
       }
     else
       {
@@ -2064,12 +2382,12 @@ class FastRClip
           {
             /* Insert a new node mid-list */
             ItNode existing_node = it_node;
-            it_node = new ItNode( edge0, edge1, x, y, existing_node );
+            it_node = ctx.newItNode( edge0, edge1, x, y, existing_node );
           }
         else
           {
             /* Head further down the list */
-            it_node.next = add_intersection( it_node.next, edge0, edge1, x, y);
+            it_node.next = add_intersection( ctx, it_node.next, edge0, edge1, x, y);
           }
       }
     return it_node;
@@ -2089,34 +2407,34 @@ class FastRClip
     return total;
   }
   
-  private static VertexNode add_vertex(VertexNode ve_node, float x, float y)
+  private static VertexNode add_vertex(ClipContext ctx, VertexNode ve_node, float x, float y)
   {
     if (ve_node == null)
       {
         /* Append a new node to the tail of the list */
-        ve_node = new VertexNode( x, y);
+        ve_node = ctx.newVertexNode( x, y);
       }
     else
       {
       	/* Head further down the list */
-        ve_node.next = add_vertex( ve_node.next, x, y);
+        ve_node.next = add_vertex( ctx, ve_node.next, x, y);
       }
     return ve_node;
   }
   
-  private static PolygonNode new_tristrip(PolygonNode po_node, EdgeNode edge, float x, float y)
+  private static PolygonNode new_tristrip(ClipContext ctx, PolygonNode po_node, EdgeNode edge, float x, float y)
   {
     if (po_node == null)
       {
         /* Append a new node to the tail of the list */
-        po_node = new PolygonNode();
-        po_node.v_left=add_vertex(po_node.v_left, x, y);
+        po_node = ctx.newPolygonNode();
+        po_node.v_left=add_vertex(ctx, po_node.v_left, x, y);
         edge.outp_above= po_node;
       }
     else
       {
       	/* Head further down the list */
-        po_node.next = new_tristrip( po_node.next, edge, x, y);
+        po_node.next = new_tristrip( ctx, po_node.next, edge, x, y);
       }
     return po_node;
   }
@@ -2197,11 +2515,12 @@ class FastRClip
     float     y;    // Y coordinate component
     VertexNode next; // Pointer to next vertex in list
     
-    public VertexNode( float x, float y )
+    public VertexNode set( float x, float y )
     {
       this.x = x;
       this.y = y;
       this.next = null;
+      return this;
     }
   }
   
@@ -2215,30 +2534,38 @@ class FastRClip
     VertexNode v_right, v_left;          /* Left and right vertex list ptrs   */
     PolygonNode  next;                   /* Pointer to next polygon contour   */
     PolygonNode  proxy;                  /* Pointer to actual structure used  */
+    ClipContext  ctx;                    /* Context the vertices are taken from */
+    
+    public PolygonNode( ClipContext ctx )
+    {
+      this.ctx = ctx;
+    }
     
-    public PolygonNode()
+    public PolygonNode set()
     {
       this.v_left = null;
       this.v_right = null;
       this.next = null;
       this.proxy = this; /* Initialise proxy to point to p itself */
       this.active = 1; //TRUE
+      this.hole = false;
+      return this;
     }
     
-    public PolygonNode( PolygonNode next, float x, float y )
+    public PolygonNode set( PolygonNode next, float x, float y )
     {
-      VertexNode vn = new VertexNode( x, y );
+      set();
+      VertexNode vn = ctx.newVertexNode( x, y );
       this.v_left = vn;
       this.v_right = vn;
       
       this.next = next;
-      this.proxy = this; /* Initialise proxy to point to p itself */
-      this.active = 1; //TRUE
+      return this;
     }
     
     public void add_right( float x, float y )
     {
-      VertexNode nv = new VertexNode( x, y );
+      VertexNode nv = ctx.newVertexNode( x, y );
       
       /* Add vertex nv to the right end of the polygon's vertex list */
       proxy.v_right.next= nv;
@@ -2249,7 +2576,7 @@ class FastRClip
     
     public void add_left( float x, float y)
     {
-      VertexNode nv = new VertexNode( x, y );
+      VertexNode nv = ctx.newVertexNode( x, y );
       
       /* Add vertex nv to the left end of the polygon's vertex list */
       nv.next= proxy.v_left;
@@ -2263,12 +2590,18 @@ class FastRClip
   private static class TopPolygonNode
   {
     PolygonNode top_node = null;
+    ClipContext ctx;
+    
+    public TopPolygonNode( ClipContext ctx )
+    {
+      this.ctx = ctx;
+    }
     
     public PolygonNode add_local_min( float x, float y )
     {
       PolygonNode existing_min = top_node;
       
-      top_node = new PolygonNode( existing_min, x, y );
+      top_node = ctx.newPolygonNode( existing_min, x, y );
       
       return top_node;
     }
@@ -2394,12 +2727,13 @@ class FastRClip
                   // ------------------------------------------------------------------------
                   for (VertexNode vtx = poly_node.proxy.v_left; (vtx != null); vtx = vtx.next )
                     {
-                      contour.addPoint(vtx.x, vtx.y);
+                      contour.append(new RPoint(vtx.x, vtx.y));
                       //poly.add( vtx.x, vtx.y );
                     }
+                  contour.trimToSize();
                   if( num_contours > 0 )
                     {
-                      result.addContour(contour);
+                      result.append(contour);
                       //result.add( poly );
                     }
                   c++;
@@ -2419,7 +2753,7 @@ class FastRClip
               //RPolygon inner = orig.getInnerPoly(i);
               if( !inner.isHole() )
                 {
-		  result.addContour(inner);
+		  result.append(inner);
                   //result.add(inner);
                 }
             }
@@ -2431,9 +2765,10 @@ class FastRClip
               //RPolygon inner = orig.getInnerPoly(i);
               if( inner.isHole() )
                 {
-                  result.addContour(inner);
+                  result.append(inner);
                 }
             }
+          result.trimToSize();
         }
       return result;
     }
@@ -2483,6 +2818,21 @@ class FastRClip
     EdgeNode       pred;         /* Edge connected at the lower end   */
     EdgeNode       succ;         /* Edge connected at the upper end   */
     EdgeNode       next_bound;   /* Pointer to next bound in LMT      */
+    
+    public void clear()
+    {
+      vertex_x = vertex_y = 0;
+      bot_x = bot_y = 0;
+      top_x = top_y = 0;
+      xb = xt = dx = 0;
+      type = 0;
+      bundle_above[0] = bundle_above[1] = 0;
+      bundle_below_clip = bundle_below_subj = 0;
+      bside_clip = bside_subj = 0;
+      bstate_above = bstate_below = null;
+      outp_above = outp_below = null;
+      prev = next = pred = succ = next_bound = null;
+    }
   }
   
   private static class AetTree
@@ -2502,50 +2852,59 @@ class FastRClip
   
   private static class EdgeTable
   {
-    private List edges = new ArrayList();
+    private EdgeNode[] edges = new EdgeNode[16];
+    private int size;
     
-    public void addNode( float x, float y )
+    public void clear()
     {
-      EdgeNode node = new EdgeNode();
+      size = 0;
+    }
+    
+    public void addNode( EdgeNode node, float x, float y )
+    {
+      if( size == edges.length )
+        {
+          edges = Arrays.copyOf( edges, 2*size );
+        }
       node.vertex_x = x;
       node.vertex_y = y;
-      edges.add( node );
+      edges[size++] = node;
     }
     
     public EdgeNode getNode( int index )
     {
-      return (EdgeNode)edges.get(index);
+      return edges[index];
     }
     
     public boolean FWD_MIN( int i )
     {
-      EdgeNode prev = (EdgeNode)edges.get(PREV_INDEX(i, edges.size()));
-      EdgeNode next = (EdgeNode)edges.get(NEXT_INDEX(i, edges.size()));
-      EdgeNode ith  = (EdgeNode)edges.get(i);
+      EdgeNode prev = edges[PREV_INDEX(i, size)];
+      EdgeNode next = edges[NEXT_INDEX(i, size)];
+      EdgeNode ith  = edges[i];
       return ((prev.vertex_y >= ith.vertex_y) &&
               (next.vertex_y >  ith.vertex_y));
     }
     
     public boolean NOT_FMAX( int i )
     {
-      EdgeNode next = (EdgeNode)edges.get(NEXT_INDEX(i, edges.size()));
-      EdgeNode ith  = (EdgeNode)edges.get(i);
+      EdgeNode next = edges[NEXT_INDEX(i, size)];
+      EdgeNode ith  = edges[i];
       return(next.vertex_y > ith.vertex_y);
     }
     
     public boolean REV_MIN( int i )
     {
-      EdgeNode prev = (EdgeNode)edges.get(PREV_INDEX(i, edges.size()));
-      EdgeNode next = (EdgeNode)edges.get(NEXT_INDEX(i, edges.size()));
-      EdgeNode ith  = (EdgeNode)edges.get(i);
+      EdgeNode prev = edges[PREV_INDEX(i, size)];
+      EdgeNode next = edges[NEXT_INDEX(i, size)];
+      EdgeNode ith  = edges[i];
       return ((prev.vertex_y >  ith.vertex_y) &&
               (next.vertex_y >= ith.vertex_y));
     }
     
     public boolean NOT_RMAX( int i )
     {
-      EdgeNode prev = (EdgeNode)edges.get(PREV_INDEX(i, edges.size()));
-      EdgeNode ith  = (EdgeNode)edges.get(i);
+      EdgeNode prev = edges[PREV_INDEX(i, size)];
+      EdgeNode ith  = edges[i];
       return (prev.vertex_y > ith.vertex_y);
     }
   }
@@ -2559,9 +2918,12 @@ class FastRClip
     EdgeNode first_bound;  /* Pointer to bound list             */
     LmtNode  next;         /* Pointer to next local minimum     */
     
-    public LmtNode( float yvalue )
+    public LmtNode set( float yvalue )
     {
       y = yvalue;
+      first_bound = null;
+      next = null;
+      return this;
     }
   }
   
@@ -2587,54 +2949,37 @@ class FastRClip
   }
   
   /**
-   * Scanbeam tree 
-   */
-  private static class ScanBeamTree
-  {
-    float       y;            /* Scanbeam node y value             */
-    ScanBeamTree less;         /* Pointer to nodes with lower y     */
-    ScanBeamTree more;         /* Pointer to nodes with higher y    */
-    
-    public ScanBeamTree( float yvalue )
-    {
-      y = yvalue;
-    }
-  }
-  
-  /**
-   *
+   * Scanbeam table
    */
   private static class ScanBeamTreeEntries
   {
     int sbt_entries;
-    ScanBeamTree sb_tree;
+    float[] sbt = new float[64];
     
-    public float[] build_sbt()
+    public void add( float y )
     {
-      float[] sbt = new float[sbt_entries];
-      
-      int entries = 0;
-      entries = inner_build_sbt( entries, sbt, sb_tree );
-      if( entries != sbt_entries )
+      if( sbt_entries == sbt.length )
         {
-          throw new IllegalStateException("Something went wrong buildign sbt from tree.");
+          sbt = Arrays.copyOf( sbt, 2*sbt_entries );
         }
-      return sbt;
+      sbt[sbt_entries++] = y;
     }
     
-    private int inner_build_sbt( int entries, float[] sbt, ScanBeamTree sbt_node )
+    public float[] build_sbt()
     {
-      if( sbt_node.less != null )
-        {
-          entries = inner_build_sbt(entries, sbt, sbt_node.less);
-        }
-      sbt[entries]= sbt_node.y;
-      entries++;
-      if( sbt_node.more != null )
+      /* Sort the recorded values and drop the duplicates, only the first
+         sbt_entries values of the returned array are valid */
+      Arrays.sort( sbt, 0, sbt_entries );
+      int entries = 0;
+      for( int i = 0; i < sbt_entries; i++ )
         {
-          entries = inner_build_sbt(entries, sbt, sbt_node.more );
+          if( (entries == 0) || (sbt[i] != sbt[entries-1]) )
+            {
+              sbt[entries++] = sbt[i];
+            }
         }
-      return entries;
+      sbt_entries = entries;
+      return sbt;
     }
   }
   
@@ -2647,13 +2992,14 @@ class FastRClip
     float point_x, point_y;                      /* Point of intersection             */
     ItNode next;                                 /* The next intersection table node  */
     
-    public ItNode( EdgeNode edge0, EdgeNode edge1, float x, float y, ItNode next )
+    public ItNode set( EdgeNode edge0, EdgeNode edge1, float x, float y, ItNode next )
     {
       this.ie0 = edge0;
       this.ie1 = edge1;
       this.point_x = x;
       this.point_y = y;
       this.next = next;
+      return this;
     }
   }
   
@@ -2661,8 +3007,9 @@ class FastRClip
   {
     ItNode top_node;
     
-    public void build_intersection_table(AetTree aet, float dy)
+    public void build_intersection_table(ClipContext ctx, AetTree aet, float dy)
     {
+      top_node = null;
       StNode st = null;
       
       /* Process each AET edge */
@@ -2672,7 +3019,7 @@ class FastRClip
               (edge.bundle_above[CLIP] != 0) ||
               (edge.bundle_above[SUBJ] != 0) )
             {
-              st = add_st_edge(st, this, edge, dy);
+              st = add_st_edge(ctx, st, this, edge, dy);
             }
         }
     }
@@ -2689,16 +3036,193 @@ class FastRClip
     float dx;              /* Change in x for a unit y increase */
     StNode prev;           /* Previous edge in sorted list      */
     
-    public StNode( EdgeNode edge, StNode prev )
+    public StNode set( EdgeNode edge, StNode prev )
     {
       this.edge = edge;
       this.xb = edge.xb;
       this.xt = edge.xt;
       this.dx = edge.dx;
       this.prev = prev;
+      return this;
     }      
   }
   
+  /**
+   * Scratch storage of the clipper.  Each thread keeps one context, whose
+   * tables are emptied and whose node pools are rewound at the start of every
+   * clip, so that once a thread has clipped polygons of a given size further
+   * clips only allocate their result.  A pool keeps at most POOL_LIMIT nodes,
+   * the nodes of larger clips are left to the garbage collector.
+   */
+  private static class ClipContext
+  {
+    static final int POOL_LIMIT = 1 << 16;
+    
+    private static final ThreadLocal<ClipContext> current = new ThreadLocal<ClipContext>()
+      {
+        protected ClipContext initialValue()
+        {
+          return new ClipContext();
+        }
+      };
+    
+    LmtTable lmt_table = new LmtTable();
+    ScanBeamTreeEntries sbte = new ScanBeamTreeEntries();
+    EdgeTable edge_table = new EdgeTable();
+    AetTree aet = new AetTree();
+    ItNodeTable it_table = new ItNodeTable();
+    TopPolygonNode out_poly = new TopPolygonNode(this);
+    
+    EdgeNode[] edges = new EdgeNode[64];
+    LmtNode[] lmts = new LmtNode[16];
+    ItNode[] its = new ItNode[16];
+    StNode[] sts = new StNode[16];
+    VertexNode[] vertices = new VertexNode[64];
+    PolygonNode[] polygons = new PolygonNode[16];
+    int num_edges, num_lmts, num_its, num_sts, num_vertices, num_polygons;
+    
+    /* Contour flags and boxes of the operands */
+    boolean[] subj_skip = new boolean[16];
+    boolean[] clip_skip = new boolean[16];
+    float[] subj_boxes = new float[64];
+    float[] clip_boxes = new float[64];
+    
+    /**
+     * Returns the context of the calling thread, emptied.
+     */
+    static ClipContext get()
+    {
+      ClipContext ctx = current.get();
+      ctx.lmt_table.top_node = null;
+      ctx.sbte.sbt_entries = 0;
+      ctx.edge_table.clear();
+      ctx.aet.top_node = null;
+      ctx.it_table.top_node = null;
+      ctx.out_poly.top_node = null;
+      ctx.num_edges = ctx.num_lmts = ctx.num_its = ctx.num_sts = 0;
+      ctx.num_vertices = ctx.num_polygons = 0;
+      return ctx;
+    }
+    
+    /**
+     * Marks every contour of the operands as contributing.
+     */
+    void clear_skip( int subj_num_poly, int clip_num_poly )
+    {
+      if( subj_skip.length < subj_num_poly )
+        {
+          subj_skip = new boolean[subj_num_poly];
+        }
+      if( clip_skip.length < clip_num_poly )
+        {
+          clip_skip = new boolean[clip_num_poly];
+        }
+      Arrays.fill( subj_skip, 0, subj_num_poly, false );
+      Arrays.fill( clip_skip, 0, clip_num_poly, false );
+    }
+    
+    /* Stores a new node at index of its pool, growing the pool up to POOL_LIMIT */
+    private static Object[] keep( Object[] pool, int index, Object node )
+    {
+      if( index >= pool.length )
+        {
+          if( pool.length >= POOL_LIMIT )
+            {
+              return pool;
+            }
+          pool = Arrays.copyOf( pool, 2*pool.length );
+        }
+      pool[index] = node;
+      return pool;
+    }
+    
+    EdgeNode newEdgeNode()
+    {
+      EdgeNode node = (num_edges < edges.length) ? edges[num_edges] : null;
+      if( node == null )
+        {
+          node = new EdgeNode();
+          edges = (EdgeNode[])keep( edges, num_edges, node );
+        }
+      else
+        {
+          node.clear();
+        }
+      num_edges++;
+      return node;
+    }
+    
+    LmtNode newLmtNode( float y )
+    {
+      LmtNode node = (num_lmts < lmts.length) ? lmts[num_lmts] : null;
+      if( node == null )
+        {
+          node = new LmtNode();
+          lmts = (LmtNode[])keep( lmts, num_lmts, node );
+        }
+      num_lmts++;
+      return node.set( y );
+    }
+    
+    ItNode newItNode( EdgeNode edge0, EdgeNode edge1, float x, float y, ItNode next )
+    {
+      ItNode node = (num_its < its.length) ? its[num_its] : null;
+      if( node == null )
+        {
+          node = new ItNode();
+          its = (ItNode[])keep( its, num_its, node );
+        }
+      num_its++;
+      return node.set( edge0, edge1, x, y, next );
+    }
+    
+    StNode newStNode( EdgeNode edge, StNode prev )
+    {
+      StNode node = (num_sts < sts.length) ? sts[num_sts] : null;
+      if( node == null )
+        {
+          node = new StNode();
+          sts = (StNode[])keep( sts, num_sts, node );
+        }
+      num_sts++;
+      return node.set( edge, prev );
+    }
+    
+    VertexNode newVertexNode( float x, float y )
+    {
+      VertexNode node = (num_vertices < vertices.length) ? vertices[num_vertices] : null;
+      if( node == null )
+        {
+          node = new VertexNode();
+          vertices = (VertexNode[])keep( vertices, num_vertices, node );
+        }
+      num_vertices++;
+      return node.set( x, y );
+    }
+    
+    PolygonNode newPolygonNode()
+    {
+      return obtainPolygonNode().set();
+    }
+    
+    PolygonNode newPolygonNode( PolygonNode next, float x, float y )
+    {
+      return obtainPolygonNode().set( next, x, y );
+    }
+    
+    private PolygonNode obtainPolygonNode()
+    {
+      PolygonNode node = (num_polygons < polygons.length) ? polygons[num_polygons] : null;
+      if( node == null )
+        {
+          node = new PolygonNode( this );
+          polygons = (PolygonNode[])keep( polygons, num_polygons, node );
+        }
+      num_polygons++;
+      return node;
+    }
+  }
+  
   // -------------
   // --- DEBUG ---
   // -------------
@@ -0,0 +1,866 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+import geomerative.RClip.OperationType;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * IntRClip is the clipper used for the boolean operations when RG.useIntClip is set.  The coordinates of the polygons are snapped to a fixed-point grid with RG.clipGridBits bits of fraction and the whole overlay runs on the integer grid with exact predicates, no epsilon is involved.  The edges are noded by snap rounding: the vertices and the crossings of the edges, rounded to the grid, are the hot pixels, and every edge is rerouted through the centers of the hot pixels it passes over.  This leaves edges which only meet at their ends, the faces are then labelled with an even-odd sweep and the edges separating a face inside the result from a face outside of it are linked into contours.  The resulting polygons have their vertices on the grid and no crossing edges, at the cost of moving the edges by up to half a grid unit.
+ * @invisible
+ */
+class IntRClip
+{
+  /* Largest magnitude of a snapped coordinate, in grid units.  Below 2^24
+     the snapped coordinates are exact in the mantissa of a float, which the
+     sweep finding the crossings works with, and the products taken by the
+     predicates below fit in a long */
+  private static final long MAX_COORD = 1L << 24;
+
+  /* Bits telling which polygons have an edge along a noded edge, and which
+     polygons contain a face */
+  private static final int SUBJ = 1;
+  private static final int CLIP = 2;
+
+  /* Snapped contours of both polygons, one after the other */
+  private long[] vx = new long[64];
+  private long[] vy = new long[64];
+  private int numVerts;
+  private int[] contourEnds = new int[8];
+  private int[] contourOwners = new int[8];
+  private int numContours;
+
+  /* Hot pixels, sorted by x then y, and the uniform grid of buckets used to
+     find the ones an edge passes over */
+  private long[] hx;
+  private long[] hy;
+  private int numHot;
+  private long bucketX;
+  private long bucketY;
+  private long bucketSize;
+  private int cols;
+  private int rows;
+  private int[] bucketStarts;
+  private int[] bucketHot;
+
+  /* Noded edges, going from their smallest end in x then y to the other one.
+     The flags hold the polygons whose boundary runs along the edge, and the
+     labels the polygons containing the face on the right of the edge */
+  private long[] ex0 = new long[64];
+  private long[] ey0 = new long[64];
+  private long[] ex1 = new long[64];
+  private long[] ey1 = new long[64];
+  private int[] flags = new int[64];
+  private int[] rightLabels;
+  private int numEdges;
+
+  // Scratch list of hot pixels
+  private int[] hits = new int[16];
+  private long[] hitKeys = new long[16];
+  private int numHits;
+
+  static RPolygon clip( OperationType op, RPolygon subj, RPolygon clip, Class<? extends RPolygon> polyClass )
+  {
+    double scale = gridScale();
+    IntRClip clipper = new IntRClip();
+    clipper.addPolygon(subj, scale, SUBJ);
+    clipper.addPolygon(clip, scale, CLIP);
+    clipper.node();
+    clipper.label();
+    return clipper.link(op, scale, polyClass);
+  }
+
+  /**
+   * The mesh is made from the snapped polygon returned by the other clip(), so both cover the same area.
+   */
+  static RMesh clip( OperationType op, RPolygon subj, RPolygon clip )
+  {
+    RPolygon result = clip(op, subj, clip, RPolygon.class);
+    if(result.countContours() == 0){
+      return new RMesh();
+    }
+    return FastRClip.polygonToMesh(result);
+  }
+
+  private static double gridScale()
+  {
+    if(RG.clipGridBits < 0 || RG.clipGridBits > 24){
+      throw new RuntimeException("The clipping grid must have between 0 and 24 bits of fraction.");
+    }
+    return (double)(1 << RG.clipGridBits);
+  }
+
+  /**
+   * Snaps the contours of p to the grid and keeps the ones left with some area.
+   */
+  private void addPolygon( RPolygon p, double scale, int owner )
+  {
+    if(p == null){
+      return;
+    }
+
+    for(int c=0; c<p.countContours(); c++){
+      RContour contour = p.contours[c];
+      if(contour == null){
+        continue;
+      }
+      int n = contour.countPoints();
+      if(numVerts + n > vx.length){
+        int capacity = Math.max(numVerts + n, 2 * vx.length);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+      }
+
+      for(int i=0; i<n; i++){
+        vx[numVerts + i] = snap(contour.points[i].x, scale);
+        vy[numVerts + i] = snap(contour.points[i].y, scale);
+      }
+
+      int m = clean(vx, vy, numVerts, n);
+      if(m < 3){
+        continue;
+      }
+
+      if(numContours == contourEnds.length){
+        contourEnds = Arrays.copyOf(contourEnds, 2 * numContours);
+        contourOwners = Arrays.copyOf(contourOwners, 2 * numContours);
+      }
+      numVerts += m;
+      contourEnds[numContours] = numVerts;
+      contourOwners[numContours] = owner;
+      numContours++;
+    }
+  }
+
+  /**
+   * Splits the edges of the contours where they meet, rounding the meeting points to the grid, and merges the edges left on top of each other.
+   */
+  private void node()
+  {
+    findHotPixels();
+    if(numHot == 0){
+      return;
+    }
+    fillBuckets();
+
+    int start = 0;
+    for(int c=0; c<numContours; c++){
+      int end = contourEnds[c];
+      int owner = contourOwners[c];
+      for(int i=start; i<end; i++){
+        int j = (i + 1 < end) ? i + 1 : start;
+        routeEdge(vx[i], vy[i], vx[j], vy[j], owner);
+      }
+      start = end;
+    }
+
+    mergeEdges();
+  }
+
+  /* The hot pixels are the vertices and the crossings of the edges rounded to
+     the grid, which are exact in floats below MAX_COORD */
+  private void findHotPixels()
+  {
+    RFloatBuffer rings = new RFloatBuffer(numVerts + numContours);
+    int start = 0;
+    for(int c=0; c<numContours; c++){
+      int end = contourEnds[c];
+      for(int i=start; i<end; i++){
+        rings.addPoint((float)vx[i], (float)vy[i]);
+      }
+      rings.addPoint((float)vx[start], (float)vy[start]);
+      rings.endPath();
+      start = end;
+    }
+
+    RFloatBuffer crossings = new RFloatBuffer();
+    int numCrossings = RSegmentIntersector.gridSelfIntersections(rings, crossings);
+
+    long[] keys = new long[numVerts + numCrossings];
+    for(int i=0; i<numVerts; i++){
+      keys[i] = key(vx[i], vy[i]);
+    }
+    for(int i=0; i<numCrossings; i++){
+      keys[numVerts + i] = key((long)crossings.xy[2*i], (long)crossings.xy[2*i+1]);
+    }
+    Arrays.sort(keys);
+
+    hx = new long[keys.length];
+    hy = new long[keys.length];
+    numHot = 0;
+    for(int i=0; i<keys.length; i++){
+      if(i > 0 && keys[i] == keys[i-1]){
+        continue;
+      }
+      hx[numHot] = (keys[i] >> 27) - MAX_COORD * 2;
+      hy[numHot] = (keys[i] & ((1L << 27) - 1)) - MAX_COORD * 2;
+      numHot++;
+    }
+  }
+
+  /* Key of a grid point, ordered by x then y */
+  private static long key( long x, long y )
+  {
+    return ((x + MAX_COORD * 2) << 27) | (y + MAX_COORD * 2);
+  }
+
+  private void fillBuckets()
+  {
+    long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE;
+    long maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+    for(int i=0; i<numHot; i++){
+      minX = Math.min(minX, hx[i]);
+      minY = Math.min(minY, hy[i]);
+      maxX = Math.max(maxX, hx[i]);
+      maxY = Math.max(maxY, hy[i]);
+    }
+
+    // About one hot pixel per bucket
+    double area = (double)(maxX - minX + 1) * (double)(maxY - minY + 1);
+    bucketSize = Math.max(1L, (long)Math.ceil(Math.sqrt(area / numHot)));
+    bucketX = minX;
+    bucketY = minY;
+    cols = (int)((maxX - minX) / bucketSize) + 1;
+    rows = (int)((maxY - minY) / bucketSize) + 1;
+
+    bucketStarts = new int[cols * rows + 1];
+    for(int i=0; i<numHot; i++){
+      bucketStarts[bucket(i) + 1]++;
+    }
+    for(int b=0; b<cols * rows; b++){
+      bucketStarts[b + 1] += bucketStarts[b];
+    }
+    int[] fill = Arrays.copyOf(bucketStarts, cols * rows);
+    bucketHot = new int[numHot];
+    for(int i=0; i<numHot; i++){
+      bucketHot[fill[bucket(i)]++] = i;
+    }
+  }
+
+  private int bucket( int hot )
+  {
+    return column(hx[hot]) * rows + row(hy[hot]);
+  }
+
+  private int column( double x )
+  {
+    return (int)Math.max(0, Math.min(cols - 1, Math.floor((x - bucketX) / bucketSize)));
+  }
+
+  private int row( double y )
+  {
+    return (int)Math.max(0, Math.min(rows - 1, Math.floor((y - bucketY) / bucketSize)));
+  }
+
+  /**
+   * Collects in hits the hot pixels whose closed square is touched by the segment, or only the ones whose center lies on it when centers is set.
+   */
+  private void findHits( long x0, long y0, long x1, long y1, boolean centers )
+  {
+    numHits = 0;
+    long minX = Math.min(x0, x1), maxX = Math.max(x0, x1);
+    int c0 = column(minX - 1);
+    int c1 = column(maxX + 1);
+    for(int c=c0; c<=c1; c++){
+      // Part of the segment close enough to reach a center in the column
+      double xa = Math.max(minX, bucketX + c * bucketSize - 1);
+      double xb = Math.min(maxX, bucketX + (c + 1) * bucketSize + 1);
+      if(xa > xb){
+        continue;
+      }
+      double ya, yb;
+      if(x0 == x1){
+        ya = Math.min(y0, y1);
+        yb = Math.max(y0, y1);
+      }else{
+        double slope = (double)(y1 - y0) / (x1 - x0);
+        ya = y0 + (xa - x0) * slope;
+        yb = y0 + (xb - x0) * slope;
+      }
+      int r0 = row(Math.min(ya, yb) - 1);
+      int r1 = row(Math.max(ya, yb) + 1);
+      for(int r=r0; r<=r1; r++){
+        int b = c * rows + r;
+        for(int k=bucketStarts[b]; k<bucketStarts[b + 1]; k++){
+          int h = bucketHot[k];
+          if(centers ? onSegment(x0, y0, x1, y1, hx[h], hy[h]) : touches(x0, y0, x1, y1, hx[h], hy[h])){
+            addHit(h);
+          }
+        }
+      }
+    }
+  }
+
+  private void addHit( int h )
+  {
+    if(numHits == hits.length){
+      hits = Arrays.copyOf(hits, 2 * numHits);
+      hitKeys = Arrays.copyOf(hitKeys, 2 * numHits);
+    }
+    hits[numHits++] = h;
+  }
+
+  /* Whether the segment touches the pixel of the point, the square of side 1
+     around it with its left and bottom borders but not the other two, so
+     that the pixels don't overlap.  This is worked out on doubled
+     coordinates to keep the corners integer, the missing borders being
+     moved in by an infinitely small amount */
+  private static boolean touches( long x0, long y0, long x1, long y1, long px, long py )
+  {
+    long minX = 2 * px - 1, maxX = 2 * px + 1;
+    long minY = 2 * py - 1, maxY = 2 * py + 1;
+    x0 *= 2;
+    y0 *= 2;
+    x1 *= 2;
+    y1 *= 2;
+    if(Math.max(x0, x1) < minX || Math.min(x0, x1) >= maxX || Math.max(y0, y1) < minY || Math.min(y0, y1) >= maxY){
+      return false;
+    }
+
+    // The line separates the corners unless they are all strictly on one
+    // side, a corner on the line taking the side the inward move sends it to
+    long dx = x1 - x0, dy = y1 - y0;
+    int pos = 0, neg = 0;
+    for(int k=0; k<4; k++){
+      boolean right = (k & 1) != 0;
+      boolean top = (k & 2) != 0;
+      long side = cross(x0, y0, x1, y1, right ? maxX : minX, top ? maxY : minY);
+      if(side == 0){
+        side = (right ? dy : 0) - (top ? dx : 0);
+      }
+      if(side > 0){
+        pos++;
+      }else if(side < 0){
+        neg++;
+      }
+    }
+    return pos < 4 && neg < 4;
+  }
+
+  private static boolean onSegment( long x0, long y0, long x1, long y1, long px, long py )
+  {
+    return px >= Math.min(x0, x1) && px <= Math.max(x0, x1) && py >= Math.min(y0, y1) && py <= Math.max(y0, y1) && cross(x0, y0, x1, y1, px, py) == 0;
+  }
+
+  /* Sorts the hits along the segment, dropping the ones at its ends */
+  private void sortHits( long x0, long y0, long x1, long y1 )
+  {
+    long dx = x1 - x0, dy = y1 - y0;
+    int m = 0;
+    for(int k=0; k<numHits; k++){
+      int h = hits[k];
+      if((hx[h] == x0 && hy[h] == y0) || (hx[h] == x1 && hy[h] == y1)){
+        continue;
+      }
+      hits[m] = h;
+      hitKeys[m] = (hx[h] - x0) * dx + (hy[h] - y0) * dy;
+      m++;
+    }
+    numHits = m;
+
+    // Insertion sort, an edge rarely passes over more than a few hot pixels
+    for(int i=1; i<numHits; i++){
+      int h = hits[i];
+      long t = hitKeys[i];
+      int j = i - 1;
+      while(j >= 0 && hitKeys[j] > t){
+        hits[j + 1] = hits[j];
+        hitKeys[j + 1] = hitKeys[j];
+        j--;
+      }
+      hits[j + 1] = h;
+      hitKeys[j + 1] = t;
+    }
+  }
+
+  /**
+   * Reroutes an edge through the centers of the hot pixels it passes over, then splits the pieces at the centers lying on them, which the rerouting can bring onto a piece.
+   */
+  private void routeEdge( long x0, long y0, long x1, long y1, int owner )
+  {
+    findHits(x0, y0, x1, y1, false);
+    sortHits(x0, y0, x1, y1);
+    int[] route = new int[numHits];
+    System.arraycopy(hits, 0, route, 0, numHits);
+
+    long ax = x0, ay = y0;
+    for(int k=0; k<=route.length; k++){
+      long bx = (k < route.length) ? hx[route[k]] : x1;
+      long by = (k < route.length) ? hy[route[k]] : y1;
+
+      findHits(ax, ay, bx, by, true);
+      sortHits(ax, ay, bx, by);
+      long px = ax, py = ay;
+      for(int i=0; i<numHits; i++){
+        addEdge(px, py, hx[hits[i]], hy[hits[i]], owner);
+        px = hx[hits[i]];
+        py = hy[hits[i]];
+      }
+      addEdge(px, py, bx, by, owner);
+
+      ax = bx;
+      ay = by;
+    }
+  }
+
+  private void addEdge( long x0, long y0, long x1, long y1, int owner )
+  {
+    if(numEdges == ex0.length){
+      int capacity = 2 * numEdges;
+      ex0 = Arrays.copyOf(ex0, capacity);
+      ey0 = Arrays.copyOf(ey0, capacity);
+      ex1 = Arrays.copyOf(ex1, capacity);
+      ey1 = Arrays.copyOf(ey1, capacity);
+      flags = Arrays.copyOf(flags, capacity);
+    }
+    if(x0 > x1 || (x0 == x1 && y0 > y1)){
+      long t = x0; x0 = x1; x1 = t;
+      t = y0; y0 = y1; y1 = t;
+    }
+    ex0[numEdges] = x0;
+    ey0[numEdges] = y0;
+    ex1[numEdges] = x1;
+    ey1[numEdges] = y1;
+    flags[numEdges] = owner;
+    numEdges++;
+  }
+
+  /* Edges on top of each other cancel in pairs for each polygon, with the
+     even-odd rule a boundary seen twice separates nothing */
+  private void mergeEdges()
+  {
+    Integer[] order = new Integer[numEdges];
+    for(int i=0; i<numEdges; i++){
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>(){
+        public int compare(Integer a, Integer b){
+          int c = compareKeys(key(ex0[a], ey0[a]), key(ex0[b], ey0[b]));
+          return (c != 0) ? c : compareKeys(key(ex1[a], ey1[a]), key(ex1[b], ey1[b]));
+        }
+      });
+
+    long[] nx0 = new long[numEdges], ny0 = new long[numEdges];
+    long[] nx1 = new long[numEdges], ny1 = new long[numEdges];
+    int[] nflags = new int[numEdges];
+    int m = 0;
+    for(int i=0; i<numEdges; ){
+      int e = order[i];
+      int f = 0;
+      int j = i;
+      while(j < numEdges && ex0[order[j]] == ex0[e] && ey0[order[j]] == ey0[e] && ex1[order[j]] == ex1[e] && ey1[order[j]] == ey1[e]){
+        f ^= flags[order[j]];
+        j++;
+      }
+      if(f != 0){
+        nx0[m] = ex0[e];
+        ny0[m] = ey0[e];
+        nx1[m] = ex1[e];
+        ny1[m] = ey1[e];
+        nflags[m] = f;
+        m++;
+      }
+      i = j;
+    }
+    ex0 = nx0;
+    ey0 = ny0;
+    ex1 = nx1;
+    ey1 = ny1;
+    flags = nflags;
+    numEdges = m;
+  }
+
+  private static int compareKeys( long a, long b )
+  {
+    return (a < b) ? -1 : ((a > b) ? 1 : 0);
+  }
+
+  /**
+   * Finds the polygons containing the face on the right of each edge, sweeping the noded edges from left to right.  The face below an edge is labelled by the edge under it, the face above by xoring in the flags of the edge.
+   */
+  private void label()
+  {
+    rightLabels = new int[numEdges];
+    if(numEdges == 0){
+      return;
+    }
+
+    // Events at the left ends of the edges, and at the right ends of the non vertical ones
+    final long[] px = {0};
+    final long[] py = {0};
+    final int probe = numEdges;
+    TreeSet<Integer> status = new TreeSet<Integer>(new Comparator<Integer>(){
+        public int compare(Integer a, Integer b){
+          if(a.intValue() == b.intValue()){
+            return 0;
+          }
+          if(a == probe){
+            return side(b, px[0], py[0]);
+          }
+          if(b == probe){
+            return -side(a, px[0], py[0]);
+          }
+          return compareEdges(a, b);
+        }
+      });
+
+    Integer[] starts = new Integer[numEdges];
+    Integer[] ends = new Integer[numEdges];
+    int numEnds = 0;
+    for(int i=0; i<numEdges; i++){
+      starts[i] = i;
+      if(ex0[i] != ex1[i]){
+        ends[numEnds++] = i;
+      }
+    }
+    Arrays.sort(starts, new Comparator<Integer>(){
+        public int compare(Integer a, Integer b){
+          return compareKeys(ex0[a], ex0[b]);
+        }
+      });
+    Arrays.sort(ends, 0, numEnds, new Comparator<Integer>(){
+        public int compare(Integer a, Integer b){
+          return compareKeys(ex1[a], ex1[b]);
+        }
+      });
+
+    int s = 0, t = 0;
+    while(s < numEdges){
+      long x = ex0[starts[s]];
+      int sEnd = s;
+      while(sEnd < numEdges && ex0[starts[sEnd]] == x){
+        sEnd++;
+      }
+
+      while(t < numEnds && ex1[ends[t]] < x){
+        status.remove(ends[t]);
+        t++;
+      }
+
+      // Vertical edges, labelled from the edge below their middle before the edges ending here leave
+      for(int k=s; k<sEnd; k++){
+        int e = starts[k];
+        if(ex1[e] != x){
+          continue;
+        }
+        px[0] = 2 * x;
+        py[0] = ey0[e] + ey1[e];
+        Integer below = status.lower(probe);
+        int left = (below == null) ? 0 : rightLabels[below] ^ flags[below];
+        rightLabels[e] = left ^ flags[e];
+      }
+
+      while(t < numEnds && ex1[ends[t]] == x){
+        status.remove(ends[t]);
+        t++;
+      }
+
+      // The other edges starting here, from the bottom up
+      Integer[] group = new Integer[sEnd - s];
+      int n = 0;
+      for(int k=s; k<sEnd; k++){
+        if(ex1[starts[k]] != x){
+          group[n++] = starts[k];
+        }
+      }
+      Arrays.sort(group, 0, n, new Comparator<Integer>(){
+          public int compare(Integer a, Integer b){
+            return compareEdges(a, b);
+          }
+        });
+      for(int k=0; k<n; k++){
+        int e = group[k];
+        Integer below = status.lower(e);
+        rightLabels[e] = (below == null) ? 0 : rightLabels[below] ^ flags[below];
+        status.add(e);
+      }
+
+      s = sEnd;
+    }
+  }
+
+  /* Sign of the position of the point (px/2, py/2) relative to the non
+     vertical edge e: 1 above it, -1 below it */
+  private int side( int e, long px, long py )
+  {
+    long c = cross(2 * ex0[e], 2 * ey0[e], 2 * ex1[e], 2 * ey1[e], px, py);
+    return (c > 0) ? 1 : ((c < 0) ? -1 : 0);
+  }
+
+  /* Order of two non vertical edges overlapping in x, which only meet at
+     their ends once noded */
+  private int compareEdges( int a, int b )
+  {
+    boolean swap = compareKeys(key(ex0[a], ey0[a]), key(ex0[b], ey0[b])) < 0;
+    int later = swap ? b : a;
+    int other = swap ? a : b;
+    int side = side(other, 2 * ex0[later], 2 * ey0[later]);
+    if(side == 0){
+      // Same left end, the steepest one is above
+      side = side(other, 2 * ex1[later], 2 * ey1[later]);
+    }
+    return swap ? -side : side;
+  }
+
+  /**
+   * Links the edges separating a face of the result from a face outside of it into contours, keeping the inside on the left.
+   */
+  private RPolygon link( OperationType op, double scale, Class<? extends RPolygon> polyClass )
+  {
+    RPolygon result;
+    try
+      {
+        result = polyClass.newInstance();
+      }
+    catch( Exception e )
+      {
+        throw new RuntimeException(e);
+      }
+
+    // Directed edges of the result
+    int m = 0;
+    final long[] sx = new long[numEdges], sy = new long[numEdges];
+    final long[] tx = new long[numEdges], ty = new long[numEdges];
+    for(int e=0; e<numEdges; e++){
+      boolean right = inside(op, rightLabels[e]);
+      boolean left = inside(op, rightLabels[e] ^ flags[e]);
+      if(left == right){
+        continue;
+      }
+      if(left){
+        sx[m] = ex0[e]; sy[m] = ey0[e]; tx[m] = ex1[e]; ty[m] = ey1[e];
+      }else{
+        sx[m] = ex1[e]; sy[m] = ey1[e]; tx[m] = ex0[e]; ty[m] = ey0[e];
+      }
+      m++;
+    }
+    if(m == 0){
+      return result;
+    }
+
+    Integer[] order = new Integer[m];
+    for(int i=0; i<m; i++){
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>(){
+        public int compare(Integer a, Integer b){
+          return compareKeys(key(sx[a], sy[a]), key(sx[b], sy[b]));
+        }
+      });
+    long[] orderKeys = new long[m];
+    for(int i=0; i<m; i++){
+      orderKeys[i] = key(sx[order[i]], sy[order[i]]);
+    }
+
+    // At each vertex, turn into the first free edge clockwise from the way back
+    int[] next = new int[m];
+    boolean[] taken = new boolean[m];
+    boolean[] shared = new boolean[m];
+    for(int e=0; e<m; e++){
+      int lo = Arrays.binarySearch(orderKeys, key(tx[e], ty[e]));
+      if(lo < 0){
+        throw new RuntimeException("The result of the integer clipping isn't closed.");
+      }
+      while(lo > 0 && orderKeys[lo - 1] == orderKeys[lo]){
+        lo--;
+      }
+      int hi = lo + 1;
+      while(hi < m && orderKeys[hi] == orderKeys[lo]){
+        hi++;
+      }
+      shared[e] = hi - lo > 1;
+      long bx = sx[e] - tx[e], by = sy[e] - ty[e];
+      int best = -1;
+      for(int k=lo; k<hi; k++){
+        int f = order[k];
+        if(taken[f]){
+          continue;
+        }
+        if(best < 0 || clockwiseBefore(bx, by, tx[f] - sx[f], ty[f] - sy[f], tx[best] - sx[best], ty[best] - sy[best])){
+          best = f;
+        }
+      }
+      if(best < 0){
+        throw new RuntimeException("The result of the integer clipping isn't closed.");
+      }
+      taken[best] = true;
+      next[e] = best;
+    }
+
+    // The vertices between two edges on the same line are dropped, unless
+    // the contour goes through them again or another contour touches them
+    boolean[] done = new boolean[m];
+    long[] xs = new long[16];
+    long[] ys = new long[16];
+    for(int e=0; e<m; e++){
+      if(done[e]){
+        continue;
+      }
+      int n = 0;
+      int f = e;
+      do{
+        done[f] = true;
+        int g = next[f];
+        if(shared[f] || cross(sx[f], sy[f], tx[f], ty[f], tx[g], ty[g]) != 0){
+          if(n == xs.length){
+            xs = Arrays.copyOf(xs, 2 * n);
+            ys = Arrays.copyOf(ys, 2 * n);
+          }
+          xs[n] = tx[f];
+          ys[n] = ty[f];
+          n++;
+        }
+        f = g;
+      }while(f != e);
+
+      if(n < 3){
+        continue;
+      }
+
+      // The sign of the area gives the orientation, the contour may go
+      // through a vertex twice where it touches itself.  The area is summed
+      // exactly in a long, moved to a double before it could overflow
+      long area = 0;
+      double bigArea = 0;
+      for(int i=1; i+1<n; i++){
+        area += cross(xs[0], ys[0], xs[i], ys[i], xs[i+1], ys[i+1]);
+        if(Math.abs(area) > (1L << 60)){
+          bigArea += area;
+          area = 0;
+        }
+      }
+      RPoint[] points = new RPoint[n];
+      for(int i=0; i<n; i++){
+        points[i] = new RPoint((float)(xs[i] / scale), (float)(ys[i] / scale));
+      }
+      RContour contour = new RContour(points);
+      contour.isHole = bigArea + area < 0;
+      result.append(contour);
+    }
+    result.trimToSize();
+    return result;
+  }
+
+  private static boolean inside( OperationType op, int label )
+  {
+    boolean a = (label & SUBJ) != 0;
+    boolean b = (label & CLIP) != 0;
+    if(op == OperationType.GPC_INT){
+      return a && b;
+    }else if(op == OperationType.GPC_DIFF){
+      return a && !b;
+    }else if(op == OperationType.GPC_XOR){
+      return a != b;
+    }
+    return a || b;
+  }
+
+  /* Whether the direction u comes before v turning clockwise from the
+     direction back, the way back itself coming last */
+  private static boolean clockwiseBefore( long bx, long by, long ux, long uy, long vx, long vy )
+  {
+    int hu = turn(bx, by, ux, uy);
+    int hv = turn(bx, by, vx, vy);
+    if(hu != hv){
+      return hu < hv;
+    }
+    return cross(0, 0, ux, uy, vx, vy) < 0;
+  }
+
+  /* Clockwise sector of the direction u from the direction b: 0 less than
+     half a turn, 1 half a turn, 2 more than half a turn, 3 a full turn */
+  private static int turn( long bx, long by, long ux, long uy )
+  {
+    long c = cross(0, 0, bx, by, ux, uy);
+    if(c < 0){
+      return 0;
+    }
+    if(c > 0){
+      return 2;
+    }
+    return (bx * ux + by * uy < 0) ? 1 : 3;
+  }
+
+  private static long snap( float v, double scale )
+  {
+    double s = Math.rint(v * scale);
+    if(!(Math.abs(s) < MAX_COORD)){
+      throw new RuntimeException("The coordinate " + v + " doesn't fit in the clipping grid, use less bits of fraction with RG.setClipGrid().");
+    }
+    return (long)s;
+  }
+
+  /* Twice the signed area of the triangle a, b, c, exact for snapped coordinates */
+  private static long cross( long ax, long ay, long bx, long by, long cx, long cy )
+  {
+    return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+  }
+
+  /**
+   * Removes in place the repeated points of the closed contour held at offset of the arrays and the points lying on the line joining their neighbours, which covers both collinear points and spikes.  Returns the number of points left.
+   */
+  static int clean( long[] xs, long[] ys, int offset, int n )
+  {
+    // Linear pass, the kept points form a stack
+    int m = offset;
+    for(int i=offset; i<offset + n; i++){
+      long x = xs[i];
+      long y = ys[i];
+      if(m > offset && xs[m-1] == x && ys[m-1] == y){
+        continue;
+      }
+      while(m >= offset + 2 && cross(xs[m-2], ys[m-2], xs[m-1], ys[m-1], x, y) == 0){
+        m--;
+      }
+      xs[m] = x;
+      ys[m] = y;
+      m++;
+    }
+
+    // Around the closing point, where the stack doesn't see the neighbours
+    int start = offset;
+    boolean changed = true;
+    while(changed && m - start >= 3){
+      changed = false;
+      int last = m - 1;
+      if(xs[last] == xs[start] && ys[last] == ys[start]){
+        m--;
+        changed = true;
+      }else if(cross(xs[last-1], ys[last-1], xs[last], ys[last], xs[start], ys[start]) == 0){
+        m--;
+        changed = true;
+      }else if(cross(xs[last], ys[last], xs[start], ys[start], xs[start+1], ys[start+1]) == 0){
+        start++;
+        changed = true;
+      }
+    }
+
+    int count = m - start;
+    if(count < 3){
+      return 0;
+    }
+    if(start > offset){
+      System.arraycopy(xs, start, xs, offset, count);
+      System.arraycopy(ys, start, ys, offset, count);
+    }
+    return count;
+  }
+}
@@ -0,0 +1,327 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+import java.util.*;
+
+/**
+ * RBoundsTree is a bounding volume hierarchy over a set of axis aligned boxes.  Shapes and paths use it to skip the elements lying far from a query instead of visiting all of them.  It is built top-down, splitting the boxes of each node in two halves at the median of their centers along the longest side of the node.
+ * @invisible
+ */
+class RBoundsTree
+{
+  /* Largest number of boxes kept in a leaf */
+  static final int LEAF_SIZE = 4;
+
+  /* Number of elements from which the containers build a tree, below it
+     visiting all of them is as fast */
+  static final int MIN_ELEMENTS = 8;
+
+  /* Node boxes as xmin, ymin, xmax, ymax.  The first child of an inner node
+     follows it, nodeRight holds the second one, or -1 for leaves. */
+  private float[] nodeBounds;
+  private int[] nodeRight;
+
+  /* Items of the leaves, from nodeStart to nodeEnd in items */
+  private int[] nodeStart;
+  private int[] nodeEnd;
+  private int numNodes;
+
+  private final int[] items;
+  private final float[] boxes;
+
+  /**
+   * Builds the tree over n boxes stored as xmin, ymin, xmax, ymax.  Boxes of empty elements, with xmin greater than xmax, are never returned.
+   */
+  RBoundsTree(float[] boxes, int n){
+    this.boxes = boxes;
+    this.items = new int[n];
+    for(int i=0; i<n; i++){
+      items[i] = i;
+    }
+
+    int maxNodes = Math.max(1, 2 * ((n + LEAF_SIZE - 1) / LEAF_SIZE));
+    nodeBounds = new float[4 * maxNodes];
+    nodeRight = new int[maxNodes];
+    nodeStart = new int[maxNodes];
+    nodeEnd = new int[maxNodes];
+
+    long[] keys = new long[n];
+    build(0, n, keys);
+  }
+
+  private int build(int start, int end, long[] keys){
+    int node = newNode();
+    float[] b = RGeomElem.emptyBounds();
+    for(int i=start; i<end; i++){
+      int k = 4 * items[i];
+      if(boxes[k] <= boxes[k+2]){
+        RGeomElem.addToBounds(b, boxes[k], boxes[k+1]);
+        RGeomElem.addToBounds(b, boxes[k+2], boxes[k+3]);
+      }
+    }
+    System.arraycopy(b, 0, nodeBounds, 4 * node, 4);
+
+    if(end - start <= LEAF_SIZE){
+      nodeRight[node] = -1;
+      nodeStart[node] = start;
+      nodeEnd[node] = end;
+      return node;
+    }
+
+    // Sort the items by the center of their box along the longest side,
+    // the key holding the center in its upper half and the item in its lower half
+    int axis = (b[2] - b[0] >= b[3] - b[1]) ? 0 : 1;
+    for(int i=start; i<end; i++){
+      int k = 4 * items[i];
+      float center = 0.5F * (boxes[k+axis] + boxes[k+axis+2]);
+      if(!(center == center)){
+        center = Float.POSITIVE_INFINITY;
+      }
+      int bits = Float.floatToIntBits(center);
+      bits ^= (bits >> 31) & 0x7fffffff;
+      keys[i] = ((long)bits << 32) | items[i];
+    }
+    Arrays.sort(keys, start, end);
+    for(int i=start; i<end; i++){
+      items[i] = (int)keys[i];
+    }
+
+    int mid = (start + end) >>> 1;
+    build(start, mid, keys);
+    int right = build(mid, end, keys);
+    nodeRight[node] = right;
+    return node;
+  }
+
+  private int newNode(){
+    if(numNodes == nodeRight.length){
+      int capacity = 2 * numNodes;
+      float[] newBounds = new float[4 * capacity];
+      System.arraycopy(nodeBounds, 0, newBounds, 0, 4 * numNodes);
+      nodeBounds = newBounds;
+      nodeRight = copyOf(nodeRight, capacity);
+      nodeStart = copyOf(nodeStart, capacity);
+      nodeEnd = copyOf(nodeEnd, capacity);
+    }
+    return numNodes++;
+  }
+
+  private static int[] copyOf(int[] a, int capacity){
+    int[] b = new int[capacity];
+    System.arraycopy(a, 0, b, 0, a.length);
+    return b;
+  }
+
+  /**
+   * Returns the items whose box overlaps the given box, in increasing order.
+   */
+  int[] query(float xmin, float ymin, float xmax, float ymax){
+    int[] result = new int[8];
+    int count = 0;
+
+    int[] stack = new int[64];
+    int top = 0;
+    stack[top++] = 0;
+    while(top > 0){
+      int node = stack[--top];
+      int nb = 4 * node;
+      if(nodeBounds[nb] > xmax || nodeBounds[nb+2] < xmin || nodeBounds[nb+1] > ymax || nodeBounds[nb+3] < ymin){
+        continue;
+      }
+
+      if(nodeRight[node] < 0){
+        for(int i=nodeStart[node]; i<nodeEnd[node]; i++){
+          int k = 4 * items[i];
+          if(boxes[k] > xmax || boxes[k+2] < xmin || boxes[k+1] > ymax || boxes[k+3] < ymin){
+            continue;
+          }
+          if(count == result.length){
+            result = copyOf(result, 2 * count);
+          }
+          result[count++] = items[i];
+        }
+      }else{
+        if(top + 2 > stack.length){
+          stack = copyOf(stack, 2 * stack.length);
+        }
+        stack[top++] = nodeRight[node];
+        stack[top++] = node + 1;
+      }
+    }
+
+    int[] exact = new int[count];
+    System.arraycopy(result, 0, exact, 0, count);
+    Arrays.sort(exact);
+    return exact;
+  }
+
+  /**
+   * Returns the items whose box overlaps the given box {xmin, ymin, xmax, ymax}, in increasing order.
+   */
+  int[] query(float[] b){
+    return query(b[0], b[1], b[2], b[3]);
+  }
+
+  /**
+   * Returns a tree holding a single box.
+   */
+  static RBoundsTree single(float[] box){
+    return new RBoundsTree(box, 1);
+  }
+
+  /* Distance between the box at offset i of a and the box at offset j of b,
+     0 if they overlap */
+  static float gap(float[] a, int i, float[] b, int j){
+    float dx = Math.max(a[i] - b[j+2], b[j] - a[i+2]);
+    float dy = Math.max(a[i+1] - b[j+3], b[j+1] - a[i+3]);
+    dx = Math.max(dx, 0.0F);
+    dy = Math.max(dy, 0.0F);
+    return (float)Math.sqrt(dx * dx + dy * dy);
+  }
+
+  /**
+   * Branch and bound search of the closest points between the items of two trees.  Pairs of nodes whose boxes lie farther apart than the best distance found so far are skipped, and the closest pair of nodes is visited first so that the bound drops quickly.  The results of the visited pairs are merged in the order of the items, so the outcome is the one of visiting every pair.
+   */
+  abstract static class ClosestSearch
+  {
+    /* Items of the visited pairs and their results */
+    private int[] firsts = new int[8];
+    private int[] seconds = new int[8];
+    private RClosest[] results = new RClosest[8];
+    private int count;
+
+    /**
+     * Returns the closest points between item i of the first tree and item j of the second, or null if there are none.  Parts farther apart than bound may be skipped.
+     */
+    abstract RClosest closest(int i, int j, float bound);
+
+    /**
+     * Runs the search.  When firstOuter is true the results are merged in the order of the items of the first tree, then of the second, else the other way around.
+     */
+    RClosest search(RBoundsTree a, RBoundsTree b, float bound, boolean firstOuter){
+      int[] stack = new int[64];
+      int top = 0;
+      stack[top++] = 0;
+      stack[top++] = 0;
+      while(top > 0){
+        int nb = stack[--top];
+        int na = stack[--top];
+        if(gap(a.nodeBounds, 4 * na, b.nodeBounds, 4 * nb) > slack(bound)){
+          continue;
+        }
+
+        boolean leafA = a.nodeRight[na] < 0;
+        boolean leafB = b.nodeRight[nb] < 0;
+        if(leafA && leafB){
+          for(int ia=a.nodeStart[na]; ia<a.nodeEnd[na]; ia++){
+            int i = a.items[ia];
+            for(int ib=b.nodeStart[nb]; ib<b.nodeEnd[nb]; ib++){
+              int j = b.items[ib];
+              if(gap(a.boxes, 4 * i, b.boxes, 4 * j) > slack(bound)){
+                continue;
+              }
+
+              RClosest result = closest(i, j, bound);
+              if(result == null){
+                continue;
+              }
+              add(i, j, result);
+              if(result.intersects != null){
+                bound = 0.0F;
+              }else if(result.distance < bound){
+                bound = result.distance;
+              }
+            }
+          }
+          continue;
+        }
+
+        // Split the node with the largest box, pushing the farthest half first
+        int c1a = na, c2a = na, c1b = nb, c2b = nb;
+        if(!leafA && (leafB || halfPerimeter(a.nodeBounds, na) >= halfPerimeter(b.nodeBounds, nb))){
+          c1a = na + 1;
+          c2a = a.nodeRight[na];
+        }else{
+          c1b = nb + 1;
+          c2b = b.nodeRight[nb];
+        }
+        if(top + 4 > stack.length){
+          stack = copyOf(stack, 2 * stack.length);
+        }
+        float d1 = gap(a.nodeBounds, 4 * c1a, b.nodeBounds, 4 * c1b);
+        float d2 = gap(a.nodeBounds, 4 * c2a, b.nodeBounds, 4 * c2b);
+        if(d1 <= d2){
+          stack[top++] = c2a;
+          stack[top++] = c2b;
+          stack[top++] = c1a;
+          stack[top++] = c1b;
+        }else{
+          stack[top++] = c1a;
+          stack[top++] = c1b;
+          stack[top++] = c2a;
+          stack[top++] = c2b;
+        }
+      }
+
+      return merge(firstOuter ? b.items.length : a.items.length, firstOuter);
+    }
+
+    /* The bound with some room for the rounding of the distances */
+    private static float slack(float bound){
+      return bound + 1e-4F * (1.0F + bound);
+    }
+
+    private static float halfPerimeter(float[] bounds, int node){
+      return bounds[4*node+2] - bounds[4*node] + bounds[4*node+3] - bounds[4*node+1];
+    }
+
+    private void add(int i, int j, RClosest result){
+      if(count == results.length){
+        firsts = copyOf(firsts, 2 * count);
+        seconds = copyOf(seconds, 2 * count);
+        RClosest[] newResults = new RClosest[2 * count];
+        System.arraycopy(results, 0, newResults, 0, count);
+        results = newResults;
+      }
+      firsts[count] = i;
+      seconds[count] = j;
+      results[count] = result;
+      count++;
+    }
+
+    private RClosest merge(int numInner, boolean firstOuter){
+      // Each key holds the position of the pair followed by its index in the results
+      long[] keys = new long[count];
+      for(int k=0; k<count; k++){
+        long outer = firstOuter ? firsts[k] : seconds[k];
+        long inner = firstOuter ? seconds[k] : firsts[k];
+        keys[k] = (outer * numInner + inner) * count + k;
+      }
+      Arrays.sort(keys);
+
+      RClosest result = new RClosest();
+      for(int k=0; k<count; k++){
+        result.merge(results[(int)(keys[k] % count)]);
+      }
+      result.finish();
+      return result;
+    }
+  }
+}
@@ -109,7 +109,7 @@ class RClip
    * @param p2        One of the polygons to performt he intersection with
    * @param polyClass The type of <code>RPolygon</code> to return
    */
-  static RPolygon intersection( RPolygon p1, RPolygon p2, Class polyClass )
+  static RPolygon intersection( RPolygon p1, RPolygon p2, Class<? extends RPolygon> polyClass )
   {
     return clip( OperationType.GPC_INT, p1, p2, polyClass );
   }
@@ -123,7 +123,7 @@ class RClip
    * @param p2        One of the polygons to performt he union with
    * @param polyClass The type of <code>RPolygon</code> to return
    */
-  static RPolygon union( RPolygon p1, RPolygon p2, Class polyClass )
+  static RPolygon union( RPolygon p1, RPolygon p2, Class<? extends RPolygon> polyClass )
   {
     return clip( OperationType.GPC_UNION, p1, p2, polyClass );
   }
@@ -137,7 +137,7 @@ class RClip
    * @param p2        One of the polygons to performt he xor with
    * @param polyClass The type of <code>RPolygon</code> to return
    */
-  static RPolygon xor( RPolygon p1, RPolygon p2, Class polyClass )
+  static RPolygon xor( RPolygon p1, RPolygon p2, Class<? extends RPolygon> polyClass )
   {
     return clip( OperationType.GPC_XOR, p1, p2, polyClass );
   }
@@ -151,7 +151,7 @@ class RClip
    * @param p2        One of the polygons to performt he diff with
    * @param polyClass The type of <code>RPolygon</code> to return
    */
-  static RPolygon diff( RPolygon p1, RPolygon p2, Class polyClass )
+  static RPolygon diff( RPolygon p1, RPolygon p2, Class<? extends RPolygon> polyClass )
   {
     return clip( OperationType.GPC_DIFF, p1, p2, polyClass );
   }
@@ -204,6 +204,44 @@ class RClip
     return clip( OperationType.GPC_DIFF, p1, p2, RPolygon.class );
   }
   
+  /**
+   * Return the result of <code>op</code> between the prepared polygon
+   * <code>p1</code> and <code>p2</code>, an empty polygon if nothing is left.
+   *
+   * @param op The operation
+   * @param p1 The subject of the operation
+   * @param p2 The clip of the operation
+   */
+  static RPolygon clip( OperationType op, RPreparedPolygon p1, RPolygon p2 )
+  {
+    RPolygon result;
+    if(RG.useFastClip && !RG.useIntClip) {
+      result = FastRClip.clip( op, null, p1, p2, null, RPolygon.class );
+    } else {
+      result = clip( op, p1.polygon, p2, RPolygon.class );
+    }
+    return (result == null) ? new RPolygon() : result;
+  }
+  
+  /**
+   * Return the result of <code>op</code> between <code>p1</code> and the
+   * prepared polygon <code>p2</code>, an empty polygon if nothing is left.
+   *
+   * @param op The operation
+   * @param p1 The subject of the operation
+   * @param p2 The clip of the operation
+   */
+  static RPolygon clip( OperationType op, RPolygon p1, RPreparedPolygon p2 )
+  {
+    RPolygon result;
+    if(RG.useFastClip && !RG.useIntClip) {
+      result = FastRClip.clip( op, p1, null, null, p2, RPolygon.class );
+    } else {
+      result = clip( op, p1, p2.polygon, RPolygon.class );
+    }
+    return (result == null) ? new RPolygon() : result;
+  }
+  
   /**
    * Updates <code>p1</code>. 
    *
@@ -222,11 +260,11 @@ class RClip
   /**
    * Create a new <code>RPolygon</code> type object using <code>polyClass</code>.
    */
-  private static RPolygon createNewPoly( Class polyClass )
+  private static RPolygon createNewPoly( Class<? extends RPolygon> polyClass )
   {
     try
       {
-        return (RPolygon)polyClass.newInstance();
+        return polyClass.newInstance();
       }
     catch( Exception e )
       {
@@ -238,8 +276,11 @@ class RClip
    * <code>clip()</code> is the main method of the clipper algorithm.
    * This is where the conversion from really begins.
    */
-  private static RPolygon clip( OperationType op, RPolygon subj, RPolygon clip, Class polyClass )
+  private static RPolygon clip( OperationType op, RPolygon subj, RPolygon clip, Class<? extends RPolygon> polyClass )
   {
+    if(RG.useIntClip) {
+      return IntRClip.clip(op, subj, clip, polyClass);
+    }
     if(RG.useFastClip) {
       return FastRClip.clip(op, subj, clip, polyClass);
     }
@@ -867,6 +908,9 @@ class RClip
    */
   private static RMesh clip( OperationType op, RPolygon subj, RPolygon clip )
   {
+    if(RG.useIntClip) {
+      return IntRClip.clip(op, subj, clip);
+    }
     if(RG.useFastClip) {
       return FastRClip.clip(op, subj, clip);
     }
@@ -1569,6 +1613,7 @@ class RClip
                         rt= rtn;
                       }
                   }
+                strip.trimToSize();
                 result.addStrip(strip);
                 s++;
               }
@@ -2538,7 +2583,7 @@ class RClip
       return nc;
     }
     
-    public RPolygon getResult( Class polyClass )
+    public RPolygon getResult( Class<? extends RPolygon> polyClass )
     {
       //RPolygon result = createNewPoly( polyClass );
       RPolygon result = new RPolygon();
@@ -2575,12 +2620,13 @@ class RClip
                   // ------------------------------------------------------------------------
                   for (VertexNode vtx = poly_node.proxy.v[LEFT]; (vtx != null) ; vtx = vtx.next )
                     {
-                      contour.addPoint(vtx.x, vtx.y);
+                      contour.append(new RPoint(vtx.x, vtx.y));
                       //poly.add( vtx.x, vtx.y );
                     }
+                  contour.trimToSize();
                   if( num_contours > 0 )
                     {
-                      result.addContour(contour);
+                      result.append(contour);
                       //result.add( poly );
                     }
                   c++;
@@ -2600,7 +2646,7 @@ class RClip
               //RPolygon inner = orig.getInnerPoly(i);
               if( !inner.isHole() )
                 {
-		  result.addContour(inner);
+		  result.append(inner);
                   //result.add(inner);
                 }
             }
@@ -2612,9 +2658,10 @@ class RClip
               //RPolygon inner = orig.getInnerPoly(i);
               if( inner.isHole() )
                 {
-                  result.addContour(inner);
+                  result.append(inner);
                 }
             }
+          result.trimToSize();
         }
       return result ;
     }
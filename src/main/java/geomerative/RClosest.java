@@ -28,13 +28,27 @@ public class RClosest
   public RPoint[] intersects;
   public RPoint[] closest;
 
-  // TODO: get here the max value of an integer
-  public float distance = 10000;
+  /**
+   * The distance between the closest points, 0 if there are intersections.  It stays infinite while no points have been found.
+   */
+  public float distance = Float.POSITIVE_INFINITY;
   public float[] advancements;
 
+  /* Intersections gathered by merge() until finish() is called, the array
+     grows by doubling its size */
+  private RPoint[] gathered;
+  private int gatheredCount;
+
   public RClosest() {}
   
   public void update(RClosest other) {
+    merge(other);
+    finish();
+  }
+
+  /* Same as update(), but the intersections are only gathered, they are
+     stored in intersects by finish() */
+  void merge(RClosest other) {
     if (other.intersects == null) {
 
       if (other.distance > this.distance) return;
@@ -48,17 +62,35 @@ public class RClosest
       this.closest = null;
       this.advancements = null;
       this.distance = 0;
-      RPoint[] newIntersects = null;
-      
-      if(this.intersects==null){
-        this.intersects = new RPoint[other.intersects.length];
-        System.arraycopy(other.intersects, 0, this.intersects, 0, other.intersects.length);
-      }else{
-        newIntersects = new RPoint[this.intersects.length + other.intersects.length];
-        System.arraycopy(this.intersects, 0, newIntersects, 0, this.intersects.length);
-        System.arraycopy(other.intersects, 0, newIntersects, this.intersects.length, other.intersects.length);
-        this.intersects = newIntersects;
+
+      if(gathered == null){
+        gathered = (intersects == null) ? new RPoint[other.intersects.length] : intersects;
+        gatheredCount = (intersects == null) ? 0 : intersects.length;
+      }
+
+      int newCount = gatheredCount + other.intersects.length;
+      if(newCount > gathered.length){
+        RPoint[] newGathered = new RPoint[Math.max(newCount, 2 * gathered.length)];
+        System.arraycopy(gathered, 0, newGathered, 0, gatheredCount);
+        gathered = newGathered;
       }
+      System.arraycopy(other.intersects, 0, gathered, gatheredCount, other.intersects.length);
+      gatheredCount = newCount;
+    }
+  }
+
+  void finish() {
+    if(gathered == null){
+      return;
+    }
+
+    if(gatheredCount == gathered.length){
+      intersects = gathered;
+    }else{
+      intersects = new RPoint[gatheredCount];
+      System.arraycopy(gathered, 0, intersects, 0, gatheredCount);
     }
+    gathered = null;
+    gatheredCount = 0;
   }
 }
\ No newline at end of file
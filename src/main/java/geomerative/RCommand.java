@@ -35,8 +35,6 @@ public class RCommand extends RGeomElem
   public RPoint endPoint;
   int commandType;
 
-  RPoint[] curvePoints;
-
   /**
    * @invisible
    * */
@@ -82,37 +80,11 @@ public class RCommand extends RGeomElem
   /* Parameters for UNIFORMLENGTH (dependent of the PGraphics on which drawing) */
   static float segmentLength = 4.0F;
   static float segmentOffset = 0.0F;
-  static float segmentAccOffset = 0.0F;
 
   /* Parameters for UNIFORMSTEP */
   static int segmentSteps = 0;
   static boolean segmentLines = false;
 
-  int oldSegmentType = UNIFORMLENGTH;
-
-  /* Parameters for ADAPTATIVE (dependent of the PGraphics on which drawing) */
-  float oldSegmentCollinearityEpsilon = 1.192092896e-07F;
-  float oldSegmentAngleTolEpsilon = 0.01F;
-
-  float oldSegmentGfxStrokeWeight = 1.0F;
-  float oldSegmentGfxScale = 1.0F;
-  float oldSegmentApproxScale = 1.0F;
-  float oldSegmentDistTolSqr = 0.25F;
-  float oldSegmentDistTolMnhttn = 4.0F;
-  float oldSegmentAngleTol = 0.0F;
-  float oldSegmentCuspLimit = 0.0F;
-
-  /* Parameters for UNIFORMLENGTH (dependent of the PGraphics on which drawing) */
-  float oldSegmentLength = 4.0F;
-  float oldSegmentOffset = 0.0F;
-  float oldSegmentAccOffset = 0.0F;
-
-  /* Parameters for UNIFORMSTEP */
-  int oldSegmentSteps = 0;
-  boolean oldSegmentLines = false;
-
-
-
   static RCommand createLine(RPoint start, RPoint end){
     RCommand result = new RCommand();
     result.startPoint = start;
@@ -271,7 +243,24 @@ public class RCommand extends RGeomElem
    * @invisible
    */
   public RShape toShape(){
-    return new RShape(new RPath(this));
+    // The new path only gives another view of the command
+    RPath path = new RPath(this);
+    path.release(this);
+    return new RShape(path);
+  }
+
+  /**
+   * @invisible
+   */
+  public RPolygon toPolygon(RSegmentator seg){
+    return toShape().toPolygon(seg);
+  }
+
+  /**
+   * @invisible
+   */
+  public RMesh toMesh(RSegmentator seg){
+    return toShape().toMesh(seg);
   }
 
   public int getType(){
@@ -293,20 +282,11 @@ public class RCommand extends RGeomElem
    * @param g  graphics object too which to adapt the segmentation of the command.
    * */
   public static void setSegmentGraphic(PGraphics g){
-    // Set the segmentApproxScale from the graphic context g
-    segmentApproxScale = 1.0F;
-
     // Set all the gfx-context dependent parameters for all segmentators
-
-    segmentDistTolSqr = 0.5F / segmentApproxScale;
-    segmentDistTolSqr *= segmentDistTolSqr;
-    segmentDistTolMnhttn = 4.0F / segmentApproxScale;
-    segmentAngleTol = 0.0F;
-
-    if(g.stroke && (g.strokeWeight * segmentApproxScale > 1.0F))
-      {
-        segmentAngleTol = 0.1F;
-      }
+    RSegmentator s = RSegmentator.getDefault().withGraphic(g);
+    segmentDistTolSqr = s.distTolSqr;
+    segmentDistTolMnhttn = s.distTolMnhttn;
+    segmentAngleTol = s.angleTol;
   }
 
   /**
@@ -327,11 +307,7 @@ public class RCommand extends RGeomElem
    * */
   public static void setSegmentLength(float segmentLngth){
     //segmentType = UNIFORMLENGTH;
-    if(segmentLngth>=1){
-      segmentLength = segmentLngth;
-    }else{
-      segmentLength = 4;
-    }
+    segmentLength = RSegmentator.getDefault().withLength(segmentLngth).length;
   }
 
   /**
@@ -341,11 +317,7 @@ public class RCommand extends RGeomElem
    * */
   public static void setSegmentOffset(float segmentOffst){
     //segmentType = UNIFORMLENGTH;
-    if(segmentOffst>=0){
-      segmentOffset = segmentOffst;
-    }else{
-      segmentOffset = 0;
-    }
+    segmentOffset = RSegmentator.getDefault().withOffset(segmentOffst).offset;
   }
 
   /**
@@ -355,65 +327,11 @@ public class RCommand extends RGeomElem
    * */
   public static void setSegmentStep(float segmentStps){
     //segmentType = UNIFORMSTEP;
-    if(segmentStps == -1F){
-      segmentLines=false;
-      segmentStps=0F;
-    }else{
-      segmentLines=true;
-    }
-    // Set the parameters
-    segmentStps = Math.abs(segmentStps);
-    if(segmentStps>0.0F && segmentStps<1.0F){
-      segmentSteps = (int)(1F/segmentStps);
-    }else{
-      segmentSteps = (int)segmentStps;
-    }
-  }
-
-
-  protected void saveSegmentatorContext(){
-    oldSegmentType = RCommand.segmentType;
-
-    /* Parameters for ADAPTATIVE (dependent of the PGraphics on which drawing) */
-    oldSegmentGfxStrokeWeight = RCommand.segmentGfxStrokeWeight;
-    oldSegmentGfxScale = RCommand.segmentGfxScale;
-    oldSegmentApproxScale = RCommand.segmentApproxScale;
-    oldSegmentDistTolSqr = RCommand.segmentDistTolSqr;
-    oldSegmentDistTolMnhttn = RCommand.segmentDistTolMnhttn;
-    oldSegmentAngleTol = RCommand.segmentAngleTol;
-    oldSegmentCuspLimit = RCommand.segmentCuspLimit;
-
-    /* Parameters for UNIFORMLENGTH (dependent of the PGraphics on which drawing) */
-    oldSegmentLength = RCommand.segmentLength;
-    oldSegmentOffset = RCommand.segmentOffset;
-    oldSegmentAccOffset = RCommand.segmentAccOffset;
-
-    /* Parameters for UNIFORMSTEP */
-    oldSegmentSteps = RCommand.segmentSteps;
-    oldSegmentLines = RCommand.segmentLines;
+    RSegmentator s = RSegmentator.getDefault().withStep(segmentStps);
+    segmentLines = s.lines;
+    segmentSteps = s.steps;
   }
 
-  protected void restoreSegmentatorContext(){
-    RCommand.segmentType = oldSegmentType;
-
-    /* Parameters for ADAPTATIVE (dependent of the PGraphics on which drawing) */
-    RCommand.segmentGfxStrokeWeight = oldSegmentGfxStrokeWeight;
-    RCommand.segmentGfxScale = oldSegmentGfxScale;
-    RCommand.segmentApproxScale = oldSegmentApproxScale;
-    RCommand.segmentDistTolSqr = oldSegmentDistTolSqr;
-    RCommand.segmentDistTolMnhttn = oldSegmentDistTolMnhttn;
-    RCommand.segmentAngleTol = oldSegmentAngleTol;
-    RCommand.segmentCuspLimit = oldSegmentCuspLimit;
-
-    /* Parameters for UNIFORMLENGTH (dependent of the PGraphics on which drawing) */
-    RCommand.segmentLength = oldSegmentLength;
-    RCommand.segmentOffset = oldSegmentOffset;
-    RCommand.segmentAccOffset = oldSegmentAccOffset;
-
-    /* Parameters for UNIFORMSTEP */
-    RCommand.segmentSteps = oldSegmentSteps;
-    RCommand.segmentLines = oldSegmentLines;
-  }
 
   /**
    * Use this to return the number of control points of the curve.
@@ -472,38 +390,70 @@ public class RCommand extends RGeomElem
    * @return RPoint[], the vertices returned in an array.
    * */
   public RPoint[] getPoints(){
-    return getPoints(true);
+    return getPoints(RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this to return the points on the curve using a specific segmentator instead of the global one.  It returns the points in the way of an array of RPoint.
+   * @eexample getPoints
+   * @param seg  the segmentator to use
+   * @return RPoint[], the vertices returned in an array.
+   * */
+  public RPoint[] getPoints(RSegmentator seg){
+    RFloatBuffer buffer = new RFloatBuffer();
+    flattenInto(buffer, seg);
+    return buffer.toPoints();
   }
 
-  protected RPoint[] getPoints(boolean resetSegmentator){
+  /**
+   * Use this to segment the command sending the coordinates of the resulting points to a sink, without creating any RPoint.
+   * @eexample flattenInto
+   * @param sink  the object receiving the points, for example an RFloatBuffer that is cleared and reused every frame
+   * @related RFloatBuffer
+   * */
+  public void flattenInto(RFloatSink sink){
+    flattenInto(sink, RSegmentator.getDefault());
+  }
 
-    if(resetSegmentator){
-      saveSegmentatorContext();
-      RCommand.segmentOffset = 0F;
-      RCommand.segmentAccOffset = 0F;
-    }
+  /**
+   * Use this to segment the command with a specific segmentator sending the coordinates of the resulting points to a sink.
+   * @param sink  the object receiving the points
+   * @param seg  the segmentator to use
+   * */
+  public void flattenInto(RFloatSink sink, RSegmentator seg){
+    segment(new Segmentation(seg, 0F, sink));
+  }
 
+  /**
+   * Use this to segment the command writing the interleaved x/y coordinates of the resulting points into an array.  The array must be large enough to hold all the points, otherwise an ArrayIndexOutOfBoundsException is thrown; use an RFloatBuffer when the number of points is not known.
+   * @param xy  the array receiving the coordinates
+   * @param offset  the index of xy where the first coordinate is written
+   * @return int, the index following the last coordinate written.
+   * */
+  public int flattenInto(float[] xy, int offset){
+    ArraySink sink = new ArraySink(xy, offset);
+    flattenInto(sink);
+    return sink.pos;
+  }
 
-    RPoint[] result = null;
-    switch(segmentType){
+  /**
+   * Segments the command adding the resulting points to s.
+   */
+  void segment(Segmentation s){
+    switch(s.seg.type){
     case ADAPTATIVE:
       switch(commandType){
       case LINETO:
-        result = new RPoint[2];
-        result[0] = startPoint;
-        result[1] = endPoint;
+        s.add(startPoint.x, startPoint.y);
+        s.add(endPoint.x, endPoint.y);
         break;
 
       case QUADBEZIERTO:
-        quadBezierAdaptative();
-        result = curvePoints;
-        curvePoints = null;
+        quadBezierAdaptative(s);
         break;
 
       case CUBICBEZIERTO:
-        cubicBezierAdaptative();
-        result = curvePoints;
-        curvePoints = null;
+        cubicBezierAdaptative(s);
         break;
       }
       break;
@@ -511,21 +461,15 @@ public class RCommand extends RGeomElem
     case UNIFORMLENGTH:
       switch(commandType){
       case LINETO:
-        lineUniformLength();
-        result = curvePoints;
-        curvePoints = null;
+        lineUniformLength(s);
         break;
 
       case QUADBEZIERTO:
-        quadBezierUniformLength();
-        result = curvePoints;
-        curvePoints = null;
+        quadBezierUniformLength(s);
         break;
 
       case CUBICBEZIERTO:
-        cubicBezierUniformLength();
-        result = curvePoints;
-        curvePoints = null;
+        cubicBezierUniformLength(s);
         break;
       }
       break;
@@ -533,38 +477,24 @@ public class RCommand extends RGeomElem
     case UNIFORMSTEP:
       switch(commandType){
       case LINETO:
-        if(segmentLines){
-          lineUniformStep();
-          result = curvePoints;
-          curvePoints = null;
+        if(s.seg.lines){
+          lineUniformStep(s);
         }else{
-          result = new RPoint[2];
-          result[0] = startPoint;
-          result[1] = endPoint;
+          s.add(startPoint.x, startPoint.y);
+          s.add(endPoint.x, endPoint.y);
         }
         break;
 
       case QUADBEZIERTO:
-        quadBezierUniformStep();
-        result = curvePoints;
-        curvePoints = null;
+        quadBezierUniformStep(s);
         break;
 
       case CUBICBEZIERTO:
-        cubicBezierUniformStep();
-        result = curvePoints;
-        curvePoints = null;
+        cubicBezierUniformStep(s);
         break;
       }
       break;
     }
-
-
-    if(resetSegmentator){
-      restoreSegmentatorContext();
-    }
-
-    return result;
   }
 
   /**
@@ -631,8 +561,8 @@ public class RCommand extends RGeomElem
       {
       case LINETO:
         result = new RPoint[2];
-        result[0] = startPoint;
-        result[1] = endPoint;
+        result[0] = new RPoint(startPoint);
+        result[1] = new RPoint(endPoint);
         return result;
       case QUADBEZIERTO:
       case CUBICBEZIERTO:
@@ -693,44 +623,50 @@ public class RCommand extends RGeomElem
   }
 
   /**
-   * Use this to return arc length of a curve.  It returns the float representing the length given the value of the advancement parameter t on the curve. The current implementation of this function is very slow, not recommended for using during frame draw.
+   * Use this to return arc length of a curve.  It returns the float representing the length of the curve from its start to the value of the advancement parameter t.  Quadratic curves are measured exactly, cubic curves to a relative error of about one part in ten thousand.
    * @eexample RCommand_getCurveLength
    * @param t float, the parameter of advancement on the curve. t must have values between 0 and 1.
    * @return float, the length returned.
    * @invisible
    * */
   public float getCurveLength(float t){
+    return getCurveLength(t, -1F);
+  }
+
+  /**
+   * Use this to return arc length of a curve with a given accuracy.  It returns the float representing the length of the curve from its start to the value of the advancement parameter t.
+   * @eexample RCommand_getCurveLength
+   * @param t float, the parameter of advancement on the curve. t must have values between 0 and 1.
+   * @param maxError float, the maximum absolute error allowed on the length of cubic curves.  Lines and quadratic curves are always measured exactly.  Negative values use the default accuracy.
+   * @return float, the length returned.
+   * @invisible
+   * */
+  public float getCurveLength(float t, float maxError){
 
     /* limit the value of t between 0 and 1 */
     t = (t > 1F) ? 1F : t;
     t = (t < 0F) ? 0F : t;
 
-    float dx, dy, dx2, dy2, t2;
+    float dx, dy;
 
     switch(commandType){
     case LINETO:
       dx = endPoint.x - startPoint.x;
       dy = endPoint.y - startPoint.y;
-      dx2 = dx*dx;
-      dy2 = dy*dy;
-      t2 = t*t;
-      //RG.parent().println("RCommand/LINETO::: getCurveLength: " + (float)Math.sqrt(dx2*t2 + dy2*t2));
-      return (float)Math.sqrt(dx2*t2 + dy2*t2);
+      return (float)Math.sqrt(dx*dx + dy*dy) * t;
 
     case QUADBEZIERTO:
-      /* calculate the curve point at parameter value t */
-      return quadBezierLength();
+      return (float)quadBezierLength(t);
 
     case CUBICBEZIERTO:
-      /* calculate the curve point at parameter value t */
-      return cubicBezierLength();
+      return (float)cubicBezierLength(t, maxError);
     }
 
     return -1F;
   }
 
   /**
-   * Use this to return arc length of a curve.  It returns the float representing the length given the value of the advancement parameter t on the curve. The current implementation of this function is very slow, not recommended for using during frame draw.
+   * Use this to return arc length of a curve.  It returns the float representing the length of the whole curve.
    * @eexample RCommand_getCurveLength
    * @return float, the length returned.
    * @invisible
@@ -739,6 +675,53 @@ public class RCommand extends RGeomElem
     return getCurveLength(1F);
   }
 
+  /**
+   * Use this to return the length of the curve from its start to the value of the advancement parameter t.  Unlike getCurveLength(t) it uses a table of lengths built the first time it is needed, so repeated calls are cheap.
+   * @eexample RCommand_lengthAt
+   * @param t float, the parameter of advancement on the curve. t must have values between 0 and 1.
+   * @return float, the length returned.
+   * @related getPointAtLength ( )
+   * */
+  public float lengthAt(float t){
+    t = (t > 1F) ? 1F : t;
+    t = (t < 0F) ? 0F : t;
+
+    if(commandType == LINETO){
+      return getCurveLength(t);
+    }
+
+    if(arcLengths == null){
+      buildArcLengths();
+    }
+
+    int i = Math.min((int)(t * ARC_TABLE_STEPS), ARC_TABLE_STEPS - 1);
+    double t0 = (double)i / ARC_TABLE_STEPS;
+    return (float)(arcLengths[i] + gaussLegendreLength(arcCoefficients, t0, t));
+  }
+
+  /**
+   * Use this to return the point at a given distance from the start of the curve, measured along the curve.
+   * @eexample RCommand_getPointAtLength
+   * @param s float, the distance along the curve. s must have values between 0 and getCurveLength().
+   * @return RPoint, the point returned.
+   * @related getTangentAtLength ( )
+   * @related lengthAt ( )
+   * */
+  public RPoint getPointAtLength(float s){
+    return getPoint(advAtLength(s));
+  }
+
+  /**
+   * Use this to return the tangent at a given distance from the start of the curve, measured along the curve.
+   * @eexample RCommand_getTangentAtLength
+   * @param s float, the distance along the curve. s must have values between 0 and getCurveLength().
+   * @return RPoint, the tangent returned.
+   * @related getPointAtLength ( )
+   * */
+  public RPoint getTangentAtLength(float s){
+    return getTangent(advAtLength(s));
+  }
+
   public RPoint[][] getPointsInPaths(){
     PApplet.println("Feature not yet implemented for this class.");
     return null;
@@ -765,13 +748,14 @@ public class RCommand extends RGeomElem
    * @param g PGraphics, the graphics object on which to draw the command
    */
   public void draw(PGraphics g){
-    RPoint[] points = getPoints();
-    if(points == null){
+    RFloatBuffer points = new RFloatBuffer();
+    flattenInto(points);
+    if(points.size == 0){
       return;
     }
     g.beginShape();
-    for(int i=0;i<points.length;i++){
-      g.vertex(points[i].x, points[i].y);
+    for(int i=0;i<points.size;i+=2){
+      g.vertex(points.xy[i], points.xy[i+1]);
     }
     g.endShape();
   }
@@ -782,14 +766,15 @@ public class RCommand extends RGeomElem
    * @param a  the applet object on which to draw the command
    */
   public void draw(PApplet a){
-    RPoint[] points = getPoints();
-    if(points == null){
+    RFloatBuffer points = new RFloatBuffer();
+    flattenInto(points);
+    if(points.size == 0){
       return;
     }
 
     a.beginShape();
-    for(int i=0;i<points.length;i++){
-      a.vertex(points[i].x, points[i].y);
+    for(int i=0;i<points.size;i+=2){
+      a.vertex(points.xy[i], points.xy[i+1]);
     }
     a.endShape();
   }
@@ -934,28 +919,69 @@ public class RCommand extends RGeomElem
     return result;
   }
 
-  private void quadBezierAdaptative(){
-    addCurvePoint(new RPoint(startPoint));
-    quadBezierAdaptativeRecursive(startPoint.x, startPoint.y, controlPoints[0].x, controlPoints[0].y, endPoint.x, endPoint.y, 0);
-    addCurvePoint(new RPoint(endPoint));
-  }
+  private void quadBezierAdaptative(Segmentation s){
+    s.add(startPoint.x, startPoint.y);
 
-  private void quadBezierAdaptativeRecursive(float x1, float y1, float x2, float y2, float x3, float y3, int level){
+    // Depth first subdivision, the right halves wait on the stack while the left ones are refined
+    float[] st = s.adaptativeStack();
+    int[] levels = s.adaptativeLevels();
+    int top = 0;
 
-    if(level > segmentRecursionLimit)
-      {
-        return;
+    float x1 = startPoint.x, y1 = startPoint.y;
+    float x2 = controlPoints[0].x, y2 = controlPoints[0].y;
+    float x3 = endPoint.x, y3 = endPoint.y;
+    int level = 0;
+
+    while(true){
+      // Calculate all the mid-points of the line segments
+      //----------------------
+      float x12   = (x1 + x2) / 2;
+      float y12   = (y1 + y2) / 2;
+      float x23   = (x2 + x3) / 2;
+      float y23   = (y2 + y3) / 2;
+      float x123  = (x12 + x23) / 2;
+      float y123  = (y12 + y23) / 2;
+
+      // Pieces past the recursion limit are dropped, as the recursive version did
+      boolean flat = level > segmentRecursionLimit;
+      if(!flat && quadBezierFlat(s, x1, y1, x2, y2, x3, y3)){
+        s.add(x123, y123);
+        flat = true;
+      }
+
+      if(flat){
+        if(top == 0){
+          break;
+        }
+        top--;
+        int b = top * 8;
+        x1 = st[b];   y1 = st[b+1];
+        x2 = st[b+2]; y2 = st[b+3];
+        x3 = st[b+4]; y3 = st[b+5];
+        level = levels[top];
+        continue;
       }
 
-    // Calculate all the mid-points of the line segments
-    //----------------------
-    float x12   = (x1 + x2) / 2;
-    float y12   = (y1 + y2) / 2;
-    float x23   = (x2 + x3) / 2;
-    float y23   = (y2 + y3) / 2;
-    float x123  = (x12 + x23) / 2;
-    float y123  = (y12 + y23) / 2;
+      // Continue subdivision
+      //----------------------
+      int b = top * 8;
+      st[b] = x123;  st[b+1] = y123;
+      st[b+2] = x23; st[b+3] = y23;
+      st[b+4] = x3;  st[b+5] = y3;
+      levels[top++] = level + 1;
+
+      x2 = x12; y2 = y12;
+      x3 = x123; y3 = y123;
+      level++;
+    }
+
+    s.add(endPoint.x, endPoint.y);
+  }
 
+  /**
+   * Tells whether the quadratic piece can be replaced by the two segments joining at its mid-point.  The distance from the control point to the chord bounds the distance from the curve to the chord.
+   */
+  private static boolean quadBezierFlat(Segmentation s, float x1, float y1, float x2, float y2, float x3, float y3){
     float dx = x3-x1;
     float dy = y3-y1;
     float d = Math.abs(((x2 - x3) * dy - (y2 - y3) * dx));
@@ -964,73 +990,112 @@ public class RCommand extends RGeomElem
       {
         // Regular care
         //-----------------
-        if(d * d <= segmentDistTolSqr * (dx*dx + dy*dy))
+        if(d * d <= s.seg.distTolSqr * (dx*dx + dy*dy))
           {
             // If the curvature doesn't exceed the distance_tolerance value
             // we tend to finish subdivisions.
             //----------------------
-            if(segmentAngleTol < segmentAngleTolEpsilon)
+            if(s.seg.angleTol < segmentAngleTolEpsilon)
               {
-                addCurvePoint(new RPoint(x123, y123));
-                return;
+                return true;
               }
 
             // Angle & Cusp Condition
             //----------------------
-            float da = Math.abs((float)Math.atan2(y3 - y2, x3 - x2) - (float)Math.atan2(y2 - y1, x2 - x1));
-            if(da >= Math.PI) da = 2*(float)Math.PI - da;
-
-            if(da < segmentAngleTol)
-              {
-                // Finally we can stop the recursion
-                //----------------------
-                addCurvePoint(new RPoint(x123, y123));
-                return;
-              }
-          }
-      }
-    else
-      {
-        if(Math.abs(x1 + x3 - x2 - x2) + Math.abs(y1 + y3 - y2 - y2) <= segmentDistTolMnhttn)
-          {
-            addCurvePoint(new RPoint(x123, y123));
-            return;
+            return angleUnder(x2 - x1, y2 - y1, x3 - x2, y3 - y2, s.cosAngleTol);
           }
+        return false;
       }
 
-    // Continue subdivision
-    //----------------------
-    quadBezierAdaptativeRecursive(x1, y1, x12, y12, x123, y123, level + 1);
-    quadBezierAdaptativeRecursive(x123, y123, x23, y23, x3, y3, level + 1);
-  }
+    return Math.abs(x1 + x3 - x2 - x2) + Math.abs(y1 + y3 - y2 - y2) <= s.seg.distTolMnhttn;
+  }
+
+  private void cubicBezierAdaptative(Segmentation s){
+    s.add(startPoint.x, startPoint.y);
+
+    // Depth first subdivision, the right halves wait on the stack while the left ones are refined
+    float[] st = s.adaptativeStack();
+    int[] levels = s.adaptativeLevels();
+    int top = 0;
+
+    float x1 = startPoint.x, y1 = startPoint.y;
+    float x2 = controlPoints[0].x, y2 = controlPoints[0].y;
+    float x3 = controlPoints[1].x, y3 = controlPoints[1].y;
+    float x4 = endPoint.x, y4 = endPoint.y;
+    int level = 0;
+
+    while(true){
+      // The regular case without angle tolerance is handled here, the rest in cubicBezierFlat()
+      float dx = x4-x1;
+      float dy = y4-y1;
+      float d2 = Math.abs(((x2 - x4) * dy - (y2 - y4) * dx));
+      float d3 = Math.abs(((x3 - x4) * dy - (y3 - y4) * dx));
+      boolean regular = d2 > segmentCollinearityEpsilon && d3 > segmentCollinearityEpsilon;
+      boolean flat;
+      if(level > segmentRecursionLimit){
+        // Pieces past the recursion limit are dropped, as the recursive version did
+        flat = true;
+      }else if(regular && (d2 + d3)*(d2 + d3) > s.seg.distTolSqr * (dx*dx + dy*dy)){
+        flat = false;
+      }else if(regular && s.seg.angleTol < segmentAngleTolEpsilon){
+        s.add((x2 + x3) / 2, (y2 + y3) / 2);
+        flat = true;
+      }else{
+        flat = cubicBezierFlat(s, x1, y1, x2, y2, x3, y3, x4, y4);
+      }
 
-  private void cubicBezierAdaptative(){
-    addCurvePoint(new RPoint(startPoint));
-    cubicBezierAdaptativeRecursive(startPoint.x, startPoint.y, controlPoints[0].x, controlPoints[0].y, controlPoints[1].x, controlPoints[1].y, endPoint.x, endPoint.y, 0);
-    addCurvePoint(new RPoint(endPoint));
-  }
+      if(flat){
 
-  private void cubicBezierAdaptativeRecursive(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4, int level){
-    if(level > segmentRecursionLimit)
-      {
-        return;
+        if(top == 0){
+          break;
+        }
+        top--;
+        int b = top * 8;
+        x1 = st[b];   y1 = st[b+1];
+        x2 = st[b+2]; y2 = st[b+3];
+        x3 = st[b+4]; y3 = st[b+5];
+        x4 = st[b+6]; y4 = st[b+7];
+        level = levels[top];
+        continue;
       }
 
-    // Calculate all the mid-points of the line segments
-    //----------------------
-    float x12   = (x1 + x2) / 2;
-    float y12   = (y1 + y2) / 2;
-    float x23   = (x2 + x3) / 2;
-    float y23   = (y2 + y3) / 2;
-    float x34   = (x3 + x4) / 2;
-    float y34   = (y3 + y4) / 2;
-    float x123  = (x12 + x23) / 2;
-    float y123  = (y12 + y23) / 2;
-    float x234  = (x23 + x34) / 2;
-    float y234  = (y23 + y34) / 2;
-    float x1234 = (x123 + x234) / 2;
-    float y1234 = (y123 + y234) / 2;
+      // Calculate all the mid-points of the line segments
+      //----------------------
+      float x12   = (x1 + x2) / 2;
+      float y12   = (y1 + y2) / 2;
+      float x23   = (x2 + x3) / 2;
+      float y23   = (y2 + y3) / 2;
+      float x34   = (x3 + x4) / 2;
+      float y34   = (y3 + y4) / 2;
+      float x123  = (x12 + x23) / 2;
+      float y123  = (y12 + y23) / 2;
+      float x234  = (x23 + x34) / 2;
+      float y234  = (y23 + y34) / 2;
+      float x1234 = (x123 + x234) / 2;
+      float y1234 = (y123 + y234) / 2;
+
+      // Continue subdivision
+      //----------------------
+      int b = top * 8;
+      st[b] = x1234;  st[b+1] = y1234;
+      st[b+2] = x234; st[b+3] = y234;
+      st[b+4] = x34;  st[b+5] = y34;
+      st[b+6] = x4;   st[b+7] = y4;
+      levels[top++] = level + 1;
+
+      x2 = x12; y2 = y12;
+      x3 = x123; y3 = y123;
+      x4 = x1234; y4 = y1234;
+      level++;
+    }
+
+    s.add(endPoint.x, endPoint.y);
+  }
 
+  /**
+   * Tells whether the cubic piece is flat enough, in which case the points replacing it are added to the segmentation.  The distances from the control points to the chord bound the distance from the curve to the chord.
+   */
+  private static boolean cubicBezierFlat(Segmentation s, float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4){
     // Try to approximate the full cubic curve by a single straight line
     //------------------
     float dx = x4-x1;
@@ -1038,7 +1103,6 @@ public class RCommand extends RGeomElem
 
     float d2 = Math.abs(((x2 - x4) * dy - (y2 - y4) * dx));
     float d3 = Math.abs(((x3 - x4) * dy - (y3 - y4) * dx));
-    float da1, da2;
 
     int d2b = (d2 > segmentCollinearityEpsilon)?1:0;
     int d3b = (d3 > segmentCollinearityEpsilon)?1:0;
@@ -1049,139 +1113,181 @@ public class RCommand extends RGeomElem
       if(Math.abs(x1 + x3 - x2 - x2) +
          Math.abs(y1 + y3 - y2 - y2) +
          Math.abs(x2 + x4 - x3 - x3) +
-         Math.abs(y2 + y4 - y3 - y3) <= segmentDistTolMnhttn)
+         Math.abs(y2 + y4 - y3 - y3) <= s.seg.distTolMnhttn)
         {
-          addCurvePoint(new RPoint(x1234, y1234));
-          return;
+          float x123 = ((x1 + x2) / 2 + (x2 + x3) / 2) / 2;
+          float y123 = ((y1 + y2) / 2 + (y2 + y3) / 2) / 2;
+          float x234 = ((x2 + x3) / 2 + (x3 + x4) / 2) / 2;
+          float y234 = ((y2 + y3) / 2 + (y3 + y4) / 2) / 2;
+          s.add((x123 + x234) / 2, (y123 + y234) / 2);
+          return true;
         }
-      break;
+      return false;
 
     case 1:
       // p1,p2,p4 are collinear, p3 is considerable
       //----------------------
-      if(d3 * d3 <= segmentDistTolSqr * (dx*dx + dy*dy))
+      if(d3 * d3 <= s.seg.distTolSqr * (dx*dx + dy*dy))
         {
-          if(segmentAngleTol < segmentAngleTolEpsilon)
+          if(s.seg.angleTol < segmentAngleTolEpsilon)
             {
-              addCurvePoint(new RPoint(x23, y23));
-              return;
+              s.add((x2 + x3) / 2, (y2 + y3) / 2);
+              return true;
             }
 
           // Angle Condition
           //----------------------
-          da1 = Math.abs((float)Math.atan2(y4 - y3, x4 - x3) - (float)Math.atan2(y3 - y2, x3 - x2));
-          if(da1 >= (float)Math.PI) da1 = 2*(float)Math.PI - da1;
-
-          if(da1 < segmentAngleTol)
+          if(angleUnder(x3 - x2, y3 - y2, x4 - x3, y4 - y3, s.cosAngleTol))
             {
-              addCurvePoint(new RPoint(x2, y2));
-              addCurvePoint(new RPoint(x3, y3));
-              return;
+              s.add(x2, y2);
+              s.add(x3, y3);
+              return true;
             }
 
-          if(segmentCuspLimit != 0.0)
+          if(s.seg.cuspLimit != 0.0 && angleOver(x3 - x2, y3 - y2, x4 - x3, y4 - y3, s.cosCuspLimit))
             {
-              if(da1 > segmentCuspLimit)
-                {
-                  addCurvePoint(new RPoint(x3, y3));
-                  return;
-                }
+              s.add(x3, y3);
+              return true;
             }
         }
-      break;
+      return false;
 
     case 2:
       // p1,p3,p4 are collinear, p2 is considerable
       //----------------------
-      if(d2 * d2 <= segmentDistTolSqr * (dx*dx + dy*dy))
+      if(d2 * d2 <= s.seg.distTolSqr * (dx*dx + dy*dy))
         {
-          if(segmentAngleTol < segmentAngleTolEpsilon)
+          if(s.seg.angleTol < segmentAngleTolEpsilon)
             {
-              addCurvePoint(new RPoint(x23, y23));
-              return;
+              s.add((x2 + x3) / 2, (y2 + y3) / 2);
+              return true;
             }
 
           // Angle Condition
           //----------------------
-          da1 = Math.abs((float)Math.atan2(y3 - y2, x3 - x2) - (float)Math.atan2(y2 - y1, x2 - x1));
-          if(da1 >= (float)Math.PI) da1 = 2*(float)Math.PI - da1;
-
-          if(da1 < segmentAngleTol)
+          if(angleUnder(x2 - x1, y2 - y1, x3 - x2, y3 - y2, s.cosAngleTol))
             {
-              addCurvePoint(new RPoint(x2, y2));
-              addCurvePoint(new RPoint(x3, y3));
-              return;
+              s.add(x2, y2);
+              s.add(x3, y3);
+              return true;
             }
 
-          if(segmentCuspLimit != 0.0)
+          if(s.seg.cuspLimit != 0.0 && angleOver(x2 - x1, y2 - y1, x3 - x2, y3 - y2, s.cosCuspLimit))
             {
-              if(da1 > segmentCuspLimit)
-                {
-                  addCurvePoint(new RPoint(x2, y2));
-                  return;
-                }
+              s.add(x2, y2);
+              return true;
             }
         }
-      break;
+      return false;
 
-    case 3:
+    default:
       // Regular care
       //-----------------
-      if((d2 + d3)*(d2 + d3) <= segmentDistTolSqr * (dx*dx + dy*dy))
+      if((d2 + d3)*(d2 + d3) <= s.seg.distTolSqr * (dx*dx + dy*dy))
         {
           // If the curvature doesn't exceed the distance_tolerance value
           // we tend to finish subdivisions.
           //----------------------
-          if(segmentAngleTol < segmentAngleTolEpsilon)
+          if(s.seg.angleTol < segmentAngleTolEpsilon)
             {
-              addCurvePoint(new RPoint(x23, y23));
-              return;
+              s.add((x2 + x3) / 2, (y2 + y3) / 2);
+              return true;
             }
 
           // Angle & Cusp Condition
           //----------------------
-          float a23 = (float)Math.atan2(y3 - y2, x3 - x2);
-          da1 = Math.abs(a23 - (float)Math.atan2(y2 - y1, x2 - x1));
-          da2 = Math.abs((float)Math.atan2(y4 - y3, x4 - x3) - a23);
-          if(da1 >= (float)Math.PI) da1 = 2*(float)Math.PI - da1;
-          if(da2 >= (float)Math.PI) da2 = 2*(float)Math.PI - da2;
-
-          if(da1 + da2 < segmentAngleTol)
+          if(angleSumUnder(x2 - x1, y2 - y1, x3 - x2, y3 - y2, x4 - x3, y4 - y3, s.cosAngleTol))
             {
-              // Finally we can stop the recursion
+              // Finally we can stop the subdivision
               //----------------------
-              addCurvePoint(new RPoint(x23, y23));
-              return;
+              s.add((x2 + x3) / 2, (y2 + y3) / 2);
+              return true;
             }
 
-          if(segmentCuspLimit != 0.0)
+          if(s.seg.cuspLimit != 0.0)
             {
-              if(da1 > segmentCuspLimit)
+              if(angleOver(x2 - x1, y2 - y1, x3 - x2, y3 - y2, s.cosCuspLimit))
                 {
-                  addCurvePoint(new RPoint(x2, y2));
-                  return;
+                  s.add(x2, y2);
+                  return true;
                 }
 
-              if(da2 > segmentCuspLimit)
+              if(angleOver(x3 - x2, y3 - y2, x4 - x3, y4 - y3, s.cosCuspLimit))
                 {
-                  addCurvePoint(new RPoint(x3, y3));
-                  return;
+                  s.add(x3, y3);
+                  return true;
                 }
             }
         }
-      break;
+      return false;
+    }
+  }
+
+  /**
+   * Tells whether the angle between the directions (ax, ay) and (bx, by) is under the angle whose cosine is cosTol, using dot products instead of atan2.  A null direction points along the x axis, as atan2(0, 0) does.
+   */
+  static boolean angleUnder(float ax, float ay, float bx, float by, float cosTol){
+    if(ax == 0F && ay == 0F) ax = Math.copySign(1F, ax);
+    if(bx == 0F && by == 0F) bx = Math.copySign(1F, bx);
+
+    double dot = (double)ax * bx + (double)ay * by;
+    double nn = ((double)ax * ax + (double)ay * ay) * ((double)bx * bx + (double)by * by);
+
+    // cos(angle) = dot / sqrt(nn), compared without the square root
+    double c2 = (double)cosTol * cosTol * nn;
+    if(cosTol >= 0F){
+      return dot > 0.0 && dot * dot > c2;
+    }
+    return dot >= 0.0 || dot * dot < c2;
+  }
+
+  /**
+   * Tells whether the angle between the directions (ax, ay) and (bx, by) is over the angle whose cosine is cosTol, the strict test of the cusp limit.
+   */
+  static boolean angleOver(float ax, float ay, float bx, float by, float cosTol){
+    if(ax == 0F && ay == 0F) ax = Math.copySign(1F, ax);
+    if(bx == 0F && by == 0F) bx = Math.copySign(1F, bx);
+
+    double dot = (double)ax * bx + (double)ay * by;
+    double nn = ((double)ax * ax + (double)ay * ay) * ((double)bx * bx + (double)by * by);
+
+    double c2 = (double)cosTol * cosTol * nn;
+    if(cosTol >= 0F){
+      return dot < 0.0 || dot * dot < c2;
+    }
+    return dot < 0.0 && dot * dot > c2;
+  }
+
+  /**
+   * Tells whether the sum of the turning angles a->b and b->c is under the angle whose cosine is cosTol, through cos(da1 + da2) = cos1*cos2 - sin1*sin2.
+   */
+  static boolean angleSumUnder(float ax, float ay, float bx, float by, float cx, float cy, float cosTol){
+    if(ax == 0F && ay == 0F) ax = Math.copySign(1F, ax);
+    if(bx == 0F && by == 0F) bx = Math.copySign(1F, bx);
+    if(cx == 0F && cy == 0F) cx = Math.copySign(1F, cx);
+
+    double dot1 = (double)ax * bx + (double)ay * by;
+    double cr1 = Math.abs((double)ax * by - (double)ay * bx);
+    double dot2 = (double)bx * cx + (double)by * cy;
+    double cr2 = Math.abs((double)bx * cy - (double)by * cx);
+    double n1 = Math.sqrt(((double)ax * ax + (double)ay * ay) * ((double)bx * bx + (double)by * by));
+    double n2 = Math.sqrt(((double)bx * bx + (double)by * by) * ((double)cx * cx + (double)cy * cy));
+
+    // Both turns over a right angle add up to more than PI
+    if(dot1 < 0.0 && dot2 < 0.0){
+      return false;
     }
 
-    // Continue subdivision
-    //----------------------
-    cubicBezierAdaptativeRecursive(x1, y1, x12, y12, x123, y123, x1234, y1234, level + 1);
-    cubicBezierAdaptativeRecursive(x1234, y1234, x234, y234, x34, y34, x4, y4, level + 1);
+    // The sine of the sum must not be negative for the sum to stay under PI
+    double cosSum = dot1 * dot2 - cr1 * cr2;
+    double sinSum = cr1 * dot2 + dot1 * cr2;
+    return sinSum >= 0.0 && cosSum > cosTol * n1 * n2;
   }
 
-  private void lineUniformStep(){
+  private void lineUniformStep(Segmentation s){
     // If the number of steps is equal to 0 then choose a number of steps adapted to the curve
-    int steps = segmentSteps;
-    if(segmentSteps==0.0F){
+    int steps = s.seg.steps;
+    if(steps==0){
       float dx = endPoint.x - startPoint.x;
       float dy = endPoint.y - startPoint.y;
 
@@ -1202,20 +1308,20 @@ public class RCommand extends RGeomElem
     fdy = (endPoint.y - startPoint.y) * dt;
 
     for (int loop=0; loop < steps; loop++) {
-      addCurvePoint(new RPoint(fx,fy));
+      s.add(fx, fy);
 
       fx = fx + fdx;
 
       fy = fy + fdy;
     }
-    addCurvePoint(new RPoint(endPoint));
+    s.add(endPoint.x, endPoint.y);
   }
 
-  private void cubicBezierUniformStep(){
+  private void cubicBezierUniformStep(Segmentation s){
 
     // If the number of steps is equal to 0 then choose a number of steps adapted to the curve
-    int steps = segmentSteps;
-    if(segmentSteps==0.0F){
+    int steps = s.seg.steps;
+    if(steps==0){
       float dx1 = controlPoints[0].x - startPoint.x;
       float dy1 = controlPoints[0].y - startPoint.y;
       float dx2 = controlPoints[1].x - controlPoints[0].x;
@@ -1257,7 +1363,7 @@ public class RCommand extends RGeomElem
     fddd_per_6y = fddd_per_2y * (1.0F / 3F);
 
     for (int loop=0; loop < steps; loop++) {
-      addCurvePoint(new RPoint(fx,fy));
+      s.add(fx, fy);
 
       fx = fx + fdx + fdd_per_2x + fddd_per_6x;
       fdx = fdx + fddx + fddd_per_2x;
@@ -1269,13 +1375,13 @@ public class RCommand extends RGeomElem
       fddy = fddy + fdddy;
       fdd_per_2y = fdd_per_2y + fddd_per_2y;
     }
-    addCurvePoint(new RPoint(endPoint));
+    s.add(endPoint.x, endPoint.y);
   }
 
-  private void quadBezierUniformStep(){
+  private void quadBezierUniformStep(Segmentation s){
     // If the number of steps is equal to 0 then choose a number of steps adapted to the curve
-    int steps = segmentSteps;
-    if(segmentSteps==0.0F){
+    int steps = s.seg.steps;
+    if(steps==0){
       float dx1 = controlPoints[0].x - startPoint.x;
       float dy1 = controlPoints[0].y - startPoint.y;
       float dx2 = endPoint.x - controlPoints[0].x;
@@ -1303,7 +1409,7 @@ public class RCommand extends RGeomElem
     fddy = fdd_per_2y + fdd_per_2y;
 
     for (int loop=0; loop < steps; loop++) {
-      addCurvePoint(new RPoint(fx,fy));
+      s.add(fx, fy);
 
       fx = fx + fdx + fdd_per_2x;
       fdx = fdx + fddx;
@@ -1311,12 +1417,12 @@ public class RCommand extends RGeomElem
       fy = fy + fdy + fdd_per_2y;
       fdy = fdy + fddy;
     }
-    addCurvePoint(new RPoint(endPoint));
+    s.add(endPoint.x, endPoint.y);
   }
 
   // Use Horner's method to advance
   //----------------------
-  private void lineUniformLength(){
+  private void lineUniformLength(Segmentation s){
 
     // If the number of steps is equal to 0 then choose a number of steps adapted to the curve
     float dx1 = endPoint.x - startPoint.x;
@@ -1331,7 +1437,7 @@ public class RCommand extends RGeomElem
     float dt = 1F/steps;
 
     // This holds how much length has to bee advanced until adding a point
-    float untilPoint = RCommand.segmentAccOffset;
+    float untilPoint = s.accOffset;
 
     float fx, fy, fdx, fdy;
 
@@ -1344,8 +1450,8 @@ public class RCommand extends RGeomElem
     for (int loop=0; loop <= steps; loop++) {
       /* Add point to curve if segment length is reached */
       if (untilPoint <= 0) {
-        addCurvePoint(new RPoint(fx, fy));
-        untilPoint += RCommand.segmentLength;
+        s.add(fx, fy);
+        untilPoint += s.seg.length;
       }
 
       /* Add segment differential to segment length */
@@ -1355,13 +1461,13 @@ public class RCommand extends RGeomElem
       fy = fy + fdy;
     }
 
-    //addCurvePoint(new RPoint(endPoint));
-    RCommand.segmentAccOffset = untilPoint;
+    //s.add(endPoint.x, endPoint.y);
+    s.accOffset = untilPoint;
   }
 
   // Use Horner's method to advance
   //----------------------
-  private void quadBezierUniformLength(){
+  private void quadBezierUniformLength(Segmentation s){
 
     float dx1 = controlPoints[0].x - startPoint.x;
     float dy1 = controlPoints[0].y - startPoint.y;
@@ -1373,7 +1479,7 @@ public class RCommand extends RGeomElem
     if(steps < 4) steps = 4;
 
     float dt = 1F/steps;
-    float untilPoint = RCommand.segmentAccOffset;
+    float untilPoint = s.accOffset;
 
     float fx, fy, fdx, fdy, fddx, fddy, fdd_per_2x, fdd_per_2y, fix, fiy;
     float temp = dt * dt;
@@ -1391,8 +1497,8 @@ public class RCommand extends RGeomElem
     for (int loop=0; loop <= steps; loop++) {
       /* Add point to curve if segment length is reached */
       if (untilPoint <= 0) {
-        addCurvePoint(new RPoint(fx, fy));
-        untilPoint += RCommand.segmentLength;
+        s.add(fx, fy);
+        untilPoint += s.seg.length;
       }
 
       /* Add segment differential to segment length */
@@ -1407,13 +1513,13 @@ public class RCommand extends RGeomElem
       fdy = fdy + fddy;
     }
 
-    //addCurvePoint(new RPoint(endPoint));
-    RCommand.segmentAccOffset = untilPoint;
+    //s.add(endPoint.x, endPoint.y);
+    s.accOffset = untilPoint;
   }
 
   // Use Horner's method to advance
   //----------------------
-  private void cubicBezierUniformLength(){
+  private void cubicBezierUniformLength(Segmentation s){
 
     float dx1 = controlPoints[0].x - startPoint.x;
     float dy1 = controlPoints[0].y - startPoint.y;
@@ -1430,7 +1536,7 @@ public class RCommand extends RGeomElem
     if(steps < 4) steps = 4;
 
     float dt = 1F/steps;
-    float untilPoint = RCommand.segmentAccOffset;
+    float untilPoint = s.accOffset;
 
     float fx, fy, fdx, fdy, fddx, fddy, fdddx, fdddy, fdd_per_2x, fdd_per_2y, fddd_per_2x, fddd_per_2y, fddd_per_6x, fddd_per_6y, fix, fiy;
     float temp = dt * dt;
@@ -1454,8 +1560,8 @@ public class RCommand extends RGeomElem
     for (int loop=0; loop < steps; loop++) {
       /* Add point to curve if segment length is reached */
       if (untilPoint <= 0) {
-        addCurvePoint(new RPoint(fx, fy));
-        untilPoint += RCommand.segmentLength;
+        s.add(fx, fy);
+        untilPoint += s.seg.length;
       }
 
       /* Add segment differential to segment length */
@@ -1474,114 +1580,254 @@ public class RCommand extends RGeomElem
       fdd_per_2y = fdd_per_2y + fddd_per_2y;
     }
 
-    //addCurvePoint(new RPoint(endPoint));
-    RCommand.segmentAccOffset = untilPoint;
+    //s.add(endPoint.x, endPoint.y);
+    s.accOffset = untilPoint;
   }
 
-  private float quadBezierLength(){
-
-    float dx1 = controlPoints[0].x - startPoint.x;
-    float dy1 = controlPoints[0].y - startPoint.y;
-    float dx2 = endPoint.x - controlPoints[0].x;
-    float dy2 = endPoint.y - controlPoints[0].y;
-    float len = (float)Math.sqrt(dx1 * dx1 + dy1 * dy1) + (float)Math.sqrt(dx2 * dx2 + dy2 * dy2);
-    float steps = (int)(len * 2);
+  /* Nodes and weights of the 5 point Gauss-Legendre quadrature on [-1, 1] */
+  private static final double[] GL_NODES = {0.0, -0.5384693101056831, 0.5384693101056831, -0.9061798459386640, 0.9061798459386640};
+  private static final double[] GL_WEIGHTS = {0.5688888888888889, 0.4786286704993665, 0.4786286704993665, 0.2369268850561891, 0.2369268850561891};
 
-    if(steps < 4) steps = 4;
+  /* Relative accuracy of the lengths of cubic curves when no bound is given */
+  private static final double LENGTH_RELATIVE_ERROR = 1e-4;
+  private static final int LENGTH_RECURSION_LIMIT = 24;
 
-    float dt = 1F/steps;
+  /**
+   * Returns the coefficients of the derivative of the curve, {ax, bx, cx, ay, by, cy} such that B'(t) = (ax*t^2 + bx*t + cx, ay*t^2 + by*t + cy).
+   */
+  double[] derivativeCoefficients(){
+    double[] k = new double[6];
+    switch(commandType){
+    case LINETO:
+      k[2] = endPoint.x - startPoint.x;
+      k[5] = endPoint.y - startPoint.y;
+      break;
 
+    case QUADBEZIERTO:
+      k[1] = 2.0 * (startPoint.x - 2.0 * controlPoints[0].x + endPoint.x);
+      k[2] = 2.0 * (controlPoints[0].x - startPoint.x);
+      k[4] = 2.0 * (startPoint.y - 2.0 * controlPoints[0].y + endPoint.y);
+      k[5] = 2.0 * (controlPoints[0].y - startPoint.y);
+      break;
 
-    float fx, fy, fdx, fdy, fddx, fddy, fdd_per_2x, fdd_per_2y, fix, fiy;
-    float temp = dt * dt;
-    float totallen = 0F;
+    case CUBICBEZIERTO:
+      k[0] = 3.0 * (endPoint.x - 3.0 * controlPoints[1].x + 3.0 * controlPoints[0].x - startPoint.x);
+      k[1] = 6.0 * (controlPoints[1].x - 2.0 * controlPoints[0].x + startPoint.x);
+      k[2] = 3.0 * (controlPoints[0].x - startPoint.x);
+      k[3] = 3.0 * (endPoint.y - 3.0 * controlPoints[1].y + 3.0 * controlPoints[0].y - startPoint.y);
+      k[4] = 6.0 * (controlPoints[1].y - 2.0 * controlPoints[0].y + startPoint.y);
+      k[5] = 3.0 * (controlPoints[0].y - startPoint.y);
+      break;
+    }
+    return k;
+  }
 
-    fx = startPoint.x;
-    fdx = 2F * (controlPoints[0].x - startPoint.x) * dt;
-    fdd_per_2x = (startPoint.x - 2F * controlPoints[0].x + endPoint.x) * temp;
-    fddx = fdd_per_2x + fdd_per_2x;
+  private static double speed(double[] k, double t){
+    double dx = (k[0] * t + k[1]) * t + k[2];
+    double dy = (k[3] * t + k[4]) * t + k[5];
+    return Math.sqrt(dx * dx + dy * dy);
+  }
 
-    fy = startPoint.y;
-    fdy = 2F * (controlPoints[0].y - startPoint.y) * dt;
-    fdd_per_2y = (startPoint.y - 2F * controlPoints[0].y + endPoint.y) * temp;
-    fddy = fdd_per_2y + fdd_per_2y;
+  /**
+   * Integrates the speed of the curve between t0 and t1 with the 5 point Gauss-Legendre rule.
+   */
+  static double gaussLegendreLength(double[] k, double t0, double t1){
+    double half = (t1 - t0) / 2.0;
+    double mid = (t1 + t0) / 2.0;
+    double sum = 0.0;
+    for(int i=0; i<GL_NODES.length; i++){
+      sum += GL_WEIGHTS[i] * speed(k, mid + half * GL_NODES[i]);
+    }
+    return sum * half;
+  }
 
-    for (int loop=0; loop <= steps; loop++) {
-      /* Add segment differential to segment length */
-      fix = fdx + fdd_per_2x;
-      fiy = fdy + fdd_per_2y;
-      totallen += (float)Math.sqrt(fix*fix + fiy*fiy);    // Eventually try other distance measures
+  /**
+   * Splits [t0, t1] in halves until the two halves agree with the whole interval to within maxError.
+   */
+  static double adaptiveLength(double[] k, double t0, double t1, double whole, double maxError, int level){
+    double mid = (t0 + t1) / 2.0;
+    double left = gaussLegendreLength(k, t0, mid);
+    double right = gaussLegendreLength(k, mid, t1);
+    if(level >= LENGTH_RECURSION_LIMIT || Math.abs(left + right - whole) <= maxError){
+      return left + right;
+    }
+    return adaptiveLength(k, t0, mid, left, maxError / 2.0, level + 1) + adaptiveLength(k, mid, t1, right, maxError / 2.0, level + 1);
+  }
 
-      fx = fx + fix;
-      fdx = fdx + fddx;
+  private double controlPolygonLength(){
+    RPoint[] h = getHandles();
+    double len = 0.0;
+    for(int i=1; i<h.length; i++){
+      double dx = h[i].x - h[i-1].x;
+      double dy = h[i].y - h[i-1].y;
+      len += Math.sqrt(dx * dx + dy * dy);
+    }
+    return len;
+  }
 
-      fy = fy + fiy;
-      fdy = fdy + fddy;
+  /**
+   * Length of the quadratic curve from 0 to t, using the closed form of the integral of sqrt(a*u^2 + b*u + c).
+   */
+  private double quadBezierLength(double t){
+    double ax = startPoint.x - 2.0 * controlPoints[0].x + endPoint.x;
+    double ay = startPoint.y - 2.0 * controlPoints[0].y + endPoint.y;
+    double bx = controlPoints[0].x - startPoint.x;
+    double by = controlPoints[0].y - startPoint.y;
+
+    // The speed is 2*sqrt(a*u^2 + b*u + c)
+    double a = ax * ax + ay * ay;
+    double b = 2.0 * (ax * bx + ay * by);
+    double c = bx * bx + by * by;
+    double disc = 4.0 * a * c - b * b;
+
+    // Nearly straight or collinear control points make the closed form
+    // ill-conditioned, the polynomial quadrature handles them fine
+    if(a <= 1e-10 * c || disc <= 1e-8 * (4.0 * a * c + b * b)){
+      double[] k = derivativeCoefficients();
+      double whole = gaussLegendreLength(k, 0.0, t);
+      return adaptiveLength(k, 0.0, t, whole, LENGTH_RELATIVE_ERROR * controlPolygonLength(), 0);
     }
 
-    return totallen;
+    double sa = Math.sqrt(a);
+    double q0 = Math.sqrt(c);
+    double qt = Math.sqrt((a * t + b) * t + c);
+    double l0 = b * q0 / (4.0 * a) + disc / (8.0 * a * sa) * Math.log(2.0 * sa * q0 + b);
+    double lt = (2.0 * a * t + b) * qt / (4.0 * a) + disc / (8.0 * a * sa) * Math.log(2.0 * sa * qt + 2.0 * a * t + b);
+    return 2.0 * (lt - l0);
   }
 
+  private double cubicBezierLength(double t, double maxError){
+    if(maxError < 0){
+      maxError = LENGTH_RELATIVE_ERROR * controlPolygonLength();
+    }
+    double[] k = derivativeCoefficients();
+    double whole = gaussLegendreLength(k, 0.0, t);
+    return adaptiveLength(k, 0.0, t, whole, maxError, 0);
+  }
 
-  private float cubicBezierLength(){
-
-    float dx1 = controlPoints[0].x - startPoint.x;
-    float dy1 = controlPoints[0].y - startPoint.y;
-    float dx2 = controlPoints[1].x - controlPoints[0].x;
-    float dy2 = controlPoints[1].y - controlPoints[0].y;
-    float dx3 = endPoint.x - controlPoints[1].x;
-    float dy3 = endPoint.y - controlPoints[1].y;
+  /* Number of intervals of the arc length table */
+  private static final int ARC_TABLE_STEPS = 16;
+  private static final int ARC_NEWTON_ITERATIONS = 8;
 
-    float len = (float)Math.sqrt(dx1 * dx1 + dy1 * dy1) +
-      (float)Math.sqrt(dx2 * dx2 + dy2 * dy2) +
-      (float)Math.sqrt(dx3 * dx3 + dy3 * dy3);
-    float steps = (int)(len * 2);
+  /* arcLengths[i] is the length of the curve from 0 to i/ARC_TABLE_STEPS */
+  private double[] arcLengths;
+  private double[] arcCoefficients;
 
-    if(steps < 4) steps = 4;
+  private void buildArcLengths(){
+    arcCoefficients = derivativeCoefficients();
+    arcLengths = new double[ARC_TABLE_STEPS + 1];
 
-    float dt = 1F/steps;
+    if(commandType == QUADBEZIERTO){
+      for(int i=1; i<=ARC_TABLE_STEPS; i++){
+        arcLengths[i] = quadBezierLength((double)i / ARC_TABLE_STEPS);
+      }
+      return;
+    }
 
-    float fx, fy, fdx, fdy, fddx, fddy, fdddx, fdddy, fdd_per_2x, fdd_per_2y, fddd_per_2x, fddd_per_2y, fddd_per_6x, fddd_per_6y, fix, fiy;
-    float temp = dt * dt;
-    float totallen = 0F;
+    double maxError = LENGTH_RELATIVE_ERROR * controlPolygonLength() / ARC_TABLE_STEPS;
+    for(int i=0; i<ARC_TABLE_STEPS; i++){
+      double t0 = (double)i / ARC_TABLE_STEPS;
+      double t1 = (double)(i + 1) / ARC_TABLE_STEPS;
+      double whole = gaussLegendreLength(arcCoefficients, t0, t1);
+      arcLengths[i + 1] = arcLengths[i] + adaptiveLength(arcCoefficients, t0, t1, whole, maxError, 0);
+    }
+  }
 
-    fx = startPoint.x;
-    fdx = 3F * (controlPoints[0].x - startPoint.x) * dt;
-    fdd_per_2x = 3F * (startPoint.x - 2F * controlPoints[0].x + controlPoints[1].x) * temp;
-    fddd_per_2x = 3F * (3F * (controlPoints[0].x - controlPoints[1].x) + endPoint.x - startPoint.x) * temp * dt;
-    fdddx = fddd_per_2x + fddd_per_2x;
-    fddx = fdd_per_2x + fdd_per_2x;
-    fddd_per_6x = fddd_per_2x * (1.0F / 3F);
+  /**
+   * Returns the advancement parameter t at which the length of the curve from its start is s.  The table gives the interval, Newton's method on the length finishes the job, falling back to bisection when a step leaves the interval.
+   */
+  float advAtLength(float s){
+    if(commandType == LINETO){
+      float len = getCurveLength();
+      if(len <= 0F){
+        return 0F;
+      }
+      s = s / len;
+      return (s > 1F) ? 1F : ((s < 0F) ? 0F : s);
+    }
 
-    fy = startPoint.y;
-    fdy = 3F * (controlPoints[0].y - startPoint.y) * dt;
-    fdd_per_2y = 3F * (startPoint.y - 2F * controlPoints[0].y + controlPoints[1].y) * temp;
-    fddd_per_2y = 3F * (3F * (controlPoints[0].y - controlPoints[1].y) + endPoint.y - startPoint.y) * temp * dt;
+    if(arcLengths == null){
+      buildArcLengths();
+    }
 
-    fdddy = fddd_per_2y + fddd_per_2y;
-    fddy = fdd_per_2y + fdd_per_2y;
-    fddd_per_6y = fddd_per_2y * (1.0F / 3F);
+    double total = arcLengths[ARC_TABLE_STEPS];
+    if(s <= 0F || total <= 0.0){
+      return 0F;
+    }
+    if(s >= total){
+      return 1F;
+    }
 
-    for (int loop=0; loop < steps; loop++) {
-      /* Add segment differential to segment length */
-      fix = fdx + fdd_per_2x + fddd_per_6x;
-      fiy = fdy + fdd_per_2y + fddd_per_6y;
-      totallen += (float)Math.sqrt(fix*fix + fiy*fiy);    // Eventually try other distance measures
+    // Find the interval of the table holding s
+    int lo = 0;
+    int hi = ARC_TABLE_STEPS - 1;
+    while(lo < hi){
+      int mid = (lo + hi + 1) >>> 1;
+      if(arcLengths[mid] <= s){
+        lo = mid;
+      }else{
+        hi = mid - 1;
+      }
+    }
 
-      fx = fx + fix;
-      fdx = fdx + fddx + fddd_per_2x;
-      fddx = fddx + fdddx;
-      fdd_per_2x = fdd_per_2x + fddd_per_2x;
+    double tLo = (double)lo / ARC_TABLE_STEPS;
+    double tHi = (double)(lo + 1) / ARC_TABLE_STEPS;
+    double base = arcLengths[lo];
+    double span = arcLengths[lo + 1] - base;
+    double t = (span > 0.0) ? tLo + (s - base) / span * (tHi - tLo) : tLo;
+    double tol = 1e-6 * total;
 
-      fy = fy + fiy;
-      fdy = fdy + fddy + fddd_per_2y;
-      fddy = fddy + fdddy;
-      fdd_per_2y = fdd_per_2y + fddd_per_2y;
+    for(int iter=0; iter<ARC_NEWTON_ITERATIONS; iter++){
+      double f = base + gaussLegendreLength(arcCoefficients, (double)lo / ARC_TABLE_STEPS, t) - s;
+      if(Math.abs(f) <= tol){
+        break;
+      }
+
+      // Keep a bracket around the root in case Newton goes astray
+      if(f > 0.0){
+        tHi = t;
+      }else{
+        tLo = t;
+      }
+
+      double v = speed(arcCoefficients, t);
+      double next = (v > 0.0) ? t - f / v : tLo - 1.0;
+      t = (next > tLo && next < tHi) ? next : (tLo + tHi) / 2.0;
     }
 
-    return totallen;
+    return (float)t;
   }
 
+  void dropCaches(){
+    super.dropCaches();
+    arcLengths = null;
+    arcCoefficients = null;
+  }
+
+  /**
+   * The exact bounds of the command: its end points plus the points where the derivative of x or y vanishes.
+   */
+  protected float[] calculateBounds(){
+    float[] b = emptyBounds();
+    addToBounds(b, startPoint.x, startPoint.y);
+    addToBounds(b, endPoint.x, endPoint.y);
+    if(commandType == LINETO){
+      return b;
+    }
+
+    double[] k = derivativeCoefficients();
+    double[] roots = new double[2];
+    for(int axis=0; axis<2; axis++){
+      int numRoots = solveQuadratic(k[3*axis], k[3*axis+1], k[3*axis+2], roots);
+      for(int i=0; i<numRoots; i++){
+        if(roots[i] > 0.0 && roots[i] < 1.0){
+          RPoint p = getPoint((float)roots[i]);
+          addToBounds(b, p.x, p.y);
+        }
+      }
+    }
+    return b;
+  }
 
   /**
    * Use this method to transform the command.
@@ -1600,6 +1846,38 @@ public class RCommand extends RGeomElem
     endPoint.transform(m);
     }
   */
+  /**
+   * Turn this command into a view of the coordinates stored by a packed path, reusing its own points.  The coordinates of the start point are read at off, followed by those of the control points and of the end point.
+   */
+  void setPacked(int type, float[] xy, int off){
+    int numControlPoints = (type == CUBICBEZIERTO) ? 2 : ((type == QUADBEZIERTO) ? 1 : 0);
+    if(startPoint == null){
+      startPoint = new RPoint();
+      endPoint = new RPoint();
+    }
+
+    if(numControlPoints == 0){
+      controlPoints = null;
+    }else if(controlPoints == null || controlPoints.length != numControlPoints){
+      controlPoints = new RPoint[numControlPoints];
+      for(int i=0;i<numControlPoints;i++){
+        controlPoints[i] = new RPoint();
+      }
+    }
+
+    startPoint.x = xy[off++];
+    startPoint.y = xy[off++];
+    for(int i=0;i<numControlPoints;i++){
+      controlPoints[i].x = xy[off++];
+      controlPoints[i].y = xy[off++];
+    }
+    endPoint.x = xy[off++];
+    endPoint.y = xy[off];
+    commandType = type;
+
+    invalidate();
+  }
+
   private void append(RPoint nextcontrolpoint)
   {
     RPoint[] newcontrolPoints;
@@ -1614,18 +1892,88 @@ public class RCommand extends RGeomElem
     this.controlPoints=newcontrolPoints;
   }
 
-  private void addCurvePoint(RPoint nextcurvepoint)
+  /**
+   * State of one segmentation call: the parameters, the length carried from
+   * one command to the next by the UNIFORMLENGTH segmentator and the points
+   * produced so far.  Nothing here is shared between calls.
+   */
+  static final class Segmentation
   {
-    RPoint[] newcurvePoints;
-    if(curvePoints==null){
-      newcurvePoints = new RPoint[1];
-      newcurvePoints[0] = nextcurvepoint;
-    }else{
-      newcurvePoints = new RPoint[curvePoints.length+1];
-      System.arraycopy(curvePoints,0,newcurvePoints,0,curvePoints.length);
-      newcurvePoints[curvePoints.length]=nextcurvepoint;
+    final RSegmentator seg;
+    final RFloatSink sink;
+    float accOffset;
+
+    float lastX, lastY;
+    boolean empty = true;
+
+    /* When set, the next point is dropped if it repeats the last one */
+    boolean joining;
+
+    /* Cosines of the angle tolerances of the ADAPTATIVE segmentator */
+    final float cosAngleTol;
+    final float cosCuspLimit;
+
+    /* Stack of pending halves of the ADAPTATIVE segmentator, 8 floats per entry */
+    private float[] stack;
+    private int[] levels;
+
+    Segmentation(RSegmentator seg, float accOffset, RFloatSink sink){
+      this.seg = seg;
+      this.accOffset = accOffset;
+      this.sink = sink;
+      this.cosAngleTol = (float)Math.cos(seg.angleTol);
+      this.cosCuspLimit = (float)Math.cos(seg.cuspLimit);
+    }
+
+    float[] adaptativeStack(){
+      if(stack == null){
+        stack = new float[8 * (segmentRecursionLimit + 1)];
+        levels = new int[segmentRecursionLimit + 1];
+      }
+      return stack;
+    }
+
+    int[] adaptativeLevels(){
+      adaptativeStack();
+      return levels;
+    }
+
+    void add(float x, float y){
+      if(joining){
+        joining = false;
+        if(!empty && lastX == x && lastY == y){
+          return;
+        }
+      }
+
+      sink.addPoint(x, y);
+      lastX = x;
+      lastY = y;
+      empty = false;
+    }
+  }
+
+  /**
+   * Sink writing into a caller supplied array.
+   */
+  static final class ArraySink implements RFloatSink
+  {
+    final float[] xy;
+    int pos;
+
+    ArraySink(float[] xy, int offset){
+      this.xy = xy;
+      this.pos = offset;
+    }
+
+    public void addPoint(float x, float y){
+      xy[pos] = x;
+      xy[pos+1] = y;
+      pos += 2;
+    }
+
+    public void endPath(){
     }
-    this.curvePoints=newcurvePoints;
   }
 
   public RPoint[] intersectionPoints(RCommand other)
@@ -1719,11 +2067,534 @@ public class RCommand extends RGeomElem
     return result;
   }
 
-  public static RPoint[] lineQuadIntersection(RCommand c1, RCommand c2) { return null; }
-  public static RPoint[] lineCubicIntersection(RCommand c1, RCommand c2) { return null; }
-  public static RPoint[] quadQuadIntersection(RCommand c1, RCommand c2) { return null; }
-  public static RPoint[] quadCubicIntersection(RCommand c1, RCommand c2) { return null; }
-  public static RPoint[] cubicCubicIntersection(RCommand c1, RCommand c2) { return null; }
+  public static RPoint[] lineQuadIntersection(RCommand c1, RCommand c2) {
+    return pointsAtAdvancements(c1, intersectionAdvancements(c1, c2));
+  }
+
+  public static RPoint[] lineCubicIntersection(RCommand c1, RCommand c2) {
+    return pointsAtAdvancements(c1, intersectionAdvancements(c1, c2));
+  }
+
+  public static RPoint[] quadQuadIntersection(RCommand c1, RCommand c2) {
+    return pointsAtAdvancements(c1, intersectionAdvancements(c1, c2));
+  }
+
+  public static RPoint[] quadCubicIntersection(RCommand c1, RCommand c2) {
+    return pointsAtAdvancements(c1, intersectionAdvancements(c1, c2));
+  }
+
+  public static RPoint[] cubicCubicIntersection(RCommand c1, RCommand c2) {
+    return pointsAtAdvancements(c1, intersectionAdvancements(c1, c2));
+  }
+
+  /**
+   * Use this to get the advancements at which this command intersects another one.  Lines against curves are solved exactly from the roots of a polynomial, curves against curves by subdividing both and discarding the pieces whose bounding boxes don't overlap, then refining each hit with Newton's method.  Curves that run over each other only give the two ends of the stretch they share, and parallel lines don't intersect, same as in lineLineIntersection().
+   * @eexample RCommand_intersectionAdvancements
+   * @param other  the command with which to intersect
+   * @return float[][], one pair {advancement on this command, advancement on the other command} per intersection, or null if they don't intersect.
+   */
+  public float[][] intersectionAdvancements(RCommand other){
+    RFloatBuffer found = intersectionAdvancements(this, other);
+    if(found == null){
+      return null;
+    }
+
+    float[][] result = new float[found.size / 2][2];
+    for(int i=0; i<result.length; i++){
+      result[i][0] = found.xy[2*i];
+      result[i][1] = found.xy[2*i+1];
+    }
+    return result;
+  }
+
+  private static RPoint[] pointsAtAdvancements(RCommand c, RFloatBuffer found){
+    if(found == null){
+      return null;
+    }
+
+    RPoint[] result = new RPoint[found.size / 2];
+    for(int i=0; i<result.length; i++){
+      result[i] = c.getPoint(found.xy[2*i]);
+    }
+    return result;
+  }
+
+  /* Limits of the curve against curve subdivision */
+  private static final int INTERSECTION_RECURSION_LIMIT = 48;
+  private static final double INTERSECTION_RELATIVE_TOLERANCE = 1e-7;
+  private static final int INTERSECTION_NEWTON_ITERATIONS = 4;
+  private static final double INTERSECTION_OVERLAP_TOLERANCE = 1e-5;
+  private static final int INTERSECTION_OVERLAP_SAMPLES = 8;
+
+  /**
+   * Returns the pairs of advancements (on c1, on c2) of the intersections between two commands as consecutive values of a buffer, or null if there are none.
+   */
+  static RFloatBuffer intersectionAdvancements(RCommand c1, RCommand c2){
+    double[] p = controlPolygon(c1);
+    double[] q = controlPolygon(c2);
+
+    double tol = INTERSECTION_RELATIVE_TOLERANCE * Math.max(extent(p), extent(q));
+    if(!boxesOverlap(p, q, tol)){
+      return null;
+    }
+
+    RFloatBuffer found = new RFloatBuffer(4);
+    if(p.length == 4 && q.length == 4){
+      lineLineAdvancements(p, q, 0.0, found, false);
+    }else if(p.length == 4){
+      lineCurveAdvancements(p, q, found, false);
+    }else if(q.length == 4){
+      lineCurveAdvancements(q, p, found, true);
+    }else if(!overlapAdvancements(p, q, found)){
+      curveCurveAdvancements(p, 0.0, 1.0, q, 0.0, 1.0, tol, 0, p, q, found);
+    }
+
+    return (found.size == 0) ? null : found;
+  }
+
+  /**
+   * Returns the control points of the command as {x0, y0, x1, y1, ...}.
+   */
+  static double[] controlPolygon(RCommand c){
+    RPoint[] h = c.getHandles();
+    double[] p = new double[2 * h.length];
+    for(int i=0; i<h.length; i++){
+      p[2*i] = h[i].x;
+      p[2*i+1] = h[i].y;
+    }
+    return p;
+  }
+
+  /**
+   * Bounding box {minx, miny, maxx, maxy} of the control points.
+   */
+  private static double[] controlBounds(double[] p){
+    double[] b = {p[0], p[1], p[0], p[1]};
+    for(int i=2; i<p.length; i+=2){
+      b[0] = Math.min(b[0], p[i]);
+      b[1] = Math.min(b[1], p[i+1]);
+      b[2] = Math.max(b[2], p[i]);
+      b[3] = Math.max(b[3], p[i+1]);
+    }
+    return b;
+  }
+
+  private static double extent(double[] p){
+    double[] b = controlBounds(p);
+    return Math.max(b[2] - b[0], b[3] - b[1]);
+  }
+
+  private static boolean boxesOverlap(double[] p, double[] q, double tol){
+    double[] bp = controlBounds(p);
+    double[] bq = controlBounds(q);
+    return bp[0] <= bq[2] + tol && bq[0] <= bp[2] + tol && bp[1] <= bq[3] + tol && bq[1] <= bp[3] + tol;
+  }
+
+  /**
+   * Intersects the segments p and q.  Parallel segments don't intersect, same as in lineLineIntersection().
+   */
+  private static void lineLineAdvancements(double[] p, double[] q, double slack, RFloatBuffer found, boolean swap){
+    double ax = p[2] - p[0];
+    double ay = p[3] - p[1];
+    double bx = q[2] - q[0];
+    double by = q[3] - q[1];
+    double denom = by * ax - bx * ay;
+    if(Math.abs(denom) <= 1e-12 * (ax*ax + ay*ay + bx*bx + by*by)){
+      return;
+    }
+
+    double cx = p[0] - q[0];
+    double cy = p[1] - q[1];
+    double t = (bx * cy - by * cx) / denom;
+    double u = (ax * cy - ay * cx) / denom;
+    if(t < -slack || t > 1.0 + slack || u < -slack || u > 1.0 + slack){
+      return;
+    }
+
+    addAdvancements(found, clamp01(t), clamp01(u), swap);
+  }
+
+  /**
+   * Intersects the segment p with the curve q by finding the roots of the distance from q to the line of p.
+   */
+  private static void lineCurveAdvancements(double[] p, double[] q, RFloatBuffer found, boolean swap){
+    double lx = p[2] - p[0];
+    double ly = p[3] - p[1];
+    double lenSqr = lx * lx + ly * ly;
+    if(lenSqr == 0.0){
+      return;
+    }
+
+    // Signed distances of the control points to the line, scaled by its length
+    int n = q.length / 2;
+    double[] d = new double[n];
+    for(int i=0; i<n; i++){
+      d[i] = lx * (q[2*i+1] - p[1]) - ly * (q[2*i] - p[0]);
+    }
+
+    double[] roots = new double[3];
+    int numRoots;
+    if(n == 3){
+      numRoots = solveQuadratic(d[0] - 2.0*d[1] + d[2], 2.0*(d[1] - d[0]), d[0], roots);
+    }else{
+      numRoots = solveCubic(-d[0] + 3.0*d[1] - 3.0*d[2] + d[3], 3.0*(d[0] - 2.0*d[1] + d[2]), 3.0*(d[1] - d[0]), d[0], roots);
+    }
+
+    double slack = 1e-9;
+    double[] pt = new double[2];
+    for(int i=0; i<numRoots; i++){
+      double u = roots[i];
+      if(u < -slack || u > 1.0 + slack){
+        continue;
+      }
+      u = clamp01(u);
+      evalBezier(q, u, pt);
+      double t = (lx * (pt[0] - p[0]) + ly * (pt[1] - p[1])) / lenSqr;
+      if(t < -slack || t > 1.0 + slack){
+        continue;
+      }
+      addAdvancements(found, clamp01(t), u, swap);
+    }
+  }
+
+  /**
+   * Stores the ends of the curves p and q that lie on the other curve.  If two of them bound a stretch where both curves run over each other, only these two are stored and true is returned, since subdividing would find a hit between every pair of neighbouring pieces.
+   */
+  private static boolean overlapAdvancements(double[] p, double[] q, RFloatBuffer found){
+    double tol = INTERSECTION_OVERLAP_TOLERANCE * Math.max(extent(p), extent(q));
+    double[] ends = new double[8];
+    int numEnds = 0;
+    double[] pt = new double[2];
+    for(int i=0; i<4; i++){
+      double[] from = (i < 2) ? p : q;
+      double[] to = (i < 2) ? q : p;
+      double s = i % 2;
+      evalBezier(from, s, pt);
+      double x = pt[0];
+      double y = pt[1];
+      double r = closestAdvancement(to, x, y);
+      evalBezier(to, r, pt);
+      if(Math.abs(pt[0] - x) > tol || Math.abs(pt[1] - y) > tol){
+        continue;
+      }
+      double t = (i < 2) ? s : r;
+      double u = (i < 2) ? r : s;
+      boolean known = false;
+      for(int j=0; j<numEnds; j+=2){
+        known = known || (Math.abs(ends[j] - t) < 1e-5 && Math.abs(ends[j+1] - u) < 1e-5);
+      }
+      if(!known){
+        ends[numEnds] = t;
+        ends[numEnds+1] = u;
+        numEnds += 2;
+      }
+    }
+
+    // The longest stretch between two ends along which the curves coincide
+    int first = -1;
+    int second = -1;
+    double longest = 0.0;
+    for(int i=0; i<numEnds; i+=2){
+      for(int j=i+2; j<numEnds; j+=2){
+        double length = Math.abs(ends[j] - ends[i]);
+        if(length > longest && Math.abs(ends[j+1] - ends[i+1]) > 1e-5 && coincide(p, ends[i], ends[j], q, ends[i+1], ends[j+1], tol)){
+          first = i;
+          second = j;
+          longest = length;
+        }
+      }
+    }
+
+    if(first >= 0){
+      found.addPoint((float)ends[first], (float)ends[first+1]);
+      found.addPoint((float)ends[second], (float)ends[second+1]);
+      return true;
+    }
+
+    for(int i=0; i<numEnds; i+=2){
+      found.addPoint((float)ends[i], (float)ends[i+1]);
+    }
+    return false;
+  }
+
+  /**
+   * Tells whether p on [t0, t1] and q on [u0, u1] trace the same curve.  Two polynomial curves can only coincide through a linear change of parameter, so it is enough to compare them at a few matching advancements.
+   */
+  private static boolean coincide(double[] p, double t0, double t1, double[] q, double u0, double u1, double tol){
+    double[] pt = new double[2];
+    double[] qt = new double[2];
+    for(int i=1; i<INTERSECTION_OVERLAP_SAMPLES; i++){
+      double s = (double)i / INTERSECTION_OVERLAP_SAMPLES;
+      evalBezier(p, t0 + s * (t1 - t0), pt);
+      evalBezier(q, u0 + s * (u1 - u0), qt);
+      if(Math.abs(pt[0] - qt[0]) > tol || Math.abs(pt[1] - qt[1]) > tol){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Subdivides the pieces p (on [t0, t1] of the curve wp) and q (on [u0, u1] of the curve wq) until they are flat enough to be intersected as segments.
+   */
+  private static void curveCurveAdvancements(double[] p, double t0, double t1, double[] q, double u0, double u1, double tol, int level, double[] wp, double[] wq, RFloatBuffer found){
+    if(!boxesOverlap(p, q, tol)){
+      return;
+    }
+
+    boolean pFlat = flatness(p) <= tol;
+    boolean qFlat = flatness(q) <= tol;
+    if((pFlat && qFlat) || level >= INTERSECTION_RECURSION_LIMIT){
+      double[] ps = {p[0], p[1], p[p.length-2], p[p.length-1]};
+      double[] qs = {q[0], q[1], q[q.length-2], q[q.length-1]};
+      RFloatBuffer hit = new RFloatBuffer(1);
+      lineLineAdvancements(ps, qs, 1e-9, hit, false);
+      if(hit.size != 0){
+        double t = t0 + hit.xy[0] * (t1 - t0);
+        double u = u0 + hit.xy[1] * (u1 - u0);
+        refineIntersection(wp, wq, t, u, found);
+      }
+      return;
+    }
+
+    // Split the piece that is furthest from being flat
+    if(!pFlat && (qFlat || extent(p) >= extent(q))){
+      double[] left = new double[p.length];
+      double[] right = new double[p.length];
+      splitBezier(p, left, right);
+      double tm = (t0 + t1) / 2.0;
+      curveCurveAdvancements(left, t0, tm, q, u0, u1, tol, level + 1, wp, wq, found);
+      curveCurveAdvancements(right, tm, t1, q, u0, u1, tol, level + 1, wp, wq, found);
+    }else{
+      double[] left = new double[q.length];
+      double[] right = new double[q.length];
+      splitBezier(q, left, right);
+      double um = (u0 + u1) / 2.0;
+      curveCurveAdvancements(p, t0, t1, left, u0, um, tol, level + 1, wp, wq, found);
+      curveCurveAdvancements(p, t0, t1, right, um, u1, tol, level + 1, wp, wq, found);
+    }
+  }
+
+  /**
+   * Polishes an approximate intersection with Newton's method on p(t) - q(u) = 0 and stores it unless it was already found.
+   */
+  private static void refineIntersection(double[] p, double[] q, double t, double u, RFloatBuffer found){
+    double[] pt = new double[2];
+    double[] qt = new double[2];
+    double[] pd = new double[2];
+    double[] qd = new double[2];
+    for(int i=0; i<INTERSECTION_NEWTON_ITERATIONS; i++){
+      evalBezier(p, t, pt);
+      evalBezier(q, u, qt);
+      evalBezierDerivative(p, t, pd);
+      evalBezierDerivative(q, u, qd);
+      double fx = pt[0] - qt[0];
+      double fy = pt[1] - qt[1];
+      double det = -pd[0] * qd[1] + pd[1] * qd[0];
+      if(Math.abs(det) < 1e-12){
+        break;
+      }
+      double dt = (-qd[1] * fx + qd[0] * fy) / det;
+      double du = (-pd[1] * fx + pd[0] * fy) / det;
+      t = clamp01(t - dt);
+      u = clamp01(u - du);
+    }
+
+    addAdvancements(found, t, u, false);
+  }
+
+  /**
+   * Stores a pair of advancements unless it was already found, as a double root or a tangency gives the same intersection twice.
+   */
+  private static void addAdvancements(RFloatBuffer found, double t, double u, boolean swap){
+    if(swap){
+      double tmp = t;
+      t = u;
+      u = tmp;
+    }
+
+    for(int i=0; i<found.size; i+=2){
+      if(Math.abs(found.xy[i] - t) < 1e-5 && Math.abs(found.xy[i+1] - u) < 1e-5){
+        return;
+      }
+    }
+    found.addPoint((float)t, (float)u);
+  }
+
+  private static double clamp01(double t){
+    return (t < 0.0) ? 0.0 : ((t > 1.0) ? 1.0 : t);
+  }
+
+  /**
+   * Largest distance from the inner control points to the chord, an upper bound of the distance from the curve to the chord.
+   */
+  private static double flatness(double[] p){
+    int last = p.length - 2;
+    double lx = p[last] - p[0];
+    double ly = p[last+1] - p[1];
+    double len = Math.sqrt(lx * lx + ly * ly);
+    double max = 0.0;
+    for(int i=2; i<last; i+=2){
+      double dx = p[i] - p[0];
+      double dy = p[i+1] - p[1];
+      double d = (len > 0.0) ? Math.abs(lx * dy - ly * dx) / len : Math.sqrt(dx * dx + dy * dy);
+      max = Math.max(max, d);
+    }
+    return max;
+  }
+
+  /**
+   * Splits a Bezier curve of any degree in its two halves with de Casteljau's algorithm.
+   */
+  static void splitBezier(double[] p, double[] left, double[] right){
+    int n = p.length / 2;
+    double[] w = new double[p.length];
+    System.arraycopy(p, 0, w, 0, p.length);
+    for(int k=0; k<n; k++){
+      left[2*k] = w[0];
+      left[2*k+1] = w[1];
+      right[2*(n-1-k)] = w[2*(n-1-k)];
+      right[2*(n-1-k)+1] = w[2*(n-1-k)+1];
+      for(int i=0; i<n-1-k; i++){
+        w[2*i] = (w[2*i] + w[2*i+2]) / 2.0;
+        w[2*i+1] = (w[2*i+1] + w[2*i+3]) / 2.0;
+      }
+    }
+  }
+
+  static void evalBezier(double[] p, double t, double[] out){
+    double s = 1.0 - t;
+    switch(p.length){
+    case 4:
+      out[0] = s * p[0] + t * p[2];
+      out[1] = s * p[1] + t * p[3];
+      break;
+    case 6:
+      out[0] = s * s * p[0] + 2.0 * s * t * p[2] + t * t * p[4];
+      out[1] = s * s * p[1] + 2.0 * s * t * p[3] + t * t * p[5];
+      break;
+    default:
+      out[0] = s * s * s * p[0] + 3.0 * s * s * t * p[2] + 3.0 * s * t * t * p[4] + t * t * t * p[6];
+      out[1] = s * s * s * p[1] + 3.0 * s * s * t * p[3] + 3.0 * s * t * t * p[5] + t * t * t * p[7];
+      break;
+    }
+  }
+
+  static void evalBezierSecondDerivative(double[] p, double t, double[] out){
+    switch(p.length){
+    case 4:
+      out[0] = 0.0;
+      out[1] = 0.0;
+      break;
+    case 6:
+      out[0] = 2.0 * (p[4] - 2.0 * p[2] + p[0]);
+      out[1] = 2.0 * (p[5] - 2.0 * p[3] + p[1]);
+      break;
+    default:
+      out[0] = 6.0 * ((1.0 - t) * (p[4] - 2.0 * p[2] + p[0]) + t * (p[6] - 2.0 * p[4] + p[2]));
+      out[1] = 6.0 * ((1.0 - t) * (p[5] - 2.0 * p[3] + p[1]) + t * (p[7] - 2.0 * p[5] + p[3]));
+      break;
+    }
+  }
+
+  static void evalBezierDerivative(double[] p, double t, double[] out){
+    double s = 1.0 - t;
+    switch(p.length){
+    case 4:
+      out[0] = p[2] - p[0];
+      out[1] = p[3] - p[1];
+      break;
+    case 6:
+      out[0] = 2.0 * (s * (p[2] - p[0]) + t * (p[4] - p[2]));
+      out[1] = 2.0 * (s * (p[3] - p[1]) + t * (p[5] - p[3]));
+      break;
+    default:
+      out[0] = 3.0 * (s * s * (p[2] - p[0]) + 2.0 * s * t * (p[4] - p[2]) + t * t * (p[6] - p[4]));
+      out[1] = 3.0 * (s * s * (p[3] - p[1]) + 2.0 * s * t * (p[5] - p[3]) + t * t * (p[7] - p[5]));
+      break;
+    }
+  }
+
+  /**
+   * Real roots of a*x^2 + b*x + c, falling back to the linear equation when a is negligible.  Returns the number of roots stored.
+   */
+  static int solveQuadratic(double a, double b, double c, double[] roots){
+    double scale = Math.max(Math.abs(b), Math.abs(c));
+    if(Math.abs(a) <= 1e-12 * scale){
+      if(Math.abs(b) <= 1e-12 * Math.abs(c) || b == 0.0){
+        return 0;
+      }
+      roots[0] = -c / b;
+      return 1;
+    }
+
+    double disc = b * b - 4.0 * a * c;
+    if(disc < 0.0){
+      // Treat a slightly negative discriminant as a tangency
+      if(disc > -1e-12 * b * b){
+        disc = 0.0;
+      }else{
+        return 0;
+      }
+    }
+
+    // Numerically stable form, avoiding the cancellation of -b + sqrt(disc)
+    double sq = Math.sqrt(disc);
+    double qq = -0.5 * (b + ((b < 0.0) ? -sq : sq));
+    roots[0] = qq / a;
+    if(qq == 0.0){
+      return 1;
+    }
+    roots[1] = c / qq;
+    return 2;
+  }
+
+  /**
+   * Real roots of a*x^3 + b*x^2 + c*x + d, falling back to the quadratic equation when a is negligible.  Returns the number of roots stored.
+   */
+  static int solveCubic(double a, double b, double c, double d, double[] roots){
+    double scale = Math.max(Math.max(Math.abs(b), Math.abs(c)), Math.abs(d));
+    if(Math.abs(a) <= 1e-12 * scale){
+      return solveQuadratic(b, c, d, roots);
+    }
+
+    // Depressed cubic x = y - b/3a, y^3 + py + q = 0
+    double A = b / a;
+    double B = c / a;
+    double C = d / a;
+    double p = B - A * A / 3.0;
+    double q = 2.0 * A * A * A / 27.0 - A * B / 3.0 + C;
+    double shift = -A / 3.0;
+    double disc = q * q / 4.0 + p * p * p / 27.0;
+
+    int num;
+    if(disc > 0.0){
+      double sq = Math.sqrt(disc);
+      roots[0] = Math.cbrt(-q / 2.0 + sq) + Math.cbrt(-q / 2.0 - sq) + shift;
+      num = 1;
+    }else if(p == 0.0){
+      roots[0] = shift;
+      num = 1;
+    }else{
+      double r = 2.0 * Math.sqrt(-p / 3.0);
+      double phi = Math.acos(Math.max(-1.0, Math.min(1.0, 3.0 * q / (p * r))));
+      for(int i=0; i<3; i++){
+        roots[i] = r * Math.cos((phi - 2.0 * Math.PI * i) / 3.0) + shift;
+      }
+      num = 3;
+    }
+
+    // One Newton step on the original polynomial cleans up the rounding
+    for(int i=0; i<num; i++){
+      double x = roots[i];
+      double f = ((a * x + b) * x + c) * x + d;
+      double df = (3.0 * a * x + 2.0 * b) * x + c;
+      if(df != 0.0){
+        roots[i] = x - f / df;
+      }
+    }
+    return num;
+  }
 
   public RClosest closestPoints(RCommand other)
   {
@@ -1766,6 +2637,9 @@ public class RCommand extends RGeomElem
           temp = result.closest[0];
           result.closest[0] = result.closest[1];
           result.closest[1] = temp;
+          float tempAdv = result.advancements[0];
+          result.advancements[0] = result.advancements[1];
+          result.advancements[1] = tempAdv;
         }
         break;
 
@@ -1794,6 +2668,9 @@ public class RCommand extends RGeomElem
           temp = result.closest[0];
           result.closest[0] = result.closest[1];
           result.closest[1] = temp;
+          float tempAdv = result.advancements[0];
+          result.advancements[0] = result.advancements[1];
+          result.advancements[1] = tempAdv;
         }
         break;
 
@@ -1804,6 +2681,9 @@ public class RCommand extends RGeomElem
           temp = result.closest[0];
           result.closest[0] = result.closest[1];
           result.closest[1] = temp;
+          float tempAdv = result.advancements[0];
+          result.advancements[0] = result.advancements[1];
+          result.advancements[1] = tempAdv;
         }
         break;
 
@@ -1821,6 +2701,10 @@ public class RCommand extends RGeomElem
   }
 
   public static float closestAdvFrom(RCommand c, RPoint p) {
+    if(c.commandType != LINETO){
+      return (float)closestAdvancement(controlPolygon(c), p.x, p.y);
+    }
+
     RPoint a = new RPoint(c.startPoint);
     RPoint b = new RPoint(c.endPoint);
 
@@ -1933,9 +2817,282 @@ public class RCommand extends RGeomElem
     return result;
   }
 
-  public static RClosest lineQuadClosest(RCommand c1, RCommand c2) { return null; }
-  public static RClosest lineCubicClosest(RCommand c1, RCommand c2) { return null; }
-  public static RClosest quadQuadClosest(RCommand c1, RCommand c2) { return null; }
-  public static RClosest quadCubicClosest(RCommand c1, RCommand c2) { return null; }
-  public static RClosest cubicCubicClosest(RCommand c1, RCommand c2) { return null; }
+  public static RClosest lineQuadClosest(RCommand c1, RCommand c2) {
+    return curveCurveClosest(c1, c2);
+  }
+
+  public static RClosest lineCubicClosest(RCommand c1, RCommand c2) {
+    return curveCurveClosest(c1, c2);
+  }
+
+  public static RClosest quadQuadClosest(RCommand c1, RCommand c2) {
+    return curveCurveClosest(c1, c2);
+  }
+
+  public static RClosest quadCubicClosest(RCommand c1, RCommand c2) {
+    return curveCurveClosest(c1, c2);
+  }
+
+  public static RClosest cubicCubicClosest(RCommand c1, RCommand c2) {
+    return curveCurveClosest(c1, c2);
+  }
+
+  /**
+   * Use this to find the point of the command that is closest to a given point.
+   * @eexample RCommand_closestPoint
+   * @param p  the point for which to find the closest point on the command
+   * @return RPoint, the closest point on the command.
+   * @related closestPoints ( )
+   */
+  public RPoint closestPoint(RPoint p){
+    return getPoint(closestAdvFrom(this, p));
+  }
+
+  /* Samples used to seed the closest point searches on curves */
+  private static final int CLOSEST_SAMPLES = 16;
+  private static final int CLOSEST_NEWTON_ITERATIONS = 8;
+
+  /**
+   * Returns the advancement of the point of the curve p closest to (px, py).  For quadratic curves the critical points are the roots of a cubic, for cubic curves they are found with Newton's method started from the local minima of a set of samples.
+   */
+  static double closestAdvancement(double[] p, double px, double py){
+    double[] pt = new double[2];
+
+    if(p.length == 6){
+      double ax = p[0] - 2.0 * p[2] + p[4];
+      double ay = p[1] - 2.0 * p[3] + p[5];
+      double bx = 2.0 * (p[2] - p[0]);
+      double by = 2.0 * (p[3] - p[1]);
+      double cx = p[0] - px;
+      double cy = p[1] - py;
+
+      // (B(t) - P) . B'(t) = 0
+      double[] roots = new double[3];
+      int numRoots = solveCubic(2.0 * (ax * ax + ay * ay), 3.0 * (ax * bx + ay * by), bx * bx + by * by + 2.0 * (ax * cx + ay * cy), bx * cx + by * cy, roots);
+
+      double bestT = 0.0;
+      double best = distSqr(p, 0.0, px, py, pt);
+      double d = distSqr(p, 1.0, px, py, pt);
+      if(d < best){
+        best = d;
+        bestT = 1.0;
+      }
+      for(int i=0; i<numRoots; i++){
+        if(roots[i] > 0.0 && roots[i] < 1.0){
+          d = distSqr(p, roots[i], px, py, pt);
+          if(d < best){
+            best = d;
+            bestT = roots[i];
+          }
+        }
+      }
+      return bestT;
+    }
+
+    if(p.length == 4){
+      double lx = p[2] - p[0];
+      double ly = p[3] - p[1];
+      double lenSqr = lx * lx + ly * ly;
+      if(lenSqr == 0.0){
+        return 0.0;
+      }
+      return clamp01((lx * (px - p[0]) + ly * (py - p[1])) / lenSqr);
+    }
+
+    double[] d = new double[CLOSEST_SAMPLES + 1];
+    for(int i=0; i<=CLOSEST_SAMPLES; i++){
+      d[i] = distSqr(p, (double)i / CLOSEST_SAMPLES, px, py, pt);
+    }
+
+    double bestT = 0.0;
+    double best = d[0];
+    double[] dp = new double[2];
+    double[] ddp = new double[2];
+    for(int i=0; i<=CLOSEST_SAMPLES; i++){
+      if((i > 0 && d[i] > d[i-1]) || (i < CLOSEST_SAMPLES && d[i] > d[i+1])){
+        continue;
+      }
+
+      double lo = (double)Math.max(i - 1, 0) / CLOSEST_SAMPLES;
+      double hi = (double)Math.min(i + 1, CLOSEST_SAMPLES) / CLOSEST_SAMPLES;
+      double t = (double)i / CLOSEST_SAMPLES;
+      for(int k=0; k<CLOSEST_NEWTON_ITERATIONS; k++){
+        evalBezier(p, t, pt);
+        evalBezierDerivative(p, t, dp);
+        evalBezierSecondDerivative(p, t, ddp);
+        double rx = pt[0] - px;
+        double ry = pt[1] - py;
+        double f = rx * dp[0] + ry * dp[1];
+        double df = dp[0] * dp[0] + dp[1] * dp[1] + rx * ddp[0] + ry * ddp[1];
+        if(df <= 0.0){
+          break;
+        }
+        double next = t - f / df;
+        next = (next < lo) ? lo : ((next > hi) ? hi : next);
+        if(Math.abs(next - t) < 1e-12){
+          break;
+        }
+        t = next;
+      }
+
+      double dt = distSqr(p, t, px, py, pt);
+      if(dt < best){
+        best = dt;
+        bestT = t;
+      }
+      if(d[i] < best){
+        best = d[i];
+        bestT = (double)i / CLOSEST_SAMPLES;
+      }
+    }
+    return bestT;
+  }
+
+  /**
+   * Finds the closest points between two commands that don't intersect.  The minimum is either at an end of one of them, found with closestAdvancement(), or at an inner critical point of the distance, found with Newton's method from the best pair of a grid of samples.
+   */
+  static RClosest curveCurveClosest(RCommand c1, RCommand c2){
+    double[] p = controlPolygon(c1);
+    double[] q = controlPolygon(c2);
+    double[] pt = new double[2];
+    double[] qt = new double[2];
+
+    double bestT = 0.0;
+    double bestU = 0.0;
+    double best = Double.POSITIVE_INFINITY;
+
+    // Ends of each command against the other command
+    for(int e=0; e<2; e++){
+      evalBezier(p, e, pt);
+      double u = closestAdvancement(q, pt[0], pt[1]);
+      double d = distSqr(q, u, pt[0], pt[1], qt);
+      if(d < best){
+        best = d;
+        bestT = e;
+        bestU = u;
+      }
+
+      evalBezier(q, e, qt);
+      double t = closestAdvancement(p, qt[0], qt[1]);
+      d = distSqr(p, t, qt[0], qt[1], pt);
+      if(d < best){
+        best = d;
+        bestT = t;
+        bestU = e;
+      }
+    }
+
+    // Inner critical points, only curves can have them
+    if(p.length > 4 || q.length > 4){
+      int n = CLOSEST_SAMPLES / 2;
+      double[] qs = new double[2 * (n + 1)];
+      for(int j=0; j<=n; j++){
+        evalBezier(q, (double)j / n, qt);
+        qs[2*j] = qt[0];
+        qs[2*j+1] = qt[1];
+      }
+
+      double[] grid = new double[(n + 1) * (n + 1)];
+      for(int i=0; i<=n; i++){
+        evalBezier(p, (double)i / n, pt);
+        for(int j=0; j<=n; j++){
+          double dx = pt[0] - qs[2*j];
+          double dy = pt[1] - qs[2*j+1];
+          grid[i * (n + 1) + j] = dx * dx + dy * dy;
+        }
+      }
+
+      // Start from every sample that is a local minimum of the grid
+      double[] tu = new double[2];
+      for(int i=0; i<=n; i++){
+        for(int j=0; j<=n; j++){
+          int k = i * (n + 1) + j;
+          double g = grid[k];
+          if((j > 0 && g > grid[k - 1]) || (j < n && g > grid[k + 1]) || (i > 0 && g > grid[k - n - 1]) || (i < n && g > grid[k + n + 1])){
+            continue;
+          }
+
+          tu[0] = (double)i / n;
+          tu[1] = (double)j / n;
+          double d = closestNewton(p, q, tu);
+          if(d < best){
+            best = d;
+            bestT = tu[0];
+            bestU = tu[1];
+          }
+        }
+      }
+    }
+
+    RClosest result = new RClosest();
+    result.distance = (float)Math.sqrt(best);
+    result.closest = new RPoint[2];
+    result.closest[0] = c1.getPoint((float)bestT);
+    result.closest[1] = c2.getPoint((float)bestU);
+    result.advancements = new float[2];
+    result.advancements[0] = (float)bestT;
+    result.advancements[1] = (float)bestU;
+    return result;
+  }
+
+  /**
+   * Newton's method on the gradient of |p(t) - q(u)|^2, starting at tu and storing the result in it.  Returns the squared distance reached.
+   */
+  private static double closestNewton(double[] p, double[] q, double[] tu){
+    double[] pt = new double[2];
+    double[] qt = new double[2];
+    double[] pd = new double[2];
+    double[] qd = new double[2];
+    double[] pdd = new double[2];
+    double[] qdd = new double[2];
+    double t = tu[0];
+    double u = tu[1];
+
+    for(int k=0; k<CLOSEST_NEWTON_ITERATIONS; k++){
+      evalBezier(p, t, pt);
+      evalBezier(q, u, qt);
+      evalBezierDerivative(p, t, pd);
+      evalBezierDerivative(q, u, qd);
+      evalBezierSecondDerivative(p, t, pdd);
+      evalBezierSecondDerivative(q, u, qdd);
+
+      double rx = pt[0] - qt[0];
+      double ry = pt[1] - qt[1];
+      double gt = rx * pd[0] + ry * pd[1];
+      double gu = -(rx * qd[0] + ry * qd[1]);
+      double htt = pd[0] * pd[0] + pd[1] * pd[1] + rx * pdd[0] + ry * pdd[1];
+      double huu = qd[0] * qd[0] + qd[1] * qd[1] - rx * qdd[0] - ry * qdd[1];
+      double htu = -(pd[0] * qd[0] + pd[1] * qd[1]);
+      double det = htt * huu - htu * htu;
+
+      // Only follow the step while the Hessian says we are near a minimum
+      if(det <= 0.0 || htt <= 0.0){
+        break;
+      }
+
+      double nt = clamp01(t - (huu * gt - htu * gu) / det);
+      double nu = clamp01(u - (htt * gu - htu * gt) / det);
+      boolean done = Math.abs(nt - t) < 1e-12 && Math.abs(nu - u) < 1e-12;
+      t = nt;
+      u = nu;
+      if(done){
+        break;
+      }
+    }
+
+    tu[0] = t;
+    tu[1] = u;
+    evalBezier(p, t, pt);
+    evalBezier(q, u, qt);
+    double dx = pt[0] - qt[0];
+    double dy = pt[1] - qt[1];
+    return dx * dx + dy * dy;
+  }
+
+  private static double distSqr(double[] p, double t, double px, double py, double[] pt){
+    evalBezier(p, t, pt);
+    double dx = pt[0] - px;
+    double dy = pt[1] - py;
+    return dx * dx + dy * dy;
+  }
 }
\ No newline at end of file
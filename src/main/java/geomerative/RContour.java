@@ -38,13 +38,19 @@ public class RContour extends RGeomElem
   public int type = RGeomElem.CONTOUR;
   
   /**
-   * Array of RPoint objects holding the points of the contour.
+   * Array of RPoint objects holding the points of the contour.  After adding points one by one it may have empty slots at its end, loop up to countPoints() or call trimToSize() before reading it directly.  It is compacted when the points are read with getPoints().
    * @eexample points
    * @related RPoint
    * @related countPoints ( )
    * @related addPoint ( )
+   * @related trimToSize ( )
    */
   public RPoint[] points;
+  int pointCount;
+
+  /* The array last written by the contour, an array assigned to the public
+     field by user code is taken over with all of its points */
+  private RPoint[] pointStore;
   boolean isContributing = true;
   boolean isHole = false;
   boolean closed = true;
@@ -54,11 +60,47 @@ public class RContour extends RGeomElem
    * @return int, the number points in the contour
    */
   public int countPoints(){
-    if(this.points==null){
-      return 0;
+    if(points != pointStore){
+      pointStore = points;
+      pointCount = (points == null) ? 0 : points.length;
     }
-    
-    return this.points.length;
+    return this.pointCount;
+  }
+
+  /**
+   * Use this to make room for a number of points before adding them one by one.  The array of points grows by doubling, so adding points costs the same whatever the size of the contour, and it keeps empty slots at its end until trimToSize() is called.
+   * @eexample RContour_ensureCapacity
+   * @param minCapacity  the number of points the contour must be able to hold
+   * @related trimToSize ( )
+   */
+  public void ensureCapacity(int minCapacity){
+    int numPoints = countPoints();
+    int capacity = (points == null) ? 0 : points.length;
+    if(minCapacity <= capacity){
+      return;
+    }
+
+    RPoint[] newpoints = new RPoint[Math.max(minCapacity, 2 * capacity)];
+    if(numPoints > 0){
+      System.arraycopy(points,0,newpoints,0,numPoints);
+    }
+    points = pointStore = newpoints;
+  }
+
+  /**
+   * Use this to cut the array of points to the number of points of the contour, removing the empty slots left at its end when adding points.
+   * @eexample RContour_ensureCapacity
+   * @related ensureCapacity ( )
+   */
+  public void trimToSize(){
+    int numPoints = countPoints();
+    if(points == null || points.length == numPoints){
+      return;
+    }
+
+    RPoint[] newpoints = new RPoint[numPoints];
+    System.arraycopy(points,0,newpoints,0,numPoints);
+    points = pointStore = newpoints;
   }
   
   /**
@@ -74,9 +116,11 @@ public class RContour extends RGeomElem
   }
   
   public RContour(RContour c){
+    ensureCapacity(c.countPoints());
     for(int i=0;i<c.countPoints();i++){
       this.append(new RPoint(c.points[i]));
     }
+    trimToSize();
     isHole = c.isHole;
     isContributing = c.isContributing;
     
@@ -131,34 +175,23 @@ public class RContour extends RGeomElem
    *  Efficiently add an array of points to the contour.
    */
   public void addPoints(RPoint[] morePoints) {
-    if(points == null) {
-      this.points = morePoints;
-    } else {
-      RPoint[] newPoints = new RPoint[this.points.length+morePoints.length];
-      System.arraycopy(this.points,0,newPoints,0,this.points.length);
-      System.arraycopy(morePoints,0,newPoints,this.points.length,morePoints.length);
-      this.points = newPoints;
-    }
+    // The points are copied, later additions must not write into the array of the caller
+    ensureCapacity(countPoints() + morePoints.length);
+    System.arraycopy(morePoints,0,this.points,pointCount,morePoints.length);
+    pointCount += morePoints.length;
+    invalidate();
   }
   
   /**
    *  Efficiently add a list of points to the contour.
    */
   public void addPoints(List morePoints) {
-    int start = 0;
-    if(points == null) {
-      this.points = new RPoint[morePoints.size()];
-    } else {
-      RPoint[] newPoints = new RPoint[this.points.length+morePoints.size()];
-      System.arraycopy(this.points,0,newPoints,0,this.points.length);
-      this.points = newPoints;
-      start = morePoints.size();
-    }
+    ensureCapacity(countPoints() + morePoints.size());
     // it would be nice to be able to access the ArrayList's internal array!
-    for(int i = start, j = 0; i < points.length; i++) {
-      points[i] = (RPoint)morePoints.get(j);
-      j++;
+    for(int j = 0; j < morePoints.size(); j++) {
+      points[pointCount++] = (RPoint)morePoints.get(j);
     }
+    invalidate();
   }
   
   /**
@@ -167,6 +200,7 @@ public class RContour extends RGeomElem
    * @return RPoint[], the points returned in an array.
    * */
   public RPoint[] getHandles(){
+    trimToSize();
     return points;
   }
   
@@ -176,6 +210,7 @@ public class RContour extends RGeomElem
    * @return RPoint[], the points returned in an array.
    * */
   public RPoint[] getPoints(){
+    trimToSize();
     return points;
   }
   
@@ -209,9 +244,31 @@ public class RContour extends RGeomElem
     return null;
   }
 
+  /**
+   * Use this to know if a point is inside the contour.  The contour is considered closed, and the crossing number rule is used.  Implementation taken from: http://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html
+   * @eexample RContour_contains
+   * @param p  the point for which to test containement.
+   * @return boolean, true if the point is in the contour.
+   * */
   public boolean contains(RPoint p){
-    PApplet.println("Feature not yet implemented for this class.");
-    return false;
+    return contains(p.x, p.y);
+  }
+
+  boolean contains(float testx, float testy){
+    // Test for containment in bounding box
+    if(countPoints() < 3 || !boundsContain(testx, testy)){
+      return false;
+    }
+
+    // Test for containment in contour
+    RPoint[] verts = points;
+    boolean c = false;
+    for (int i = 0, j = pointCount-1; i < pointCount; j = i++) {
+      if ( ((verts[i].y > testy) != (verts[j].y>testy)) &&
+           (testx < (verts[j].x-verts[i].x) * (testy-verts[i].y) / (verts[j].y-verts[i].y) + verts[i].x) )
+        c = !c;
+    }
+    return c;
   }
   
   /**
@@ -235,11 +292,12 @@ public class RContour extends RGeomElem
   }
   
   public void addClose(){
-    if(points == null){
+    int numPoints = countPoints();
+    if(numPoints == 0){
       return;
     }
     
-    if((points[0].x == points[points.length-1].x) && (points[0].y == points[points.length-1].y))
+    if((points[0].x == points[numPoints-1].x) && (points[0].y == points[numPoints-1].y))
       {
         return;
       }
@@ -252,7 +310,9 @@ public class RContour extends RGeomElem
    * @invisible
    */
   public RPolygon toPolygon(){
-    return new RPolygon(this);
+    RPolygon result = new RPolygon();
+    result.addContourShared(this);
+    return result;
   }
   
   /**
@@ -278,17 +338,12 @@ public class RContour extends RGeomElem
     return type;
   }
   
+  /* Adds a point leaving the array with room for more, the builders adding
+     many points call trimToSize() once they are done */
   void append(RPoint nextpoint)
   {
-    RPoint[] newpoints;
-    if(points==null){
-      newpoints = new RPoint[1];
-      newpoints[0] = nextpoint;
-    }else{
-      newpoints = new RPoint[this.points.length+1];
-      System.arraycopy(this.points,0,newpoints,0,this.points.length);
-      newpoints[this.points.length]=nextpoint;
-    }
-    this.points=newpoints; 
+    ensureCapacity(countPoints() + 1);
+    points[pointCount++] = nextpoint;
+    invalidate();
   }
 }
@@ -0,0 +1,129 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+
+/**
+ * RFloatBuffer is a growable RFloatSink storing the flattened points as interleaved x/y coordinates.  Call clear() and reuse the same buffer every frame to flatten geometry without allocating.
+ * @eexample RFloatBuffer
+ * @usage Geometry
+ * @related RFloatSink
+ */
+public class RFloatBuffer implements RFloatSink
+{
+  /**
+   * The interleaved x/y coordinates, only the first size values are valid.
+   */
+  public float[] xy;
+
+  /**
+   * The number of valid values in xy, twice the number of points.
+   */
+  public int size;
+
+  int[] pathEnds;
+  int numPaths;
+
+  /**
+   * Create an empty buffer.
+   */
+  public RFloatBuffer(){
+    this(64);
+  }
+
+  /**
+   * Create an empty buffer able to hold a given number of points before growing.
+   * @param capacity  the number of points
+   */
+  public RFloatBuffer(int capacity){
+    xy = new float[Math.max(2, 2 * capacity)];
+    pathEnds = new int[4];
+  }
+
+  /**
+   * Use this to empty the buffer, keeping its storage.
+   */
+  public void clear(){
+    size = 0;
+    numPaths = 0;
+  }
+
+  public void addPoint(float x, float y){
+    if(size + 2 > xy.length){
+      float[] newxy = new float[Math.max(size + 2, 2 * xy.length)];
+      System.arraycopy(xy, 0, newxy, 0, size);
+      xy = newxy;
+    }
+    xy[size++] = x;
+    xy[size++] = y;
+  }
+
+  public void endPath(){
+    if(numPaths == pathEnds.length){
+      int[] newPathEnds = new int[2 * pathEnds.length];
+      System.arraycopy(pathEnds, 0, newPathEnds, 0, numPaths);
+      pathEnds = newPathEnds;
+    }
+    pathEnds[numPaths++] = size / 2;
+  }
+
+  /**
+   * Use this to get the number of points in the buffer.
+   * @return int, the number of points.
+   */
+  public int countPoints(){
+    return size / 2;
+  }
+
+  /**
+   * Use this to get the number of paths that ended in the buffer.
+   * @return int, the number of paths.
+   */
+  public int countPaths(){
+    return numPaths;
+  }
+
+  /**
+   * Use this to get the index of the point following the last point of a path.  The path starts at the end of the previous one, or at 0 for the first path.
+   * @param i  the index of the path
+   * @return int, the index of the point after the end of the path.
+   */
+  public int getPathEnd(int i){
+    return pathEnds[i];
+  }
+
+  /**
+   * Use this to get the points in the buffer as RPoint objects.
+   * @return RPoint[], the points, or null if the buffer is empty.
+   */
+  public RPoint[] toPoints(){
+    return toPoints(0, size / 2);
+  }
+
+  RPoint[] toPoints(int start, int end){
+    if(end <= start){
+      return null;
+    }
+    RPoint[] result = new RPoint[end - start];
+    for(int i=0; i<result.length; i++){
+      result[i] = new RPoint(xy[2*(start+i)], xy[2*(start+i)+1]);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,41 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+
+/**
+ * RFloatSink receives the points produced when flattening commands, paths and shapes with flattenInto(), as plain coordinates instead of RPoint objects.
+ * @eexample RFloatSink
+ * @usage Geometry
+ * @related RFloatBuffer
+ */
+public interface RFloatSink
+{
+  /**
+   * Called for each point of the flattened geometry, in order.
+   * @param x  the X coordinate of the point
+   * @param y  the Y coordinate of the point
+   */
+  public void addPoint(float x, float y);
+
+  /**
+   * Called after the last point of each path.  Flattening a single command does not call it.
+   */
+  public void endPath();
+}
@@ -301,6 +301,7 @@ public class RFont implements PConstants{
     case RFont.LEFT:
       break;
     }
+    result.trimToSize();
     return result;
   }
 
@@ -380,6 +381,7 @@ public class RFont implements PConstants{
     case RFont.LEFT:
       break;
     }
+    result.trimToSize();
     return result;
   }
   
@@ -19,6 +19,8 @@
 
 package geomerative;
 import processing.core.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * RG is a static class containing all the states, modes, etc..
@@ -45,6 +47,17 @@ public class RG implements PConstants{
    */
   public static boolean useFastClip = true;
 
+  /**
+   * When true the boolean operations run on a fixed-point grid with exact integer arithmetic, see setClipGrid().  The results have their vertices on the grid and no crossing edges, but the edges may move by up to half a step of the grid and the operations are slower than with the fast clipper.  It takes precedence over useFastClip.
+   * @invisible
+   */
+  public static boolean useIntClip = false;
+
+  /**
+   * @invisible
+   */
+  static int clipGridBits = 8;
+
   /**
    * The adaptor adapts the shape to a particular shape by adapting each of the groups points.  This can cause deformations of the individual elements in the group.
    */
@@ -130,6 +143,11 @@ public class RG implements PConstants{
 
   static RFont fntLoader = null;
 
+  /**
+   * @invisible
+   */
+  private static ForkJoinPool pool;
+
 
   // Font methods
   /**
@@ -474,6 +492,20 @@ public class RG implements PConstants{
     return ret;
   }
 
+  /**
+   * Polygonize a shape with a specific polygonizer, leaving the global one untouched.
+   * @eexample split
+   * @param shp  the shape to be polygonized
+   * @param seg  the polygonizer to use
+   * @return RShape, the polygonized shape
+   * @related getPolygonizer ( )
+   */
+  public static RShape polygonize(RShape shp, RSegmentator seg){
+    RShape ret = new RShape(shp);
+    ret.polygonize(seg);
+    return ret;
+  }
+
 
   // State methods
   /**
@@ -502,6 +534,17 @@ public class RG implements PConstants{
     return parent;
   }
   
+  /**
+   * @invisible
+   * The threads shared by the operations that split their work, created the first time it is needed.
+   */
+  static synchronized ForkJoinPool pool(){
+    if(pool == null){
+      pool = new ForkJoinPool();
+    }
+    return pool;
+  }
+
   /**
    * @invisible
    */
@@ -547,6 +590,31 @@ public class RG implements PConstants{
     return a.union(b);
   }
 
+  /**
+   * Union of many shapes at once.  Much faster than merging the shapes one after the other, since the shapes that lie apart are kept as they are and those that overlap are merged with their neighbours first, on several threads.
+   * @eexample binaryOps
+   * @param shapes  the shapes to merge
+   * @return RShape, the union of all the shapes, with the style of the first one
+   * @related union ( )
+   */
+  public static RShape unionAll(Collection<RShape> shapes){
+    RPolygon[] polys = new RPolygon[shapes.size()];
+    RShape first = null;
+    int n = 0;
+    for(RShape shp : shapes){
+      if(first == null){
+        first = shp;
+      }
+      polys[n++] = shp.toPolygon();
+    }
+
+    RShape result = RUnion.unionAll(polys).toShape();
+    if(first != null){
+      result.setStyle(first);
+    }
+    return result;
+  }
+
   /**
    * Binary intersection between two shapes.
    * @eexample binaryOps
@@ -591,6 +659,17 @@ public class RG implements PConstants{
   }
 
 
+  /**
+   * Use this to set the grid used by the boolean operations when RG.useIntClip is true.  The coordinates are rounded to multiples of 1/2^bits, so with the default of 8 bits they are kept to 1/256th of a unit.  The snapped coordinates must be exact in float, so they must stay under 2^(24-bits) in magnitude: 65536 with the default grid.
+   * @param bits  the number of bits of fraction of the grid, from 0 to 24
+   */
+  public static void setClipGrid(int bits) throws RuntimeException{
+    if(bits < 0 || bits > 24){
+      throw new RuntimeException("The clipping grid must have between 0 and 24 bits of fraction.");
+    }
+    clipGridBits = bits;
+  }
+
   /**
    * Use this to set the adaptor type.
    * @eexample RShape_setAdaptor
@@ -671,4 +750,15 @@ public class RG implements PConstants{
     RCommand.setSegmentStep(step);
   }
 
+  /**
+   * Use this to get the current polygonizer settings as an RSegmentator, which can then be modified and passed to polygonize, getPoints, toPolygon or toMesh without changing the global settings.
+   * @eexample getPolygonizer
+   * @return RSegmentator, a snapshot of the current polygonizer settings.
+   * @related setPolygonizer ( )
+   * @related polygonize ( )
+   */
+  public static RSegmentator getPolygonizer(){
+    return RSegmentator.getDefault();
+  }
+
 }
@@ -20,6 +20,8 @@
 package geomerative;
 import processing.core.*;
 
+import java.lang.ref.WeakReference;
+
 
 /**
  * RGeomElem is an interface to any geometric element that can be drawn and transformed, such as shapes, polygons or meshes.
@@ -99,8 +101,47 @@ public abstract class RGeomElem
 
   public abstract RPoint[] getPoints();
 
+  /**
+   * Use this to return the points of the element using a specific segmentator.  Only elements made of curves make use of it, the rest return the same as getPoints().
+   * @param seg  the segmentator to use
+   * @return RPoint[], the points returned in an array.
+   */
+  public RPoint[] getPoints(RSegmentator seg){
+    return getPoints();
+  }
+
   public abstract RPoint[] getTangents();
 
+  /**
+   * Use this to return the points of the element at several advancements at once.  Elements made of curves find all of them in a single walk along the curve when the advancements are sorted, which is much faster than calling getPoint() for each of them.
+   * @eexample getPoint
+   * @param ts  the parameters of advancement on the curve. They must have values between 0 and 1.
+   * @return RPoint[], one point per advancement.
+   * @related getTangents ( )
+   */
+  public RPoint[] getPoints(float[] ts){
+    RPoint[] result = new RPoint[ts.length];
+    for(int k=0;k<ts.length;k++){
+      result[k] = getPoint(ts[k]);
+    }
+    return result;
+  }
+
+  /**
+   * Use this to return the tangents of the element at several advancements at once.
+   * @eexample getPoint
+   * @param ts  the parameters of advancement on the curve. They must have values between 0 and 1.
+   * @return RPoint[], one tangent per advancement.
+   * @related getPoints ( )
+   */
+  public RPoint[] getTangents(float[] ts){
+    RPoint[] result = new RPoint[ts.length];
+    for(int k=0;k<ts.length;k++){
+      result[k] = getTangent(ts[k]);
+    }
+    return result;
+  }
+
   public abstract RPoint[][] getHandlesInPaths();
 
   public abstract RPoint[][] getPointsInPaths();
@@ -128,6 +169,12 @@ public abstract class RGeomElem
    * @related containsHandles ( )
    */
   public boolean containsBounds(RGeomElem shp) {
+    float[] b = getBoundsArray();
+    float[] o = shp.getBoundsArray();
+    if(o[0] < b[0] || o[2] > b[2] || o[1] < b[1] || o[3] > b[3]){
+      return false;
+    }
+
     RPoint tl = shp.getTopLeft();
     RPoint tr = shp.getTopRight();
     RPoint bl = shp.getBottomRight();
@@ -193,6 +240,10 @@ public abstract class RGeomElem
    * @related intersectsHandles ( )
    */
   public boolean intersectsBounds(RGeomElem shp) {
+    if(!boundsOverlap(shp)){
+      return false;
+    }
+
     RPoint tl = shp.getTopLeft();
     RPoint tr = shp.getTopRight();
     RPoint bl = shp.getBottomRight();
@@ -250,6 +301,28 @@ public abstract class RGeomElem
   protected float[] lenCurves;
   protected float lenCurve = -1F;
 
+  /* Cumulative lengths, lenCurvesAcc[i] is the length of all the elements before element i */
+  float[] lenCurvesAcc;
+
+  /* Cached bounds {xmin, ymin, xmax, ymax} */
+  float[] bounds;
+
+  /* The element holding this one, it is told about the changes of this one */
+  RGeomElem parent;
+
+  /* The other elements holding this one when it was added to several, told
+     about its changes too.  They are weak references, so that a holder
+     dropped without removing this element can still be collected */
+  private WeakReference<RGeomElem>[] moreParents;
+
+  /* Grows with every change of the geometry of the element or of the elements it holds */
+  int version;
+
+  /* Mesh filling the element when drawing it, with the version and the segmentator it was built for */
+  private RMesh drawMesh;
+  private int drawMeshVersion;
+  private RSegmentator drawMeshSeg;
+
   public String name = "";  
 
   protected RStyle style = new RStyle();
@@ -416,6 +489,226 @@ public abstract class RGeomElem
     return lenCurve;
   }
 
+  /**
+   * Fills the cumulative lengths and the total length from lenCurves.  Called at the end of calculateCurveLengths().
+   */
+  void accumulateCurveLengths(){
+    lenCurvesAcc = new float[lenCurves.length + 1];
+    double acc = 0.0;
+    for(int i=0; i<lenCurves.length; i++){
+      lenCurvesAcc[i] = (float)acc;
+      acc += lenCurves[i];
+    }
+    lenCurvesAcc[lenCurves.length] = (float)acc;
+    lenCurve = (float)acc;
+  }
+
+  /**
+   * Returns the index of the element holding the point at arc length s, using a binary search on the cumulative lengths.  Lengths falling on the boundary between two elements go to the first one, so that elements of zero length are skipped.
+   */
+  int indexAtLength(float s){
+    if(lenCurvesAcc == null){
+      calculateCurveLengths();
+    }
+
+    int lo = 0;
+    int hi = lenCurves.length - 1;
+    while(lo < hi){
+      int mid = (lo + hi + 1) >>> 1;
+      if(lenCurvesAcc[mid] < s){
+        lo = mid;
+      }else{
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Returns {index, advancement}: the index of the element holding the point at advancement t, and the advancement inside that element.
+   */
+  float[] indAndAdvAt(float t){
+    float s = t * getCurveLength();
+    int i = indexAtLength(s);
+
+    float[] indAndAdv = new float[2];
+    indAndAdv[0] = i;
+    indAndAdv[1] = advOfElement(i, s);
+    return indAndAdv;
+  }
+
+  /**
+   * Same as indAndAdvAt() for several advancements, the {index, advancement} pairs are returned one after the other.  As long as the advancements grow the index is searched forward from the previous one, so a sorted array is mapped in a single pass.
+   */
+  float[] indAndAdvAt(float[] ts){
+    float lengthCurve = getCurveLength();
+    int last = lenCurves.length - 1;
+
+    float[] indAndAdv = new float[2 * ts.length];
+    int i = 0;
+    float prev = 0F;
+    for(int k=0;k<ts.length;k++){
+      float s = ts[k] * lengthCurve;
+      if(s < prev){
+        i = indexAtLength(s);
+      }else{
+        while(i < last && lenCurvesAcc[i+1] < s){
+          i++;
+        }
+      }
+      prev = s;
+
+      indAndAdv[2*k] = i;
+      indAndAdv[2*k+1] = advOfElement(i, s);
+    }
+    return indAndAdv;
+  }
+
+  private float advOfElement(int i, float s){
+    float len = lenCurves[i];
+    if(!(len > 0F)){
+      return 0F;
+    }
+    return PApplet.constrain((s - lenCurvesAcc[i]) / len, 0F, 1F);
+  }
+
+  /**
+   * Use this to know whether the geometry of the element has changed.  The version grows every time the element, or any of the elements it holds, is modified through the methods of the library, so anything computed from the geometry can be kept together with the version it was computed for.  An element added to several others tells all of them about its changes.  Points moved directly, through their x and y fields, are not noticed until invalidateDeep() is called.
+   * @eexample getVersion
+   * @return int, the current version of the geometry of the element.
+   */
+  public int getVersion(){
+    return version;
+  }
+
+  /**
+   * Drops the cached data derived from the geometry of this element, like the curve lengths, and bumps its version and the version of the elements holding it.  Methods modifying the element call it.
+   */
+  protected void invalidate(){
+    dropCaches();
+    invalidateAncestors();
+  }
+
+  /**
+   * Use this after modifying the points of the element directly, by setting the x and y of the points returned by getHandles() or getPoints() or held in the public arrays of the element.  The element keeps data computed from its points, like its bounds, its curve lengths, the index used by contains() and the mesh used to draw it, and these are only recomputed once this method has been called.  It drops that data on the element and on all the elements it contains, and bumps their versions and the versions of the elements holding them.  The modifying methods of the library do this by themselves.
+   * @eexample invalidateDeep
+   * @related getVersion ( )
+   */
+  public void invalidateDeep(){
+    dropCachesDeep();
+    invalidateAncestors();
+  }
+
+  private void invalidateAncestors(){
+    if(parent != null){
+      parent.dropCaches();
+      parent.invalidateAncestors();
+    }
+    if(moreParents != null){
+      for(int i = 0; i < moreParents.length; i++){
+        RGeomElem e = moreParents[i].get();
+        if(e != null){
+          e.dropCaches();
+          e.invalidateAncestors();
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops the caches of this element alone.  Elements with caches of their own override it.
+   */
+  void dropCaches(){
+    version++;
+    lenCurves = null;
+    lenCurvesAcc = null;
+    lenCurve = -1F;
+    bounds = null;
+  }
+
+  /**
+   * Drops the caches of this element and of all the elements it holds.
+   */
+  void dropCachesDeep(){
+    dropCaches();
+  }
+
+  /**
+   * Returns the mesh used to fill the element when drawing it.  It is built with toMesh() the first time and kept while the version of the element stays the same, so static elements are only tessellated once.  A null segmentator is for elements without curves.  The mesh is shared, it must not be modified.
+   */
+  RMesh getDrawMesh(RSegmentator seg){
+    boolean sameSeg = (seg == null) ? (drawMeshSeg == null) : seg.equals(drawMeshSeg);
+    if(drawMesh == null || drawMeshVersion != version || !sameSeg){
+      drawMesh = (seg == null) ? toMesh() : toMesh(seg);
+      drawMeshVersion = version;
+      drawMeshSeg = seg;
+    }
+    return drawMesh;
+  }
+
+  /**
+   * Makes this element one of the holders of elem, the ones told about its changes.
+   */
+  void adopt(RGeomElem elem){
+    if(elem == null || elem.parent == this){
+      return;
+    }
+    if(elem.parent == null){
+      elem.parent = this;
+    }else{
+      elem.setMoreParent(this, true);
+    }
+  }
+
+  /**
+   * Detaches elem from this element, if this element was one of its holders.
+   */
+  void release(RGeomElem elem){
+    if(elem == null){
+      return;
+    }
+    if(elem.parent == this){
+      elem.parent = null;
+    }else{
+      elem.setMoreParent(this, false);
+    }
+  }
+
+  /* Adds or removes holder from the other holders of this element, dropping
+     the ones already collected on the way */
+  @SuppressWarnings("unchecked")
+  private void setMoreParent(RGeomElem holder, boolean add){
+    int numParents = (moreParents == null) ? 0 : moreParents.length;
+    WeakReference<RGeomElem>[] kept = new WeakReference[numParents + 1];
+    int count = 0;
+    for(int i = 0; i < numParents; i++){
+      RGeomElem e = moreParents[i].get();
+      if(e == holder && add){
+        return;
+      }
+      if(e != null && e != holder){
+        kept[count++] = moreParents[i];
+      }
+    }
+    if(add){
+      kept[count++] = new WeakReference<RGeomElem>(holder);
+    }
+
+    if(count == 0){
+      moreParents = null;
+    }else{
+      moreParents = new WeakReference[count];
+      System.arraycopy(kept, 0, moreParents, 0, count);
+    }
+  }
+
+  /**
+   * Use this to cut the arrays of the element, and of the elements it holds, to their exact size.  The arrays grow by doubling when adding to them one by one, so they may have empty slots at their end until this is called.  The builders of the library call it before returning.  Elements without growable arrays do nothing.
+   * @eexample RGeomElem_trimToSize
+   */
+  public void trimToSize(){
+  }
+
   public RPolygon toPolygon(){
     return toShape().toPolygon();
   }
@@ -424,6 +717,14 @@ public abstract class RGeomElem
     return toShape().toPolygon().toMesh();
   }
 
+  public RPolygon toPolygon(RSegmentator seg){
+    return toPolygon();
+  }
+
+  public RMesh toMesh(RSegmentator seg){
+    return toMesh();
+  }
+
   // Functions independent of the type of element
   // No need of being overrided
   public void transform(RMatrix m){   
@@ -434,6 +735,15 @@ public abstract class RGeomElem
     for(int i=0; i<ps.length; i++){
       ps[i].transform(m);
     }
+
+    boolean meshUpToDate = drawMesh != null && drawMeshVersion == version;
+    invalidateDeep();
+
+    // An up to date mesh follows the transformation instead of being tessellated again
+    if(meshUpToDate){
+      drawMesh.transform(m);
+      drawMeshVersion = version;
+    }
   }
 
   /**
@@ -471,42 +781,69 @@ public abstract class RGeomElem
    * @related getCenter ( )
    */
   public RRectangle getBounds(){
-    float xmax = Float.NEGATIVE_INFINITY ;
-    float ymax = Float.NEGATIVE_INFINITY ;
-    float xmin = Float.POSITIVE_INFINITY ;
-    float ymin = Float.POSITIVE_INFINITY ;
+    float[] b = getBoundsArray();
+    return new RRectangle(new RPoint(b[0], b[1]), new RPoint(b[2], b[3]));
+  }
 
+  /**
+   * Returns the cached bounds {xmin, ymin, xmax, ymax}, computing them if needed.  The array is shared, it must not be modified.
+   */
+  float[] getBoundsArray(){
+    if(bounds == null){
+      bounds = calculateBounds();
+    }
+    return bounds;
+  }
+
+  /**
+   * Computes the bounds {xmin, ymin, xmax, ymax} of the element.  By default they are the bounds of the handles, elements with curves override it to get the exact bounds.
+   */
+  protected float[] calculateBounds(){
+    float[] b = emptyBounds();
     RPoint[] points = getHandles();
     
     if(points!=null){
       for(int i=0;i<points.length;i++){
-        float tempx = points[i].x;
-        float tempy = points[i].y;
-        
-        if( tempx < xmin )
-          {
-            xmin = tempx;
-          }
-          
-        if( tempx > xmax )
-          {
-            xmax = tempx;
-          }
-          
-        if( tempy < ymin )
-          {
-            ymin = tempy;
-          }
-          
-        if( tempy > ymax )
-          {
-            ymax = tempy;
-          }
+        addToBounds(b, points[i].x, points[i].y);
       }
     }
     
-    RRectangle c = new RRectangle(new RPoint(xmin, ymin), new RPoint(xmax, ymax));
-    return c;
+    return b;
+  }
+
+  static float[] emptyBounds(){
+    return new float[]{Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+  }
+
+  static void addToBounds(float[] b, float x, float y){
+    if(x < b[0]){ b[0] = x; }
+    if(y < b[1]){ b[1] = y; }
+    if(x > b[2]){ b[2] = x; }
+    if(y > b[3]){ b[3] = y; }
+  }
+
+  static void addToBounds(float[] b, float[] other){
+    if(other[0] < b[0]){ b[0] = other[0]; }
+    if(other[1] < b[1]){ b[1] = other[1]; }
+    if(other[2] > b[2]){ b[2] = other[2]; }
+    if(other[3] > b[3]){ b[3] = other[3]; }
+  }
+
+  /**
+   * Tells whether the point is inside the bounds of the element.
+   */
+  boolean boundsContain(float x, float y){
+    float[] b = getBoundsArray();
+    return x >= b[0] && x <= b[2] && y >= b[1] && y <= b[3];
+  }
+
+  /**
+   * Tells whether the bounds of the element overlap the bounds of another element.
+   */
+  boolean boundsOverlap(RGeomElem shp){
+    float[] b = getBoundsArray();
+    float[] o = shp.getBoundsArray();
+    return b[0] <= o[2] && o[0] <= b[2] && b[1] <= o[3] && o[1] <= b[3];
   }
 
   /**
@@ -530,8 +867,8 @@ public abstract class RGeomElem
    * @related getCenter ( )
    */
   public RPoint getTopLeft(){
-    RRectangle orig = this.getBounds();
-    return new RPoint(orig.getMinX(), orig.getMinY());
+    float[] b = getBoundsArray();
+    return new RPoint(b[0], b[1]);
   }
 
 
@@ -546,8 +883,8 @@ public abstract class RGeomElem
    * @related getCenter ( )
    */
   public RPoint getTopRight(){
-    RRectangle orig = this.getBounds();
-    return new RPoint(orig.getMaxX(), orig.getMinY());
+    float[] b = getBoundsArray();
+    return new RPoint(b[2], b[1]);
   }
 
 
@@ -562,8 +899,8 @@ public abstract class RGeomElem
    * @related getCenter ( )
    */
   public RPoint getBottomLeft(){
-    RRectangle orig = this.getBounds();
-    return new RPoint(orig.getMinX(), orig.getMaxY());
+    float[] b = getBoundsArray();
+    return new RPoint(b[0], b[3]);
   }
 
 
@@ -578,8 +915,8 @@ public abstract class RGeomElem
    * @related getCenter ( )
    */
   public RPoint getBottomRight(){
-    RRectangle orig = this.getBounds();
-    return new RPoint(orig.getMaxX(), orig.getMaxY());
+    float[] b = getBoundsArray();
+    return new RPoint(b[2], b[3]);
   }
 
 
@@ -593,8 +930,8 @@ public abstract class RGeomElem
    * @related getCenter ( )
    */
   public float getX(){
-    RRectangle orig = this.getBounds();
-    return orig.getMinX();
+    float[] b = getBoundsArray();
+    return b[0];
   }
 
   /**
@@ -607,8 +944,8 @@ public abstract class RGeomElem
    * @related getCenter ( )
    */
   public float getY(){
-    RRectangle orig = this.getBounds();
-    return orig.getMinY();
+    float[] b = getBoundsArray();
+    return b[1];
   }
 
   /**
@@ -643,8 +980,8 @@ public abstract class RGeomElem
    * @related getCenter ( )
    */
   public float getWidth(){
-    RRectangle orig = this.getBounds();
-    return orig.getMaxX()-orig.getMinX();
+    float[] b = getBoundsArray();
+    return b[2] - b[0];
   }
 
 
@@ -655,8 +992,8 @@ public abstract class RGeomElem
    * @related getCenter ( )
    */
   public float getHeight(){
-    RRectangle orig = this.getBounds();
-    return orig.getMaxY()-orig.getMinY();
+    float[] b = getBoundsArray();
+    return b[3] - b[1];
   }
 
   
@@ -667,8 +1004,8 @@ public abstract class RGeomElem
    * @related getBounds ( )
    */
   public RPoint getCenter(){
-    RRectangle c = getBounds();
-    return new RPoint((c.getMaxX() + c.getMinX())/2,(c.getMaxY() + c.getMinY())/2);
+    float[] b = getBoundsArray();
+    return new RPoint((b[2] + b[0])/2,(b[3] + b[1])/2);
   }
   
   /**
@@ -716,6 +1053,43 @@ public abstract class RGeomElem
     return Math.abs(areaAcc);
   }
 
+  /* The part of the plane seen on the graphics with its current
+     transformation, as {xmin, ymin, xmax, ymax}, worked out from where the
+     corners of the given bounds land on screen.  Null when the
+     transformation doesn't map these bounds affinely, as with a perspective
+     projection, and the view can't be bounded this way. */
+  static float[] viewBounds(PGraphics g, float[] b){
+    float w = b[2] - b[0];
+    float h = b[3] - b[1];
+    if(!(w > 0.0F) || !(h > 0.0F) || Float.isInfinite(w) || Float.isInfinite(h)){
+      return null;
+    }
+
+    float ox = g.screenX(b[0], b[1]);
+    float oy = g.screenY(b[0], b[1]);
+    float ax = (g.screenX(b[2], b[1]) - ox) / w;
+    float ay = (g.screenY(b[2], b[1]) - oy) / w;
+    float bx = (g.screenX(b[0], b[3]) - ox) / h;
+    float by = (g.screenY(b[0], b[3]) - oy) / h;
+    float det = ax * by - bx * ay;
+    if(!(Math.abs(det) > 0.0F) || Float.isInfinite(det)
+       || !(Math.abs(g.screenX(b[2], b[3]) - (ox + ax * w + bx * h)) <= 0.5F)
+       || !(Math.abs(g.screenY(b[2], b[3]) - (oy + ay * w + by * h)) <= 0.5F)){
+      return null;
+    }
+
+    // Bring the corners of the viewport back to the coordinates of the element
+    float[] view = emptyBounds();
+    float[] xs = {0, g.width, g.width, 0};
+    float[] ys = {0, 0, g.height, g.height};
+    for(int c=0;c<4;c++){
+      float dx = xs[c] - ox;
+      float dy = ys[c] - oy;
+      addToBounds(view, b[0] + (by * dx - bx * dy) / det, b[1] + (ax * dy - ay * dx) / det);
+    }
+    return view;
+  }
+
   /**
    * Use this method to know if the shape is inside a graphics object. This might be useful if we want to delete objects that go offscreen.
    * @eexample RShape_isIn
@@ -724,15 +1098,15 @@ public abstract class RGeomElem
    * @return boolean, whether the shape is in or not the graphics object
    */
   public boolean isIn(PGraphics g){
-    RRectangle c = getBounds();
-    float x0 = g.screenX(c.topLeft.x, c.topLeft.y);
-    float y0 = g.screenY(c.topLeft.x, c.topLeft.y);
-    float x1 = g.screenX(c.bottomRight.x, c.topLeft.y);
-    float y1 = g.screenY(c.bottomRight.x, c.topLeft.y);
-    float x2 = g.screenX(c.bottomRight.x, c.bottomRight.y);
-    float y2 = g.screenY(c.bottomRight.x, c.bottomRight.y);
-    float x3 = g.screenX(c.topLeft.x, c.bottomRight.y);
-    float y3 = g.screenY(c.topLeft.x, c.bottomRight.y);
+    float[] b = getBoundsArray();
+    float x0 = g.screenX(b[0], b[1]);
+    float y0 = g.screenY(b[0], b[1]);
+    float x1 = g.screenX(b[2], b[1]);
+    float y1 = g.screenY(b[2], b[1]);
+    float x2 = g.screenX(b[2], b[3]);
+    float y2 = g.screenY(b[2], b[3]);
+    float x3 = g.screenX(b[0], b[3]);
+    float y3 = g.screenY(b[0], b[3]);
     
     float xmax = Math.max(Math.max(x0,x1),Math.max(x2,x3));
     float ymax = Math.max(Math.max(y0,y1),Math.max(y2,y3));
@@ -743,15 +1117,15 @@ public abstract class RGeomElem
   }
   
   public boolean isIn(PApplet g){
-    RRectangle c = getBounds();
-    float x0 = g.screenX(c.topLeft.x, c.topLeft.y);
-    float y0 = g.screenY(c.topLeft.x, c.topLeft.y);
-    float x1 = g.screenX(c.bottomRight.x, c.topLeft.y);
-    float y1 = g.screenY(c.bottomRight.x, c.topLeft.y);
-    float x2 = g.screenX(c.bottomRight.x, c.bottomRight.y);
-    float y2 = g.screenY(c.bottomRight.x, c.bottomRight.y);
-    float x3 = g.screenX(c.topLeft.x, c.bottomRight.y);
-    float y3 = g.screenY(c.topLeft.x, c.bottomRight.y);
+    float[] b = getBoundsArray();
+    float x0 = g.screenX(b[0], b[1]);
+    float y0 = g.screenY(b[0], b[1]);
+    float x1 = g.screenX(b[2], b[1]);
+    float y1 = g.screenY(b[2], b[1]);
+    float x2 = g.screenX(b[2], b[3]);
+    float y2 = g.screenY(b[2], b[3]);
+    float x3 = g.screenX(b[0], b[3]);
+    float y3 = g.screenY(b[0], b[3]);
     
     float xmax = Math.max(Math.max(x0,x1),Math.max(x2,x3));
     float ymax = Math.max(Math.max(y0,y1),Math.max(y2,y3));
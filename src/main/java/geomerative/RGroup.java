@@ -39,11 +39,21 @@ public class RGroup extends RGeomElem
    * @related RShape
    * @related RPolygon
    * @related RMesh
+   * After adding elements one by one the array may have empty slots at its end, loop up to countElements() or call trimToSize() before reading it directly.
    * @related countElements ( )
    * @related addElement ( )
    * @related removeElement ( )
+   * @related trimToSize ( )
    */
   public RGeomElem[] elements;
+  int elementCount;
+
+  /* The array last written by the group, an array assigned to the public
+     field by user code is taken over with all of its elements */
+  private RGeomElem[] elementStore;
+
+  /* Hierarchy over the bounds of the elements, see getElementTree() */
+  private RBoundsTree elementTree;
   
   /**
    * Use this method to create a new empty group.
@@ -58,27 +68,29 @@ public class RGroup extends RGeomElem
    * @eexample RGroup
    */
   public RGroup(RGroup grp){
+    ensureCapacity(grp.countElements());
     for(int i=0;i<grp.countElements();i++){
       //System.out.println(grp.elements[i].getType());
       switch(grp.elements[i].getType()){
       case RGeomElem.MESH:
-        this.addElement(new RMesh((RMesh)grp.elements[i]));
+        this.append(new RMesh((RMesh)grp.elements[i]));
         break;
         
       case RGeomElem.GROUP:
-        this.addElement(new RGroup((RGroup)grp.elements[i]));
+        this.append(new RGroup((RGroup)grp.elements[i]));
         break;
         
       case RGeomElem.POLYGON:
-        this.addElement(new RPolygon((RPolygon)grp.elements[i]));
+        this.append(new RPolygon((RPolygon)grp.elements[i]));
         break;
         
       case RGeomElem.SHAPE:
-        this.addElement(new RShape((RShape)grp.elements[i]));
+        this.append(new RShape((RShape)grp.elements[i]));
         break;
         
       }
     }
+    trimElements();
     
     setStyle(grp);
   }
@@ -95,7 +107,7 @@ public class RGroup extends RGeomElem
     RPoint bestCentroid = new RPoint();
     float bestArea = Float.NEGATIVE_INFINITY;
     if(elements != null){
-      for(int i=0;i<elements.length-1;i++)
+      for(int i=0;i<countElements()-1;i++)
         {
           float area = elements[i].getArea();
           if(area > bestArea){
@@ -116,8 +128,53 @@ public class RGroup extends RGeomElem
    * @related removeElement ( )
    */
   public int countElements(){
-    if(elements==null) return 0;
-    return elements.length;
+    if(elements != elementStore){
+      elementStore = elements;
+      elementCount = (elements == null) ? 0 : elements.length;
+    }
+    return elementCount;
+  }
+
+  /**
+   * Use this to make room for a number of elements before adding them one by one.  The array of elements grows by doubling, so adding elements costs the same whatever the size of the group, and it keeps empty slots at its end until trimToSize() is called.
+   * @eexample RGroup_ensureCapacity
+   * @param minCapacity  the number of elements the group must be able to hold
+   * @related trimToSize ( )
+   */
+  public void ensureCapacity(int minCapacity){
+    int numElements = countElements();
+    int capacity = (elements == null) ? 0 : elements.length;
+    if(minCapacity <= capacity){
+      return;
+    }
+
+    RGeomElem[] newelements = new RGeomElem[Math.max(minCapacity, 2 * capacity)];
+    if(numElements > 0){
+      System.arraycopy(elements,0,newelements,0,numElements);
+    }
+    elements = elementStore = newelements;
+  }
+
+  /**
+   * Use this to cut the array of elements, and the arrays of the elements themselves, to their exact size, removing the empty slots left at their end when adding to them.
+   * @eexample RGroup_ensureCapacity
+   * @related ensureCapacity ( )
+   */
+  public void trimToSize(){
+    trimElements();
+    for(int i=0;i<elementCount;i++){
+      elements[i].trimToSize();
+    }
+  }
+
+  /* Cuts the array of elements alone to its exact size */
+  private void trimElements(){
+    int numElements = countElements();
+    if(elements != null && elements.length != numElements){
+      RGeomElem[] newelements = new RGeomElem[numElements];
+      System.arraycopy(elements,0,newelements,0,numElements);
+      elements = elementStore = newelements;
+    }
   }
   
   public void print(){
@@ -141,8 +198,9 @@ public class RGroup extends RGeomElem
       setContext(g);
     }
 
-    for(int i=0; i<countElements(); i++){
-      elements[i].draw(g);
+    int[] visible = elementsInView(g);
+    for(int k=0; k<visible.length; k++){
+      elements[visible[k]].draw(g);
     }
 
     if(!RG.ignoreStyles){
@@ -156,8 +214,9 @@ public class RGroup extends RGeomElem
       setContext(a);
     }
 
-    for(int i=0; i<countElements(); i++){
-      elements[i].draw(a);
+    int[] visible = elementsInView(a.g);
+    for(int k=0; k<visible.length; k++){
+      elements[visible[k]].draw(a);
     }
     
     if(!RG.ignoreStyles){
@@ -182,8 +241,9 @@ public class RGroup extends RGeomElem
    * @related removeElement ( )
    */
   public void addGroup(RGroup grupo){
+    ensureCapacity(countElements() + grupo.countElements());
     for(int i=0;i<grupo.countElements();i++){
-      this.addElement(grupo.elements[i]);
+      this.append(grupo.elements[i]);
     }
   }
   
@@ -206,9 +266,11 @@ public class RGroup extends RGeomElem
    */
   public RGroup toMeshGroup() throws RuntimeException{
     RGroup result = new RGroup();
+    result.ensureCapacity(countElements());
     for(int i=0;i<countElements();i++){
-      result.addElement(elements[i].toMesh());
+      result.append(elements[i].toMesh());
     }
+    result.trimElements();
     return result;
   }
   
@@ -220,16 +282,29 @@ public class RGroup extends RGeomElem
    * @related toShapeGroup ( )
    */
   public RGroup toPolygonGroup() throws RuntimeException{
+    return toPolygonGroup(RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this method to get a new group whose elements are the corresponding polygons of the elements in the current group, segmenting the curves with a specific segmentator.
+   * @eexample RGroup_toPolygonGroup
+   * @param seg  the segmentator to use
+   * @return RGroup, the new group made of RPolygons
+   * @related toMeshGroup ( )
+   * @related toShapeGroup ( )
+   */
+  public RGroup toPolygonGroup(RSegmentator seg) throws RuntimeException{
     RGroup result = new RGroup();
     for(int i=0;i<countElements();i++){
       RGeomElem element = elements[i];
       if(element.getType() == RGeomElem.GROUP){
-        RGeomElem newElement = ((RGroup)(element)).toPolygonGroup();
-        result.addElement(newElement);
+        RGeomElem newElement = ((RGroup)(element)).toPolygonGroup(seg);
+        result.append(newElement);
       }else{
-        result.addElement(element.toPolygon());
+        result.append(element.toPolygon(seg));
       }
     }
+    result.trimElements();
     result.setStyle(this);
     return result;
   }
@@ -247,11 +322,12 @@ public class RGroup extends RGeomElem
       RGeomElem element = elements[i];
       if(element.getType() == RGeomElem.GROUP){
         RGeomElem newElement = ((RGroup)(element)).toShapeGroup();
-        result.addElement(newElement);
+        result.append(newElement);
       }else{
-        result.addElement(element.toShape());
+        result.append(element.toShape());
       }
     }
+    result.trimElements();
     result.setStyle(this);
     return result;
   }
@@ -260,11 +336,17 @@ public class RGroup extends RGeomElem
    * @invisible
    */
   public RMesh toMesh() throws RuntimeException{
+    return toMesh(RSegmentator.getDefault());
+  }
+
+  /**
+   * @invisible
+   */
+  public RMesh toMesh(RSegmentator seg) throws RuntimeException{
     //throw new RuntimeException("Transforming a Group to a Mesh is not yet implemented.");
-    RGroup meshGroup = toMeshGroup();
     RMesh result = new RMesh();
     for(int i=0;i<countElements();i++){
-      RMesh currentMesh = (RMesh)(meshGroup.elements[i]);
+      RMesh currentMesh = elements[i].toMesh(seg);
       for(int j=0;j<currentMesh.countStrips();j++){
         result.addStrip(currentMesh.strips[j]);
       }
@@ -277,11 +359,18 @@ public class RGroup extends RGeomElem
    * @invisible
    */
   public RPolygon toPolygon() throws RuntimeException{
+    return toPolygon(RSegmentator.getDefault());
+  }
+
+  /**
+   * @invisible
+   */
+  public RPolygon toPolygon(RSegmentator seg) throws RuntimeException{
     //throw new RuntimeException("Transforming a Group to a Polygon is not yet implemented.");
     //RGroup polygonGroup = toPolygonGroup();
     RPolygon result = new RPolygon();
     for(int i=0;i<countElements();i++){
-      RPolygon currentPolygon = elements[i].toPolygon();
+      RPolygon currentPolygon = elements[i].toPolygon(seg);
       for(int j=0;j<currentPolygon.countContours();j++){
         result.addContour(currentPolygon.contours[j]);
       }
@@ -299,7 +388,11 @@ public class RGroup extends RGeomElem
     for(int i=0;i<countElements();i++){
       RShape currentShape = elements[i].toShape();
       for(int j=0;j<currentShape.countPaths();j++){
-        result.addPath(currentShape.paths[j]);
+        if(currentShape == elements[i]){
+          result.addPathShared(currentShape.paths[j]);
+        }else{
+          result.addPath(currentShape.paths[j]);
+        }
       }
     }
     result.setStyle(this);
@@ -344,22 +437,77 @@ public class RGroup extends RGeomElem
     return elements[indOfElement].getPoint(advOfElement);
   }
 
+  /**
+   * Use this to return the points on the curve for several advancements at once.  The elements holding them are found in a single walk when ts is sorted, and the advancements falling on the same one are passed on together.
+   * @eexample getPoint
+   * @param ts  the parameters of advancement on the curve. They must have values between 0 and 1.
+   * @return RPoint[], one point per advancement.
+   * @related getTangents ( )
+   * */
+  public RPoint[] getPoints(float[] ts){
+    return pointsAt(ts, false);
+  }
+
+  /**
+   * Use this to return the tangents on the curve for several advancements at once.
+   * @eexample getPoint
+   * @param ts  the parameters of advancement on the curve. They must have values between 0 and 1.
+   * @return RPoint[], one tangent per advancement.
+   * @related getPoints ( )
+   * */
+  public RPoint[] getTangents(float[] ts){
+    return pointsAt(ts, true);
+  }
+
+  private RPoint[] pointsAt(float[] ts, boolean tangents){
+    float[] indAndAdv = indAndAdvAt(ts);
+    RPoint[] result = new RPoint[ts.length];
+    int k = 0;
+    while(k < ts.length){
+      int indOfElement = (int)indAndAdv[2*k];
+      int end = k + 1;
+      while(end < ts.length && (int)indAndAdv[2*end] == indOfElement){
+        end++;
+      }
+
+      float[] advs = new float[end - k];
+      for(int j=k;j<end;j++){
+        advs[j-k] = indAndAdv[2*j+1];
+      }
+
+      RGeomElem element = elements[indOfElement];
+      RPoint[] points = tangents ? element.getTangents(advs) : element.getPoints(advs);
+      System.arraycopy(points,0,result,k,points.length);
+      k = end;
+    }
+    return result;
+  }
+
   /**
    * Use this to return the points of the group.  It returns the points as an array of RPoint.
    * @eexample RGroup_getPoints
    * @return RPoint[], the points returned in an array.
    * */
   public RPoint[] getPoints(){
+    return getPoints(RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this to return the points of the elements of the group using a specific segmentator instead of the global one.  It returns the points as an array of RPoint.
+   * @eexample RGroup_getPoints
+   * @param seg  the segmentator to use
+   * @return RPoint[], the points returned in an array.
+   * */
+  public RPoint[] getPoints(RSegmentator seg){
     int numElements = countElements();
     if(numElements == 0){
       return null;
     }
 
-    RCommand.segmentAccOffset = RCommand.segmentOffset;    
     RPoint[] result=null;
     RPoint[] newresult=null;
     for(int i=0;i<numElements;i++){
-      RPoint[] newPoints = elements[i].getPoints();
+      RPoint[] newPoints = elements[i].getPoints(seg);
       if(newPoints!=null){
         if(result==null){
           result = new RPoint[newPoints.length];
@@ -515,7 +663,17 @@ public class RGroup extends RGeomElem
       return false;
     }
     
-    // Test for containment in elements
+    // Test for containment in the elements around the point
+    if(countElements() >= RBoundsTree.MIN_ELEMENTS){
+      int[] near = getElementTree().query(testx, testy, testx, testy);
+      for(int k = 0;k<near.length;k++){
+        if(elements[near[k]].contains(p)){
+          return true;
+        }
+      }
+      return false;
+    }
+
     boolean result = false;
     for(int i = 0;i<countElements();i++){
       result |= elements[i].contains(p);
@@ -533,35 +691,6 @@ public class RGroup extends RGeomElem
     return type;
   }
 
-  private float[] indAndAdvAt(float t){
-    int indOfElement = 0;
-    float[] lengthsCurves = getCurveLengths();
-    float lengthCurve = getCurveLength();
-
-    /* Calculate the amount of advancement t mapped to each command */
-    /* We use a simple algorithm where we give to each command the same amount of advancement */
-    /* A more useful way would be to give to each command an advancement proportional to the length of the command */
-    
-    float accumulatedAdvancement = lengthsCurves[indOfElement] / lengthCurve;
-    float prevAccumulatedAdvancement = 0F;
-    
-    /* Find in what command the advancement point is  */
-    while(t > accumulatedAdvancement){
-      indOfElement++;
-      prevAccumulatedAdvancement = accumulatedAdvancement;
-      accumulatedAdvancement += (lengthsCurves[indOfElement] / lengthCurve);
-    }
-    
-    float advOfElement = (t-prevAccumulatedAdvancement) / (lengthsCurves[indOfElement] / lengthCurve);
-
-    float[] indAndAdv = new float[2];
-
-    indAndAdv[0] = indOfElement;
-    indAndAdv[1] = advOfElement;
-    
-    return indAndAdv;
-  }
-
   public RGroup[] split(float t){
     RGroup[] result = new RGroup[2];
 
@@ -715,6 +844,7 @@ public class RGroup extends RGeomElem
           break;
         }
     }
+    invalidate();
     
     return;
   }
@@ -722,12 +852,61 @@ public class RGroup extends RGeomElem
   
   protected void calculateCurveLengths(){
     lenCurves = new float[countElements()];
-    lenCurve = 0F;
     for(int i=0;i<countElements();i++){
       lenCurves[i] = elements[i].getCurveLength();  
-      lenCurve += lenCurves[i];
+    }
+    accumulateCurveLengths();
+  }
+
+  void dropCaches(){
+    super.dropCaches();
+    elementTree = null;
+  }
+
+  void dropCachesDeep(){
+    dropCaches();
+    for(int i=0;i<countElements();i++){
+      elements[i].dropCachesDeep();
     }
   }
+
+  protected float[] calculateBounds(){
+    float[] b = emptyBounds();
+    for(int i=0;i<countElements();i++){
+      addToBounds(b, elements[i].getBoundsArray());
+    }
+    return b;
+  }
+
+  /* The hierarchy over the bounds of the elements, kept until the group
+     changes */
+  RBoundsTree getElementTree(){
+    RBoundsTree tree = elementTree;
+    if(tree == null){
+      int n = countElements();
+      float[] boxes = new float[4 * n];
+      for(int i=0;i<n;i++){
+        System.arraycopy(elements[i].getBoundsArray(), 0, boxes, 4 * i, 4);
+      }
+      tree = new RBoundsTree(boxes, n);
+      elementTree = tree;
+    }
+    return tree;
+  }
+
+  /* The elements that may be seen on the graphics, in increasing order */
+  private int[] elementsInView(PGraphics g){
+    int n = countElements();
+    float[] view = (n >= RBoundsTree.MIN_ELEMENTS) ? viewBounds(g, getBoundsArray()) : null;
+    if(view == null){
+      int[] all = new int[n];
+      for(int i=0;i<n;i++){
+        all[i] = i;
+      }
+      return all;
+    }
+    return getElementTree().query(view);
+  }
   
   
   /**
@@ -821,6 +1000,7 @@ public class RGroup extends RGeomElem
     default:
       throw new RuntimeException("Unknown adaptor type : "+RG.adaptorType+". The method RG.setAdaptor() only accepts RG.BYPOINT or RG.BYELEMENT as parameter values.");
     }
+    invalidateDeep();
   }
   
   public void adapt(RGroup grp) throws RuntimeException{
@@ -841,48 +1021,48 @@ public class RGroup extends RGeomElem
   
 
   public void polygonize(){
-    RGroup grp = toPolygonGroup().toShapeGroup();
-    this.elements = grp.elements;
+    polygonize(RSegmentator.getDefault());
   }
 
-  private void append(RGeomElem elem){
-    RGeomElem[] newelements;
-    if(elements==null){
-      newelements = new RGeomElem[1];
-      newelements[0] = elem;
-    }else{
-      newelements = new RGeomElem[this.elements.length+1];
-      System.arraycopy(this.elements,0,newelements,0,this.elements.length);
-      newelements[this.elements.length]=elem;
+  /**
+   * Use this to replace the curves of the elements by the lines resulting of segmenting them with a specific segmentator.
+   * @param seg  the segmentator to use
+   */
+  public void polygonize(RSegmentator seg){
+    RGroup grp = toPolygonGroup(seg).toShapeGroup();
+    this.elements = grp.elements;
+    for(int i=0;i<countElements();i++){
+      adopt(elements[i]);
     }
-    this.elements=newelements;
+    invalidate();
+  }
+
+  /* Adds an element leaving the array with room for more, the builders adding
+     many elements call trimToSize() once they are done */
+  void append(RGeomElem elem){
+    ensureCapacity(countElements() + 1);
+    elements[elementCount++] = elem;
+    adopt(elem);
+    invalidate();
   }
   
   private void extract(int i) throws RuntimeException{
-    RGeomElem[] newelements;
-    if(elements==null){
+    if(countElements()==0){
       throw new RuntimeException("The group is empty. No elements to remove.");
-    }else{
-      if(i<0){
-        throw new RuntimeException("Negative values for indexes are not valid.");
-      }
-      if(i>elements.length-1){
-        throw new RuntimeException("Index out of the bounds of the group.  You are trying to erase an element with an index higher than the number of elements in the group.");
-      }
-      if(elements.length==1){
-        newelements = null;
-      }else if(i==0){
-        newelements = new RGeomElem[this.elements.length-1];
-        System.arraycopy(this.elements,1,newelements,0,this.elements.length-1);
-      }else if(i==elements.length-1){
-        newelements = new RGeomElem[this.elements.length-1];
-        System.arraycopy(this.elements,0,newelements,0,this.elements.length-1);
-      }else{
-        newelements = new RGeomElem[this.elements.length-1];
-        System.arraycopy(this.elements,0,newelements,0,i);
-        System.arraycopy(this.elements,i+1,newelements,i,this.elements.length-i-1);
-      }
     }
-    this.elements=newelements;
+    if(i<0){
+      throw new RuntimeException("Negative values for indexes are not valid.");
+    }
+    if(i>elementCount-1){
+      throw new RuntimeException("Index out of the bounds of the group.  You are trying to erase an element with an index higher than the number of elements in the group.");
+    }
+
+    release(elements[i]);
+    System.arraycopy(this.elements,i+1,this.elements,i,elementCount-i-1);
+    elements[--elementCount] = null;
+    if(elementCount == 0){
+      elements = elementStore = null;
+    }
+    invalidate();
   }
 }
@@ -43,6 +43,9 @@ public class RMesh extends RGeomElem
    */
   public RStrip[] strips;
   int currentStrip=0;
+
+  /* Bounds of each strip, used by contains() */
+  private float[] stripBounds;
   // ----------------------
   // --- Public Methods ---
   // ----------------------
@@ -125,6 +128,7 @@ public class RMesh extends RGeomElem
       this.append(new RStrip());
     }
     this.strips[currentStrip].append(p);
+    invalidate();
   }
 
   /**
@@ -141,6 +145,7 @@ public class RMesh extends RGeomElem
       this.append(new RStrip());
     }
     this.strips[currentStrip].append(new RPoint(x,y));
+    invalidate();
   }
   
   /**
@@ -157,6 +162,7 @@ public class RMesh extends RGeomElem
       this.append(new RStrip());
     }
     this.strips[indStrip].append(p);
+    invalidate();
   }
   
   /**
@@ -174,6 +180,7 @@ public class RMesh extends RGeomElem
       this.append(new RStrip());
     }
     this.strips[indStrip].append(new RPoint(x,y));
+    invalidate();
   }
   
   /**
@@ -187,7 +194,7 @@ public class RMesh extends RGeomElem
       if(this.style.texture != null)
         {
           g.texture(this.style.texture);
-          for(int j=0;j<this.strips[i].vertices.length;j++)
+          for(int j=0;j<this.strips[i].countVertices();j++)
             {
               float x = this.strips[i].vertices[j].x;
               float y = this.strips[i].vertices[j].y;
@@ -198,7 +205,7 @@ public class RMesh extends RGeomElem
               g.vertex(x, y, x, y);
             }
         }else{
-        for(int j=0;j<this.strips[i].vertices.length;j++)
+        for(int j=0;j<this.strips[i].countVertices();j++)
           {
             float x = this.strips[i].vertices[j].x;
             float y = this.strips[i].vertices[j].y;
@@ -219,7 +226,7 @@ public class RMesh extends RGeomElem
         {
           g.texture(this.style.texture);
         }
-      for(int j=0;j<this.strips[i].vertices.length;j++){
+      for(int j=0;j<this.strips[i].countVertices();j++){
         g.vertex(this.strips[i].vertices[j].x,this.strips[i].vertices[j].y);
       }
       g.endShape(PConstants.CLOSE);
@@ -316,10 +323,82 @@ public class RMesh extends RGeomElem
     return null;
   }
 
+  /**
+   * Use this to know if a point is inside the mesh, that is inside one of the triangles of its strips.  Only the strips whose bounding box holds the point are tested.
+   * @eexample RMesh_contains
+   * @param p  the point for which to test containement.
+   * @return boolean, true if the point is in the mesh.
+   * */
   public boolean contains(RPoint p){
-    PApplet.println("Feature not yet implemented for this class.");
+    float testx = p.x;
+    float testy = p.y;
+
+    // Test for containment in bounding box
+    if(!boundsContain(testx, testy)){
+      return false;
+    }
+
+    float[] sb = getStripBounds();
+    for(int i=0;i<countStrips();i++){
+      int b = 4*i;
+      if(testx < sb[b] || testx > sb[b+2] || testy < sb[b+1] || testy > sb[b+3]){
+        continue;
+      }
+
+      RPoint[] v = strips[i].vertices;
+      for(int j=2;j<strips[i].countVertices();j++){
+        if(triangleContains(v[j-2], v[j-1], v[j], testx, testy)){
+          return true;
+        }
+      }
+    }
     return false;
   }
+
+  /* Inclusive test, whatever the orientation of the triangle */
+  static boolean triangleContains(RPoint a, RPoint b, RPoint c, float x, float y){
+    float d1 = (b.x - a.x) * (y - a.y) - (b.y - a.y) * (x - a.x);
+    float d2 = (c.x - b.x) * (y - b.y) - (c.y - b.y) * (x - b.x);
+    float d3 = (a.x - c.x) * (y - c.y) - (a.y - c.y) * (x - c.x);
+    boolean neg = d1 < 0 || d2 < 0 || d3 < 0;
+    boolean pos = d1 > 0 || d2 > 0 || d3 > 0;
+    return !(neg && pos);
+  }
+
+  /**
+   * Returns the cached bounds {xmin, ymin, xmax, ymax} of each strip, one after the other.  The array is shared, it must not be modified.
+   */
+  float[] getStripBounds(){
+    if(stripBounds == null){
+      int numStrips = countStrips();
+      float[] sb = new float[4*numStrips];
+      for(int i=0;i<numStrips;i++){
+        float[] b = emptyBounds();
+        RStrip s = strips[i];
+        for(int j=0;j<s.countVertices();j++){
+          addToBounds(b, s.vertices[j].x, s.vertices[j].y);
+        }
+        System.arraycopy(b,0,sb,4*i,4);
+      }
+      stripBounds = sb;
+    }
+    return stripBounds;
+  }
+
+  protected float[] calculateBounds(){
+    float[] sb = getStripBounds();
+    float[] b = emptyBounds();
+    for(int i=0;i<countStrips();i++){
+      addToBounds(b, sb[4*i], sb[4*i+1]);
+      addToBounds(b, sb[4*i+2], sb[4*i+3]);
+    }
+    return b;
+  }
+
+  void dropCaches(){
+    super.dropCaches();
+    stripBounds = null;
+  }
   
   /**
    * Use this method to get the type of element this is.
@@ -342,6 +421,7 @@ public class RMesh extends RGeomElem
         strips[i].transform(m);
       }
     }
+    invalidate();
   }
   
   /**
@@ -365,11 +445,22 @@ public class RMesh extends RGeomElem
     throw new RuntimeException("Transforming a Mesh to a Shape is not yet implemented.");
   }
   
+  /**
+   * Use this to cut the arrays of vertices of the strips of the mesh to their exact size, removing the empty slots left at their end when adding points.
+   * @eexample RGeomElem_trimToSize
+   */
+  public void trimToSize(){
+    for(int i=0;i<countStrips();i++){
+      strips[i].trimToSize();
+    }
+  }
+
   /**
    * Remove all of the points.  Creates an empty polygon.
    */
   void clear(){
     this.strips = null;
+    invalidate();
   }
   
   void append(RStrip nextstrip)
@@ -386,5 +477,6 @@ public class RMesh extends RGeomElem
       currentStrip++;
     }
     this.strips=newstrips; 
+    invalidate();
   }
 }
@@ -37,12 +37,35 @@ public class RPath extends RGeomElem
   public int type = RGeomElem.SUBSHAPE;
   
   /**
-   * Array of RCommand objects holding the commands of the path.
+   * Array of RCommand objects holding the commands of the path.  It is null while the path is packed, call unpack() before accessing it directly.  After adding commands one by one it may have empty slots at its end, loop up to countCommands() or call trimToSize() before reading it directly.
    * @eexample commands
    * @related RCommand
    * @related countCommands ( )
+   * @related pack ( )
+   * @related trimToSize ( )
    */
   public RCommand[] commands;
+  int commandCount;
+
+  /* The array last written by the path, an array assigned to the public
+     field by user code is taken over with all of its commands */
+  private RCommand[] commandStore;
+
+  /* Packed storage, used instead of commands after a call to pack().  The
+     coordinates of the commands are stored one after the other: the start
+     point of the path, then the control points and the end point of each
+     command.  packedOffsets holds where the start point of each command is. */
+  byte[] packedTypes;
+  float[] packedCoords;
+  int[] packedOffsets;
+
+  /* True when the packed arrays may be shared with copies of the path.  The
+     types and offsets are never modified, the coordinates are copied
+     before being modified in place. */
+  private boolean packedShared;
+
+  /* Hierarchy over the bounds of the commands, see getCommandTree() */
+  private RBoundsTree commandTree;
   
   /**
    * Last point from where to add the next command.  Initialized to (0, 0).
@@ -70,11 +93,12 @@ public class RPath extends RGeomElem
   public RPath(RPoint[] points){
     if(points == null) return;
     this.lastPoint = points[0];
+    ensureCapacity(points.length - 1);
 
     for(int i = 1; i < points.length; i++){
-      this.addLineTo(points[i]);
+      this.appendCommand(RCommand.createLine(lastPoint, points[i]));
     }
-
+    trimToSize();
   }
 
   /**
@@ -97,18 +121,27 @@ public class RPath extends RGeomElem
   }
   
   /**
-   * Copy a path.
+   * Copy a path.  The copy of a packed path shares the packed coordinates with the original until one of them is modified, so it is made in constant time.
    * @eexample RPath
    * @param s  path to be copied
    */    
   public RPath(RPath s){
     int numCommands = s.countCommands();
-    if(numCommands!=0){
+    if(s.packedTypes != null){
+      packedTypes = s.packedTypes;
+      packedCoords = s.packedCoords;
+      packedOffsets = s.packedOffsets;
+      packedShared = true;
+      s.packedShared = true;
+      lastPoint = new RPoint(packedCoords[packedCoords.length-2], packedCoords[packedCoords.length-1]);
+    }else if(numCommands!=0){
+      ensureCapacity(numCommands);
       lastPoint = new RPoint(s.commands[0].startPoint);
       for(int i=0;i<numCommands;i++){
         this.append(new RCommand(s.commands[i], lastPoint));
         lastPoint = commands[i].endPoint;
       }
+      trimToSize();
     }
     
     closed = s.closed;
@@ -126,19 +159,176 @@ public class RPath extends RGeomElem
    * @return int, the number commands in the contour
    */
   public int countCommands(){
-    if(this.commands==null){
-      return 0;
+    if(this.packedTypes!=null){
+      return this.packedTypes.length;
     }
-    
-    return this.commands.length;
+
+    if(commands != commandStore){
+      commandStore = commands;
+      commandCount = (commands == null) ? 0 : commands.length;
+    }
+    return this.commandCount;
+  }
+
+  /**
+   * Use this to make room for a number of commands before adding them one by one.  The array of commands grows by doubling, so adding commands costs the same whatever the length of the path, and it keeps empty slots at its end until trimToSize() is called.
+   * @eexample RPath_ensureCapacity
+   * @param minCapacity  the number of commands the path must be able to hold
+   * @related trimToSize ( )
+   */
+  public void ensureCapacity(int minCapacity){
+    unpack();
+    int numCommands = countCommands();
+    int capacity = (commands == null) ? 0 : commands.length;
+    if(minCapacity <= capacity){
+      return;
+    }
+
+    RCommand[] newcommands = new RCommand[Math.max(minCapacity, 2 * capacity)];
+    if(numCommands > 0){
+      System.arraycopy(commands,0,newcommands,0,numCommands);
+    }
+    commands = commandStore = newcommands;
+  }
+
+  /**
+   * Use this to cut the array of commands to the number of commands of the path, removing the empty slots left at its end when adding commands.
+   * @eexample RPath_ensureCapacity
+   * @related ensureCapacity ( )
+   */
+  public void trimToSize(){
+    if(packedTypes != null){
+      return;
+    }
+
+    int numCommands = countCommands();
+    if(commands == null || commands.length == numCommands){
+      return;
+    }
+
+    RCommand[] newcommands = null;
+    if(numCommands > 0){
+      newcommands = new RCommand[numCommands];
+      System.arraycopy(commands,0,newcommands,0,numCommands);
+    }
+    commands = commandStore = newcommands;
+  }
+
+  /**
+   * Use this to store the path in a compact form: one array with the types of the commands and one array with their coordinates, instead of an RCommand object with its own RPoint objects for each command.  This greatly reduces the memory used by long paths, such as the outlines of maps, and makes copies of the path cheap, as they share the packed coordinates until they are modified.  All the methods of the path keep working on a packed path; the ones that modify its commands, as well as getHandles(), unpack it first.  Paths whose commands are not joined one after the other are left unpacked.
+   * @eexample RPath_pack
+   * @related unpack ( )
+   * @related isPacked ( )
+   */
+  public void pack(){
+    int numCommands = countCommands();
+    if(packedTypes != null || numCommands == 0){
+      return;
+    }
+
+    int numCoords = 2;
+    for(int i=0;i<numCommands;i++){
+      if(i > 0){
+        RPoint prev = commands[i-1].endPoint;
+        RPoint start = commands[i].startPoint;
+        if(prev.x != start.x || prev.y != start.y){
+          return;
+        }
+      }
+      numCoords += 2 * (commands[i].countControlPoints() + 1);
+    }
+
+    byte[] types = new byte[numCommands];
+    int[] offsets = new int[numCommands];
+    float[] xy = new float[numCoords];
+    xy[0] = commands[0].startPoint.x;
+    xy[1] = commands[0].startPoint.y;
+    int pos = 2;
+    for(int i=0;i<numCommands;i++){
+      RCommand c = commands[i];
+      types[i] = (byte)c.commandType;
+      offsets[i] = pos - 2;
+      for(int j=0;j<c.countControlPoints();j++){
+        xy[pos++] = c.controlPoints[j].x;
+        xy[pos++] = c.controlPoints[j].y;
+      }
+      xy[pos++] = c.endPoint.x;
+      xy[pos++] = c.endPoint.y;
+    }
+
+    packedTypes = types;
+    packedOffsets = offsets;
+    packedCoords = xy;
+    commands = commandStore = null;
+    commandCount = 0;
+  }
+
+  /**
+   * Use this to turn a packed path back into an array of RCommand objects.  It does nothing if the path is not packed.
+   * @eexample RPath_pack
+   * @related pack ( )
+   */
+  public void unpack(){
+    if(packedTypes == null){
+      return;
+    }
+
+    int numCommands = packedTypes.length;
+    RCommand[] result = new RCommand[numCommands];
+    RPoint start = new RPoint(packedCoords[0], packedCoords[1]);
+    for(int i=0;i<numCommands;i++){
+      int pos = packedOffsets[i] + 2;
+      switch(packedTypes[i])
+        {
+        case RCommand.LINETO:
+          result[i] = RCommand.createLine(start, new RPoint(packedCoords[pos], packedCoords[pos+1]));
+          break;
+
+        case RCommand.QUADBEZIERTO:
+          result[i] = RCommand.createBezier3(start,
+                                             new RPoint(packedCoords[pos], packedCoords[pos+1]),
+                                             new RPoint(packedCoords[pos+2], packedCoords[pos+3]));
+          break;
+
+        case RCommand.CUBICBEZIERTO:
+          result[i] = RCommand.createBezier4(start,
+                                             new RPoint(packedCoords[pos], packedCoords[pos+1]),
+                                             new RPoint(packedCoords[pos+2], packedCoords[pos+3]),
+                                             new RPoint(packedCoords[pos+4], packedCoords[pos+5]));
+          break;
+        }
+      start = result[i].endPoint;
+    }
+
+    // Keep sharing the last point, commands may have been created from it
+    if(lastPoint != null && lastPoint.x == start.x && lastPoint.y == start.y){
+      result[numCommands-1].endPoint = lastPoint;
+    }else{
+      lastPoint = start;
+    }
+
+    clearPacked();
+    commands = commandStore = result;
+    commandCount = numCommands;
+  }
+
+  /**
+   * Use this to know if the path is stored in packed form.
+   * @eexample RPath_pack
+   * @return boolean, true if the path is packed.
+   * @related pack ( )
+   */
+  public boolean isPacked(){
+    return packedTypes != null;
   }
   
   /**
-   * Use this to return the start, control and end points of the path.  It returns the points in the way of an array of RPoint.
+   * Use this to return the start, control and end points of the path.  It returns the points in the way of an array of RPoint.  The points returned are the ones of the commands, so modifying them modifies the path; a packed path is unpacked for that reason.
    * @eexample getHandles
    * @return RPoint[], the start, control and end points returned in an array.
    * */
   public RPoint[] getHandles(){
+    unpack();
     int numCommands = countCommands();
 
     RPoint[] result = null;
@@ -170,47 +360,74 @@ public class RPath extends RGeomElem
    * @return RPoint[], the vertices returned in an array.
    * */
   public RPoint[] getPoints(){
+    return getPoints(RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this to return the points on the curve using a specific segmentator instead of the global one.  It returns the points in the way of an array of RPoint.
+   * @eexample getPoints
+   * @param seg  the segmentator to use
+   * @return RPoint[], the vertices returned in an array.
+   * */
+  public RPoint[] getPoints(RSegmentator seg){
+    if(countCommands() == 0){
+      return null;
+    }
+
+    RFloatBuffer buffer = new RFloatBuffer();
+    flattenInto(buffer, seg);
+    return buffer.toPoints();
+  }
+
+  /**
+   * Use this to segment the path sending the coordinates of the resulting points to a sink, without creating any RPoint.  The points are the same ones returned by getPoints(), followed by a call to endPath() on the sink.
+   * @eexample flattenInto
+   * @param sink  the object receiving the points, for example an RFloatBuffer that is cleared and reused every frame
+   * @related RFloatBuffer
+   * */
+  public void flattenInto(RFloatSink sink){
+    flattenInto(sink, RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this to segment the path with a specific segmentator sending the coordinates of the resulting points to a sink.
+   * @param sink  the object receiving the points
+   * @param seg  the segmentator to use
+   * */
+  public void flattenInto(RFloatSink sink, RSegmentator seg){
     int numCommands = countCommands();
     if(numCommands == 0){
-      return null;
+      return;
     }
-    
-    // Add the curve points of each command
-    
-    // First set the accumulated offset to the value of the inital offset
-    RCommand.segmentAccOffset = RCommand.segmentOffset;
-    RPoint[] result=null;
-    RPoint[] newresult=null;
+
+    // The accumulated offset starts with the value of the initial offset
+    RCommand.Segmentation s = new RCommand.Segmentation(seg, seg.offset, sink);
+    RCommand view = newView();
     for(int i=0;i<numCommands;i++){
-      RPoint[] newPoints = commands[i].getPoints(false);
-      if(newPoints!=null){
-        if(result==null){
-          result = new RPoint[newPoints.length];
-          System.arraycopy(newPoints,0,result,0,newPoints.length);
-        }else{
-          // Check for overlapping
-          // Overlapping happens when the last point of the last command 
-          // is the same as the first point of the current command
-          RPoint lastp = result[result.length-1];
-          RPoint firstp = newPoints[0];
-          int overlap = 0;
-          if((lastp.x == firstp.x) && (lastp.y == firstp.y)) {
-            overlap = 1;
-          }
-          newresult = new RPoint[result.length + newPoints.length - overlap];
-          System.arraycopy(result,0,newresult,0,result.length);
-          System.arraycopy(newPoints,overlap,newresult,result.length,newPoints.length - overlap);
-          result = newresult;
-        }
-      }
+      // Overlapping happens when the last point of the last command
+      // is the same as the first point of the current command
+      s.joining = true;
+      commandAt(i, view).segment(s);
     }
-    
+    s.joining = false;
+
     // Always add last point
-    newresult = new RPoint[result.length + 1];
-    System.arraycopy(result,0,newresult,0,result.length);
-    newresult[newresult.length - 1] = new RPoint(commands[numCommands-1].endPoint);
-    
-    return newresult;
+    RPoint last = commandAt(numCommands-1).endPoint;
+    s.add(last.x, last.y);
+
+    sink.endPath();
+  }
+
+  /**
+   * Use this to segment the path writing the interleaved x/y coordinates of the resulting points into an array.  The array must be large enough to hold all the points, otherwise an ArrayIndexOutOfBoundsException is thrown; use an RFloatBuffer when the number of points is not known.
+   * @param xy  the array receiving the coordinates
+   * @param offset  the index of xy where the first coordinate is written
+   * @return int, the index following the last coordinate written.
+   * */
+  public int flattenInto(float[] xy, int offset){
+    RCommand.ArraySink sink = new RCommand.ArraySink(xy, offset);
+    flattenInto(sink);
+    return sink.pos;
   }
 
   /**
@@ -245,11 +462,35 @@ public class RPath extends RGeomElem
   
   protected void calculateCurveLengths(){
     lenCurves = new float[countCommands()];
-    lenCurve = 0F;
+    RCommand view = newView();
     for(int i=0;i<countCommands();i++){
-      lenCurves[i] = commands[i].getCurveLength();
-      lenCurve += lenCurves[i];
+      lenCurves[i] = commandAt(i, view).getCurveLength();
     }
+    accumulateCurveLengths();
+  }
+
+  void dropCaches(){
+    super.dropCaches();
+    commandTree = null;
+  }
+
+  void dropCachesDeep(){
+    dropCaches();
+    if(packedTypes != null){
+      return;
+    }
+    for(int i=0;i<countCommands();i++){
+      commands[i].dropCaches();
+    }
+  }
+
+  protected float[] calculateBounds(){
+    float[] b = emptyBounds();
+    RCommand view = newView();
+    for(int i=0;i<countCommands();i++){
+      addToBounds(b, commandAt(i, view).getBoundsArray());
+    }
+    return b;
   }
   
   /**
@@ -266,7 +507,7 @@ public class RPath extends RGeomElem
     RPoint[] result=null;
     RPoint[] newresult=null;
     for(int i=0;i<numCommands;i++){
-      RPoint[] newTangents = commands[i].getTangents();
+      RPoint[] newTangents = commandAt(i).getTangents();
       if(newTangents!=null){
         if(newTangents.length!=1){
           int overlap = 1;
@@ -295,10 +536,12 @@ public class RPath extends RGeomElem
       return null;
     }
     
+    int[] near = commandsOverlapping(other.getBoundsArray());
+
     RPoint[] result=null;
     RPoint[] newresult=null;
-    for(int i=0;i<numCommands;i++){
-      RPoint[] newPoints = commands[i].intersectionPoints(other);
+    for(int k=0;k<near.length;k++){
+      RPoint[] newPoints = commandAt(near[k]).intersectionPoints(other);
       if(newPoints!=null) {
         if(result==null){
           result = new RPoint[newPoints.length];
@@ -330,8 +573,10 @@ public class RPath extends RGeomElem
     RPoint[] newresult=null;
     
     for(int j=0;j<numOtherCommands;j++){
-      for(int i=0;i<numCommands;i++){
-        RPoint[] newPoints = commands[i].intersectionPoints(other.commands[j]);
+      RCommand otherCommand = other.commandAt(j);
+      int[] near = commandsOverlapping(otherCommand.getBoundsArray());
+      for(int k=0;k<near.length;k++){
+        RPoint[] newPoints = commandAt(near[k]).intersectionPoints(otherCommand);
         if(newPoints!=null){
           if(result==null){
             result = new RPoint[newPoints.length];
@@ -350,28 +595,64 @@ public class RPath extends RGeomElem
   }
 
 
+  /* The hierarchy over the exact bounds of the commands, kept until the
+     path changes */
+  RBoundsTree getCommandTree(){
+    RBoundsTree tree = commandTree;
+    if(tree == null){
+      int n = countCommands();
+      float[] boxes = new float[4 * n];
+      RCommand view = newView();
+      for(int i=0;i<n;i++){
+        System.arraycopy(commandAt(i, view).getBoundsArray(), 0, boxes, 4 * i, 4);
+      }
+      tree = new RBoundsTree(boxes, n);
+      commandTree = tree;
+    }
+    return tree;
+  }
+
+  /* Indices of the commands whose bounds overlap the box, in increasing order */
+  int[] commandsOverlapping(float[] b){
+    int n = countCommands();
+    if(n >= RBoundsTree.MIN_ELEMENTS){
+      return getCommandTree().query(b);
+    }
+
+    int[] near = new int[n];
+    int count = 0;
+    RCommand view = newView();
+    for(int i=0;i<n;i++){
+      float[] o = commandAt(i, view).getBoundsArray();
+      if(o[0] <= b[2] && b[0] <= o[2] && o[1] <= b[3] && b[1] <= o[3]){
+        near[count++] = i;
+      }
+    }
+    int[] exact = new int[count];
+    System.arraycopy(near, 0, exact, 0, count);
+    return exact;
+  }
+
   /**
    * Use this to find the closest or intersection points between this path and a command.
    * @return RPoint[], the intersection points returned in an array.
    * */
   public RClosest closestPoints(RCommand other){
-    int numCommands = countCommands();
-    if(numCommands == 0){
+    return closestPoints(other, Float.POSITIVE_INFINITY);
+  }
+
+  /* Same as closestPoints(), skipping the commands farther than bound from the other command */
+  RClosest closestPoints(final RCommand other, float bound){
+    if(countCommands() == 0){
       return null;
     }
-    
-    // TODO: get here the max value of an integer
-    float minDist = 100000;
-    
-    RClosest result = new RClosest();
 
-    for(int i=0;i<numCommands;i++){
-      RClosest currResult = commands[i].closestPoints(other);
-      
-      result.update(currResult);
-    }
-    
-    return result;
+    RBoundsTree.ClosestSearch search = new RBoundsTree.ClosestSearch(){
+        RClosest closest(int i, int j, float limit){
+          return commandAt(i).closestPoints(other);
+        }
+      };
+    return search.search(getCommandTree(), RBoundsTree.single(other.getBoundsArray()), bound, true);
   }
 
   /**
@@ -379,27 +660,21 @@ public class RPath extends RGeomElem
    * @return RPoint[], the intersection points returned in an array.
    * */
   public RClosest closestPoints(RPath other){
-    int numCommands = countCommands();
-    int numOtherCommands = other.countCommands();
-    
-    if(numCommands == 0){
-      return null;
-    }
+    return closestPoints(other, Float.POSITIVE_INFINITY);
+  }
 
-    // TODO: get here the max value of an integer
-    float minDist = 100000;
-    
-    RClosest result = new RClosest();
-    
-    for(int j=0;j<numOtherCommands;j++){
-      for(int i=0;i<numCommands;i++){
-        RClosest currResult = commands[i].closestPoints(other.commands[j]);
-        result.update(currResult);
-      }
+  /* Same as closestPoints(), skipping the pairs of commands farther apart than bound */
+  RClosest closestPoints(final RPath other, float bound){
+    if(countCommands() == 0){
+      return null;
     }
 
-    
-    return result;
+    RBoundsTree.ClosestSearch search = new RBoundsTree.ClosestSearch(){
+        RClosest closest(int i, int j, float limit){
+          return commandAt(i).closestPoints(other.commandAt(j));
+        }
+      };
+    return search.search(getCommandTree(), other.getCommandTree(), bound, false);
   }
 
   
@@ -415,14 +690,118 @@ public class RPath extends RGeomElem
       return new RPoint();
     }
     
-    if(t==0.0F){ return commands[0].getPoint(0F); }
-    if(t==1.0F){ return commands[numCommands-1].getPoint(1F); }
+    if(t==0.0F){ return commandAt(0).getPoint(0F); }
+    if(t==1.0F){ return commandAt(numCommands-1).getPoint(1F); }
 
     float[] indAndAdv = indAndAdvAt(t);
     int indOfElement = (int)(indAndAdv[0]);
     float advOfElement = indAndAdv[1];
     
-    return commands[indOfElement].getPoint(advOfElement);
+    return commandAt(indOfElement).getPoint(advOfElement);
+  }
+
+  /**
+   * Return the points on the curve for several advancement parameters at once.  The commands holding them are found in a single walk along the path when ts is sorted.
+   * @eexample getPoint
+   * @param ts  the parameters of advancement on the curve. They must have values between 0 and 1.
+   * @return RPoint[], one point per advancement.
+   * @related getTangents ( )
+   * */
+  public RPoint[] getPoints(float[] ts){
+    return pointsAt(ts, false);
+  }
+
+  /**
+   * Return the tangents on the curve for several advancement parameters at once.
+   * @eexample getPoint
+   * @param ts  the parameters of advancement on the curve. They must have values between 0 and 1.
+   * @return RPoint[], one tangent per advancement.
+   * @related getPoints ( )
+   * */
+  public RPoint[] getTangents(float[] ts){
+    return pointsAt(ts, true);
+  }
+
+  private RPoint[] pointsAt(float[] ts, boolean tangents){
+    RPoint[] result = new RPoint[ts.length];
+    int numCommands = countCommands();
+    if(numCommands == 0){
+      for(int k=0;k<ts.length;k++){
+        result[k] = new RPoint();
+      }
+      return result;
+    }
+
+    float[] indAndAdv = indAndAdvAt(ts);
+    for(int k=0;k<ts.length;k++){
+      RCommand c;
+      float adv;
+      if(ts[k] == 0.0F){
+        c = commandAt(0);
+        adv = 0F;
+      }else if(ts[k] == 1.0F){
+        c = commandAt(numCommands-1);
+        adv = 1F;
+      }else{
+        c = commandAt((int)indAndAdv[2*k]);
+        adv = indAndAdv[2*k+1];
+      }
+      result[k] = tangents ? c.getTangent(adv) : c.getPoint(adv);
+    }
+    return result;
+  }
+
+  /**
+   * Return the point at a given distance from the start of the path, measured along the path.
+   * @eexample RPath_getPointAtLength
+   * @param s  the distance along the path. s must have values between 0 and getCurveLength().
+   * @return RPoint, the vertice returned.
+   * @related getTangentAtLength ( )
+   * @related lengthAt ( )
+   * */
+  public RPoint getPointAtLength(float s){
+    if(countCommands() == 0){
+      return new RPoint();
+    }
+
+    int i = indexAtLength(s);
+    return commandAt(i).getPointAtLength(s - lenCurvesAcc[i]);
+  }
+
+  /**
+   * Return the tangent at a given distance from the start of the path, measured along the path.
+   * @eexample RPath_getTangentAtLength
+   * @param s  the distance along the path. s must have values between 0 and getCurveLength().
+   * @return RPoint, the tangent returned.
+   * @related getPointAtLength ( )
+   * */
+  public RPoint getTangentAtLength(float s){
+    if(countCommands() == 0){
+      return new RPoint();
+    }
+
+    int i = indexAtLength(s);
+    return commandAt(i).getTangentAtLength(s - lenCurvesAcc[i]);
+  }
+
+  /**
+   * Return the length of the path from its start to the advancement parameter t.  This is the inverse of getPointAtLength(): getPointAtLength(lengthAt(t)) is the same point as getPoint(t).
+   * @eexample RPath_lengthAt
+   * @param t  the parameter of advancement on the curve. t must have values between 0 and 1.
+   * @return float, the length returned.
+   * @related getPointAtLength ( )
+   * */
+  public float lengthAt(float t){
+    if(countCommands() == 0){
+      return 0F;
+    }
+
+    if(t <= 0F){ return 0F; }
+    if(t >= 1F){ return getCurveLength(); }
+
+    float[] indAndAdv = indAndAdvAt(t);
+    int indOfElement = (int)(indAndAdv[0]);
+    return lenCurvesAcc[indOfElement] + commandAt(indOfElement).lengthAt(indAndAdv[1]);
   }
   
   /**
@@ -437,8 +816,8 @@ public class RPath extends RGeomElem
       return new RPoint();
     }
     
-    if(t==0.0F){ return commands[0].getTangent(0F); }
-    if(t==1.0F){ return commands[numCommands-1].getTangent(1F); }
+    if(t==0.0F){ return commandAt(0).getTangent(0F); }
+    if(t==1.0F){ return commandAt(numCommands-1).getTangent(1F); }
     
     float[] indAndAdv = indAndAdvAt(t);
     int indOfElement = (int)(indAndAdv[0]);
@@ -462,7 +841,7 @@ public class RPath extends RGeomElem
        }
     */
     
-    return commands[indOfElement].getTangent(advOfElement);
+    return commandAt(indOfElement).getTangent(advOfElement);
   }
   
   
@@ -476,14 +855,7 @@ public class RPath extends RGeomElem
     float testy = p.y;
 
     // Test for containment in bounding box
-    RRectangle bbox = getBounds();
-    float xmin = bbox.getMinX();
-    float xmax = bbox.getMaxX();
-
-    float ymin = bbox.getMinY();
-    float ymax = bbox.getMaxY();
-    
-    if( (testx < xmin) || (testx > xmax) || (testy < ymin) || (testy > ymax)){
+    if(!boundsContain(testx, testy)){
       return false;
     }
 
@@ -506,6 +878,53 @@ public class RPath extends RGeomElem
   }
   
   
+  /**
+   * Use this to know which of a set of points are inside the path.  The path is segmented once for all the points, which is much faster than calling contains() for each of them.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param out  the array receiving for each point true if it is inside, at least as long as xs
+   * @related countContained ( )
+   */
+  public void contains(float[] xs, float[] ys, boolean[] out){
+    contains(xs, ys, out, false);
+  }
+
+  /**
+   * Use this to know which of a set of points are inside the path, optionally splitting the work between several threads.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param out  the array receiving for each point true if it is inside, at least as long as xs
+   * @param parallel  true to split large sets of points between the threads of the library
+   */
+  public void contains(float[] xs, float[] ys, boolean[] out, boolean parallel){
+    new RPreparedShape(this, RSegmentator.getDefault(), RPreparedShape.EVENODD).contains(xs, ys, out, parallel);
+  }
+
+  /**
+   * Use this to count how many of a set of points are inside the path.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @return int, the number of points inside.
+   */
+  public int countContained(float[] xs, float[] ys){
+    return countContained(xs, ys, false);
+  }
+
+  /**
+   * Use this to count how many of a set of points are inside the path, optionally splitting the work between several threads.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param parallel  true to split large sets of points between the threads of the library
+   * @return int, the number of points inside.
+   */
+  public int countContained(float[] xs, float[] ys, boolean parallel){
+    return new RPreparedShape(this, RSegmentator.getDefault(), RPreparedShape.EVENODD).countContained(xs, ys, parallel);
+  }
+
   /**
    * Use this to insert a split point into the path.
    * @eexample insertHandle
@@ -516,6 +935,7 @@ public class RPath extends RGeomElem
       return;
     }
 
+    unpack();
     float[] indAndAdv = indAndAdvAt(t);
     int indOfElement = (int)(indAndAdv[0]);
     float advOfElement = indAndAdv[1];
@@ -533,10 +953,10 @@ public class RPath extends RGeomElem
     // Insert the splittedCommands
     insert( splittedCommands[1], indOfElement );
     insert( splittedCommands[0], indOfElement );
+    trimToSize();
 
     // Clear the cache
-    lenCurves = null;
-    lenCurve = -1F;
+    invalidate();
 
     return;
   }
@@ -551,6 +971,7 @@ public class RPath extends RGeomElem
       return;
     }
 
+    unpack();
     int numCommands = countCommands();
     
     for ( int i = 0; i<numCommands*2; i+=2 ) {
@@ -558,7 +979,7 @@ public class RPath extends RGeomElem
       RCommand[] splittedCommands = commands[i].split(t);
       
       if(splittedCommands[0] == null || splittedCommands[1] == null) {
-        return;
+        break;
       }
       
       // Extract the splitted command
@@ -568,10 +989,10 @@ public class RPath extends RGeomElem
       insert( splittedCommands[1], i );
       insert( splittedCommands[0], i );
     }
+    trimToSize();
 
     // Clear the cache
-    lenCurves = null;
-    lenCurve = -1F;
+    invalidate();
     
     return;
   }
@@ -614,18 +1035,21 @@ public class RPath extends RGeomElem
     
     
     // Split the affected command and reconstruct each of the shapes
-    RCommand[] splittedCommands = commands[indOfElement].split(advOfElement);
+    RCommand[] splittedCommands = commandAt(indOfElement).split(advOfElement);
 
+    RCommand view = newView();
     result[0] = new RPath();
+    result[0].ensureCapacity(indOfElement + 1);
     for(int i = 0; i<indOfElement; i++){
-      result[0].addCommand(new RCommand(commands[i]));
+      result[0].appendCommand(new RCommand(commandAt(i, view)));
     }
     result[0].addCommand(new RCommand(splittedCommands[0]));
     result[0].setStyle(this);
     
     result[1] = new RPath();
+    result[1].ensureCapacity(countCommands() - indOfElement);
     for(int i = indOfElement + 1; i < countCommands(); i++){
-      result[1].addCommand(new RCommand(commands[i]));
+      result[1].appendCommand(new RCommand(commandAt(i, view)));
     }
     result[1].addCommand(new RCommand(splittedCommands[1]));
     result[1].setStyle(this);
@@ -634,17 +1058,32 @@ public class RPath extends RGeomElem
   }
 
   public void polygonize(){
-    RPoint[] points = getPoints();
+    polygonize(RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this to replace the curves of the path by the lines resulting of segmenting it with a specific segmentator.
+   * @param seg  the segmentator to use
+   */
+  public void polygonize(RSegmentator seg){
+    RPoint[] points = getPoints(seg);
+    clearPacked();
     
     if (points == null){
       this.commands = null;
     }else{
       RPath result = new RPath(points[0]);
+      result.ensureCapacity(points.length - 1);
       for(int i = 1; i< points.length; i++){
-        result.addLineTo(points[i]);
+        result.appendCommand(RCommand.createLine(result.lastPoint, points[i]));
       }
+      result.trimToSize();
       this.commands = result.commands;
+      for(int i=0;i<countCommands();i++){
+        adopt(commands[i]);
+      }
     }
+    invalidate();
   }
   
   /**
@@ -653,48 +1092,34 @@ public class RPath extends RGeomElem
    * @param g PGraphics, the graphics object on which to draw the path
    */
   public void draw(PGraphics g){
-    countCommands();
-    
     // By default always draw with an adaptative segmentator
-    int lastSegmentator = RCommand.segmentType;
-    RCommand.setSegmentator(RCommand.ADAPTATIVE);
-    
-    RPoint[] points = getPoints();
-    
-    if(points == null){
+    RFloatBuffer points = new RFloatBuffer();
+    flattenInto(points, RSegmentator.getDefault().withType(RCommand.ADAPTATIVE));
+
+    if(points.size == 0){
       return;
     }
 
     g.beginShape();
-    for(int i=0;i<points.length;i++){
-      g.vertex(points[i].x,points[i].y);
+    for(int i=0;i<points.size;i+=2){
+      g.vertex(points.xy[i],points.xy[i+1]);
     }
     g.endShape(closed ? PConstants.CLOSE : PConstants.OPEN);
-    
-    // Restore the user set segmentator
-    RCommand.setSegmentator(lastSegmentator);
   }
   
   public void draw(PApplet g){
-    countCommands();
-    
     // By default always draw with an adaptative segmentator
-    int lastSegmentator = RCommand.segmentType;
-    RCommand.setSegmentator(RCommand.ADAPTATIVE);
-    
-    RPoint[] points = getPoints();
-    RCommand.setSegmentator(lastSegmentator);
-    if(points == null){
+    RFloatBuffer points = new RFloatBuffer();
+    flattenInto(points, RSegmentator.getDefault().withType(RCommand.ADAPTATIVE));
+
+    if(points.size == 0){
       return;
     }
     g.beginShape();
-    for(int i=0;i<points.length;i++){
-      g.vertex(points[i].x,points[i].y);
+    for(int i=0;i<points.size;i+=2){
+      g.vertex(points.xy[i],points.xy[i+1]);
     }
     g.endShape(closed ? PConstants.CLOSE : PConstants.OPEN);
-    
-    // Restore the user set segmentator
-    RCommand.setSegmentator(lastSegmentator);
   }
   
   /**
@@ -703,9 +1128,17 @@ public class RPath extends RGeomElem
    * @invisible
    */
   public void addCommand(RCommand p){
+    appendCommand(p);
+  }
+
+  /* Adds a command leaving the array with room for more, the builders adding
+     many commands call trimToSize() once they are done */
+  void appendCommand(RCommand p){
+    unpack();
     this.append(p);
     
-    lastPoint = commands[commands.length-1].endPoint;
+    lastPoint = commands[commandCount-1].endPoint;
+    invalidate();
   }
   
   /**
@@ -784,13 +1217,17 @@ public class RPath extends RGeomElem
   
   
   public void addClose(){
-    if(commands == null){
+    unpack();
+    if(countCommands() == 0){
       return;
     }
     
-    if((commands[commands.length-1].endPoint.x == commands[0].startPoint.x) && (commands[commands.length-1].endPoint.y == commands[0].startPoint.y)) {
-      commands[commands.length-1].endPoint = new RPoint(commands[0].startPoint.x, commands[0].startPoint.y);
-      lastPoint = commands[commands.length-1].endPoint;
+    RCommand last = commands[commandCount-1];
+    if((last.endPoint.x == commands[0].startPoint.x) && (last.endPoint.y == commands[0].startPoint.y)) {
+      last.endPoint = new RPoint(commands[0].startPoint.x, commands[0].startPoint.y);
+      lastPoint = last.endPoint;
+      last.invalidate();
+      invalidate();
     }else{
       addLineTo(new RPoint(commands[0].startPoint.x,commands[0].startPoint.y));
     }
@@ -804,12 +1241,21 @@ public class RPath extends RGeomElem
   public RPolygon toPolygon(){
     return this.toShape().toPolygon();
   }
+
+  /**
+   * @invisible
+   */
+  public RPolygon toPolygon(RSegmentator seg){
+    return this.toShape().toPolygon(seg);
+  }
   
   /**
    * @invisible
    */
   public RShape toShape(){
-    return new RShape(this);
+    RShape result = new RShape();
+    result.addPathShared(this);
+    return result;
   }
   
   /**
@@ -818,6 +1264,13 @@ public class RPath extends RGeomElem
   public RMesh toMesh(){
     return this.toPolygon().toMesh();
   }
+
+  /**
+   * @invisible
+   */
+  public RMesh toMesh(RSegmentator seg){
+    return this.toPolygon(seg).toMesh();
+  }
   
   /**
    * Use this method to get the type of element this is.
@@ -831,8 +1284,9 @@ public class RPath extends RGeomElem
   
   public void print(){
     for(int i=0;i<countCommands();i++){
+      RCommand command = commandAt(i);
       String commandType = "";
-      switch(commands[i].commandType)
+      switch(command.commandType)
         {
         case RCommand.LINETO:
           commandType = "LINETO";
@@ -849,16 +1303,16 @@ public class RPath extends RGeomElem
       
       System.out.println("cmd type: " + commandType);
       System.out.print("start point: ");
-      commands[i].startPoint.print();
+      command.startPoint.print();
       System.out.print("\n");
       System.out.print("end point: ");
-      commands[i].endPoint.print();
+      command.endPoint.print();
       System.out.print("\n");
-      if(commands[i].controlPoints != null)
+      if(command.controlPoints != null)
         {
           System.out.println("control points: ");
-          for(int j=0;j<commands[i].controlPoints.length;j++){
-            commands[i].controlPoints[j].print();
+          for(int j=0;j<command.controlPoints.length;j++){
+            command.controlPoints[j].print();
             System.out.print(" ");
             System.out.print("\n");
           }
@@ -897,53 +1351,69 @@ public class RPath extends RGeomElem
     }
   */
   
-  private float[] indAndAdvAt(float t){
-    int indOfElement = 0;
-    float[] lengthsCurves = getCurveLengths();
-    float lengthCurve = getCurveLength();
-
-    /* Calculate the amount of advancement t mapped to each command */
-    /* We use a simple algorithm where we give to each command the same amount of advancement */
-    /* A more useful way would be to give to each command an advancement proportional to the length of the command */
-    /* Old method with uniform advancement per command
-       float advPerCommand;
-       advPerCommand = 1F / numPaths;
-       indOfElement = (int)(Math.floor(t / advPerCommand)) % numPaths;
-       advOfElement = (t*numPaths - indOfElement);
-    */
-    
-    float accumulatedAdvancement = lengthsCurves[indOfElement] / lengthCurve;
-    float prevAccumulatedAdvancement = 0F;
-    
-    /* Find in what command the advancement point is  */
-    while(t > accumulatedAdvancement){
-      indOfElement++;
-      prevAccumulatedAdvancement = accumulatedAdvancement;
-      accumulatedAdvancement += (lengthsCurves[indOfElement] / lengthCurve);
+  /**
+   * Use this method to transform the path.  A packed path is transformed in place without being unpacked.
+   * @eexample RPath_transform
+   * @param m RMatrix, the matrix defining the affine transformation
+   */
+  public void transform(RMatrix m){
+    if(packedTypes == null){
+      super.transform(m);
+      return;
+    }
+
+    if(packedShared){
+      packedCoords = packedCoords.clone();
+      packedShared = false;
     }
-    
-    float advOfElement = (t-prevAccumulatedAdvancement) / (lengthsCurves[indOfElement] / lengthCurve);
 
-    float[] indAndAdv = new float[2];
+    for(int i=0;i<packedCoords.length;i+=2){
+      float x = packedCoords[i];
+      float y = packedCoords[i+1];
+      packedCoords[i] = m.m00*x + m.m01*y + m.m02;
+      packedCoords[i+1] = m.m10*x + m.m11*y + m.m12;
+    }
+    lastPoint.transform(m);
 
-    indAndAdv[0] = indOfElement;
-    indAndAdv[1] = advOfElement;
-    
-    return indAndAdv;
+    invalidateDeep();
+  }
+
+  /**
+   * Returns the i-th command.  While the path is packed it is a new command read from the packed coordinates, modifying it does not change the path.
+   */
+  RCommand commandAt(int i){
+    return commandAt(i, (packedTypes == null) ? null : new RCommand());
+  }
+
+  /**
+   * Returns the i-th command, refilling view with it while the path is packed.  For loops over the commands that use each one before asking for the next: the view is only valid until the next call with it, and must belong to a single thread.
+   */
+  RCommand commandAt(int i, RCommand view){
+    if(packedTypes == null){
+      return commands[i];
+    }
+
+    view.setPacked(packedTypes[i], packedCoords, packedOffsets[i]);
+    return view;
+  }
+
+  /* The view to pass to commandAt(int, RCommand) in a loop, null if the path is not packed */
+  private RCommand newView(){
+    return (packedTypes == null) ? null : new RCommand();
+  }
+
+  private void clearPacked(){
+    packedTypes = null;
+    packedCoords = null;
+    packedOffsets = null;
+    packedShared = false;
   }
 
   private void append(RCommand nextcommand)
   {
-    RCommand[] newcommands;
-    if(commands==null){
-      newcommands = new RCommand[1];
-      newcommands[0] = nextcommand;
-    }else{
-      newcommands = new RCommand[this.commands.length+1];
-      System.arraycopy(this.commands,0,newcommands,0,this.commands.length);
-      newcommands[this.commands.length]=nextcommand;
-    }
-    this.commands=newcommands; 
+    ensureCapacity(countCommands() + 1);
+    commands[commandCount++] = nextcommand;
+    adopt(nextcommand);
   }
 
   private void insert(RCommand newcommand, int i) throws RuntimeException{
@@ -951,48 +1421,33 @@ public class RPath extends RGeomElem
       throw new RuntimeException("Negative values for indexes are not valid.");
     }
 
-    RCommand[] newcommands;
-    if( commands == null ){
-      newcommands = new RCommand[1];
-      newcommands[0] = newcommand;
-    }else{
-      if( i > commands.length ){
-        throw new RuntimeException("Index out of the bounds.  You are trying to insert an element with an index higher than the number of commands in the group.");        
-      }
-
-      newcommands = new RCommand[this.commands.length + 1];
-      System.arraycopy( this.commands , 0 , newcommands , 0 , i );
-      newcommands[i] = newcommand;
-      System.arraycopy( this.commands , i , newcommands , i + 1 , this.commands.length - i);
+    if( i > countCommands() ){
+      throw new RuntimeException("Index out of the bounds.  You are trying to insert an element with an index higher than the number of commands in the group.");        
     }
-    this.commands = newcommands;    
+
+    ensureCapacity(commandCount + 1);
+    System.arraycopy( this.commands , i , this.commands , i + 1 , commandCount - i);
+    commands[i] = newcommand;
+    commandCount++;
+    adopt(newcommand);
   }
 
   private void extract(int i) throws RuntimeException{
-    RCommand[] newcommands;
-    if(commands==null){
+    if(countCommands()==0){
       throw new RuntimeException("The group is empty. No commands to remove.");
-    }else{
-      if(i<0){
-        throw new RuntimeException("Negative values for indexes are not valid.");
-      }
-      if(i>commands.length-1){
-        throw new RuntimeException("Index out of the bounds of the group.  You are trying to erase an element with an index higher than the number of commands in the group.");
-      }
-      if(commands.length==1){
-        newcommands = null;
-      }else if(i==0){
-        newcommands = new RCommand[this.commands.length-1];
-        System.arraycopy(this.commands,1,newcommands,0,this.commands.length-1);
-      }else if(i==commands.length-1){
-        newcommands = new RCommand[this.commands.length-1];
-        System.arraycopy(this.commands,0,newcommands,0,this.commands.length-1);
-      }else{
-        newcommands = new RCommand[this.commands.length-1];
-        System.arraycopy(this.commands,0,newcommands,0,i);
-        System.arraycopy(this.commands,i+1,newcommands,i,this.commands.length-i-1);
-      }
     }
-    this.commands=newcommands;
+    if(i<0){
+      throw new RuntimeException("Negative values for indexes are not valid.");
+    }
+    if(i>commandCount-1){
+      throw new RuntimeException("Index out of the bounds of the group.  You are trying to erase an element with an index higher than the number of commands in the group.");
+    }
+
+    release(commands[i]);
+    System.arraycopy(this.commands,i+1,this.commands,i,commandCount-i-1);
+    commands[--commandCount] = null;
+    if(commandCount == 0){
+      commands = commandStore = null;
+    }
   }
 }
@@ -19,6 +19,7 @@
 
 package geomerative;
 import processing.core.*;
+import java.util.*;
 
 
 /**
@@ -44,13 +45,19 @@ public class RPolygon extends RGeomElem
   public static int defaultDetail = 50;
 
   /**
-   * Array of RContour objects holding the contours of the polygon.
+   * Array of RContour objects holding the contours of the polygon.  After adding contours one by one it may have empty slots at its end, loop up to countContours() or call trimToSize() before reading it directly.
    * @eexample contours
    * @related RContour
    * @related countContours ( )
    * @related addContour ( )
+   * @related trimToSize ( )
    */
   public RContour[] contours;
+  int contourCount;
+
+  /* The array last written by the polygon, an array assigned to the public
+     field by user code is taken over with all of its contours */
+  private RContour[] contourStore;
   int currentContour = 0;
 
   // ----------------------
@@ -67,9 +74,11 @@ public class RPolygon extends RGeomElem
       return;
     }
 
+    ensureCapacity(p.countContours());
     for(int i=0;i<p.countContours();i++){
       this.append(new RContour(p.contours[i]));
     }
+    trimContours();
     type = RGeomElem.POLYGON;
 
     setStyle(p);
@@ -235,7 +244,7 @@ public class RPolygon extends RGeomElem
     RPoint bestCentroid = new RPoint();
     float bestArea = Float.NEGATIVE_INFINITY;
     if(contours != null){
-      for(int i=0;i<contours.length;i++)
+      for(int i=0;i<countContours();i++)
         {
           float area = Math.abs(contours[i].getArea());
           if(area > bestArea){
@@ -255,11 +264,53 @@ public class RPolygon extends RGeomElem
    * @related addContour ( )
    */
   public int countContours(){
-    if(this.contours==null){
-      return 0;
+    if(contours != contourStore){
+      contourStore = contours;
+      contourCount = (contours == null) ? 0 : contours.length;
+    }
+    return this.contourCount;
+  }
+
+  /**
+   * Use this to make room for a number of contours before adding them one by one.  The array of contours grows by doubling, so adding contours costs the same whatever the size of the polygon, and it keeps empty slots at its end until trimToSize() is called.
+   * @eexample RPolygon_ensureCapacity
+   * @param minCapacity  the number of contours the polygon must be able to hold
+   * @related trimToSize ( )
+   */
+  public void ensureCapacity(int minCapacity){
+    int numContours = countContours();
+    int capacity = (contours == null) ? 0 : contours.length;
+    if(minCapacity <= capacity){
+      return;
+    }
+
+    RContour[] newcontours = new RContour[Math.max(minCapacity, 2 * capacity)];
+    if(numContours > 0){
+      System.arraycopy(contours,0,newcontours,0,numContours);
+    }
+    contours = contourStore = newcontours;
+  }
+
+  /**
+   * Use this to cut the array of contours, and the arrays of points of the contours, to their exact size, removing the empty slots left at their end when adding contours and points.
+   * @eexample RPolygon_ensureCapacity
+   * @related ensureCapacity ( )
+   */
+  public void trimToSize(){
+    trimContours();
+    for(int i=0;i<contourCount;i++){
+      contours[i].trimToSize();
     }
+  }
 
-    return this.contours.length;
+  /* Cuts the array of contours alone to its exact size */
+  private void trimContours(){
+    int numContours = countContours();
+    if(contours != null && contours.length != numContours){
+      RContour[] newcontours = new RContour[numContours];
+      System.arraycopy(contours,0,newcontours,0,numContours);
+      contours = contourStore = newcontours;
+    }
   }
 
   /**
@@ -272,6 +323,14 @@ public class RPolygon extends RGeomElem
     this.append(c);
   }
 
+  /**
+   * Adds a contour without becoming its holder, for temporary polygons that only give another view of contours held elsewhere.
+   */
+  void addContourShared(RContour c){
+    this.append(c);
+    release(c);
+  }
+
   /**
    * Add an empty contour to the polygon.
    * @eexample addContour
@@ -314,6 +373,7 @@ public class RPolygon extends RGeomElem
       this.append(new RContour());
     }
     this.contours[currentContour].append(p);
+    invalidate();
   }
 
   /**
@@ -329,6 +389,7 @@ public class RPolygon extends RGeomElem
       this.append(new RContour());
     }
     this.contours[currentContour].append(new RPoint(x,y));
+    invalidate();
   }
 
   /**
@@ -344,6 +405,7 @@ public class RPolygon extends RGeomElem
       this.append(new RContour());
     }
     this.contours[indContour].append(p);
+    invalidate();
   }
 
   /**
@@ -360,6 +422,7 @@ public class RPolygon extends RGeomElem
       this.append(new RContour());
     }
     this.contours[indContour].append(new RPoint(x,y));
+    invalidate();
   }
 
   public void addClose(){
@@ -367,7 +430,8 @@ public class RPolygon extends RGeomElem
       return;
     }
 
-    contours[contours.length - 1].addClose();
+    contours[countContours() - 1].addClose();
+    invalidate();
   }
 
   /**
@@ -412,9 +476,10 @@ public class RPolygon extends RGeomElem
     for(int i=0;i<countContours();i++)
       {
         if(contours[i].countPoints() > 3){
-          clean.addContour(contours[i]);
+          clean.addContourShared(contours[i]);
         }
       }
+    clean.trimContours();
     clean.setStyle(this);
     return clean;
   }
@@ -439,8 +504,10 @@ public class RPolygon extends RGeomElem
       if(newpoints != null){
         result.addMoveTo(newpoints[0]);
 
+        RPath path = result.paths[result.currentPath];
+        path.ensureCapacity(newpoints.length);
         for(int j = 1; j < newpoints.length; j++){
-          result.addLineTo(newpoints[j]);
+          path.appendCommand(RCommand.createLine(path.lastPoint, new RPoint(newpoints[j].x, newpoints[j].y)));
         }
 
         if(contours[i].closed){
@@ -450,6 +517,7 @@ public class RPolygon extends RGeomElem
         result.paths[i].setStyle(contours[i]);
       }
     }
+    result.trimToSize();
 
     result.setStyle(this);
     return result;
@@ -586,7 +654,7 @@ public class RPolygon extends RGeomElem
           }catch(Exception e){
           }
 
-          RMesh tempMesh = this.toMesh();
+          RMesh tempMesh = getDrawMesh(null);
           tempMesh.draw(g);
 
           // Restore the old stroke color
@@ -642,7 +710,7 @@ public class RPolygon extends RGeomElem
           }catch(Exception e){
           }
 
-          RMesh tempMesh = this.toMesh();
+          RMesh tempMesh = getDrawMesh(null);
           if(tempMesh != null)
             tempMesh.draw(g);
 
@@ -733,6 +801,84 @@ public class RPolygon extends RGeomElem
     return res;
   }
 
+  /**
+   * Use this method to get the intersection of this polygon with a prepared polygon.  Clipping many polygons against the same prepared polygon is faster than against the polygon itself.
+   * @eexample intersection
+   * @param p RPreparedPolygon, the prepared polygon with which to perform the intersection
+   * @return RPolygon, the intersection of the two polygons
+   * @related RPreparedPolygon
+   */
+  public RPolygon intersection( RPreparedPolygon p ){
+    RPolygon res = RClip.clip( RClip.OperationType.GPC_INT, p, this );
+    res.setStyle(this.getStyle());
+    return res;
+  }
+
+  /**
+   * Use this method to get the union of this polygon with a prepared polygon.
+   * @eexample union
+   * @param p RPreparedPolygon, the prepared polygon with which to perform the union
+   * @return RPolygon, the union of the two polygons
+   * @related RPreparedPolygon
+   */
+  public RPolygon union( RPreparedPolygon p ){
+    RPolygon res = RClip.clip( RClip.OperationType.GPC_UNION, p, this );
+    res.setStyle(this.getStyle());
+    return res;
+  }
+
+  /**
+   * Use this method to get the xor of this polygon with a prepared polygon.
+   * @eexample xor
+   * @param p RPreparedPolygon, the prepared polygon with which to perform the xor
+   * @return RPolygon, the xor of the two polygons
+   * @related RPreparedPolygon
+   */
+  public RPolygon xor( RPreparedPolygon p ){
+    RPolygon res = RClip.clip( RClip.OperationType.GPC_XOR, p, this );
+    res.setStyle(this.getStyle());
+    return res;
+  }
+
+  /**
+   * Use this method to get the difference between this polygon and a prepared polygon.
+   * @eexample diff
+   * @param p RPreparedPolygon, the prepared polygon to subtract from this one
+   * @return RPolygon, the difference of the two polygons
+   * @related RPreparedPolygon
+   */
+  public RPolygon diff( RPreparedPolygon p ){
+    RPolygon res = RClip.clip( RClip.OperationType.GPC_DIFF, this, p );
+    res.setStyle(this.getStyle());
+    return res;
+  }
+
+  /**
+   * Use this method to get the union of many polygons at once.  This is much faster than adding the polygons one by one to a growing union: the polygons lying apart from the others are kept as they are, and those that overlap are merged with their neighbours first, using several threads.  The result takes the style of the first polygon.
+   * @eexample union
+   * @param polys RPolygon[], the polygons to merge
+   * @return RPolygon, the union of all the polygons
+   * @related union ( )
+   */
+  static public RPolygon unionAll( RPolygon[] polys ){
+    RPolygon res = RUnion.unionAll( polys );
+    if( polys.length > 0 && polys[0] != null ){
+      res.setStyle(polys[0].getStyle());
+    }
+    return res;
+  }
+
+  /**
+   * Use this method to get the union of a collection of polygons.
+   * @eexample union
+   * @param polys Collection, the polygons to merge
+   * @return RPolygon, the union of all the polygons
+   * @related union ( )
+   */
+  static public RPolygon unionAll( Collection<RPolygon> polys ){
+    return unionAll( polys.toArray(new RPolygon[polys.size()]) );
+  }
+
   /**
    * Use this method to get a rebuilt version of a given polygon by removing extra points and solving intersecting contours or holes.
    * @eexample RPolygon_update
@@ -776,9 +922,76 @@ public class RPolygon extends RGeomElem
     return null;
   }
 
+  /**
+   * Use this to know if a point is inside the polygon.  The even-odd rule is used over all the contours, so a point inside a hole is outside the polygon.
+   * @eexample RPolygon_contains
+   * @param p  the point for which to test containement.
+   * @return boolean, true if the point is in the polygon.
+   * */
   public boolean contains(RPoint p){
-    PApplet.println("Feature not yet implemented for this class.");
-    return false;
+    float testx = p.x;
+    float testy = p.y;
+
+    // Test for containment in bounding box
+    if(!boundsContain(testx, testy)){
+      return false;
+    }
+
+    // Each contour containing the point flips its parity
+    boolean c = false;
+    for(int i=0;i<countContours();i++){
+      if(contours[i].contains(testx, testy)){
+        c = !c;
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Use this to know which of a set of points are inside the polygon.  The polygon is segmented once for all the points, which is much faster than calling contains() for each of them.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param out  the array receiving for each point true if it is inside, at least as long as xs
+   * @related countContained ( )
+   */
+  public void contains(float[] xs, float[] ys, boolean[] out){
+    contains(xs, ys, out, false);
+  }
+
+  /**
+   * Use this to know which of a set of points are inside the polygon, optionally splitting the work between several threads.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param out  the array receiving for each point true if it is inside, at least as long as xs
+   * @param parallel  true to split large sets of points between the threads of the library
+   */
+  public void contains(float[] xs, float[] ys, boolean[] out, boolean parallel){
+    new RPreparedShape(this, RPreparedShape.EVENODD).contains(xs, ys, out, parallel);
+  }
+
+  /**
+   * Use this to count how many of a set of points are inside the polygon.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @return int, the number of points inside.
+   */
+  public int countContained(float[] xs, float[] ys){
+    return countContained(xs, ys, false);
+  }
+
+  /**
+   * Use this to count how many of a set of points are inside the polygon, optionally splitting the work between several threads.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param parallel  true to split large sets of points between the threads of the library
+   * @return int, the number of points inside.
+   */
+  public int countContained(float[] xs, float[] ys, boolean parallel){
+    return new RPreparedShape(this, RPreparedShape.EVENODD).countContained(xs, ys, parallel);
   }
 
   /**
@@ -806,6 +1019,14 @@ public class RPolygon extends RGeomElem
    */
   protected void clear(){
     this.contours = null;
+    invalidate();
+  }
+
+  void dropCachesDeep(){
+    dropCaches();
+    for(int i=0;i<countContours();i++){
+      contours[i].dropCaches();
+    }
   }
 
   /**
@@ -816,6 +1037,7 @@ public class RPolygon extends RGeomElem
       this.append(new RContour());
     }
     this.contours[0].append(new RPoint(x,y));
+    invalidate();
   }
 
   /**
@@ -826,6 +1048,7 @@ public class RPolygon extends RGeomElem
       this.append(new RContour());
     }
     this.contours[0].append(p);
+    invalidate();
   }
 
   /**
@@ -837,9 +1060,11 @@ public class RPolygon extends RGeomElem
       throw new IllegalStateException("Cannot add polys to something designated as a hole.");
       }*/
     RContour c = new RContour();
+    c.ensureCapacity(p.getNumPoints());
     for(int i=0;i<p.getNumPoints();i++){
-      c.addPoint(p.getX(i),p.getY(i));
+      c.append(new RPoint(p.getX(i),p.getY(i)));
     }
+    c.trimToSize();
     this.append(c);
   }
 
@@ -869,7 +1094,7 @@ public class RPolygon extends RGeomElem
       {
         return new RRectangle();
       }
-    else if( this.contours.length == 1 )
+    else if( this.countContours() == 1 )
       {
 
         float xmin =  Float.MAX_VALUE ;
@@ -877,12 +1102,12 @@ public class RPolygon extends RGeomElem
         float xmax = -Float.MAX_VALUE ;
         float ymax = -Float.MAX_VALUE ;
 
-        if ( this.contours[0].points == null )
+        if ( this.contours[0].countPoints() == 0 )
           {
             return new RRectangle();
           }
         
-        for( int i = 0 ; i < this.contours[0].points.length ; i++ )
+        for( int i = 0 ; i < this.contours[0].countPoints() ; i++ )
           {
             float x = this.contours[0].points[i].getX();
             float y = this.contours[0].points[i].getY();
@@ -904,17 +1129,16 @@ public class RPolygon extends RGeomElem
    * Returns the polygon at this index.
    */
   protected RPolygon getInnerPoly( int polyIndex ){
-    return new RPolygon(this.contours[polyIndex]);
+    RPolygon inner = new RPolygon();
+    inner.addContourShared(this.contours[polyIndex]);
+    return inner;
   }
 
   /**
    * Returns the number of inner polygons - inner polygons are assumed to return one here.
    */
   protected int getNumInnerPoly(){
-    if (this.contours == null){
-      return 0;
-    }
-    return this.contours.length;
+    return this.countContours();
   }
 
   /**
@@ -924,10 +1148,7 @@ public class RPolygon extends RGeomElem
     if (this.contours == null){
       return 0;
     }
-    if (this.contours[0].points == null){
-      return 0;
-    }
-    return this.contours[0].points.length;
+    return this.contours[0].countPoints();
   }
 
   /**
@@ -957,7 +1178,7 @@ public class RPolygon extends RGeomElem
    * @throws IllegalStateException if called on a complex polygon.
    */
   public boolean isHole(){
-    if( this.contours == null || this.contours.length > 1 )
+    if( this.contours == null || this.countContours() > 1 )
       {
         throw new IllegalStateException( "Cannot call on a poly made up of more than one poly." );
       }
@@ -970,7 +1191,7 @@ public class RPolygon extends RGeomElem
    * @throws IllegalStateException if called on a complex polygon.
    */
   protected void setIsHole( boolean isHole ){
-    if( this.contours==null || this.contours.length > 1 )
+    if( this.contours==null || this.countContours() > 1 )
       {
         throw new IllegalStateException( "Cannot call on a poly made up of more than one poly." );
       }
@@ -999,19 +1220,18 @@ public class RPolygon extends RGeomElem
     this.contours[polyIndex].isContributing = contributes;
   }
 
-  private void append(RContour nextcontour)
+  /* Adds a contour leaving the array with room for more, the builders adding
+     many contours call trimToSize() once they are done */
+  void append(RContour nextcontour)
   {
-    RContour[] newcontours;
-    if(contours==null){
-      newcontours = new RContour[1];
-      newcontours[0] = nextcontour;
+    ensureCapacity(countContours() + 1);
+    if(contourCount == 0){
       currentContour = 0;
     }else{
-      newcontours = new RContour[this.contours.length+1];
-      System.arraycopy(this.contours,0,newcontours,0,this.contours.length);
-      newcontours[this.contours.length]=nextcontour;
       currentContour++;
     }
-    this.contours=newcontours;
+    this.contours[contourCount++] = nextcontour;
+    adopt(nextcontour);
+    invalidate();
   }
 }
@@ -0,0 +1,117 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+
+/**
+ * RPreparedPolygon is a read-only copy of a polygon made to be clipped against many other polygons, for example to cut a map into tiles.  The bounding boxes of its contours and the edges of its contours, sorted as the clipper needs them, are computed once instead of on every operation.  It is a snapshot: later changes to the polygon are not seen by it, prepare the polygon again after modifying it.
+ * @eexample RPreparedPolygon
+ * @usage Geometry
+ * @related RPolygon
+ */
+public class RPreparedPolygon
+{
+  /* Copy of the polygon, clipped by the engines that do not use the tables below */
+  final RPolygon polygon;
+  final boolean empty;
+
+  /* Bounding box of each contour, as xmin, ymin, xmax, ymax */
+  int numContours;
+  float[] contourBoxes;
+
+  /* Bound b, a chain of edges rising from a local minimum of contour
+     boundContour[b], is made of the edges boundStart[b] to boundStart[b+1]-1.
+     The edges are stored as bottom x, bottom y, top x, top y and dx/dy in
+     boundEdges, and the bounds are sorted by their local minimum. */
+  int numBounds;
+  int[] boundContour;
+  int[] boundStart;
+  float[] boundEdges;
+
+  /**
+   * Prepare a polygon to be clipped.
+   * @param poly  the polygon to prepare
+   */
+  public RPreparedPolygon(RPolygon poly){
+    polygon = new RPolygon(poly);
+    empty = poly.isEmpty();
+    FastRClip.prepare(this, polygon);
+  }
+
+  /**
+   * Use this method to get the intersection of the prepared polygon with another polygon.
+   * @eexample RPreparedPolygon_intersection
+   * @param p RPolygon, the polygon with which to perform the intersection
+   * @return RPolygon, the intersection of the two polygons
+   * @related union ( )
+   * @related xor ( )
+   * @related diff ( )
+   */
+  public RPolygon intersection(RPolygon p){
+    return RClip.clip(RClip.OperationType.GPC_INT, this, p);
+  }
+
+  /**
+   * Use this method to get the union of the prepared polygon with another polygon.
+   * @eexample RPreparedPolygon_union
+   * @param p RPolygon, the polygon with which to perform the union
+   * @return RPolygon, the union of the two polygons
+   * @related intersection ( )
+   * @related xor ( )
+   * @related diff ( )
+   */
+  public RPolygon union(RPolygon p){
+    return RClip.clip(RClip.OperationType.GPC_UNION, this, p);
+  }
+
+  /**
+   * Use this method to get the xor of the prepared polygon with another polygon.
+   * @eexample RPreparedPolygon_xor
+   * @param p RPolygon, the polygon with which to perform the xor
+   * @return RPolygon, the xor of the two polygons
+   * @related union ( )
+   * @related intersection ( )
+   * @related diff ( )
+   */
+  public RPolygon xor(RPolygon p){
+    return RClip.clip(RClip.OperationType.GPC_XOR, this, p);
+  }
+
+  /**
+   * Use this method to get the difference between the prepared polygon and another polygon.
+   * @eexample RPreparedPolygon_diff
+   * @param p RPolygon, the polygon to subtract from the prepared one
+   * @return RPolygon, the difference of the two polygons
+   * @related union ( )
+   * @related xor ( )
+   * @related intersection ( )
+   */
+  public RPolygon diff(RPolygon p){
+    return RClip.clip(RClip.OperationType.GPC_DIFF, this, p);
+  }
+
+  /**
+   * Use this method to get a copy of the prepared polygon.
+   * @eexample RPreparedPolygon_toPolygon
+   * @return RPolygon, a copy of the polygon as it was when prepared
+   */
+  public RPolygon toPolygon(){
+    return new RPolygon(polygon);
+  }
+}
@@ -0,0 +1,398 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+import java.util.concurrent.*;
+
+/**
+ * RPreparedShape is a read-only copy of the outline of a shape made to answer many point containment queries quickly.  The shape is segmented once, and its edges are sorted into horizontal bands so that each query only looks at the few edges crossing the band of the point.  It is a snapshot: later changes to the shape are not seen by it, prepare the shape again after modifying it.  Since it is never modified it can be queried from several threads at the same time.
+ * @eexample RPreparedShape
+ * @usage Geometry
+ * @related RShape
+ */
+public class RPreparedShape
+{
+  /**
+   * Fill rule where a point is inside if a ray from it crosses the outline an odd number of times.  This is the rule used by RShape.contains().
+   */
+  public static final int EVENODD = 0;
+
+  /**
+   * Fill rule where a point is inside if the outline winds around it a non-zero number of times.
+   */
+  public static final int NONZERO = 1;
+
+  /* Number of points below which a batch query is not split any more
+     between the threads */
+  static final int BATCH_SPLIT_SIZE = 8192;
+
+  /* Limit of the number of edge entries in the bands, as a multiple of the
+     number of edges.  Edges spanning several bands are stored in each. */
+  static final int BAND_ENTRIES_PER_EDGE = 4;
+
+  final int rule;
+
+  final float xmin;
+  final float ymin;
+  final float xmax;
+  final float ymax;
+
+  /* Bands of equal height covering [ymin, ymax] */
+  final int numBands;
+  final float bandScale;
+
+  /* The edges of band b are stored as x0, y0, x1, y1 in bandEdges, from
+     entry bandStart[b] to entry bandStart[b+1] */
+  final int[] bandStart;
+  final float[] bandEdges;
+
+  final int numEdges;
+
+  /**
+   * Prepare a shape with the default segmentator and the EVENODD rule.
+   * @param shp  the shape to prepare
+   */
+  public RPreparedShape(RShape shp){
+    this(shp, RSegmentator.getDefault(), EVENODD);
+  }
+
+  /**
+   * Prepare a shape with a given segmentator and fill rule.
+   * @param shp  the shape to prepare
+   * @param seg  the segmentator used to turn the curves into edges
+   * @param rule  the fill rule, EVENODD or NONZERO
+   */
+  public RPreparedShape(RShape shp, RSegmentator seg, int rule){
+    this(flatten(shp, seg), rule);
+  }
+
+  /**
+   * Prepare a path with a given segmentator and fill rule.  The path is considered closed.
+   * @param path  the path to prepare
+   * @param seg  the segmentator used to turn the curves into edges
+   * @param rule  the fill rule, EVENODD or NONZERO
+   */
+  public RPreparedShape(RPath path, RSegmentator seg, int rule){
+    this(flatten(path, seg), rule);
+  }
+
+  /**
+   * Prepare a polygon with a given fill rule.  Each contour is considered closed.
+   * @param poly  the polygon to prepare
+   * @param rule  the fill rule, EVENODD or NONZERO
+   */
+  public RPreparedShape(RPolygon poly, int rule){
+    this(flatten(poly), rule);
+  }
+
+  /**
+   * Builds the index from flattened rings, each path of the buffer being one ring.
+   */
+  RPreparedShape(RFloatBuffer rings, int rule){
+    if(rule != EVENODD && rule != NONZERO){
+      throw new RuntimeException("Fill rule unknown.  The only accepted values are: RPreparedShape.EVENODD and RPreparedShape.NONZERO");
+    }
+    this.rule = rule;
+
+    float[] xy = rings.xy;
+    float[] bounds = RGeomElem.emptyBounds();
+    for(int i=0; i<rings.size; i+=2){
+      RGeomElem.addToBounds(bounds, xy[i], xy[i+1]);
+    }
+    xmin = bounds[0];
+    ymin = bounds[1];
+    xmax = bounds[2];
+    ymax = bounds[3];
+
+    // Gather the edges of every ring, closing each one; horizontal edges
+    // are never crossed by the horizontal ray so they are left out
+    float[] edges = new float[2 * rings.size];
+    int n = 0;
+    int start = 0;
+    for(int r=0; r<rings.countPaths(); r++){
+      int end = rings.getPathEnd(r);
+      for(int i=start; i<end; i++){
+        int j = (i + 1 < end) ? i + 1 : start;
+        if(xy[2*i+1] != xy[2*j+1]){
+          edges[4*n] = xy[2*i];
+          edges[4*n+1] = xy[2*i+1];
+          edges[4*n+2] = xy[2*j];
+          edges[4*n+3] = xy[2*j+1];
+          n++;
+        }
+      }
+      start = end;
+    }
+    numEdges = n;
+
+    // As many bands as edges, fewer if long edges would be copied into too many of them
+    float height = ymax - ymin;
+    int bands = Math.max(1, n);
+    float scale = 0F;
+    if(height > 0F){
+      while(true){
+        scale = bands / height;
+        if(bands == 1 || countEntries(edges, n, bands, scale) <= (long)BAND_ENTRIES_PER_EDGE * n){
+          break;
+        }
+        bands /= 2;
+      }
+    }else{
+      bands = 1;
+    }
+    numBands = bands;
+    bandScale = scale;
+
+    // Counting sort of the edges into the bands
+    bandStart = new int[numBands + 1];
+    for(int e=0; e<n; e++){
+      int lo = bandOf(Math.min(edges[4*e+1], edges[4*e+3]));
+      int hi = bandOf(Math.max(edges[4*e+1], edges[4*e+3]));
+      for(int b=lo; b<=hi; b++){
+        bandStart[b + 1]++;
+      }
+    }
+    for(int b=0; b<numBands; b++){
+      bandStart[b + 1] += bandStart[b];
+    }
+
+    bandEdges = new float[4 * bandStart[numBands]];
+    int[] fill = new int[numBands];
+    System.arraycopy(bandStart, 0, fill, 0, numBands);
+    for(int e=0; e<n; e++){
+      int lo = bandOf(Math.min(edges[4*e+1], edges[4*e+3]));
+      int hi = bandOf(Math.max(edges[4*e+1], edges[4*e+3]));
+      for(int b=lo; b<=hi; b++){
+        System.arraycopy(edges, 4*e, bandEdges, 4*fill[b], 4);
+        fill[b]++;
+      }
+    }
+  }
+
+  /**
+   * Use this to know if a point is inside the prepared shape.
+   * @eexample RPreparedShape_contains
+   * @param x  the x coordinate of the point
+   * @param y  the y coordinate of the point
+   * @return boolean, true if the point is inside.
+   */
+  public boolean contains(float x, float y){
+    if(!(x >= xmin && x <= xmax && y >= ymin && y <= ymax)){
+      return false;
+    }
+
+    int b = bandOf(y);
+    int end = 4 * bandStart[b + 1];
+    int winding = 0;
+    for(int k = 4 * bandStart[b]; k < end; k += 4){
+      float y0 = bandEdges[k+1];
+      float y1 = bandEdges[k+3];
+      if((y0 > y) != (y1 > y)){
+        float x0 = bandEdges[k];
+        float x1 = bandEdges[k+2];
+        if(x < (x1 - x0) * (y - y0) / (y1 - y0) + x0){
+          winding += (y1 > y0) ? 1 : -1;
+        }
+      }
+    }
+
+    return (rule == EVENODD) ? ((winding & 1) != 0) : (winding != 0);
+  }
+
+  /**
+   * Use this to know if a point is inside the prepared shape.
+   * @eexample RPreparedShape_contains
+   * @param p  the point
+   * @return boolean, true if the point is inside.
+   */
+  public boolean contains(RPoint p){
+    return contains(p.x, p.y);
+  }
+
+  /**
+   * Use this to know which of a set of points are inside the prepared shape.
+   * @eexample RPreparedShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param out  the array receiving for each point true if it is inside, at least as long as xs
+   */
+  public void contains(float[] xs, float[] ys, boolean[] out){
+    contains(xs, ys, out, false);
+  }
+
+  /**
+   * Use this to know which of a set of points are inside the prepared shape, optionally splitting the work between several threads.
+   * @eexample RPreparedShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param out  the array receiving for each point true if it is inside, at least as long as xs
+   * @param parallel  true to split large sets of points between the threads of the library
+   */
+  public void contains(float[] xs, float[] ys, boolean[] out, boolean parallel){
+    checkBatch(xs, ys);
+    if(out.length < xs.length){
+      throw new RuntimeException("The output array is shorter than the arrays of coordinates.");
+    }
+    batch(xs, ys, out, parallel);
+  }
+
+  /**
+   * Use this to count how many of a set of points are inside the prepared shape.
+   * @eexample RPreparedShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @return int, the number of points inside.
+   */
+  public int countContained(float[] xs, float[] ys){
+    return countContained(xs, ys, false);
+  }
+
+  /**
+   * Use this to count how many of a set of points are inside the prepared shape, optionally splitting the work between several threads.
+   * @eexample RPreparedShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param parallel  true to split large sets of points between the threads of the library
+   * @return int, the number of points inside.
+   */
+  public int countContained(float[] xs, float[] ys, boolean parallel){
+    checkBatch(xs, ys);
+    return batch(xs, ys, null, parallel);
+  }
+
+  /**
+   * Use this to get the fill rule of the prepared shape.
+   * @return int, RPreparedShape.EVENODD or RPreparedShape.NONZERO
+   */
+  public int getRule(){
+    return rule;
+  }
+
+  /**
+   * Use this to get the number of edges the outline of the shape was segmented into, not counting the horizontal ones.
+   * @return int, the number of edges.
+   */
+  public int countEdges(){
+    return numEdges;
+  }
+
+  private void checkBatch(float[] xs, float[] ys){
+    if(xs.length != ys.length){
+      throw new RuntimeException("The arrays of x and y coordinates must have the same length.");
+    }
+  }
+
+  private int batch(float[] xs, float[] ys, boolean[] out, boolean parallel){
+    if(parallel && xs.length > BATCH_SPLIT_SIZE){
+      return RG.pool().invoke(new BatchTask(xs, ys, out, 0, xs.length)).intValue();
+    }
+    return batch(xs, ys, out, 0, xs.length);
+  }
+
+  int batch(float[] xs, float[] ys, boolean[] out, int start, int end){
+    int count = 0;
+    for(int i=start; i<end; i++){
+      boolean in = contains(xs[i], ys[i]);
+      if(out != null){
+        out[i] = in;
+      }
+      if(in){
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Splits a batch query in halves until they are small enough.
+   */
+  class BatchTask extends RecursiveTask<Integer>
+  {
+    private static final long serialVersionUID = 1L;
+
+    final float[] xs;
+    final float[] ys;
+    final boolean[] out;
+    final int start;
+    final int end;
+
+    BatchTask(float[] xs, float[] ys, boolean[] out, int start, int end){
+      this.xs = xs;
+      this.ys = ys;
+      this.out = out;
+      this.start = start;
+      this.end = end;
+    }
+
+    protected Integer compute(){
+      if(end - start <= BATCH_SPLIT_SIZE){
+        return Integer.valueOf(batch(xs, ys, out, start, end));
+      }
+
+      int middle = (start + end) >>> 1;
+      BatchTask left = new BatchTask(xs, ys, out, start, middle);
+      BatchTask right = new BatchTask(xs, ys, out, middle, end);
+      left.fork();
+      int count = right.compute().intValue();
+      return Integer.valueOf(count + left.join().intValue());
+    }
+  }
+
+  int bandOf(float y){
+    int b = (int)((y - ymin) * bandScale);
+    if(b < 0){
+      return 0;
+    }
+    return (b >= numBands) ? numBands - 1 : b;
+  }
+
+  private long countEntries(float[] edges, int n, int bands, float scale){
+    long total = 0;
+    for(int e=0; e<n; e++){
+      int lo = (int)((Math.min(edges[4*e+1], edges[4*e+3]) - ymin) * scale);
+      int hi = (int)((Math.max(edges[4*e+1], edges[4*e+3]) - ymin) * scale);
+      total += Math.min(hi, bands - 1) - Math.min(lo, bands - 1) + 1;
+    }
+    return total;
+  }
+
+  private static RFloatBuffer flatten(RShape shp, RSegmentator seg){
+    RFloatBuffer rings = new RFloatBuffer();
+    shp.flattenInto(rings, seg);
+    return rings;
+  }
+
+  private static RFloatBuffer flatten(RPolygon poly){
+    RFloatBuffer rings = new RFloatBuffer();
+    for(int i=0; i<poly.countContours(); i++){
+      RContour c = poly.contours[i];
+      for(int j=0; j<c.countPoints(); j++){
+        rings.addPoint(c.points[j].x, c.points[j].y);
+      }
+      rings.endPath();
+    }
+    return rings;
+  }
+
+  private static RFloatBuffer flatten(RPath path, RSegmentator seg){
+    RFloatBuffer rings = new RFloatBuffer();
+    path.flattenInto(rings, seg);
+    return rings;
+  }
+}
@@ -83,7 +83,9 @@ public class RSVG
       throw new RuntimeException("root is not <svg>, it's <" + svg.getName() + ">");
     }
 
-    return elemToGroup(svg);
+    RGroup result = elemToGroup(svg);
+    result.trimToSize();
+    return result;
   }
   
   public float unitsToPixels(String units, float originalPxSize) {
@@ -141,12 +143,21 @@ public class RSVG
     
     if (svg == null) return new RShape();
 
+    return toShape(svg);
+  }
+
+  /**
+   * Builds the shape of an SVG document already parsed, e.g. with new XML(file).  Unlike toShape(filename) it does not go through the PApplet, so it can be used without calling RG.init(), as long as the colors of the document are given in hexadecimal.
+   */
+  public RShape toShape(XML svg)
+  {
     if ( !svg.getName().equals("svg") )
 	{
       throw new RuntimeException("root is not <svg>, it's <" + svg.getName() + ">");
     }
 
     RShape result = elemToCompositeShape(svg);
+    result.trimToSize();
 
     result.origWidth = result.getWidth();
     result.origHeight = result.getHeight();
@@ -224,7 +235,7 @@ public class RSVG
         RPath sushp = shp.paths[i];
         boolean init = true;
         for ( int j = 0; j < sushp.countCommands(); j++ ) {
-          RCommand cmd = sushp.commands[j];
+          RCommand cmd = sushp.commandAt(j);
 
           if (init) {
             result += "M" + cmd.startPoint.x + " " + cmd.startPoint.y + " ";
@@ -0,0 +1,670 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+import java.util.*;
+
+/**
+ * RSegmentIntersector finds the crossings between the segments of flattened outlines with the sweep line of Bentley and Ottmann.  A vertical line sweeps the segments from left to right, stopping at their ends and at the crossings found so far, and keeps the segments it currently crosses ordered from bottom to top.  Two segments can only cross after being neighbours in that order, so each segment is only tested against its neighbours and the crossings are found in O((n+k) log n) time for n segments and k crossings, whatever the way the segments overlap.
+ * @invisible
+ */
+class RSegmentIntersector
+{
+  /* Segments as x0, y0, x1, y1, in the direction of their outline */
+  private float[] segs;
+
+  /* For each segment: the outline it comes from (0 or 1), its ring, and
+     whether it is the last segment of an open ring */
+  private byte[] owner;
+  private int[] ringOf;
+  private boolean[] lastOfRing;
+
+  /* For each ring: its first and last segments, and whether it is closed */
+  private int[] ringFirst;
+  private int[] ringLast;
+  private boolean[] ringClosed;
+
+  private int numSegs;
+  private int numRings;
+
+  /* Whether the crossings are rounded to the nearest integer coordinates */
+  private boolean onGrid;
+  private static final double GRID_TIE = 1e-6;
+
+  /* Segments as x0, y0, x1, y1, from their left end to their right end,
+     comparing the points by x and then by y */
+  private float[] lr;
+
+  /* The status of the sweep: a treap over the segments crossed by the sweep
+     line, ordered from bottom to top, whose nodes are also linked in that
+     order.  Nodes are swapped by exchanging their segments. */
+  private int[] left;
+  private int[] right;
+  private int[] parent;
+  private int[] prev;
+  private int[] next;
+  private int[] priority;
+  private int[] nodeSeg;
+  private int[] segNode;
+  private int root = -1;
+  private int freeNode;
+  private int seed = 0x2545F491;
+
+  /* Crossings waiting for the sweep line */
+  private PriorityQueue<Crossing> crossings;
+
+  private static final class Crossing implements Comparable<Crossing>
+  {
+    final double x, y;
+    final int lower, upper;
+
+    Crossing(double x, double y, int lower, int upper){
+      this.x = x;
+      this.y = y;
+      this.lower = lower;
+      this.upper = upper;
+    }
+
+    public int compareTo(Crossing o){
+      return compare(x, y, o.x, o.y);
+    }
+  }
+
+  private RSegmentIntersector(int capacity){
+    segs = new float[4 * capacity];
+    owner = new byte[capacity];
+    ringOf = new int[capacity];
+    lastOfRing = new boolean[capacity];
+    ringFirst = new int[8];
+    ringLast = new int[8];
+    ringClosed = new boolean[8];
+  }
+
+  /**
+   * Finds the points where the paths of a cross the paths of b.  Each path of the buffers is an open polyline.
+   */
+  static int intersections(RFloatBuffer a, RFloatBuffer b, RFloatSink out){
+    RSegmentIntersector sweep = new RSegmentIntersector((a.size + b.size) / 2);
+    sweep.addRings(a, (byte)0);
+    sweep.addRings(b, (byte)1);
+    return sweep.sweep(false, out);
+  }
+
+  /**
+   * Finds the points where the paths of a cross each other or themselves.  Consecutive segments of a path, which always meet at their common end, are not reported.
+   */
+  static int selfIntersections(RFloatBuffer a, RFloatSink out){
+    RSegmentIntersector sweep = new RSegmentIntersector(a.size / 2);
+    sweep.addRings(a, (byte)0);
+    return sweep.sweep(true, out);
+  }
+
+  /**
+   * Same as selfIntersections() for paths with integer coordinates, rounding the crossings to the nearest integer coordinates, halves up.  A crossing too close to a half for its rounding to be trusted is reported rounded both ways.  The coordinates must stay under 2^24 in magnitude, where floats hold integers exactly.
+   */
+  static int gridSelfIntersections(RFloatBuffer a, RFloatSink out){
+    RSegmentIntersector sweep = new RSegmentIntersector(a.size / 2);
+    sweep.onGrid = true;
+    sweep.addRings(a, (byte)0);
+    return sweep.sweep(true, out);
+  }
+
+  private void addRings(RFloatBuffer buf, byte who){
+    float[] xy = buf.xy;
+    int start = 0;
+    for(int p=0; p<buf.countPaths(); p++){
+      int end = buf.getPathEnd(p);
+      int first = numSegs;
+      for(int i=start; i+1<end; i++){
+        float x0 = xy[2*i], y0 = xy[2*i+1], x1 = xy[2*i+2], y1 = xy[2*i+3];
+        // Segments of zero length cross nothing
+        if(x0 == x1 && y0 == y1){
+          continue;
+        }
+        segs[4*numSegs] = x0;
+        segs[4*numSegs+1] = y0;
+        segs[4*numSegs+2] = x1;
+        segs[4*numSegs+3] = y1;
+        owner[numSegs] = who;
+        ringOf[numSegs] = numRings;
+        numSegs++;
+      }
+
+      if(numSegs > first){
+        if(numRings == ringFirst.length){
+          ringFirst = grow(ringFirst);
+          ringLast = grow(ringLast);
+          boolean[] newClosed = new boolean[2 * numRings];
+          System.arraycopy(ringClosed, 0, newClosed, 0, numRings);
+          ringClosed = newClosed;
+        }
+        int last = numSegs - 1;
+        boolean closed = last - first >= 2
+          && segs[4*last+2] == segs[4*first] && segs[4*last+3] == segs[4*first+1];
+        ringFirst[numRings] = first;
+        ringLast[numRings] = last;
+        ringClosed[numRings] = closed;
+        lastOfRing[last] = !closed;
+        numRings++;
+      }
+      start = end;
+    }
+  }
+
+  private static int[] grow(int[] a){
+    int[] b = new int[2 * a.length];
+    System.arraycopy(a, 0, b, 0, a.length);
+    return b;
+  }
+
+  /* Consecutive segments of the same ring */
+  private boolean adjacent(int a, int b){
+    int r = ringOf[a];
+    if(r != ringOf[b]){
+      return false;
+    }
+    if(a - b == 1 || b - a == 1){
+      return true;
+    }
+    return ringClosed[r] && (Math.min(a, b) == ringFirst[r] && Math.max(a, b) == ringLast[r]);
+  }
+
+  private int sweep(boolean self, RFloatSink out){
+    if(numSegs == 0){
+      return 0;
+    }
+
+    final float[] lr = new float[4 * numSegs];
+    for(int s=0; s<numSegs; s++){
+      boolean flip = compare(segs[4*s], segs[4*s+1], segs[4*s+2], segs[4*s+3]) > 0;
+      int from = flip ? 2 : 0;
+      lr[4*s] = segs[4*s+from];
+      lr[4*s+1] = segs[4*s+from+1];
+      lr[4*s+2] = segs[4*s+2-from];
+      lr[4*s+3] = segs[4*s+3-from];
+    }
+    this.lr = lr;
+
+    Integer[] starts = new Integer[numSegs];
+    Integer[] ends = new Integer[numSegs];
+    for(int s=0; s<numSegs; s++){
+      starts[s] = Integer.valueOf(s);
+      ends[s] = starts[s];
+    }
+    Arrays.sort(starts, new Comparator<Integer>(){
+        public int compare(Integer a, Integer b){
+          int i = 4 * a.intValue(), j = 4 * b.intValue();
+          return RSegmentIntersector.compare(lr[i], lr[i+1], lr[j], lr[j+1]);
+        }
+      });
+    Arrays.sort(ends, new Comparator<Integer>(){
+        public int compare(Integer a, Integer b){
+          int i = 4 * a.intValue() + 2, j = 4 * b.intValue() + 2;
+          return RSegmentIntersector.compare(lr[i], lr[i+1], lr[j], lr[j+1]);
+        }
+      });
+
+    left = new int[numSegs];
+    right = new int[numSegs];
+    parent = new int[numSegs];
+    prev = new int[numSegs];
+    next = new int[numSegs];
+    priority = new int[numSegs];
+    nodeSeg = new int[numSegs];
+    segNode = new int[numSegs];
+    for(int n=0; n<numSegs; n++){
+      next[n] = n + 1;
+    }
+    next[numSegs-1] = -1;
+    freeNode = 0;
+    crossings = new PriorityQueue<Crossing>();
+
+    // The segments meeting at the current end point: the ones ending there,
+    // then the ones going through it, then the ones starting there
+    int[] group = new int[16];
+    int[] seen = new int[numSegs];
+    int stamp = 0;
+
+    int nextStart = 0;
+    int nextEnd = 0;
+    int found = 0;
+    while(nextEnd < numSegs || !crossings.isEmpty()){
+      double px = Double.POSITIVE_INFINITY, py = Double.POSITIVE_INFINITY;
+      if(nextStart < numSegs){
+        int s = starts[nextStart].intValue();
+        px = lr[4*s];
+        py = lr[4*s+1];
+      }
+      if(nextEnd < numSegs){
+        int s = ends[nextEnd].intValue();
+        if(compare(lr[4*s+2], lr[4*s+3], px, py) < 0){
+          px = lr[4*s+2];
+          py = lr[4*s+3];
+        }
+      }
+
+      Crossing c = crossings.peek();
+      if(c != null && compare(c.x, c.y, px, py) <= 0){
+        crossings.poll();
+        found += swap(c.lower, c.upper, self, out);
+        continue;
+      }
+
+      stamp++;
+      int size = 0;
+      while(nextEnd < numSegs){
+        int s = ends[nextEnd].intValue();
+        if(lr[4*s+2] != px || lr[4*s+3] != py){
+          break;
+        }
+        if(size == group.length){
+          group = grow(group);
+        }
+        group[size++] = s;
+        seen[s] = stamp;
+        nextEnd++;
+      }
+      int numEnding = size;
+
+      for(int n = search(px, py); n != -1 && orient(nodeSeg[n], px, py) == 0; n = next[n]){
+        int s = nodeSeg[n];
+        if(seen[s] == stamp){
+          continue;
+        }
+        if(size == group.length){
+          group = grow(group);
+        }
+        group[size++] = s;
+      }
+      int numThrough = size;
+
+      while(nextStart < numSegs){
+        int s = starts[nextStart].intValue();
+        if(lr[4*s] != px || lr[4*s+1] != py){
+          break;
+        }
+        if(size == group.length){
+          group = grow(group);
+        }
+        group[size++] = s;
+        nextStart++;
+      }
+
+      // Every pair of segments meeting at the point
+      for(int i=0; i<size; i++){
+        for(int j=i+1; j<size; j++){
+          found += meet(group[i], group[j], px, py, self, out);
+        }
+      }
+
+      // Put the segments going on after the point back in the order they
+      // have right after it, from bottom to top
+      for(int i=0; i<numThrough; i++){
+        remove(group[i]);
+      }
+      for(int i=numEnding+1; i<size; i++){
+        int s = group[i];
+        int j = i - 1;
+        while(j >= numEnding && above(group[j], s, px, py)){
+          group[j+1] = group[j];
+          j--;
+        }
+        group[j+1] = s;
+      }
+      int pos = search(px, py);
+      for(int i=numEnding; i<size; i++){
+        insertBefore(pos, group[i]);
+      }
+
+      if(size > numEnding){
+        int lowest = segNode[group[numEnding]];
+        int highest = segNode[group[size-1]];
+        check(prev[lowest], lowest);
+        check(highest, next[highest]);
+      }else if(pos != -1){
+        check(prev[pos], pos);
+      }
+    }
+    return found;
+  }
+
+  static int compare(double ax, double ay, double bx, double by){
+    if(ax != bx){
+      return (ax < bx) ? -1 : 1;
+    }
+    if(ay != by){
+      return (ay < by) ? -1 : 1;
+    }
+    return 0;
+  }
+
+  /* Positive if the point is above the line of the segment, zero if it is
+     on it and negative if it is below */
+  private double orient(int s, double x, double y){
+    double lx = lr[4*s], ly = lr[4*s+1];
+    return (lr[4*s+2] - lx) * (y - ly) - (lr[4*s+3] - ly) * (x - lx);
+  }
+
+  /* Whether segment a runs above segment b right after the point both go through */
+  private boolean above(int a, int b, double px, double py){
+    double d = (lr[4*b+2] - px) * (lr[4*a+3] - py) - (lr[4*b+3] - py) * (lr[4*a+2] - px);
+    return d > 0 || (d == 0 && a > b);
+  }
+
+  /* Whether the segments cross at a point inside both of them */
+  private boolean crossInside(int a, int b){
+    double o1 = orient(a, lr[4*b], lr[4*b+1]);
+    double o2 = orient(a, lr[4*b+2], lr[4*b+3]);
+    if(!(o1 > 0 && o2 < 0) && !(o1 < 0 && o2 > 0)){
+      return false;
+    }
+    double o3 = orient(b, lr[4*a], lr[4*a+1]);
+    double o4 = orient(b, lr[4*a+2], lr[4*a+3]);
+    return (o3 > 0 && o4 < 0) || (o3 < 0 && o4 > 0);
+  }
+
+  /* Whether segment a, below segment b, still has to cross it: its right
+     end is above the line of b */
+  private boolean beforeCrossing(int a, int b){
+    return orient(b, lr[4*a+2], lr[4*a+3]) > 0;
+  }
+
+  /* Reports two segments meeting at the point p.  Segments running over
+     each other meet at every end point of their common part, they are
+     reported at the first one, where the second segment starts.  Segments
+     crossing inside both of them, which are listed from bottom to top, are
+     reported by swap() if it crossed them before the point. */
+  private int meet(int a, int b, double px, double py, boolean self, RFloatSink out){
+    if(self ? adjacent(a, b) : owner[a] == owner[b]){
+      return 0;
+    }
+    if(orient(a, lr[4*b], lr[4*b+1]) == 0 && orient(a, lr[4*b+2], lr[4*b+3]) == 0){
+      int later = (compare(lr[4*a], lr[4*a+1], lr[4*b], lr[4*b+1]) < 0) ? b : a;
+      if(lr[4*later] != px || lr[4*later+1] != py){
+        return 0;
+      }
+    }else if(crossInside(a, b) && !beforeCrossing(a, b)){
+      return 0;
+    }
+    return (a < b) ? cross(a, b, out) : cross(b, a, out);
+  }
+
+  /* Schedules the crossing of two neighbours of the status, lower below upper */
+  private void check(int lowerNode, int upperNode){
+    if(lowerNode == -1 || upperNode == -1){
+      return;
+    }
+    int a = nodeSeg[lowerNode], b = nodeSeg[upperNode];
+    if(!crossInside(a, b) || !beforeCrossing(a, b)){
+      return;
+    }
+
+    int s = Math.min(a, b), t = Math.max(a, b);
+    double px = lr[4*s], py = lr[4*s+1];
+    double rx = lr[4*s+2] - px, ry = lr[4*s+3] - py;
+    double qx = lr[4*t], qy = lr[4*t+1];
+    double sx = lr[4*t+2] - qx, sy = lr[4*t+3] - qy;
+    double k = ((qx - px) * sy - (qy - py) * sx) / (rx * sy - ry * sx);
+
+    // Rounding must not move the crossing out of the segments, or past the
+    // end of one of them in the order of the events, which happens first
+    // along vertical segments
+    double x = Math.max(Math.max(px, qx), Math.min(Math.min(px + rx, qx + sx), px + k * rx));
+    double y = py + k * ry;
+    if(rx == 0){
+      x = px;
+      y = Math.max(py, Math.min(py + ry, y));
+    }else if(sx == 0){
+      x = qx;
+      y = Math.max(qy, Math.min(qy + sy, y));
+    }
+    crossings.add(new Crossing(x, y, a, b));
+  }
+
+  /* Crosses two neighbours of the status, if they still are and have not
+     been crossed yet */
+  private int swap(int lower, int upper, boolean self, RFloatSink out){
+    int nl = segNode[lower], nu = segNode[upper];
+    if(nl == -1 || nu == -1 || next[nl] != nu || !beforeCrossing(lower, upper)){
+      return 0;
+    }
+
+    nodeSeg[nl] = upper;
+    nodeSeg[nu] = lower;
+    segNode[upper] = nl;
+    segNode[lower] = nu;
+    check(prev[nl], nl);
+    check(nu, next[nu]);
+    if(self ? adjacent(lower, upper) : owner[lower] == owner[upper]){
+      return 0;
+    }
+    return (lower < upper) ? cross(lower, upper, out) : cross(upper, lower, out);
+  }
+
+  /* The first node of the status the point is not above, -1 if it is above all of them */
+  private int search(double px, double py){
+    int best = -1;
+    int n = root;
+    while(n != -1){
+      if(orient(nodeSeg[n], px, py) > 0){
+        n = right[n];
+      }else{
+        best = n;
+        n = left[n];
+      }
+    }
+    return best;
+  }
+
+  /* Inserts a segment in the status right before a node, at its top if the node is -1 */
+  private void insertBefore(int pos, int s){
+    int n = freeNode;
+    freeNode = next[n];
+    nodeSeg[n] = s;
+    segNode[s] = n;
+    left[n] = -1;
+    right[n] = -1;
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+    priority[n] = seed;
+
+    int below;
+    if(root == -1){
+      root = n;
+      parent[n] = -1;
+      below = -1;
+    }else if(pos == -1){
+      below = root;
+      while(right[below] != -1){
+        below = right[below];
+      }
+      right[below] = n;
+      parent[n] = below;
+    }else{
+      below = prev[pos];
+      if(left[pos] == -1){
+        left[pos] = n;
+        parent[n] = pos;
+      }else{
+        right[below] = n;
+        parent[n] = below;
+      }
+    }
+
+    prev[n] = below;
+    next[n] = pos;
+    if(below != -1){
+      next[below] = n;
+    }
+    if(pos != -1){
+      prev[pos] = n;
+    }
+
+    while(parent[n] != -1 && priority[n] < priority[parent[n]]){
+      rotateUp(n);
+    }
+  }
+
+  private void remove(int s){
+    int n = segNode[s];
+    while(left[n] != -1 || right[n] != -1){
+      int child;
+      if(left[n] == -1){
+        child = right[n];
+      }else if(right[n] == -1){
+        child = left[n];
+      }else{
+        child = (priority[left[n]] < priority[right[n]]) ? left[n] : right[n];
+      }
+      rotateUp(child);
+    }
+
+    int p = parent[n];
+    if(p == -1){
+      root = -1;
+    }else if(left[p] == n){
+      left[p] = -1;
+    }else{
+      right[p] = -1;
+    }
+
+    if(prev[n] != -1){
+      next[prev[n]] = next[n];
+    }
+    if(next[n] != -1){
+      prev[next[n]] = prev[n];
+    }
+    segNode[s] = -1;
+    next[n] = freeNode;
+    freeNode = n;
+  }
+
+  private void rotateUp(int n){
+    int p = parent[n];
+    int g = parent[p];
+    if(left[p] == n){
+      left[p] = right[n];
+      if(right[n] != -1){
+        parent[right[n]] = p;
+      }
+      right[n] = p;
+    }else{
+      right[p] = left[n];
+      if(left[n] != -1){
+        parent[left[n]] = p;
+      }
+      left[n] = p;
+    }
+    parent[p] = n;
+    parent[n] = g;
+    if(g == -1){
+      root = n;
+    }else if(left[g] == p){
+      left[g] = n;
+    }else{
+      right[g] = n;
+    }
+  }
+
+  /* Reports the points where two segments meet.  The segments are taken as
+     half-open, their end belonging to the next segment of the ring, so that
+     a crossing on a vertex is found once.  Segments running over each other
+     meet at both ends of their common part. */
+  private int cross(int a, int b, RFloatSink out){
+    double px = segs[4*a], py = segs[4*a+1];
+    double rx = segs[4*a+2] - px, ry = segs[4*a+3] - py;
+    double qx = segs[4*b], qy = segs[4*b+1];
+    double sx = segs[4*b+2] - qx, sy = segs[4*b+3] - qy;
+
+    double dx = qx - px, dy = qy - py;
+    double denom = rx * sy - ry * sx;
+    if(denom == 0.0){
+      return (dx * ry - dy * rx == 0.0) ? overlap(a, b, out) : 0;
+    }
+
+    double t = (dx * sy - dy * sx) / denom;
+    double u = (dx * ry - dy * rx) / denom;
+    if(t < 0.0 || t > 1.0 || (t == 1.0 && !lastOfRing[a])){
+      return 0;
+    }
+    if(u < 0.0 || u > 1.0 || (u == 1.0 && !lastOfRing[b])){
+      return 0;
+    }
+
+    double x = px + t * rx, y = py + t * ry;
+    if(onGrid){
+      return addGridPoints(x, y, out);
+    }
+    out.addPoint((float)x, (float)y);
+    return 1;
+  }
+
+  /* Adds the pixel of the grid holding the point, the pixels being the unit
+     squares around the integer points with their left and bottom borders.
+     Near a border, where the rounding error of the crossing could pick the
+     wrong pixel, the pixels on both sides are added */
+  private static int addGridPoints(double x, double y, RFloatSink out){
+    double x0 = Math.floor(x + 0.5 - GRID_TIE), x1 = Math.floor(x + 0.5 + GRID_TIE);
+    double y0 = Math.floor(y + 0.5 - GRID_TIE), y1 = Math.floor(y + 0.5 + GRID_TIE);
+    int n = 0;
+    for(double gx=x0; gx<=x1; gx++){
+      for(double gy=y0; gy<=y1; gy++){
+        out.addPoint((float)gx, (float)gy);
+        n++;
+      }
+    }
+    return n;
+  }
+
+  /* The ends of the common part of two segments on the same line: the ends
+     of each segment lying on the other one */
+  private int overlap(int a, int b, RFloatSink out){
+    float[] pts = new float[8];
+    int n = 0;
+    for(int k=0; k<4; k++){
+      int s = (k < 2) ? a : b;
+      int o = (k < 2) ? b : a;
+      boolean atEnd = (k & 1) == 1;
+      if(atEnd && !lastOfRing[s]){
+        continue;
+      }
+
+      float x = segs[4*s + (atEnd ? 2 : 0)], y = segs[4*s + (atEnd ? 3 : 1)];
+      double ox = segs[4*o], oy = segs[4*o+1];
+      double vx = segs[4*o+2] - ox, vy = segs[4*o+3] - oy;
+      double v = ((x - ox) * vx + (y - oy) * vy) / (vx * vx + vy * vy);
+      if(v < 0.0 || v > 1.0 || (v == 1.0 && !lastOfRing[o])){
+        continue;
+      }
+
+      boolean known = false;
+      for(int i=0; i<n; i++){
+        known |= pts[2*i] == x && pts[2*i+1] == y;
+      }
+      if(!known){
+        pts[2*n] = x;
+        pts[2*n+1] = y;
+        n++;
+        out.addPoint(x, y);
+      }
+    }
+    return n;
+  }
+}
@@ -0,0 +1,204 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+import processing.core.*;
+
+/**
+ * RSegmentator holds the parameters used to turn curves into segments.  It is immutable, so the same object can be shared between threads and between calls to getPoints(), polygonize(), toPolygon() or toMesh().  The methods that don't take a segmentator use the one returned by getDefault(), which reflects the values set through RG.setPolygonizer() and friends.
+ * @eexample RSegmentator
+ * @usage Geometry
+ * @related RG
+ * @related RCommand
+ */
+public final class RSegmentator
+{
+  /**
+   * The segmentator type: RCommand.ADAPTATIVE, RCommand.UNIFORMLENGTH or RCommand.UNIFORMSTEP.
+   */
+  public final int type;
+
+  /* Parameters for ADAPTATIVE */
+  final float angleTol;
+  final float cuspLimit;
+  final float distTolSqr;
+  final float distTolMnhttn;
+
+  /* Parameters for UNIFORMLENGTH */
+  final float length;
+  final float offset;
+
+  /* Parameters for UNIFORMSTEP */
+  final int steps;
+  final boolean lines;
+
+  private RSegmentator(int type, float angleTol, float cuspLimit, float distTolSqr, float distTolMnhttn, float length, float offset, int steps, boolean lines){
+    this.type = type;
+    this.angleTol = angleTol;
+    this.cuspLimit = cuspLimit;
+    this.distTolSqr = distTolSqr;
+    this.distTolMnhttn = distTolMnhttn;
+    this.length = length;
+    this.offset = offset;
+    this.steps = steps;
+    this.lines = lines;
+  }
+
+  /**
+   * Create a segmentator of the given type with the library's initial parameters.
+   * @param type  the segmentator type, RCommand.ADAPTATIVE, RCommand.UNIFORMLENGTH or RCommand.UNIFORMSTEP
+   */
+  public RSegmentator(int type){
+    this(type, 0.0F, 0.0F, 0.25F, 4.0F, 4.0F, 0.0F, 0, false);
+  }
+
+  /**
+   * Use this to get a segmentator holding the current global parameters, the ones set with RG.setPolygonizer(), RG.setPolygonizerLength(), etc.
+   * @eexample RSegmentator_getDefault
+   * @return RSegmentator, a snapshot of the global segmentator parameters.
+   */
+  public static RSegmentator getDefault(){
+    return new RSegmentator(RCommand.segmentType,
+                            RCommand.segmentAngleTol,
+                            RCommand.segmentCuspLimit,
+                            RCommand.segmentDistTolSqr,
+                            RCommand.segmentDistTolMnhttn,
+                            RCommand.segmentLength,
+                            RCommand.segmentOffset,
+                            RCommand.segmentSteps,
+                            RCommand.segmentLines);
+  }
+
+  /**
+   * Use this to get a copy of the segmentator with a different type.
+   * @param type  the segmentator type, RCommand.ADAPTATIVE, RCommand.UNIFORMLENGTH or RCommand.UNIFORMSTEP
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withType(int type){
+    return new RSegmentator(type, angleTol, cuspLimit, distTolSqr, distTolMnhttn, length, offset, steps, lines);
+  }
+
+  /**
+   * Use this to get a copy of the segmentator with a different angle tolerance for the ADAPTATIVE segmentator.
+   * @param angle  an angle from 0 to PI/2 it defines the maximum angle between segments.
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withAngle(float angle){
+    return new RSegmentator(type, angle, cuspLimit, distTolSqr, distTolMnhttn, length, offset, steps, lines);
+  }
+
+  /**
+   * Use this to get a copy of the segmentator with a different segment length for the UNIFORMLENGTH segmentator.
+   * @param length  the length of each resulting segment, values under 1 fall back to 4.
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withLength(float length){
+    if(length < 1){
+      length = 4;
+    }
+    return new RSegmentator(type, angleTol, cuspLimit, distTolSqr, distTolMnhttn, length, offset, steps, lines);
+  }
+
+  /**
+   * Use this to get a copy of the segmentator with a different offset for the UNIFORMLENGTH segmentator.
+   * @param offset  the offset of the first point on the path.
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withOffset(float offset){
+    if(offset < 0){
+      offset = 0;
+    }
+    return new RSegmentator(type, angleTol, cuspLimit, distTolSqr, distTolMnhttn, length, offset, steps, lines);
+  }
+
+  /**
+   * Use this to get a copy of the segmentator with a different step for the UNIFORMSTEP segmentator.
+   * @param step  if a float from +0.0 to 1.0 is passed it's considered as the step, else it's considered as the number of steps.  When a value of 0.0 is used the steps will be calculated automatically depending on an estimation of the length of the curve.  The special value -1 is the same as 0.0 but also turning of the segmentation of lines (faster segmentation).
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withStep(float step){
+    boolean newLines = true;
+    if(step == -1F){
+      newLines = false;
+      step = 0F;
+    }
+
+    step = Math.abs(step);
+    int newSteps;
+    if(step > 0.0F && step < 1.0F){
+      newSteps = (int)(1F/step);
+    }else{
+      newSteps = (int)step;
+    }
+    return new RSegmentator(type, angleTol, cuspLimit, distTolSqr, distTolMnhttn, length, offset, newSteps, newLines);
+  }
+
+  /**
+   * Use this to get a copy of the segmentator with the tolerances of the ADAPTATIVE segmentator adapted to a graphics context.  The scale of the current transformation of the context is taken into account, so that the segments stay within half a pixel of the curve on screen.
+   * @param g  graphics object too which to adapt the segmentation.
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withGraphic(PGraphics g){
+    // Length on screen of the unit vectors
+    float ox = g.screenX(0, 0);
+    float oy = g.screenY(0, 0);
+    float sx = PApplet.dist(ox, oy, g.screenX(1, 0), g.screenY(1, 0));
+    float sy = PApplet.dist(ox, oy, g.screenX(0, 1), g.screenY(0, 1));
+    float approxScale = Math.max(sx, sy);
+    if(!(approxScale > 0.0F) || Float.isInfinite(approxScale)){
+      approxScale = 1.0F;
+    }
+
+    float newDistTolSqr = 0.5F / approxScale;
+    newDistTolSqr *= newDistTolSqr;
+    float newDistTolMnhttn = 4.0F / approxScale;
+    float newAngleTol = 0.0F;
+
+    if(g.stroke && (g.strokeWeight * approxScale > 1.0F)){
+      newAngleTol = 0.1F;
+    }
+    return new RSegmentator(type, newAngleTol, cuspLimit, newDistTolSqr, newDistTolMnhttn, length, offset, steps, lines);
+  }
+
+  public boolean equals(Object o){
+    if(!(o instanceof RSegmentator)){
+      return false;
+    }
+    RSegmentator s = (RSegmentator)o;
+    return type == s.type
+      && angleTol == s.angleTol
+      && cuspLimit == s.cuspLimit
+      && distTolSqr == s.distTolSqr
+      && distTolMnhttn == s.distTolMnhttn
+      && length == s.length
+      && offset == s.offset
+      && steps == s.steps
+      && lines == s.lines;
+  }
+
+  public int hashCode(){
+    int h = type;
+    h = 31 * h + Float.floatToIntBits(angleTol);
+    h = 31 * h + Float.floatToIntBits(distTolSqr);
+    h = 31 * h + Float.floatToIntBits(length);
+    h = 31 * h + Float.floatToIntBits(offset);
+    h = 31 * h + steps;
+    return lines ? h + 1 : h;
+  }
+}
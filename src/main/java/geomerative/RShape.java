@@ -34,18 +34,39 @@ public class RShape extends RGeomElem
   public int type = RGeomElem.SHAPE;
   
   /**
-   * Array of RPath objects holding the paths of the polygon. 
+   * Array of RPath objects holding the paths of the polygon.  After adding paths one by one it may have empty slots at its end, loop up to countPaths() or call trimToSize() before reading it directly.
    * @eexample paths
    * @related RPath
    * @related countPaths ( )
    * @related addPath ( )
+   * @related trimToSize ( )
    */
   public RPath[] paths = null;
+  int pathCount;
   protected int currentPath = 0;
 
+  /**
+   * Array of RShape objects holding the children of the shape.  After adding children one by one it may have empty slots at its end, loop up to countChildren() or call trimToSize() before reading it directly.
+   * @related countChildren ( )
+   * @related addChild ( )
+   * @related trimToSize ( )
+   */
   public RShape[] children = null;
+  int childCount;
   protected int currentChild;
 
+  /* The arrays last written by the shape, arrays assigned to the public
+     fields by user code are taken over with all of their elements */
+  private RPath[] pathStore;
+  private RShape[] childStore;
+
+  /* Index used by contains(), and the segmentator it was built with */
+  private RPreparedShape prepared;
+  private RSegmentator preparedSeg;
+
+  /* Hierarchy over the bounds of the paths and children, see getElementTree() */
+  private RBoundsTree elementTree;
+
   // ----------------------
   // --- Public Methods ---
   // ----------------------
@@ -65,6 +86,9 @@ public class RShape extends RGeomElem
 
   public RShape(RPath[] newpaths){
     this.paths = newpaths;
+    for(int i=0;i<countPaths();i++){
+      adopt(newpaths[i]);
+    }
     type = RGeomElem.SHAPE;
   }
 
@@ -74,13 +98,21 @@ public class RShape extends RGeomElem
     RPath[] newpaths = new RPath[points.length];
     for(int i=0; i<points.length; i++){
       newpaths[i] = new RPath(points[i]);
+      adopt(newpaths[i]);
     }
 
     this.paths = newpaths;
     type = RGeomElem.SHAPE;
   }
   
+  /**
+   * Copy a shape.  The paths of a packed shape share their coordinates with the ones of the original until they are modified, so the copy costs one object per path and child.
+   * @eexample RShape
+   * @param s  shape to be copied
+   * @related pack ( )
+   */
   public RShape(RShape s){
+    ensureCapacity(s.countPaths());
     for(int i=0;i<s.countPaths();i++){
       this.append(new RPath(s.paths[i]));
     }
@@ -88,6 +120,7 @@ public class RShape extends RGeomElem
     for(int i=0;i<s.countChildren();i++){
       this.appendChild(new RShape(s.children[i]));
     }
+    trimArrays();
 
     type = RGeomElem.SHAPE;
 
@@ -237,7 +270,7 @@ public class RShape extends RGeomElem
     RPoint bestCentroid = new RPoint();
     float bestArea = Float.NEGATIVE_INFINITY;
     if(paths != null){
-      for(int i=0;i<paths.length;i++)
+      for(int i=0;i<countPaths();i++)
         {
           float area = Math.abs(paths[i].getArea());
           if(area > bestArea){
@@ -256,20 +289,56 @@ public class RShape extends RGeomElem
    * @related addPath ( )
    */
   public int countPaths(){
-    if(this.paths==null){
-      return 0;
+    if(paths != pathStore){
+      pathStore = paths;
+      pathCount = (paths == null) ? 0 : paths.length;
     }
-    
-    return this.paths.length;
+    return this.pathCount;
   }
 
 
   public int countChildren(){
-    if(this.children==null){
-      return 0;
+    if(children != childStore){
+      childStore = children;
+      childCount = (children == null) ? 0 : children.length;
+    }
+    return this.childCount;
+  }
+
+  /**
+   * Use this to make room for a number of paths before adding them one by one.  The array of paths grows by doubling, so adding paths costs the same whatever the size of the shape, and it keeps empty slots at its end until trimToSize() is called.
+   * @eexample RShape_ensureCapacity
+   * @param minCapacity  the number of paths the shape must be able to hold
+   * @related trimToSize ( )
+   */
+  public void ensureCapacity(int minCapacity){
+    int numPaths = countPaths();
+    int capacity = (paths == null) ? 0 : paths.length;
+    if(minCapacity <= capacity){
+      return;
+    }
+
+    RPath[] newpaths = new RPath[Math.max(minCapacity, 2 * capacity)];
+    if(numPaths > 0){
+      System.arraycopy(paths,0,newpaths,0,numPaths);
+    }
+    paths = pathStore = newpaths;
+  }
+
+  /**
+   * Use this to cut the arrays of paths and children, and the arrays of the paths and children themselves, to their exact size, removing the empty slots left at their end when adding to them.
+   * @eexample RShape_ensureCapacity
+   * @related ensureCapacity ( )
+   */
+  public void trimToSize(){
+    trimArrays();
+    for(int i=0;i<pathCount;i++){
+      paths[i].trimToSize();
+    }
+
+    for(int i=0;i<childCount;i++){
+      children[i].trimToSize();
     }
-    
-    return this.children.length;
   }
   
   /**
@@ -281,6 +350,7 @@ public class RShape extends RGeomElem
    * @invisible
    */
   public void addShape(RShape s){
+    ensureCapacity(countPaths() + s.countPaths());
     for(int i=0;i<s.countPaths();i++){
       this.append(s.paths[i]);
     }
@@ -300,6 +370,14 @@ public class RShape extends RGeomElem
   public void addPath(){
     this.append(new RPath());
   }
+
+  /**
+   * Adds a path without becoming its holder, for temporary shapes that only give another view of paths held elsewhere.
+   */
+  void addPathShared(RPath s){
+    this.append(s);
+    release(s);
+  }
   
 
   public void addChild(){
@@ -342,6 +420,7 @@ public class RShape extends RGeomElem
     }else{
       this.append(new RPath(endx,endy));
     }
+    invalidate();
   }
 
   public void addMoveTo(RPoint p){
@@ -364,6 +443,7 @@ public class RShape extends RGeomElem
       this.append(new RPath());
     }
     this.paths[currentPath].addLineTo(endx, endy);
+    invalidate();
   }
 
   public void addLineTo(RPoint p){
@@ -388,6 +468,7 @@ public class RShape extends RGeomElem
       this.append(new RPath());
     }
     this.paths[currentPath].addQuadTo(cp1x,cp1y,endx,endy);
+    invalidate();
   }
 
   public void addQuadTo(RPoint p1, RPoint p2){
@@ -414,6 +495,7 @@ public class RShape extends RGeomElem
       this.append(new RPath());
     }
     this.paths[currentPath].addBezierTo(cp1x,cp1y,cp2x,cp2y,endx,endy);
+    invalidate();
   }
 
   public void addBezierTo(RPoint p1, RPoint p2, RPoint p3){
@@ -425,6 +507,7 @@ public class RShape extends RGeomElem
       this.append(new RPath());
     }
     this.paths[currentPath].addClose();
+    invalidate();
   }
   
   /**
@@ -436,6 +519,17 @@ public class RShape extends RGeomElem
   public RMesh toMesh(){
     return toPolygon().toMesh();
   }
+
+  /**
+   * Use this method to create a new mesh from a given polygon using a specific segmentator.
+   * @eexample toMesh
+   * @param seg  the segmentator used to polygonize the shape
+   * @return RMesh, the mesh made of tristrips resulting of a tesselation of the polygonization followed by tesselation of the shape.
+   * @related draw ( )
+   */
+  public RMesh toMesh(RSegmentator seg){
+    return toPolygon(seg).toMesh();
+  }
   
   /**
    * Use this method to create a new polygon from a given shape. 
@@ -444,6 +538,18 @@ public class RShape extends RGeomElem
    * @related draw ( )
    */
   public RPolygon toPolygon ( )
+  {
+    return toPolygon(RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this method to create a new polygon from a given shape using a specific segmentator.
+   * @eexample toPolygon
+   * @param seg  the segmentator used on the commands of each path
+   * @return RPolygon, the polygon resulting of the segmentation of the commands in each path.
+   * @related draw ( )
+   */
+  public RPolygon toPolygon ( RSegmentator seg )
   {
     int numPnts = this.countPaths();
     
@@ -451,38 +557,66 @@ public class RShape extends RGeomElem
     
     if ( this.children != null )
       {
-        for ( int i = 0; i < this.children.length; i++ )
+        for ( int i = 0; i < this.countChildren(); i++ )
           {
-            RPolygon childPoly = this.children[i].toPolygon();
-            for ( int ii = 0; ii < childPoly.contours.length; ii++ )
+            RPolygon childPoly = this.children[i].toPolygon(seg);
+            for ( int ii = 0; ii < childPoly.countContours(); ii++ )
               {
-                poly.addContour( childPoly.contours[ii] );
+                poly.append( childPoly.contours[ii] );
               }
           }
       }
     
+    RFloatBuffer buffer = new RFloatBuffer();
     for ( int i = 0; i < numPnts; i++ )
       {
-        RPoint[] pnts = this.paths[i].getPoints();
+        buffer.clear();
+        this.paths[i].flattenInto(buffer, seg);
+        RPoint[] pnts = buffer.toPoints();
         RContour c = new RContour(pnts);
         c.closed = this.paths[i].closed;
         c.setStyle( this.paths[i] );
-        poly.addContour(c);
+        poly.append(c);
       }
+    poly.trimToSize();
     
     return poly;
   }
 
 
   public void polygonize(){
+    polygonize(RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this to replace the curves of the shape by the lines resulting of segmenting it with a specific segmentator.
+   * @param seg  the segmentator to use
+   */
+  public void polygonize(RSegmentator seg){
     int numPaths = countPaths();
     
     for(int i=0;i<numPaths;i++){
-      this.paths[i].polygonize();
+      this.paths[i].polygonize(seg);
     }
     
     for(int i=0;i<countChildren();i++){
-      this.children[i].polygonize();
+      this.children[i].polygonize(seg);
+    }
+    invalidate();
+  }
+
+  /**
+   * Use this to pack all the paths of the shape and of its children, reducing the memory they use and making copies of the shape cheap.  Useful after loading large files, such as maps.
+   * @eexample RPath_pack
+   * @related RPath
+   */
+  public void pack(){
+    for(int i=0;i<countPaths();i++){
+      this.paths[i].pack();
+    }
+
+    for(int i=0;i<countChildren();i++){
+      this.children[i].pack();
     }
   }
 
@@ -511,23 +645,24 @@ public class RShape extends RGeomElem
     
     RShape temp = new RShape();
     for(int i=0; i<numPaths; i++){
-      temp.addPath(this.paths[i]);
+      temp.addPathShared(this.paths[i]);
     }
 
     RPolygon resPolPaths = RClip.intersection( temp.toPolygon(), ppoly );
     if (resPolPaths != null) { 
       RShape resPaths = resPolPaths.toShape();
       for(int i=0; i<resPaths.countPaths(); i++){
-        result.addPath(resPaths.paths[i]);
+        result.append(resPaths.paths[i]);
       }
     }
 
     for(int i=0; i<countChildren(); i++){
       RShape resChildren = this.children[i].intersection(p);
       if (resChildren != null) {
-        result.addChild(resChildren);
+        result.appendChild(resChildren);
       }
     }
+    result.trimArrays();
     
     if (result != null) {
       result.setStyle(this);
@@ -561,23 +696,24 @@ public class RShape extends RGeomElem
     
     RShape temp = new RShape();
     for(int i=0; i<numPaths; i++){
-      temp.addPath(this.paths[i]);
+      temp.addPathShared(this.paths[i]);
     }
 
     RPolygon resPolPaths = RClip.union( temp.toPolygon(), ppoly );
     if (resPolPaths != null) { 
       RShape resPaths = resPolPaths.toShape();
       for(int i=0; i<resPaths.countPaths(); i++){
-        result.addPath(resPaths.paths[i]);
+        result.append(resPaths.paths[i]);
       }
     }
 
     for(int i=0; i<countChildren(); i++){
       RShape resChildren = this.children[i].union(p);
       if (resChildren != null) {
-        result.addChild(resChildren);
+        result.appendChild(resChildren);
       }
     }
+    result.trimArrays();
     
     if (result != null) {
       result.setStyle(this);
@@ -611,23 +747,24 @@ public class RShape extends RGeomElem
     
     RShape temp = new RShape();
     for(int i=0; i<numPaths; i++){
-      temp.addPath(this.paths[i]);
+      temp.addPathShared(this.paths[i]);
     }
 
     RPolygon resPolPaths = RClip.xor( temp.toPolygon(), ppoly );
     if (resPolPaths != null) { 
       RShape resPaths = resPolPaths.toShape();
       for(int i=0; i<resPaths.countPaths(); i++){
-        result.addPath(resPaths.paths[i]);
+        result.append(resPaths.paths[i]);
       }
     }
 
     for(int i=0; i<countChildren(); i++){
       RShape resChildren = this.children[i].xor(p);
       if (resChildren != null) {
-        result.addChild(resChildren);
+        result.appendChild(resChildren);
       }
     }
+    result.trimArrays();
     
     if (result != null) {
       result.setStyle(this);
@@ -661,23 +798,24 @@ public class RShape extends RGeomElem
     
     RShape temp = new RShape();
     for(int i=0; i<numPaths; i++){
-      temp.addPath(this.paths[i]);
+      temp.addPathShared(this.paths[i]);
     }
 
     RPolygon resPolPaths = RClip.diff( temp.toPolygon(), ppoly );
     if (resPolPaths != null) { 
       RShape resPaths = resPolPaths.toShape();
       for(int i=0; i<resPaths.countPaths(); i++){
-        result.addPath(resPaths.paths[i]);
+        result.append(resPaths.paths[i]);
       }
     }
 
     for(int i=0; i<countChildren(); i++){
       RShape resChildren = this.children[i].diff(p);
       if (resChildren != null) {
-        result.addChild(resChildren);
+        result.appendChild(resChildren);
       }
     }
+    result.trimArrays();
     
     if (result != null) {
       result.setStyle(this);
@@ -754,50 +892,184 @@ public class RShape extends RGeomElem
     }
   }
 
+  /**
+   * Use this to return the points on the curve for several advancements at once.  The paths and children holding them are found in a single walk when ts is sorted, and the advancements falling on the same one are passed on together.
+   * @eexample getPoint
+   * @param ts  the parameters of advancement on the curve. They must have values between 0 and 1.
+   * @return RPoint[], one point per advancement.
+   * @related getTangents ( )
+   * */
+  public RPoint[] getPoints(float[] ts){
+    return pointsAt(ts, false);
+  }
+
+  /**
+   * Use this to return the tangents on the curve for several advancements at once.
+   * @eexample getPoint
+   * @param ts  the parameters of advancement on the curve. They must have values between 0 and 1.
+   * @return RPoint[], one tangent per advancement.
+   * @related getPoints ( )
+   * */
+  public RPoint[] getTangents(float[] ts){
+    return pointsAt(ts, true);
+  }
+
+  private RPoint[] pointsAt(float[] ts, boolean tangents){
+    float[] indAndAdv = indAndAdvAt(ts);
+    RPoint[] result = new RPoint[ts.length];
+    int k = 0;
+    while(k < ts.length){
+      int indOfElement = (int)indAndAdv[2*k];
+      int end = k + 1;
+      while(end < ts.length && (int)indAndAdv[2*end] == indOfElement){
+        end++;
+      }
+
+      float[] advs = new float[end - k];
+      for(int j=k;j<end;j++){
+        advs[j-k] = indAndAdv[2*j+1];
+      }
+
+      RGeomElem element;
+      if ( indOfElement < countPaths() ){
+        element = paths[indOfElement];
+      }else{
+        element = children[indOfElement - countPaths()];
+      }
+      RPoint[] points = tangents ? element.getTangents(advs) : element.getPoints(advs);
+      System.arraycopy(points,0,result,k,points.length);
+      k = end;
+    }
+    return result;
+  }
+
+  /**
+   * Use this to return the point at a given distance from the start of the shape, measured along its paths and then along its children.
+   * @eexample RShape_getPointAtLength
+   * @param s  the distance along the shape. s must have values between 0 and getCurveLength().
+   * @return RPoint, the point on the curve.
+   * @related getTangentAtLength ( )
+   * @related lengthAt ( )
+   * */
+  public RPoint getPointAtLength(float s){
+    if(countPaths() + countChildren() == 0){
+      return new RPoint();
+    }
+
+    int i = indexAtLength(s);
+    float sOfElement = s - lenCurvesAcc[i];
+
+    if ( i < countPaths() ){
+      return paths[i].getPointAtLength(sOfElement);
+    }else{
+      return children[i - countPaths()].getPointAtLength(sOfElement);
+    }
+  }
+
+  /**
+   * Use this to return the tangent at a given distance from the start of the shape, measured along its paths and then along its children.
+   * @eexample RShape_getTangentAtLength
+   * @param s  the distance along the shape. s must have values between 0 and getCurveLength().
+   * @return RPoint, the tangent on the curve.
+   * @related getPointAtLength ( )
+   * */
+  public RPoint getTangentAtLength(float s){
+    if(countPaths() + countChildren() == 0){
+      return new RPoint();
+    }
+
+    int i = indexAtLength(s);
+    float sOfElement = s - lenCurvesAcc[i];
+
+    if ( i < countPaths() ){
+      return paths[i].getTangentAtLength(sOfElement);
+    }else{
+      return children[i - countPaths()].getTangentAtLength(sOfElement);
+    }
+  }
+
+  /**
+   * Use this to return the length of the shape from its start to the advancement parameter t.
+   * @eexample RShape_lengthAt
+   * @param t  the parameter of advancement on the curve. t must have values between 0 and 1.
+   * @return float, the length returned.
+   * @related getPointAtLength ( )
+   * */
+  public float lengthAt(float t){
+    if(countPaths() + countChildren() == 0){
+      return 0F;
+    }
+
+    float[] indAndAdv = indAndAdvAt(t);
+    int indOfElement = (int)(indAndAdv[0]);
+    float advOfElement = indAndAdv[1];
+
+    if ( indOfElement < countPaths() ){
+      return lenCurvesAcc[indOfElement] + paths[indOfElement].lengthAt(advOfElement);
+    }else{
+      return lenCurvesAcc[indOfElement] + children[indOfElement - countPaths()].lengthAt(advOfElement);
+    }
+  }
+
   /**
    * Use this to return the points on the curve of the shape.  It returns the points as an array of RPoint.
    * @eexample RShape_getPoints
    * @return RPoint[], the points returned in an array.
    * */
   public RPoint[] getPoints(){
-    int numPaths = countPaths();
+    return getPoints(RSegmentator.getDefault());
+  }
 
-    RCommand.segmentAccOffset = RCommand.segmentOffset;    
-    RPoint[] result=null;
-    RPoint[] newresult=null;
-    for(int i=0;i<numPaths;i++){
-      RPoint[] newPoints = paths[i].getPoints();
-      if(newPoints!=null){
-        if(result==null){
-          result = new RPoint[newPoints.length];
-          System.arraycopy(newPoints,0,result,0,newPoints.length);
-        }else{
-          newresult = new RPoint[result.length + newPoints.length];
-          System.arraycopy(result,0,newresult,0,result.length);
-          System.arraycopy(newPoints,0,newresult,result.length,newPoints.length);
-          result = newresult;
-        }
-      }
+  /**
+   * Use this to return the points on the curve of the shape using a specific segmentator instead of the global one.  It returns the points as an array of RPoint.
+   * @eexample RShape_getPoints
+   * @param seg  the segmentator to use
+   * @return RPoint[], the points returned in an array.
+   * */
+  public RPoint[] getPoints(RSegmentator seg){
+    RFloatBuffer buffer = new RFloatBuffer();
+    flattenInto(buffer, seg);
+    return buffer.toPoints();
+  }
+
+  /**
+   * Use this to segment the shape sending the coordinates of the resulting points to a sink, without creating any RPoint.  The points of each path, and then of each child, are followed by a call to endPath() on the sink.
+   * @eexample flattenInto
+   * @param sink  the object receiving the points, for example an RFloatBuffer that is cleared and reused every frame
+   * @related RFloatBuffer
+   * */
+  public void flattenInto(RFloatSink sink){
+    flattenInto(sink, RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this to segment the shape with a specific segmentator sending the coordinates of the resulting points to a sink.
+   * @param sink  the object receiving the points
+   * @param seg  the segmentator to use
+   * */
+  public void flattenInto(RFloatSink sink, RSegmentator seg){
+    for(int i=0;i<countPaths();i++){
+      paths[i].flattenInto(sink, seg);
     }
 
     for(int i=0;i<countChildren();i++){
-      RPoint[] newPoints = children[i].getPoints();
-      if(newPoints!=null){
-        if(result==null){
-          result = new RPoint[newPoints.length];
-          System.arraycopy(newPoints,0,result,0,newPoints.length);
-        }else{
-          newresult = new RPoint[result.length + newPoints.length];
-          System.arraycopy(result,0,newresult,0,result.length);
-          System.arraycopy(newPoints,0,newresult,result.length,newPoints.length);
-          result = newresult;
-        }
-      }
+      children[i].flattenInto(sink, seg);
     }
-    
-    return result;
   }
 
+  /**
+   * Use this to segment the shape writing the interleaved x/y coordinates of the resulting points into an array.  The array must be large enough to hold all the points, otherwise an ArrayIndexOutOfBoundsException is thrown; use an RFloatBuffer when the number of points is not known.
+   * @param xy  the array receiving the coordinates
+   * @param offset  the index of xy where the first coordinate is written
+   * @return int, the index following the last coordinate written.
+   * */
+  public int flattenInto(float[] xy, int offset){
+    RCommand.ArraySink sink = new RCommand.ArraySink(xy, offset);
+    flattenInto(sink);
+    return sink.pos;
+  }
+
+
   /**
    * Use this to return a point on the curve given a certain advancement.  It returns the point as an RPoint.
    * @eexample RShape_getTangents
@@ -823,7 +1095,25 @@ public class RShape extends RGeomElem
    * @return boolean, true if the point is in the path.
    * */
   public boolean contains(float x, float y){
-    return contains(new RPoint(x, y));
+    // Test for containment in bounding box
+    if(!boundsContain(x, y)){
+      return false;
+    }
+
+    // Test for containment in shape
+    return containsIndex().contains(x, y);
+  }
+
+  /* The index used by contains(), kept until the shape changes */
+  private RPreparedShape containsIndex(){
+    RSegmentator seg = RSegmentator.getDefault();
+    RPreparedShape index = prepared;
+    if(index == null || !seg.equals(preparedSeg)){
+      index = new RPreparedShape(this, seg, RPreparedShape.EVENODD);
+      preparedSeg = seg;
+      prepared = index;
+    }
+    return index;
   }
 
   /**
@@ -832,49 +1122,76 @@ public class RShape extends RGeomElem
    * @return boolean, true if the point is in the path.
    * */
   public boolean contains(RPoint p){
-    float testx = p.x;
-    float testy = p.y;
+    return contains(p.x, p.y);
+  }
 
-    // Test for containment in bounding box
-    RRectangle bbox = getBounds();
-    float xmin = bbox.getMinX();
-    float xmax = bbox.getMaxX();
+  /**
+   * Use this to get a prepared copy of the shape, made for answering many containment queries quickly.  The shape is segmented with the default segmentator and the EVENODD rule is used, the same way as contains() does.
+   * @eexample RShape_prepare
+   * @return RPreparedShape, the prepared shape.
+   * @related RPreparedShape
+   * @related contains ( )
+   */
+  public RPreparedShape prepare(){
+    return prepare(RPreparedShape.EVENODD);
+  }
 
-    float ymin = bbox.getMinY();
-    float ymax = bbox.getMaxY();
-    
-    if( (testx < xmin) || (testx > xmax) || (testy < ymin) || (testy > ymax)){
-      return false;
-    }
+  /**
+   * Use this to get a prepared copy of the shape using a given fill rule.
+   * @eexample RShape_prepare
+   * @param rule  the fill rule, RPreparedShape.EVENODD or RPreparedShape.NONZERO
+   * @return RPreparedShape, the prepared shape.
+   * @related RPreparedShape
+   */
+  public RPreparedShape prepare(int rule){
+    return new RPreparedShape(this, RSegmentator.getDefault(), rule);
+  }
 
-    // Test for containment in shape
-    RPoint[][] pointpaths = getPointsInPaths();
-    
-    if(pointpaths == null){
-      return false;
-    }
-    
-    RPoint[] verts = pointpaths[0];
-    for(int k=1;k<pointpaths.length;k++){
-      verts = (RPoint[])RG.parent().append(verts, new RPoint(0F, 0F));
-      verts = (RPoint[])RG.parent().concat(verts, pointpaths[k]);
-    }
-    verts = (RPoint[])RG.parent().append(verts, new RPoint(0F, 0F));
-    
-    if(verts == null){
-      return false;
-    }
-    
-    int nvert = verts.length;
-    int i, j = 0;
-    boolean c = false;
-    for (i = 0, j = nvert-1; i < nvert; j = i++) {
-      if ( ((verts[i].y > testy) != (verts[j].y>testy)) &&
-           (testx < (verts[j].x-verts[i].x) * (testy-verts[i].y) / (verts[j].y-verts[i].y) + verts[i].x) ){
-        c = !c;
-      }
-    }
-    return c;
+  /**
+   * Use this to know which of a set of points are inside the shape.  The shape is segmented once for all the points, which is much faster than calling contains() for each of them.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param out  the array receiving for each point true if it is inside, at least as long as xs
+   * @related countContained ( )
+   */
+  public void contains(float[] xs, float[] ys, boolean[] out){
+    contains(xs, ys, out, false);
+  }
+
+  /**
+   * Use this to know which of a set of points are inside the shape, optionally splitting the work between several threads.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param out  the array receiving for each point true if it is inside, at least as long as xs
+   * @param parallel  true to split large sets of points between the threads of the library
+   */
+  public void contains(float[] xs, float[] ys, boolean[] out, boolean parallel){
+    containsIndex().contains(xs, ys, out, parallel);
+  }
+
+  /**
+   * Use this to count how many of a set of points are inside the shape.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @return int, the number of points inside.
+   */
+  public int countContained(float[] xs, float[] ys){
+    return countContained(xs, ys, false);
+  }
+
+  /**
+   * Use this to count how many of a set of points are inside the shape, optionally splitting the work between several threads.
+   * @eexample RShape_contains
+   * @param xs  the x coordinates of the points
+   * @param ys  the y coordinates of the points
+   * @param parallel  true to split large sets of points between the threads of the library
+   * @return int, the number of points inside.
+   */
+  public int countContained(float[] xs, float[] ys, boolean parallel){
+    return containsIndex().countContained(xs, ys, parallel);
   }
 
   /**
@@ -1088,8 +1405,7 @@ public class RShape extends RGeomElem
     }
     
     // Clear the cache
-    lenCurves = null;
-    lenCurve = -1F;
+    invalidate();
 
     return;
   }
@@ -1114,8 +1430,7 @@ public class RShape extends RGeomElem
     }
 
     // Clear the cache
-    lenCurves = null;
-    lenCurve = -1F;
+    invalidate();
     
     return;
   }
@@ -1168,6 +1483,7 @@ public class RShape extends RGeomElem
       for (int i = 0; i < countChildren(); i++){
         result[1].appendChild(new RShape(this.children[i]));
       }
+      result[1].trimArrays();
       result[1].setStyle(this);
     
       return result;
@@ -1201,48 +1517,93 @@ public class RShape extends RGeomElem
    * @param other  the path with which to check for intersections
    */  
   public RPoint[] getIntersections(RShape other) {
-    // TODO: when we will be able to intersect between all
-    //       geometric elements the polygonization will not be necessary
-    RShape shp = new RShape(this);
-    shp.polygonize();
-
-    RShape otherPol = new RShape(other);
-    otherPol.polygonize();
-    return shp.polygonIntersectionPoints(otherPol);
+    return polygonIntersectionPoints(other);
   }
 
 
   RPoint[] getIntersections(RCommand other) {
-    // TODO: when we will be able to intersect between all
-    //       geometric elements the polygonization will not be necessary
-    RShape shp = new RShape(this);
-    shp.polygonize();
-    
-    return shp.polygonIntersectionPoints(other);
+    return polygonIntersectionPoints(other);
+  }
+
+  /**
+   * Use this method to find the points where the outline of this shape crosses the outline of another shape.  Both outlines are segmented and their segments are crossed with a sweep line, which is much faster than getIntersections() on shapes with many paths or commands, at the price of the precision of the segmentation.  The points are passed to the sink as they are found.
+   * @eexample RShape_intersectionsInto
+   * @param other  the shape with which to check for intersections
+   * @param out  the sink receiving the intersection points, for example an RFloatBuffer
+   * @return int, the number of intersection points found.
+   * @related getIntersections ( )
+   * @related selfIntersectionsInto ( )
+   */
+  public int intersectionsInto(RShape other, RFloatSink out){
+    return intersectionsInto(other, RSegmentator.getDefault(), out);
+  }
+
+  /**
+   * Use this method to find the points where the outline of this shape crosses the outline of another shape, segmenting both with a specific segmentator.
+   * @eexample RShape_intersectionsInto
+   * @param other  the shape with which to check for intersections
+   * @param seg  the segmentator to use
+   * @param out  the sink receiving the intersection points, for example an RFloatBuffer
+   * @return int, the number of intersection points found.
+   */
+  public int intersectionsInto(RShape other, RSegmentator seg, RFloatSink out){
+    if(!boundsOverlap(other)){
+      return 0;
+    }
+
+    RFloatBuffer a = new RFloatBuffer();
+    flattenInto(a, seg);
+    RFloatBuffer b = new RFloatBuffer();
+    other.flattenInto(b, seg);
+    return RSegmentIntersector.intersections(a, b, out);
+  }
+
+  /**
+   * Use this method to find the points where the outline of this shape crosses itself, including the crossings between different paths of the shape.  Consecutive segments of a path, which always meet at their common end, are not reported.
+   * @eexample RShape_selfIntersectionsInto
+   * @param out  the sink receiving the intersection points, for example an RFloatBuffer
+   * @return int, the number of intersection points found.
+   * @related intersectionsInto ( )
+   * @related getSelfIntersections ( )
+   */
+  public int selfIntersectionsInto(RFloatSink out){
+    return selfIntersectionsInto(RSegmentator.getDefault(), out);
+  }
+
+  /**
+   * Use this method to find the points where the outline of this shape crosses itself, segmenting it with a specific segmentator.
+   * @eexample RShape_selfIntersectionsInto
+   * @param seg  the segmentator to use
+   * @param out  the sink receiving the intersection points, for example an RFloatBuffer
+   * @return int, the number of intersection points found.
+   */
+  public int selfIntersectionsInto(RSegmentator seg, RFloatSink out){
+    RFloatBuffer a = new RFloatBuffer();
+    flattenInto(a, seg);
+    return RSegmentIntersector.selfIntersections(a, out);
+  }
+
+  /**
+   * Use this method to get the points where the outline of this shape crosses itself.
+   * @eexample RShape_selfIntersectionsInto
+   * @return RPoint[], the intersection points, or null if the outline does not cross itself.
+   * @related selfIntersectionsInto ( )
+   */
+  public RPoint[] getSelfIntersections(){
+    RFloatBuffer out = new RFloatBuffer();
+    selfIntersectionsInto(out);
+    return out.toPoints();
   }
   
   RPoint[] polygonIntersectionPoints(RCommand other){
     int numPaths = countPaths();
+    int[] near = elementsOverlapping(other.getBoundsArray());
 
     RPoint[] result=null;
     RPoint[] newresult=null;
-    for(int i=0;i<numPaths;i++){
-      RPoint[] newPoints = paths[i].intersectionPoints(other);
-      if(newPoints!=null){
-        if(result==null){
-          result = new RPoint[newPoints.length];
-          System.arraycopy(newPoints,0,result,0,newPoints.length);
-        }else{
-          newresult = new RPoint[result.length + newPoints.length];
-          System.arraycopy(result,0,newresult,0,result.length);
-          System.arraycopy(newPoints,0,newresult,result.length,newPoints.length);
-          result = newresult;
-        }
-      }
-    }
-
-    for(int i=0;i<countChildren();i++){
-      RPoint[] newPoints = children[i].polygonIntersectionPoints(other);
+    for(int k=0;k<near.length;k++){
+      int i = near[k];
+      RPoint[] newPoints = (i < numPaths) ? paths[i].intersectionPoints(other) : children[i-numPaths].polygonIntersectionPoints(other);
       if(newPoints!=null){
         if(result==null){
           result = new RPoint[newPoints.length];
@@ -1260,29 +1621,15 @@ public class RShape extends RGeomElem
   }
 
   RPoint[] polygonIntersectionPoints(RPath other){
-    int numChildren = countChildren();
     int numPaths = countPaths();
+    int[] near = elementsOverlapping(other.getBoundsArray());
     
     RPoint[] result=null;
     RPoint[] newresult=null;
     
-    for(int i=0;i<numPaths;i++){
-      RPoint[] newPoints = paths[i].intersectionPoints(other);
-      if(newPoints!=null){
-        if(result==null){
-          result = new RPoint[newPoints.length];
-          System.arraycopy(newPoints,0,result,0,newPoints.length);
-        }else{
-          newresult = new RPoint[result.length + newPoints.length];
-          System.arraycopy(result,0,newresult,0,result.length);
-          System.arraycopy(newPoints,0,newresult,result.length,newPoints.length);
-          result = newresult;
-        }
-      }
-    }
-        
-    for(int i=0;i<numChildren;i++){
-      RPoint[] newPoints = children[i].polygonIntersectionPoints(other);
+    for(int k=0;k<near.length;k++){
+      int i = near[k];
+      RPoint[] newPoints = (i < numPaths) ? paths[i].intersectionPoints(other) : children[i-numPaths].polygonIntersectionPoints(other);
       if(newPoints!=null){
         if(result==null){
           result = new RPoint[newPoints.length];
@@ -1300,14 +1647,15 @@ public class RShape extends RGeomElem
   }
 
   RPoint[] polygonIntersectionPoints(RShape other){
-    int numChildren = countChildren();
     int numPaths = countPaths();
+    int[] near = elementsOverlapping(other.getBoundsArray());
     
     RPoint[] result=null;
     RPoint[] newresult=null;
     
-    for(int i=0;i<numPaths;i++){
-      RPoint[] newPoints = other.polygonIntersectionPoints(paths[i]);
+    for(int k=0;k<near.length;k++){
+      int i = near[k];
+      RPoint[] newPoints = (i < numPaths) ? other.polygonIntersectionPoints(paths[i]) : other.polygonIntersectionPoints(children[i-numPaths]);
       if(newPoints!=null){
         if(result==null){
           result = new RPoint[newPoints.length];
@@ -1321,104 +1669,147 @@ public class RShape extends RGeomElem
       }
     }
     
-    for(int i=0;i<numChildren;i++){
-      RPoint[] newPoints = other.polygonIntersectionPoints(children[i]);
-      if(newPoints!=null){
-        if(result==null){
-          result = new RPoint[newPoints.length];
-          System.arraycopy(newPoints,0,result,0,newPoints.length);
-        }else{
-          newresult = new RPoint[result.length + newPoints.length];
-          System.arraycopy(result,0,newresult,0,result.length);
-          System.arraycopy(newPoints,0,newresult,result.length,newPoints.length);
-          result = newresult;
-        }
+    return result;
+  }
+
+  /* The hierarchy over the bounds of the paths and of the children, kept
+     until the shape changes.  Items below countPaths() are paths, the rest
+     are children offset by countPaths(). */
+  RBoundsTree getElementTree(){
+    RBoundsTree tree = elementTree;
+    if(tree == null){
+      int numPaths = countPaths();
+      int n = numPaths + countChildren();
+      float[] boxes = new float[4 * n];
+      for(int i=0;i<n;i++){
+        RGeomElem elem = (i < numPaths) ? (RGeomElem)paths[i] : children[i-numPaths];
+        System.arraycopy(elem.getBoundsArray(), 0, boxes, 4 * i, 4);
       }
+      tree = new RBoundsTree(boxes, n);
+      elementTree = tree;
+    }
+    return tree;
+  }
+
+  /* Indices, as in getElementTree(), of the paths and children whose bounds
+     overlap the box, in increasing order */
+  int[] elementsOverlapping(float[] b){
+    int numPaths = countPaths();
+    int n = numPaths + countChildren();
+    if(n >= RBoundsTree.MIN_ELEMENTS){
+      return getElementTree().query(b);
+    }
+
+    int[] near = new int[n];
+    int count = 0;
+    for(int i=0;i<n;i++){
+      float[] o = (i < numPaths) ? paths[i].getBoundsArray() : children[i-numPaths].getBoundsArray();
+      if(o[0] <= b[2] && b[0] <= o[2] && o[1] <= b[3] && b[1] <= o[3]){
+        near[count++] = i;
+      }
+    }
+    int[] exact = new int[count];
+    System.arraycopy(near, 0, exact, 0, count);
+    return exact;
+  }
+
+  /* The children that may be seen on the graphics, in increasing order */
+  private int[] childrenInView(PGraphics g){
+    int numChildren = countChildren();
+    int numPaths = countPaths();
+    if(numPaths + numChildren < RBoundsTree.MIN_ELEMENTS){
+      return allChildren();
+    }
+
+    float[] view = viewBounds(g, getBoundsArray());
+    if(view == null){
+      return allChildren();
+    }
+
+    int[] near = getElementTree().query(view);
+    int first = 0;
+    while(first < near.length && near[first] < numPaths){
+      first++;
+    }
+    int[] result = new int[near.length - first];
+    for(int k=first;k<near.length;k++){
+      result[k-first] = near[k] - numPaths;
     }
-    
     return result;
   }
 
+  private int[] allChildren(){
+    int[] result = new int[countChildren()];
+    for(int i=0;i<result.length;i++){
+      result[i] = i;
+    }
+    return result;
+  }
 
   /**
    * Use this method to get the closest or intersection points of the shape with another shape passed as argument.
    * @param other  the path with which to check for intersections
    */  
   public RClosest getClosest(RShape other) {
-    // TODO: when we will be able to intersect between all
-    //       geometric elements the polygonization will not be necessary
-    RShape shp = new RShape(this);
-    shp.polygonize();
-
-    RShape otherPol = new RShape(other);
-    otherPol.polygonize();
-    return shp.polygonClosestPoints(otherPol);
+    return polygonClosestPoints(other);
   }
 
 
   RClosest getClosest(RCommand other) {
-    // TODO: when we will be able to intersect between all
-    //       geometric elements the polygonization will not be necessary
-    RShape shp = new RShape(this);
-    shp.polygonize();
-    
-    return shp.polygonClosestPoints(other);
+    return polygonClosestPoints(other);
   }
   
   RClosest polygonClosestPoints(RCommand other){
-    int numPaths = countPaths();
-    
-    RClosest result = new RClosest();
-    
-    for(int i=0;i<numPaths;i++){
-      RClosest currResult = paths[i].closestPoints(other);
-      result.update(currResult);
-    }
-
-    for(int i=0;i<countChildren();i++){
-      RClosest currResult = children[i].polygonClosestPoints(other);
-      result.update(currResult);
-    }
-    
-    return result;
+    return polygonClosestPoints(other, Float.POSITIVE_INFINITY);
   }
 
   RClosest polygonClosestPoints(RPath other){
-    int numChildren = countChildren();
-    int numPaths = countPaths();
-    
-    RClosest result = new RClosest();
-    
-    for(int i=0;i<numPaths;i++){
-      RClosest currClosest = paths[i].closestPoints(other);
-      result.update(currClosest);
-    }
-        
-    for(int i=0;i<numChildren;i++){
-      RClosest currClosest = children[i].polygonClosestPoints(other);
-      result.update(currClosest);
-    }
-    
-    return result;
+    return polygonClosestPoints(other, Float.POSITIVE_INFINITY);
   }
 
   RClosest polygonClosestPoints(RShape other){
-    int numChildren = countChildren();
-    int numPaths = countPaths();
-    
-    RClosest result = new RClosest();
-    
-    for(int i=0;i<numPaths;i++){
-      RClosest currClosest = other.polygonClosestPoints(paths[i]);
-      result.update(currClosest);
-    }
-    
-    for(int i=0;i<numChildren;i++){
-      RClosest currClosest = other.polygonClosestPoints(children[i]);
-      result.update(currClosest);
-    }
-    
-    return result;
+    return polygonClosestPoints(other, Float.POSITIVE_INFINITY);
+  }
+
+  /* The closest point searches skip the paths and children farther than
+     bound from the other element, see RBoundsTree.ClosestSearch */
+  RClosest polygonClosestPoints(final RCommand other, float bound){
+    final int numPaths = countPaths();
+    RBoundsTree.ClosestSearch search = new RBoundsTree.ClosestSearch(){
+        RClosest closest(int i, int j, float limit){
+          if(i < numPaths){
+            return paths[i].closestPoints(other, limit);
+          }
+          return children[i-numPaths].polygonClosestPoints(other, limit);
+        }
+      };
+    return search.search(getElementTree(), RBoundsTree.single(other.getBoundsArray()), bound, true);
+  }
+
+  RClosest polygonClosestPoints(final RPath other, float bound){
+    final int numPaths = countPaths();
+    RBoundsTree.ClosestSearch search = new RBoundsTree.ClosestSearch(){
+        RClosest closest(int i, int j, float limit){
+          if(i < numPaths){
+            return paths[i].closestPoints(other, limit);
+          }
+          return children[i-numPaths].polygonClosestPoints(other, limit);
+        }
+      };
+    return search.search(getElementTree(), RBoundsTree.single(other.getBoundsArray()), bound, true);
+  }
+
+  RClosest polygonClosestPoints(final RShape other, float bound){
+    final int numPaths = countPaths();
+    RBoundsTree.ClosestSearch search = new RBoundsTree.ClosestSearch(){
+        RClosest closest(int i, int j, float limit){
+          if(i < numPaths){
+            return other.polygonClosestPoints(paths[i], limit);
+          }
+          return other.polygonClosestPoints(children[i-numPaths], limit);
+        }
+      };
+    return search.search(getElementTree(), RBoundsTree.single(other.getBoundsArray()), bound, true);
   }
 
   /**
@@ -1506,6 +1897,7 @@ public class RShape extends RGeomElem
     default:
       throw new RuntimeException("Unknown adaptor type : "+RG.adaptorType+". The method RG.setAdaptor() only accepts RG.BYPOINT or RG.BYELEMENT as parameter values.");
     }
+    invalidateDeep();
   }
   
   public void adapt(RShape shp) throws RuntimeException{
@@ -1547,8 +1939,9 @@ public class RShape extends RGeomElem
 
     this.drawPaths(g);
 
-    for(int i=0;i<countChildren();i++){
-      this.children[i].draw(g);
+    int[] visible = childrenInView(g);
+    for(int k=0;k<visible.length;k++){
+      this.children[visible[k]].draw(g);
     }
 
     if(!RG.ignoreStyles){
@@ -1564,8 +1957,9 @@ public class RShape extends RGeomElem
 
     this.drawPaths(g);
 
-    for(int i=0;i<countChildren();i++){
-      this.children[i].draw(g);
+    int[] visible = childrenInView(g.g);
+    for(int k=0;k<visible.length;k++){
+      this.children[visible[k]].draw(g);
     }
 
     if(!RG.ignoreStyles){
@@ -1649,79 +2043,93 @@ public class RShape extends RGeomElem
 
   protected void calculateCurveLengths(){
     lenCurves = new float[countPaths() + countChildren()];
-    lenCurve = 0F;
     for(int i=0;i<countPaths();i++){
       lenCurves[i] = paths[i].getCurveLength();
-      lenCurve += lenCurves[i];
     }  
 
     for(int i=0;i<countChildren();i++){
       lenCurves[i + countPaths()] = children[i].getCurveLength();
-      lenCurve += lenCurves[i + countPaths()];
     }
+    accumulateCurveLengths();
   }
-  
-  private float[] indAndAdvAt(float t){
-    int indOfElement = 0;
-    float[] lengthsCurves = getCurveLengths();
-    float lengthCurve = getCurveLength();
-
-    /* Calculate the amount of advancement t mapped to each command */
-    /* We use a simple algorithm where we give to each command the same amount of advancement */
-    /* A more useful way would be to give to each command an advancement proportional to the length of the command */
-    
-    float accumulatedAdvancement = lengthsCurves[indOfElement] / lengthCurve;
-    float prevAccumulatedAdvancement = 0F;
-    
-    /* Find in what command the advancement point is  */
-    while(t > accumulatedAdvancement){
-      indOfElement++;
-      prevAccumulatedAdvancement = accumulatedAdvancement;
-      accumulatedAdvancement += (lengthsCurves[indOfElement] / lengthCurve);
-    }
-    
-    float advOfElement = (t-prevAccumulatedAdvancement) / (lengthsCurves[indOfElement] / lengthCurve);
 
-    float[] indAndAdv = new float[2];
+  void dropCaches(){
+    super.dropCaches();
+    prepared = null;
+    elementTree = null;
+  }
 
-    indAndAdv[0] = indOfElement;
-    indAndAdv[1] = RG.parent().constrain(advOfElement, 0.0f, 1.0f);
-    
-    return indAndAdv;
+  void dropCachesDeep(){
+    dropCaches();
+    for(int i=0;i<countPaths();i++){
+      paths[i].dropCachesDeep();
+    }
+    for(int i=0;i<countChildren();i++){
+      children[i].dropCachesDeep();
+    }
+  }
+
+  protected float[] calculateBounds(){
+    float[] b = emptyBounds();
+    for(int i=0;i<countPaths();i++){
+      addToBounds(b, paths[i].getBoundsArray());
+    }
+    for(int i=0;i<countChildren();i++){
+      addToBounds(b, children[i].getBoundsArray());
+    }
+    return b;
   }
   
+  /* Cuts the arrays of paths and children alone to their exact size, the
+     builders adding many paths or children call it once they are done */
+  private void trimArrays(){
+    int numPaths = countPaths();
+    if(paths != null && paths.length != numPaths){
+      RPath[] newpaths = new RPath[numPaths];
+      System.arraycopy(paths,0,newpaths,0,numPaths);
+      paths = pathStore = newpaths;
+    }
+
+    int numChildren = countChildren();
+    if(children != null && children.length != numChildren){
+      RShape[] newshapes = new RShape[numChildren];
+      System.arraycopy(children,0,newshapes,0,numChildren);
+      children = childStore = newshapes;
+    }
+  }
 
   private void appendChild(RShape nextshape)
   {
-    RShape[] newshapes;
-    if(children==null){
-      newshapes = new RShape[1];
-      newshapes[0] = nextshape;
+    int capacity = (children == null) ? 0 : children.length;
+    if(countChildren() == capacity){
+      RShape[] newshapes = new RShape[Math.max(1, 2 * capacity)];
+      if(childCount > 0){
+        System.arraycopy(this.children,0,newshapes,0,childCount);
+      }
+      this.children = childStore = newshapes;
+    }
+    if(childCount == 0){
       currentChild = 0;
     }else{
-      newshapes = new RShape[this.children.length+1];
-      System.arraycopy(this.children,0,newshapes,0,this.children.length);
-      newshapes[this.children.length]=nextshape;
       currentChild++;
     }
-    this.children = newshapes;
+    this.children[childCount++] = nextshape;
+    adopt(nextshape);
+    invalidate();
   }
   
   
   private void append(RPath nextpath)
   {
-    RPath[] newpaths;
-    if(paths==null){
-      newpaths = new RPath[1];
-      newpaths[0] = nextpath;
+    ensureCapacity(countPaths() + 1);
+    if(pathCount == 0){
       currentPath = 0;
     }else{
-      newpaths = new RPath[this.paths.length+1];
-      System.arraycopy(this.paths,0,newpaths,0,this.paths.length);
-      newpaths[this.paths.length]=nextpath;
       currentPath++;
     }
-    this.paths=newpaths;
+    this.paths[pathCount++] = nextpath;
+    adopt(nextpath);
+    invalidate();
   }
 
   private void drawUsingInternalTesselator(PGraphics g){
@@ -1739,8 +2147,7 @@ public class RShape extends RGeomElem
         int fillColorBefore = g.fillColor;
 
         // By default always drawy with an ADAPTATIVE segmentator
-        int lastSegmentator = RCommand.segmentType;
-        RCommand.setSegmentator(RCommand.ADAPTATIVE);
+        RSegmentator seg = RSegmentator.getDefault().withType(RCommand.ADAPTATIVE);
         
         // Check whether to draw the fill or not
         if(g.fill){
@@ -1753,7 +2160,7 @@ public class RShape extends RGeomElem
             g.noSmooth();
           }catch(Exception e){}
           
-          RMesh tempMesh = this.toMesh();
+          RMesh tempMesh = getDrawMesh(seg);
           tempMesh.draw(g);
           
           // Restore the old context
@@ -1793,9 +2200,6 @@ public class RShape extends RGeomElem
         if(!strokeBefore){
           g.noStroke();
         }
-        
-        // Restore the user set segmentator
-        RCommand.setSegmentator(lastSegmentator);
       }
     }
   }
@@ -1814,8 +2218,7 @@ public class RShape extends RGeomElem
         int fillColorBefore = p.g.fillColor;
 
         // By default always drawy with an ADAPTATIVE segmentator
-        int lastSegmentator = RCommand.segmentType;
-        RCommand.setSegmentator(RCommand.ADAPTATIVE);
+        RSegmentator seg = RSegmentator.getDefault().withType(RCommand.ADAPTATIVE);
         
         // Check whether to draw the fill or not
         if(p.g.fill){
@@ -1830,7 +2233,7 @@ public class RShape extends RGeomElem
             p.noSmooth();
           }catch(Exception e){}
           
-          RMesh tempMesh = this.toMesh();
+          RMesh tempMesh = getDrawMesh(seg);
           if ( tempMesh != null ){
             tempMesh.draw(p);
           }
@@ -1875,9 +2278,6 @@ public class RShape extends RGeomElem
             p.noStroke();
           }
         }
-        
-        // Restore the user set segmentator
-        RCommand.setSegmentator(lastSegmentator);
       }
     }
   }
@@ -1898,11 +2298,12 @@ public class RShape extends RGeomElem
           closed |= path.closed;
 
           for(int j = 0; j < path.countCommands(); j++ ){
-            RPoint[] pnts = path.commands[j].getHandles();
+            RCommand command = path.commandAt(j);
+            RPoint[] pnts = command.getHandles();
             if(j==0){
               g.vertex(pnts[0].x, pnts[0].y);
             }
-            switch( path.commands[j].getCommandType() )
+            switch( command.getCommandType() )
               {
               case RCommand.LINETO:
                 g.vertex( pnts[1].x, pnts[1].y );
@@ -1942,11 +2343,12 @@ public class RShape extends RGeomElem
           float firstx = 0;
           float firsty = 0;
           for(int j = 0; j < path.countCommands(); j++ ){
-            RPoint[] pnts = path.commands[j].getHandles();
+            RCommand command = path.commandAt(j);
+            RPoint[] pnts = command.getHandles();
             if (j==0) {
               g.vertex(pnts[0].x, pnts[0].y);
             }
-            switch( path.commands[j].getCommandType() )
+            switch( command.getCommandType() )
               {
               case RCommand.LINETO:
                 g.vertex( pnts[1].x, pnts[1].y );
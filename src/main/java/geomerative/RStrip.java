@@ -36,13 +36,19 @@ public class RStrip
   public int type = RGeomElem.TRISTRIP;
   
   /**
-   * Array of RPoint objects holding the vertices of the strip. 
+   * Array of RPoint objects holding the vertices of the strip.  After adding vertices one by one it may have empty slots at its end, loop up to countVertices() or call trimToSize() before reading it directly.  It is compacted when the vertices are read with getPoints().
    * @eexample vertices
    * @related RPoint
    * @related countVertices ( )
    * @related addVertex ( )
+   * @related trimToSize ( )
    */
   public RPoint vertices[];
+  int vertexCount;
+
+  /* The array last written by the strip, an array assigned to the public
+     field by user code is taken over with all of its vertices */
+  private RPoint[] vertexStore;
   
   // ----------------------
   // --- Public Methods ---
@@ -55,9 +61,11 @@ public class RStrip
    * @param s  the object of which to make a copy
    */
   public RStrip(RStrip s){
+    ensureCapacity(s.countVertices());
     for(int i=0;i<s.countVertices();i++){
       this.append(new RPoint(s.vertices[i]));
     }
+    trimToSize();
   }
 
   public RStrip(){
@@ -71,11 +79,47 @@ public class RStrip
    * @return int, the number vertices in the strip
    */
   public int countVertices(){
-    if(this.vertices==null){
-      return 0;
+    if(vertices != vertexStore){
+      vertexStore = vertices;
+      vertexCount = (vertices == null) ? 0 : vertices.length;
     }
-    
-    return this.vertices.length;
+    return this.vertexCount;
+  }
+
+  /**
+   * Use this to make room for a number of vertices before adding them one by one.  The array of vertices grows by doubling, so adding vertices costs the same whatever the size of the strip, and it keeps empty slots at its end until trimToSize() is called.
+   * @eexample RStrip_ensureCapacity
+   * @param minCapacity  the number of vertices the strip must be able to hold
+   * @related trimToSize ( )
+   */
+  public void ensureCapacity(int minCapacity){
+    int numVertices = countVertices();
+    int capacity = (vertices == null) ? 0 : vertices.length;
+    if(minCapacity <= capacity){
+      return;
+    }
+
+    RPoint[] newvertices = new RPoint[Math.max(minCapacity, 2 * capacity)];
+    if(numVertices > 0){
+      System.arraycopy(vertices,0,newvertices,0,numVertices);
+    }
+    vertices = vertexStore = newvertices;
+  }
+
+  /**
+   * Use this to cut the array of vertices to the number of vertices of the strip, removing the empty slots left at its end when adding vertices.
+   * @eexample RStrip_ensureCapacity
+   * @related ensureCapacity ( )
+   */
+  public void trimToSize(){
+    int numVertices = countVertices();
+    if(vertices == null || vertices.length == numVertices){
+      return;
+    }
+
+    RPoint[] newvertices = new RPoint[numVertices];
+    System.arraycopy(vertices,0,newvertices,0,numVertices);
+    vertices = vertexStore = newvertices;
   }
   
   /**
@@ -140,6 +184,7 @@ public class RStrip
    * @return RPoint[], the vertices returned in an array.
    * */
   public RPoint[] getHandles(){
+    trimToSize();
     return vertices;
   }
   
@@ -149,6 +194,7 @@ public class RStrip
    * @return RPoint[], the vertices returned in an array.
    * */
   public RPoint[] getPoints(){
+    trimToSize();
     return vertices;
   }
   
@@ -167,6 +213,8 @@ public class RStrip
     }
   }
   
+  /* The add methods leave the array with room for more vertices, the
+     builders adding them call trimToSize() once they are done */
   void add(RPoint p){
     this.append(p);
   }
@@ -184,16 +232,8 @@ public class RStrip
   
   void append(RPoint nextvertex)
   {
-    RPoint[] newvertices;
-    if(vertices==null){
-      newvertices = new RPoint[1];
-      newvertices[0] = nextvertex;
-    }else{
-      newvertices = new RPoint[this.vertices.length+1];
-      System.arraycopy(this.vertices,0,newvertices,0,this.vertices.length);
-      newvertices[this.vertices.length]=nextvertex;
-    }
-    this.vertices=newvertices;
+    ensureCapacity(countVertices() + 1);
+    vertices[vertexCount++] = nextvertex;
   }
   
 }
@@ -0,0 +1,257 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package geomerative;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Union of many polygons at once.  The polygons are grouped in clusters of
+ * overlapping bounds.  Clusters lie apart from each other, so their unions
+ * are simply put side by side, and the polygons of each cluster are merged
+ * two by two in a balanced tree whose branches run on the threads of the
+ * library.  Merging neighbours first keeps the intermediate results small,
+ * where a left fold clips every polygon against a result that keeps growing.
+ */
+class RUnion
+{
+  /* Number of polygons from which a cluster is split between threads */
+  static final int SPLIT_SIZE = 4;
+
+  static RPolygon unionAll(RPolygon[] polys){
+    RPolygon[] items = new RPolygon[polys.length];
+    int n = 0;
+    for(int i=0; i<polys.length; i++){
+      if(polys[i] != null && !polys[i].isEmpty()){
+        items[n++] = polys[i];
+      }
+    }
+
+    RPolygon result = new RPolygon();
+    if(n == 0){
+      return result;
+    }
+
+    float[] boxes = new float[4 * n];
+    for(int i=0; i<n; i++){
+      System.arraycopy(items[i].getBoundsArray(), 0, boxes, 4 * i, 4);
+    }
+
+    int[][] clusters = cluster(boxes, n);
+    RPolygon[] parts = new RPolygon[clusters.length];
+    if(n < SPLIT_SIZE){
+      new ClusterTask(items, clusters, parts, 0, clusters.length).compute();
+    }else{
+      RG.pool().invoke(new ClusterTask(items, clusters, parts, 0, clusters.length));
+    }
+
+    int numContours = 0;
+    for(int c=0; c<parts.length; c++){
+      numContours += parts[c].countContours();
+    }
+    result.ensureCapacity(numContours);
+    for(int c=0; c<parts.length; c++){
+      for(int i=0; i<parts[c].countContours(); i++){
+        result.append(parts[c].contours[i]);
+      }
+    }
+    result.trimToSize();
+    return result;
+  }
+
+  /**
+   * Groups the boxes that overlap, directly or through other boxes.  Each cluster lists its boxes along a Z-order curve over their centers.
+   */
+  static int[][] cluster(float[] boxes, int n){
+    int[] root = new int[n];
+    for(int i=0; i<n; i++){
+      root[i] = i;
+    }
+
+    RBoundsTree tree = new RBoundsTree(boxes, n);
+    for(int i=0; i<n; i++){
+      int[] found = tree.query(boxes[4*i], boxes[4*i+1], boxes[4*i+2], boxes[4*i+3]);
+      for(int k=0; k<found.length; k++){
+        int a = find(root, i);
+        int b = find(root, found[k]);
+        if(a != b){
+          root[Math.max(a, b)] = Math.min(a, b);
+        }
+      }
+    }
+
+    // Number the clusters in the order of their first box
+    int[] index = new int[n];
+    int[] size = new int[n];
+    int numClusters = 0;
+    for(int i=0; i<n; i++){
+      int r = find(root, i);
+      if(r == i){
+        index[i] = numClusters++;
+      }
+      size[index[r]]++;
+    }
+
+    float[] world = RGeomElem.emptyBounds();
+    for(int i=0; i<n; i++){
+      RGeomElem.addToBounds(world, boxes[4*i], boxes[4*i+1]);
+      RGeomElem.addToBounds(world, boxes[4*i+2], boxes[4*i+3]);
+    }
+
+    // The key holds the position on the curve in its upper half and the box in its lower half
+    long[][] keys = new long[numClusters][];
+    int[] count = new int[numClusters];
+    for(int i=0; i<n; i++){
+      int c = index[find(root, i)];
+      if(keys[c] == null){
+        keys[c] = new long[size[c]];
+      }
+      keys[c][count[c]++] = ((long)zorder(boxes, 4 * i, world) << 32) | i;
+    }
+
+    int[][] clusters = new int[numClusters][];
+    for(int c=0; c<numClusters; c++){
+      Arrays.sort(keys[c]);
+      clusters[c] = new int[size[c]];
+      for(int k=0; k<size[c]; k++){
+        clusters[c][k] = (int)keys[c][k];
+      }
+    }
+    return clusters;
+  }
+
+  private static int find(int[] root, int i){
+    while(root[i] != i){
+      root[i] = root[root[i]];
+      i = root[i];
+    }
+    return i;
+  }
+
+  /* Position of the center of the box at offset k on a Z-order curve
+     filling the world box, with 16 bits per axis */
+  private static int zorder(float[] boxes, int k, float[] world){
+    float w = world[2] - world[0];
+    float h = world[3] - world[1];
+    int x = (w > 0) ? (int)(65535 * (0.5F * (boxes[k] + boxes[k+2]) - world[0]) / w) : 0;
+    int y = (h > 0) ? (int)(65535 * (0.5F * (boxes[k+1] + boxes[k+3]) - world[1]) / h) : 0;
+    return spread(Math.max(0, Math.min(x, 65535))) | (spread(Math.max(0, Math.min(y, 65535))) << 1);
+  }
+
+  /* Moves the 16 low bits of v to the even bits */
+  private static int spread(int v){
+    v = (v | (v << 8)) & 0x00ff00ff;
+    v = (v | (v << 4)) & 0x0f0f0f0f;
+    v = (v | (v << 2)) & 0x33333333;
+    v = (v | (v << 1)) & 0x55555555;
+    return v;
+  }
+
+  static RPolygon union(RPolygon a, RPolygon b){
+    RPolygon res = RClip.union(a, b);
+    return (res == null) ? new RPolygon() : res;
+  }
+
+  /**
+   * Computes the union of each cluster in a range, splitting the range in halves.
+   */
+  static class ClusterTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    final RPolygon[] polys;
+    final int[][] clusters;
+    final RPolygon[] parts;
+    final int start;
+    final int end;
+
+    ClusterTask(RPolygon[] polys, int[][] clusters, RPolygon[] parts, int start, int end){
+      this.polys = polys;
+      this.clusters = clusters;
+      this.parts = parts;
+      this.start = start;
+      this.end = end;
+    }
+
+    protected void compute(){
+      // Outside of a pool invokeAll() would fork on the common pool, or fail on Java 7
+      if(end - start == 1 || !inForkJoinPool()){
+        for(int c=start; c<end; c++){
+          merge(c);
+        }
+        return;
+      }
+
+      int middle = (start + end) >>> 1;
+      invokeAll(new ClusterTask(polys, clusters, parts, start, middle),
+                new ClusterTask(polys, clusters, parts, middle, end));
+    }
+
+    private void merge(int c){
+      int[] members = clusters[c];
+      if(members.length == 1){
+        // Nothing to merge, the polygon is copied as it is
+        parts[c] = new RPolygon(polys[members[0]]);
+      }else{
+        parts[c] = new ReduceTask(polys, members, 0, members.length).compute();
+      }
+    }
+  }
+
+  /**
+   * Merges the polygons of a range of a cluster, the union of each half being computed before the union of both.
+   */
+  static class ReduceTask extends RecursiveTask<RPolygon>
+  {
+    private static final long serialVersionUID = 1L;
+
+    final RPolygon[] polys;
+    final int[] members;
+    final int start;
+    final int end;
+
+    ReduceTask(RPolygon[] polys, int[] members, int start, int end){
+      this.polys = polys;
+      this.members = members;
+      this.start = start;
+      this.end = end;
+    }
+
+    protected RPolygon compute(){
+      return reduce(start, end, end - start >= SPLIT_SIZE && inForkJoinPool());
+    }
+
+    private RPolygon reduce(int from, int to, boolean fork){
+      if(to - from == 1){
+        return polys[members[from]];
+      }
+
+      int middle = (from + to) >>> 1;
+      if(!fork){
+        return union(reduce(from, middle, false), reduce(middle, to, false));
+      }
+
+      ReduceTask left = new ReduceTask(polys, members, from, middle);
+      left.fork();
+      RPolygon right = new ReduceTask(polys, members, middle, to).compute();
+      return union(left.join(), right);
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package geomerative;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ *
+ * Checks the integer clipper against the fast one, and that its results
+ * are clean: vertices on the grid, no crossing edges and holes flagged
+ * by their orientation.
+ *
+ */
+public class IntClipTest extends TestCase {
+
+  protected void tearDown() {
+    RG.useIntClip = false;
+    RG.setClipGrid(8);
+  }
+
+  public void testRectangles() {
+    RPolygon a = RPolygon.createRectangle(0,0,10,10);
+    RPolygon b = RPolygon.createRectangle(5,5,10,10);
+    RG.useIntClip = true;
+    assertClose(25, Math.abs(area(RClip.intersection(a,b))));
+    assertClose(175, Math.abs(area(RClip.union(a,b))));
+    assertClose(75, Math.abs(area(RClip.diff(a,b))));
+    RPolygon xor = RClip.xor(a,b);
+    assertEquals(2, xor.countContours());
+    assertClose(150, Math.abs(area(xor)));
+  }
+
+  public void testMatchesFastClip() {
+    for(int seed = 0; seed < 20; seed++) {
+      RPolygon a = makeShape(20, seed, 100);
+      RPolygon b = makeShape(20, seed + 100, 100);
+      for(int op = 0; op < 4; op++) {
+        RG.useIntClip = false;
+        RPolygon fast = clip(op, a, b);
+        RG.useIntClip = true;
+        RPolygon exact = clip(op, a, b);
+        float fastArea = (fast == null) ? 0 : Math.abs(area(fast));
+        assertTrue(Math.abs(fastArea - Math.abs(area(exact))) < 1f);
+        checkClean(exact, 256);
+      }
+    }
+  }
+
+  public void testCoarseGrid() {
+    RG.useIntClip = true;
+    RG.setClipGrid(0);
+    for(int seed = 0; seed < 20; seed++) {
+      RPolygon a = makeShape(30, seed, 20);
+      RPolygon b = makeShape(30, seed + 100, 20);
+      for(int op = 0; op < 4; op++) {
+        checkClean(clip(op, a, b), 1);
+      }
+    }
+  }
+
+  public void testMesh() {
+    RG.useIntClip = true;
+    RPolygon a = RPolygon.createRectangle(0,0,10,10);
+    RPolygon b = RPolygon.createRectangle(20,20,10,10);
+    assertTrue(RClip.polygonToMesh(RClip.union(a,b)).countStrips() > 0);
+    assertEquals(0, RClip.intersection(a,b).countContours());
+    assertEquals(0, RClip.polygonToMesh(RClip.intersection(a,b)).countStrips());
+  }
+
+  private RPolygon clip(int op, RPolygon a, RPolygon b) {
+    switch(op) {
+      case 0: return RClip.intersection(a,b);
+      case 1: return RClip.union(a,b);
+      case 2: return RClip.xor(a,b);
+      default: return RClip.diff(a,b);
+    }
+  }
+
+  private void checkClean(RPolygon p, float scale) {
+    int n = 0;
+    for(int c = 0; c < p.countContours(); c++) {
+      RContour contour = p.contours[c];
+      assertTrue(contour.isHole == (area(contour) < 0));
+      for(int i = 0; i < contour.countPoints(); i++) {
+        float x = contour.points[i].x * scale, y = contour.points[i].y * scale;
+        assertTrue(x == Math.rint(x) && y == Math.rint(y));
+      }
+      n += contour.countPoints();
+    }
+
+    // Edges of the result only meet at their ends
+    float[] edges = new float[4*n];
+    int k = 0;
+    for(int c = 0; c < p.countContours(); c++) {
+      RPoint[] pts = p.contours[c].points;
+      int m = p.contours[c].countPoints();
+      for(int i = 0; i < m; i++) {
+        edges[k++] = pts[i].x; edges[k++] = pts[i].y;
+        edges[k++] = pts[(i+1)%m].x; edges[k++] = pts[(i+1)%m].y;
+      }
+    }
+    for(int i = 0; i < n; i++) {
+      for(int j = i+1; j < n; j++) {
+        assertTrue(!crossing(edges, i, j));
+      }
+    }
+  }
+
+  private boolean crossing(float[] e, int i, int j) {
+    double d1 = orient(e, i, e[4*j], e[4*j+1]), d2 = orient(e, i, e[4*j+2], e[4*j+3]);
+    double d3 = orient(e, j, e[4*i], e[4*i+1]), d4 = orient(e, j, e[4*i+2], e[4*i+3]);
+    return d1*d2 < 0 && d3*d4 < 0;
+  }
+
+  private double orient(float[] e, int s, double x, double y) {
+    return ((double)e[4*s+2]-e[4*s])*(y-e[4*s+1]) - ((double)e[4*s+3]-e[4*s+1])*(x-e[4*s]);
+  }
+
+  private float area(RPolygon p) {
+    float a = 0;
+    for(int c = 0; c < p.countContours(); c++) {
+      a += area(p.contours[c]);
+    }
+    return a;
+  }
+
+  private float area(RContour c) {
+    double a = 0;
+    int n = c.countPoints();
+    for(int i = 0; i < n; i++) {
+      RPoint p = c.points[i], q = c.points[(i+1)%n];
+      a += (double)p.x*q.y - (double)q.x*p.y;
+    }
+    return (float)(a/2);
+  }
+
+  private void assertClose(float v1, float v2) {
+    assertTrue(Math.abs(v1-v2) < 0.001);
+  }
+
+  RPolygon makeShape(int numPoints, int seed, float size) {
+    Random r = new Random(seed);
+    RPoint[] points = new RPoint[numPoints];
+    for(int i = 0; i < numPoints; i++) {
+      points[i] = new RPoint(r.nextFloat()*size,r.nextFloat()*size);
+    }
+    return new RPolygon(points);
+  }
+}
@@ -0,0 +1,106 @@
+package geomerative;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * Checks the intersections between commands for the cases that used to
+ * give duplicated or endless hits: tangents, shared ends and curves
+ * running over each other.
+ *
+ */
+public class IntersectionTest extends TestCase {
+
+  RCommand cubic = new RCommand(0,0, 30,100, 70,-100, 100,0);
+  RCommand quad = new RCommand(0,0, 50,100, 100,0);
+
+  public void testCrossingCurves() {
+    RCommand other = new RCommand(0,0, 50,-100, 100,100);
+    float[][] hits = quad.intersectionAdvancements(other);
+    assertNotNull(hits);
+    assertEquals(2, hits.length);
+    assertAdvancements(0f, 0f, hits[0]);
+    assertAdvancements(0.8f, 0.8f, hits[1]);
+  }
+
+  public void testCrossingLine() {
+    RCommand line = new RCommand(0,25, 100,25);
+    float[][] hits = line.intersectionAdvancements(quad);
+    assertNotNull(hits);
+    assertEquals(2, hits.length);
+    for(int i = 0; i < hits.length; i++) {
+      assertClose(25f, quad.getPoint(hits[i][1]).y);
+    }
+  }
+
+  public void testTangentLine() {
+    RCommand line = new RCommand(0,50, 100,50);
+    float[][] hits = line.intersectionAdvancements(quad);
+    assertNotNull(hits);
+    assertEquals(1, hits.length);
+    assertAdvancements(0.5f, 0.5f, hits[0]);
+
+    hits = quad.intersectionAdvancements(line);
+    assertNotNull(hits);
+    assertEquals(1, hits.length);
+    assertAdvancements(0.5f, 0.5f, hits[0]);
+  }
+
+  public void testTangentCurves() {
+    RCommand other = new RCommand(0,100, 50,0, 100,100);
+    float[][] hits = quad.intersectionAdvancements(other);
+    assertNotNull(hits);
+    assertEquals(1, hits.length);
+    assertAdvancements(0.5f, 0.5f, hits[0]);
+  }
+
+  public void testSharedEndpoint() {
+    RCommand next = new RCommand(100,0, 150,100, 200,0);
+    float[][] hits = quad.intersectionAdvancements(next);
+    assertNotNull(hits);
+    assertEquals(1, hits.length);
+    assertAdvancements(1f, 0f, hits[0]);
+
+    // The two halves of a curve meet smoothly at their shared end
+    RCommand[] halves = cubic.split(0.5f);
+    hits = halves[0].intersectionAdvancements(halves[1]);
+    assertNotNull(hits);
+    assertEquals(1, hits.length);
+    assertAdvancements(1f, 0f, hits[0]);
+  }
+
+  public void testOverlappingCurves() {
+    float[][] hits = cubic.intersectionAdvancements(cubic);
+    assertNotNull(hits);
+    assertEquals(2, hits.length);
+    assertAdvancements(0f, 0f, hits[0]);
+    assertAdvancements(1f, 1f, hits[1]);
+
+    RCommand half = cubic.split(0.5f)[0];
+    hits = cubic.intersectionAdvancements(half);
+    assertNotNull(hits);
+    assertEquals(2, hits.length);
+    assertAdvancements(0f, 0f, hits[0]);
+    assertAdvancements(0.5f, 1f, hits[1]);
+
+    RCommand reversed = new RCommand(100,0, 70,-100, 30,100, 0,0);
+    hits = cubic.intersectionAdvancements(reversed);
+    assertNotNull(hits);
+    assertEquals(2, hits.length);
+  }
+
+  public void testParallelLines() {
+    RCommand a = new RCommand(0,0, 100,0);
+    RCommand b = new RCommand(50,0, 150,0);
+    assertNull(a.intersectionAdvancements(b));
+  }
+
+  private void assertAdvancements(float t, float u, float[] hit) {
+    assertClose(t, hit[0]);
+    assertClose(u, hit[1]);
+  }
+
+  private void assertClose(float v1, float v2) {
+    assertTrue(v1 + " != " + v2, Math.abs(v1-v2) < 0.0001);
+  }
+}
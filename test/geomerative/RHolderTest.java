@@ -0,0 +1,92 @@
+package geomerative;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * Checks that the changes of an element reach every element holding it,
+ * so that their bounds, contains() index and drawing mesh are rebuilt.
+ *
+ */
+public class RHolderTest extends TestCase {
+
+  public void testChildOfTwoShapes() {
+    RShape child = RShape.createRectangle(0, 0, 10, 10);
+    RShape first = new RShape();
+    RShape second = new RShape();
+    first.addChild(child);
+    second.addChild(child);
+
+    RShape[] holders = { first, second };
+    int[] versions = new int[holders.length];
+    RMesh[] meshes = new RMesh[holders.length];
+    for(int i = 0; i < holders.length; i++) {
+      assertTrue(holders[i].contains(5, 5));
+      assertClose(10, holders[i].getBounds().getMaxX());
+      versions[i] = holders[i].getVersion();
+      meshes[i] = holders[i].getDrawMesh(null);
+    }
+
+    child.translate(50, 50);
+    for(int i = 0; i < holders.length; i++) {
+      assertTrue(holders[i].getVersion() != versions[i]);
+      assertTrue(!holders[i].contains(5, 5));
+      assertTrue(holders[i].contains(55, 55));
+      assertClose(60, holders[i].getBounds().getMaxX());
+      assertTrue(holders[i].getDrawMesh(null) != meshes[i]);
+    }
+  }
+
+  public void testNestedHolders() {
+    RShape child = RShape.createRectangle(0, 0, 10, 10);
+    RShape first = new RShape();
+    RShape second = new RShape();
+    first.addChild(child);
+    second.addChild(child);
+
+    // The holders of the first holder are told too
+    RGroup top = new RGroup();
+    top.addElement(first);
+    assertClose(10, top.getBounds().getMaxX());
+    assertClose(10, second.getBounds().getMaxX());
+    child.scale(3);
+    assertClose(30, top.getBounds().getMaxX());
+    assertClose(30, second.getBounds().getMaxX());
+  }
+
+  public void testRemovedHolder() {
+    RGroup first = new RGroup();
+    RGroup second = new RGroup();
+    RShape shp = RShape.createRectangle(0, 0, 10, 10);
+    first.addElement(shp);
+    second.addElement(shp);
+
+    // A group the element was taken out of is no longer told about it
+    first.removeElement(0);
+    int version = first.getVersion();
+    shp.translate(5, 0);
+    assertEquals(version, first.getVersion());
+    assertClose(15, second.getBounds().getMaxX());
+
+    second.removeElement(0);
+    version = second.getVersion();
+    shp.translate(5, 0);
+    assertEquals(version, second.getVersion());
+  }
+
+  public void testViewsAreNotHolders() {
+    RShape shp = RShape.createRectangle(0, 0, 10, 10);
+    RPath path = shp.paths[0];
+    RShape view = path.toShape();
+    int version = view.getVersion();
+
+    path.translate(20, 0);
+    assertEquals(version, view.getVersion());
+    assertClose(30, shp.getBounds().getMaxX());
+    assertTrue(shp.contains(25, 5));
+  }
+
+  private void assertClose(float v1, float v2) {
+    assertTrue(Math.abs(v1-v2) < 0.0001);
+  }
+}
@@ -0,0 +1,170 @@
+package geomerative;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * Checks that a packed path holds the same commands as the unpacked one,
+ * and that transforming a packed path, or a copy sharing its packed
+ * coordinates, only changes that path.
+ *
+ */
+public class RPathPackTest extends TestCase {
+
+  RMatrix m = new RMatrix(2,0.5f,10, -0.5f,1,-5);
+
+  public void testRoundTrip() {
+    RPath path = makePath();
+    RPoint[] before = copy(path.getHandles());
+
+    path.pack();
+    assertTrue(path.isPacked());
+    assertNull(path.commands);
+    assertEquals(3, path.countCommands());
+
+    path.unpack();
+    assertTrue(!path.isPacked());
+    assertEquals(3, path.countCommands());
+    assertSamePoints(before, path.getHandles());
+
+    // Packing twice and unpacking an unpacked path do nothing
+    path.pack();
+    path.pack();
+    path.unpack();
+    path.unpack();
+    assertSamePoints(before, path.getHandles());
+  }
+
+  public void testDisjointCommandsStayUnpacked() {
+    RPath path = new RPath();
+    path.addCommand(new RCommand(0,0, 10,0));
+    path.addCommand(new RCommand(20,0, 30,10));
+    path.pack();
+    assertTrue(!path.isPacked());
+  }
+
+  public void testCommandAt() {
+    RPath path = makePath();
+    RPath packed = makePath();
+    packed.pack();
+
+    RCommand view = new RCommand();
+    for(int i = 0; i < path.countCommands(); i++) {
+      RCommand expected = path.commands[i];
+      RCommand[] found = { packed.commandAt(i), packed.commandAt(i, view) };
+      for(int k = 0; k < found.length; k++) {
+        assertEquals(expected.getCommandType(), found[k].getCommandType());
+        assertSamePoints(expected.getHandles(), found[k].getHandles());
+      }
+    }
+
+    // The command read from a packed path is a copy
+    packed.commandAt(0).endPoint.x = 1000;
+    packed.unpack();
+    assertSamePoints(path.getHandles(), packed.getHandles());
+  }
+
+  public void testQueriesOnPackedPath() {
+    RPath path = makePath();
+    RPath packed = makePath();
+    packed.pack();
+
+    assertClose(path.getCurveLength(), packed.getCurveLength());
+    assertClose(path.getWidth(), packed.getWidth());
+    for(int i = 0; i <= 10; i++) {
+      RPoint a = path.getPoint(i/10f), b = packed.getPoint(i/10f);
+      assertClose(a.x, b.x);
+      assertClose(a.y, b.y);
+    }
+    assertTrue(packed.isPacked());
+  }
+
+  public void testTransformPacked() {
+    RPath path = makePath();
+    RPath packed = makePath();
+    packed.pack();
+
+    path.transform(m);
+    packed.transform(m);
+    assertTrue(packed.isPacked());
+    assertClose(path.getWidth(), packed.getWidth());
+    packed.unpack();
+    assertSamePoints(path.getHandles(), packed.getHandles());
+  }
+
+  public void testTransformSharedCopy() {
+    RPath original = makePath();
+    original.pack();
+    RPoint[] before = copy(new RPath(original).getHandles());
+
+    RPath copy = new RPath(original);
+    assertTrue(copy.isPacked());
+    copy.transform(m);
+
+    RPath expected = makePath();
+    expected.transform(m);
+    assertSamePoints(expected.getHandles(), copy.getHandles());
+
+    // The original keeps its coordinates, and can be transformed in turn
+    assertTrue(original.isPacked());
+    RPath check = new RPath(original);
+    assertSamePoints(before, check.getHandles());
+    original.transform(m);
+    assertSamePoints(expected.getHandles(), original.getHandles());
+    assertSamePoints(before, check.getHandles());
+  }
+
+  public void testTransformSharedShape() {
+    RShape shp = new RShape(makePath());
+    shp.paths[0].pack();
+    RShape copy = new RShape(shp);
+    copy.transform(m);
+
+    RPath expected = makePath();
+    assertSamePoints(expected.getHandles(), shp.paths[0].getHandles());
+    expected.transform(m);
+    assertSamePoints(expected.getHandles(), copy.paths[0].getHandles());
+  }
+
+  public void testGetHandlesUnpacks() {
+    RPath path = makePath();
+    path.pack();
+    RPoint[] handles = path.getHandles();
+    assertTrue(!path.isPacked());
+    assertNotNull(path.commands);
+
+    // The handles are the points of the path
+    handles[handles.length-1].x = 500;
+    path.invalidateDeep();
+    assertClose(500, path.commands[path.countCommands()-1].endPoint.x);
+    assertClose(500, path.getPoint(1f).x);
+  }
+
+  private RPath makePath() {
+    RPath path = new RPath(0, 0);
+    path.addLineTo(10, 0);
+    path.addQuadTo(20, 10, 10, 20);
+    path.addBezierTo(5, 25, -5, 15, 0, 10);
+    return path;
+  }
+
+  private RPoint[] copy(RPoint[] points) {
+    RPoint[] result = new RPoint[points.length];
+    for(int i = 0; i < points.length; i++) {
+      result[i] = new RPoint(points[i]);
+    }
+    return result;
+  }
+
+  private void assertSamePoints(RPoint[] expected, RPoint[] found) {
+    assertEquals(expected.length, found.length);
+    for(int i = 0; i < expected.length; i++) {
+      assertClose(expected[i].x, found[i].x);
+      assertClose(expected[i].y, found[i].y);
+    }
+  }
+
+  private void assertClose(float v1, float v2) {
+    assertTrue(Math.abs(v1-v2) < 0.0001);
+  }
+}
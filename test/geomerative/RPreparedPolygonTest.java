@@ -0,0 +1,77 @@
+package geomerative;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ *
+ * Checks that clipping with a prepared polygon, as the subject or as the
+ * clip, gives the same polygons as the fast clipper on the plain one.
+ *
+ */
+public class RPreparedPolygonTest extends TestCase {
+
+  RClip.OperationType[] ops = {
+    RClip.OperationType.GPC_INT, RClip.OperationType.GPC_UNION,
+    RClip.OperationType.GPC_XOR, RClip.OperationType.GPC_DIFF
+  };
+
+  protected void setUp() {
+    RG.useFastClip = true;
+    RG.useIntClip = false;
+  }
+
+  public void testAgainstFastClip() {
+    for(int seed = 0; seed < 10; seed++) {
+      RPolygon a = makeShape(30, seed);
+      RPreparedPolygon prepared = new RPreparedPolygon(a);
+      for(int k = 0; k < 5; k++) {
+        RPolygon p = makeShape(10 + 5*k, 100*seed + k);
+        for(int o = 0; o < ops.length; o++) {
+          checkPoints(FastRClip.clip(ops[o], a, p, RPolygon.class), RClip.clip(ops[o], prepared, p));
+          checkPoints(FastRClip.clip(ops[o], p, a, RPolygon.class), RClip.clip(ops[o], p, prepared));
+        }
+      }
+    }
+  }
+
+  public void testEmptyOperands() {
+    RPolygon a = makeShape(20, 1);
+    RPreparedPolygon empty = new RPreparedPolygon(new RPolygon());
+    RPreparedPolygon prepared = new RPreparedPolygon(a);
+    for(int o = 0; o < ops.length; o++) {
+      checkPoints(FastRClip.clip(ops[o], new RPolygon(), a, RPolygon.class), RClip.clip(ops[o], empty, a));
+      checkPoints(FastRClip.clip(ops[o], a, new RPolygon(), RPolygon.class), RClip.clip(ops[o], a, empty));
+      checkPoints(FastRClip.clip(ops[o], a, new RPolygon(), RPolygon.class), RClip.clip(ops[o], prepared, new RPolygon()));
+    }
+  }
+
+  /* The fast clipper gives null where the prepared overloads give an empty polygon */
+  private void checkPoints(RPolygon fast, RPolygon prepared) {
+    assertNotNull(prepared);
+    if(fast == null) {
+      assertEquals(0, prepared.countContours());
+      return;
+    }
+    assertEquals(fast.countContours(), prepared.countContours());
+    for(int c = 0; c < fast.countContours(); c++) {
+      RContour f = fast.contours[c], p = prepared.contours[c];
+      assertEquals(f.countPoints(), p.countPoints());
+      assertTrue(f.isHole == p.isHole);
+      for(int i = 0; i < f.countPoints(); i++) {
+        assertTrue(f.points[i].x == p.points[i].x);
+        assertTrue(f.points[i].y == p.points[i].y);
+      }
+    }
+  }
+
+  RPolygon makeShape(int numPoints, int seed) {
+    Random r = new Random(seed);
+    RPoint[] points = new RPoint[numPoints];
+    for(int i = 0; i < numPoints; i++) {
+      points[i] = new RPoint(r.nextFloat()*100,r.nextFloat()*100);
+    }
+    return new RPolygon(points);
+  }
+}
@@ -0,0 +1,188 @@
+package geomerative;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ *
+ * Checks the prepared shapes against a plain count of the crossings of
+ * a ray with every edge, for both fill rules, point by point and in
+ * batches, and that RShape.contains() follows the changes of the shape.
+ *
+ */
+public class RPreparedShapeTest extends TestCase {
+
+  public void testStarRules() {
+    RPolygon star = makeStar(50, 50, 40);
+    RPreparedShape evenOdd = new RPreparedShape(star, RPreparedShape.EVENODD);
+    RPreparedShape nonZero = new RPreparedShape(star, RPreparedShape.NONZERO);
+
+    // The center is wound around twice
+    assertTrue(!evenOdd.contains(50, 50));
+    assertTrue(nonZero.contains(50, 50));
+    assertTrue(!evenOdd.contains(0, 0));
+    assertTrue(!nonZero.contains(0, 0));
+
+    checkAgainstWinding(star, 5000, 100);
+  }
+
+  public void testNestedContours() {
+    // Two squares turning the same way, then the inner one reversed
+    RPolygon same = new RPolygon();
+    same.addContour(square(0, 0, 100, false));
+    same.addContour(square(25, 25, 50, false));
+    RPreparedShape nonZero = new RPreparedShape(same, RPreparedShape.NONZERO);
+    assertTrue(nonZero.contains(50, 50));
+    assertTrue(!new RPreparedShape(same, RPreparedShape.EVENODD).contains(50, 50));
+
+    RPolygon reversed = new RPolygon();
+    reversed.addContour(square(0, 0, 100, false));
+    reversed.addContour(square(25, 25, 50, true));
+    assertTrue(!new RPreparedShape(reversed, RPreparedShape.NONZERO).contains(50, 50));
+    assertTrue(new RPreparedShape(reversed, RPreparedShape.NONZERO).contains(10, 50));
+
+    checkAgainstWinding(same, 2000, 100);
+    checkAgainstWinding(reversed, 2000, 100);
+  }
+
+  public void testRandomPolygons() {
+    for(int seed = 0; seed < 20; seed++) {
+      checkAgainstWinding(makeShape(5 + 3*seed, seed), 1000, 100);
+    }
+  }
+
+  public void testBatch() {
+    RPolygon p = makeShape(40, 7);
+    Random r = new Random(3);
+    int n = 3 * RPreparedShape.BATCH_SPLIT_SIZE + 11;
+    float[] xs = new float[n];
+    float[] ys = new float[n];
+    for(int i = 0; i < n; i++) {
+      xs[i] = r.nextFloat()*120 - 10;
+      ys[i] = r.nextFloat()*120 - 10;
+    }
+
+    for(int rule = RPreparedShape.EVENODD; rule <= RPreparedShape.NONZERO; rule++) {
+      RPreparedShape prepared = new RPreparedShape(p, rule);
+      int expected = 0;
+      for(int i = 0; i < n; i++) {
+        if(inside(p, xs[i], ys[i], rule)) {
+          expected++;
+        }
+      }
+
+      for(int k = 0; k < 2; k++) {
+        boolean parallel = (k == 1);
+        boolean[] out = new boolean[n];
+        prepared.contains(xs, ys, out, parallel);
+        for(int i = 0; i < n; i++) {
+          assertTrue(out[i] == prepared.contains(xs[i], ys[i]));
+        }
+        assertEquals(expected, prepared.countContained(xs, ys, parallel));
+      }
+    }
+
+    // The batches of the polygon and of the shape use the even-odd rule
+    RShape shp = p.toShape();
+    boolean[] out = new boolean[n];
+    shp.contains(xs, ys, out, true);
+    int count = 0;
+    for(int i = 0; i < n; i++) {
+      assertTrue(out[i] == shp.contains(xs[i], ys[i]));
+      if(out[i]) {
+        count++;
+      }
+    }
+    assertEquals(count, shp.countContained(xs, ys));
+    assertEquals(p.countContained(xs, ys), p.countContained(xs, ys, true));
+  }
+
+  public void testShapeFollowsChanges() {
+    RShape shp = RShape.createRectangle(0, 0, 10, 10);
+    assertTrue(shp.contains(5, 5));
+    assertTrue(!shp.contains(25, 5));
+
+    shp.translate(20, 0);
+    assertTrue(!shp.contains(5, 5));
+    assertTrue(shp.contains(25, 5));
+
+    // Moving the points by hand needs invalidateDeep()
+    RPoint[] handles = shp.getHandles();
+    for(int i = 0; i < handles.length; i++) {
+      handles[i].y += 20;
+    }
+    shp.invalidateDeep();
+    assertTrue(!shp.contains(25, 5));
+    assertTrue(shp.contains(25, 25));
+
+    // A change of a child reaches the shape holding it
+    RShape group = new RShape();
+    RShape child = RShape.createRectangle(0, 0, 10, 10);
+    group.addChild(child);
+    assertTrue(group.contains(5, 5));
+    child.translate(50, 50);
+    assertTrue(!group.contains(5, 5));
+    assertTrue(group.contains(55, 55));
+  }
+
+  private void checkAgainstWinding(RPolygon p, int numPoints, float size) {
+    RPreparedShape evenOdd = new RPreparedShape(p, RPreparedShape.EVENODD);
+    RPreparedShape nonZero = new RPreparedShape(p, RPreparedShape.NONZERO);
+    Random r = new Random(numPoints);
+    for(int i = 0; i < numPoints; i++) {
+      float x = r.nextFloat()*size*1.2f - size*0.1f;
+      float y = r.nextFloat()*size*1.2f - size*0.1f;
+      assertTrue(evenOdd.contains(x, y) == inside(p, x, y, RPreparedShape.EVENODD));
+      assertTrue(nonZero.contains(x, y) == inside(p, x, y, RPreparedShape.NONZERO));
+    }
+  }
+
+  /* Winding number of the contours around the point, counting the signed
+     crossings of every edge with the ray going right from the point */
+  private boolean inside(RPolygon p, float x, float y, int rule) {
+    int winding = 0;
+    for(int c = 0; c < p.countContours(); c++) {
+      RPoint[] pts = p.contours[c].points;
+      int n = p.contours[c].countPoints();
+      for(int i = 0; i < n; i++) {
+        RPoint a = pts[i], b = pts[(i+1)%n];
+        if((a.y > y) != (b.y > y)) {
+          float xc = (b.x - a.x) * (y - a.y) / (b.y - a.y) + a.x;
+          if(x < xc) {
+            winding += (b.y > a.y) ? 1 : -1;
+          }
+        }
+      }
+    }
+    return (rule == RPreparedShape.EVENODD) ? ((winding & 1) != 0) : (winding != 0);
+  }
+
+  private RContour square(float x, float y, float size, boolean reversed) {
+    RPoint[] pts = new RPoint[] {
+      new RPoint(x, y), new RPoint(x+size, y), new RPoint(x+size, y+size), new RPoint(x, y+size)
+    };
+    if(reversed) {
+      pts = new RPoint[] { pts[3], pts[2], pts[1], pts[0] };
+    }
+    return new RContour(pts);
+  }
+
+  private RPolygon makeStar(float cx, float cy, float radius) {
+    RPoint[] points = new RPoint[5];
+    for(int i = 0; i < 5; i++) {
+      double angle = Math.PI/2 + i * 4*Math.PI/5;
+      points[i] = new RPoint(cx + radius*(float)Math.cos(angle), cy + radius*(float)Math.sin(angle));
+    }
+    return new RPolygon(points);
+  }
+
+  RPolygon makeShape(int numPoints, int seed) {
+    Random r = new Random(seed);
+    RPoint[] points = new RPoint[numPoints];
+    for(int i = 0; i < numPoints; i++) {
+      points[i] = new RPoint(r.nextFloat()*100,r.nextFloat()*100);
+    }
+    return new RPolygon(points);
+  }
+}
@@ -0,0 +1,106 @@
+package geomerative;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * Checks RPolygon.unionAll() against a left fold of RClip.union(), and
+ * the clusters it merges the polygons in.
+ *
+ */
+public class RUnionTest extends TestCase {
+
+  public void testDisjointClusters() {
+    RPolygon[] polys = new RPolygon[10];
+    for(int i = 0; i < polys.length; i++) {
+      polys[i] = RPolygon.createRectangle(20*i, 20*(i%3), 10, 10);
+    }
+
+    assertEquals(polys.length, RUnion.cluster(boxes(polys), polys.length).length);
+    RPolygon res = RPolygon.unionAll(polys);
+    assertEquals(polys.length, res.countContours());
+    assertClose(100*polys.length, area(res));
+    assertClose(area(fold(polys)), area(res));
+  }
+
+  public void testChainedOverlap() {
+    // Each square only overlaps its neighbours, the ends are far apart
+    RPolygon[] polys = new RPolygon[12];
+    for(int i = 0; i < polys.length; i++) {
+      polys[i] = RPolygon.createRectangle(8*i, (i%2)*5, 10, 10);
+    }
+
+    int[][] clusters = RUnion.cluster(boxes(polys), polys.length);
+    assertEquals(1, clusters.length);
+    assertEquals(polys.length, clusters[0].length);
+    RPolygon res = RPolygon.unionAll(polys);
+    assertEquals(1, res.countContours());
+    assertClose(area(fold(polys)), area(res));
+  }
+
+  public void testMixedClusters() {
+    Random r = new Random(5);
+    RPolygon[] polys = new RPolygon[60];
+    for(int i = 0; i < polys.length; i++) {
+      polys[i] = RPolygon.createCircle(r.nextFloat()*300, r.nextFloat()*300, 5 + r.nextFloat()*20, 16);
+    }
+    assertClose(area(fold(polys)), area(RPolygon.unionAll(polys)));
+  }
+
+  public void testEmptyInputs() {
+    assertEquals(0, RPolygon.unionAll(new RPolygon[0]).countContours());
+    assertEquals(0, RPolygon.unionAll(new RPolygon[] { null, new RPolygon(), null }).countContours());
+    assertEquals(0, RPolygon.unionAll(new ArrayList<RPolygon>()).countContours());
+
+    RPolygon square = RPolygon.createRectangle(0, 0, 10, 10);
+    RPolygon res = RPolygon.unionAll(new RPolygon[] { null, square, new RPolygon() });
+    assertEquals(1, res.countContours());
+    assertClose(100, area(res));
+
+    List<RPolygon> list = new ArrayList<RPolygon>();
+    list.add(square);
+    list.add(RPolygon.createRectangle(5, 5, 10, 10));
+    assertClose(175, area(RPolygon.unionAll(list)));
+  }
+
+  private RPolygon fold(RPolygon[] polys) {
+    RPolygon res = new RPolygon();
+    for(int i = 0; i < polys.length; i++) {
+      RPolygon next = RClip.union(res, polys[i]);
+      res = (next == null) ? new RPolygon() : next;
+    }
+    return res;
+  }
+
+  private float[] boxes(RPolygon[] polys) {
+    float[] boxes = new float[4*polys.length];
+    for(int i = 0; i < polys.length; i++) {
+      System.arraycopy(polys[i].getBoundsArray(), 0, boxes, 4*i, 4);
+    }
+    return boxes;
+  }
+
+  /* Area of the outer contours minus the area of the holes */
+  private float area(RPolygon p) {
+    double total = 0;
+    for(int c = 0; c < p.countContours(); c++) {
+      RContour contour = p.contours[c];
+      double a = 0;
+      int n = contour.countPoints();
+      for(int i = 0; i < n; i++) {
+        RPoint u = contour.points[i], v = contour.points[(i+1)%n];
+        a += (double)u.x*v.y - (double)v.x*u.y;
+      }
+      total += contour.isHole ? -Math.abs(a/2) : Math.abs(a/2);
+    }
+    return (float)total;
+  }
+
+  private void assertClose(float v1, float v2) {
+    assertTrue(Math.abs(v1-v2) <= 0.0001 * Math.max(1, Math.abs(v1)));
+  }
+}